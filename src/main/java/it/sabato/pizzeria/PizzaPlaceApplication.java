@@ -2,12 +2,14 @@ package it.sabato.pizzeria;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 /**
  * Pizza Place Demo Application.
  * @author Gianluca Sabato
  */
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class PizzaPlaceApplication {
 
 	/**
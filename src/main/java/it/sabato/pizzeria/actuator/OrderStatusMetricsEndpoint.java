@@ -0,0 +1,46 @@
+package it.sabato.pizzeria.actuator;
+
+import it.sabato.pizzeria.dto.OrderStatusMetricsDTO;
+import it.sabato.pizzeria.service.OrderStatusCounters;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint exposing the {@link OrderStatusCounters}: the number of orders per status and the age of the
+ * oldest RECEVIED and PROCESSING orders, read without querying the database. A POST request reconciles the counters
+ * with the database right away.
+ * @author Gianluca Sabato
+ */
+@Component
+@Endpoint(id = "ordermetrics")
+@RequiredArgsConstructor
+public class OrderStatusMetricsEndpoint {
+    private final OrderStatusCounters orderStatusCounters;
+
+    /**
+     * Gets the order status metrics.
+     *
+     * @return the order status metrics
+     * @author Gianluca Sabato
+     */
+    @ReadOperation
+    public OrderStatusMetricsDTO orderMetrics() {
+        return orderStatusCounters.getMetrics();
+    }
+
+    /**
+     * Reconcile the counters with the database.
+     *
+     * @return the reconciled order status metrics
+     * @author Gianluca Sabato
+     */
+    @WriteOperation
+    public OrderStatusMetricsDTO reconcile() {
+        orderStatusCounters.reconcile();
+
+        return orderMetrics();
+    }
+}
@@ -0,0 +1,50 @@
+package it.sabato.pizzeria.actuator;
+
+import it.sabato.pizzeria.dto.OrderStatusDTO;
+import it.sabato.pizzeria.factory.OrderStatusDTOFactory;
+import it.sabato.pizzeria.service.OrderStatusRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import javax.naming.ConfigurationException;
+import java.util.List;
+
+/**
+ * Actuator endpoint exposing the {@link OrderStatusRegistry}. A POST request reloads the order statuses from the
+ * database.
+ * @author Gianluca Sabato
+ */
+@Component
+@Endpoint(id = "orderstatuses")
+@RequiredArgsConstructor
+public class OrderStatusRegistryEndpoint {
+    private final OrderStatusRegistry orderStatusRegistry;
+
+    /**
+     * Gets the order statuses currently loaded inside the registry.
+     *
+     * @return the order statuses
+     * @author Gianluca Sabato
+     */
+    @ReadOperation
+    public List<OrderStatusDTO> orderStatuses() {
+        return orderStatusRegistry.getAll().stream().map(OrderStatusDTOFactory::getOrderStatusDTO).toList();
+    }
+
+    /**
+     * Reload the order statuses from the database.
+     *
+     * @return the reloaded order statuses
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * @author Gianluca Sabato
+     */
+    @WriteOperation
+    public List<OrderStatusDTO> refresh() throws ConfigurationException {
+        orderStatusRegistry.refresh();
+
+        return orderStatuses();
+    }
+}
@@ -0,0 +1,50 @@
+package it.sabato.pizzeria.actuator;
+
+import it.sabato.pizzeria.dto.PizzaDTO;
+import it.sabato.pizzeria.factory.PizzaDTOFactory;
+import it.sabato.pizzeria.service.PizzaCatalog;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import javax.naming.ConfigurationException;
+import java.util.List;
+
+/**
+ * Actuator endpoint exposing the {@link PizzaCatalog}. A POST request reloads the menu from the database, so menu
+ * changes don't need a restart.
+ * @author Gianluca Sabato
+ */
+@Component
+@Endpoint(id = "pizzas")
+@RequiredArgsConstructor
+public class PizzaCatalogEndpoint {
+    private final PizzaCatalog pizzaCatalog;
+
+    /**
+     * Gets the pizzas currently loaded inside the catalog.
+     *
+     * @return the pizzas
+     * @author Gianluca Sabato
+     */
+    @ReadOperation
+    public List<PizzaDTO> pizzas() {
+        return pizzaCatalog.getAll().stream().map(PizzaDTOFactory::getPizzaDTO).toList();
+    }
+
+    /**
+     * Reload the menu from the database.
+     *
+     * @return the reloaded pizzas
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * @author Gianluca Sabato
+     */
+    @WriteOperation
+    public List<PizzaDTO> refresh() throws ConfigurationException {
+        pizzaCatalog.refresh();
+
+        return pizzas();
+    }
+}
@@ -0,0 +1,252 @@
+package it.sabato.pizzeria.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Pizza Place configuration properties (pizzeria.* keys).
+ * @author Gianluca Sabato
+ */
+@Data
+@ConfigurationProperties(prefix = "pizzeria")
+public class PizzaPlaceProperties {
+    private final Orders orders = new Orders();
+    private final Intake intake = new Intake();
+    private final Idempotency idempotency = new Idempotency();
+    private final Retry retry = new Retry();
+    private final Cache cache = new Cache();
+    private final Invalidation invalidation = new Invalidation();
+    private final Outbox outbox = new Outbox();
+    private final Streams streams = new Streams();
+    private final Board board = new Board();
+    private final Metrics metrics = new Metrics();
+
+    /**
+     * Orders configuration properties (pizzeria.orders.* keys).
+     */
+    @Data
+    public static class Orders {
+        /**
+         * Page size used when the client doesn't ask for one.
+         */
+        private int pageSize = 20;
+        /**
+         * Hard limit on the page size, whatever the client asks for.
+         */
+        private int maxPageSize = 100;
+        /**
+         * Number of orders read by the export from the database in a single round trip, and written before the
+         * response is flushed.
+         */
+        private int exportChunkSize = 500;
+        /**
+         * Maximum number of orders accepted by a single batch request.
+         */
+        private int maxBatchSize = 1000;
+        /**
+         * Longest wait a GET /orders/next long poll can ask for.
+         */
+        private Duration maxNextOrderWait = Duration.ofSeconds(30);
+    }
+
+    /**
+     * Asynchronous order intake configuration properties (pizzeria.intake.* keys).
+     */
+    @Data
+    public static class Intake {
+        /**
+         * Whether POST /orders honours the "Prefer: respond-async" header.
+         */
+        private boolean enabled = true;
+        /**
+         * Maximum number of accepted orders waiting to be written, that is the most orders lost by a crash.
+         */
+        private int capacity = 10000;
+        /**
+         * Maximum number of orders written by a single commit.
+         */
+        private int batchSize = 500;
+        /**
+         * Longest time an accepted order waits for other orders before its commit.
+         */
+        private Duration flushInterval = Duration.ofMillis(5);
+        /**
+         * Longest time the shutdown waits for the accepted orders to be written.
+         */
+        private Duration shutdownTimeout = Duration.ofSeconds(30);
+    }
+
+    /**
+     * Idempotency-Key configuration properties (pizzeria.idempotency.* keys).
+     */
+    @Data
+    public static class Idempotency {
+        /**
+         * How long a key is remembered, both in memory and in the idempotency_keys table.
+         */
+        private Duration ttl = Duration.ofHours(24);
+        /**
+         * Maximum number of keys remembered in memory. Older keys are still found in the idempotency_keys table.
+         */
+        private long cacheSize = 10000;
+        /**
+         * Interval between two deletions of the expired keys from the idempotency_keys table.
+         */
+        private Duration cleanupInterval = Duration.ofHours(1);
+    }
+
+    /**
+     * Retry configuration properties (pizzeria.retry.* keys), for the internal order transitions failing because of
+     * concurrent updates.
+     */
+    @Data
+    public static class Retry {
+        /**
+         * Maximum number of attempts, the first one included.
+         */
+        private int maxAttempts = 5;
+        /**
+         * Backoff cap after the first failed attempt. It doubles after every failed attempt, and the actual wait is
+         * a random value below it.
+         */
+        private Duration initialBackoff = Duration.ofMillis(10);
+        /**
+         * Maximum backoff cap.
+         */
+        private Duration maxBackoff = Duration.ofMillis(200);
+    }
+
+    /**
+     * Order cache configuration properties (pizzeria.cache.* keys), for the order and order status reads.
+     */
+    @Data
+    public static class Cache {
+        /**
+         * Maximum number of cached orders, the least recently used ones are evicted first.
+         */
+        private long maxSize = 100000;
+        /**
+         * How long an order stays cached after being loaded. It bounds how stale an order can be when a change done
+         * by another application instance is not notified.
+         */
+        private Duration ttl = Duration.ofMinutes(5);
+    }
+
+    /**
+     * Cross-instance order cache invalidation configuration properties (pizzeria.invalidation.* keys), sent through
+     * PostgreSQL LISTEN/NOTIFY.
+     */
+    @Data
+    public static class Invalidation {
+        /**
+         * Whether the changed orders are notified to, and the notifications are received from, the other instances.
+         */
+        private boolean enabled = true;
+        /**
+         * Name of the PostgreSQL notification channel.
+         */
+        private String channel = "order_changed";
+        /**
+         * Longest time the listener waits for notifications before checking whether it has been stopped.
+         */
+        private Duration pollTimeout = Duration.ofMillis(500);
+        /**
+         * Wait before the listener connects again after losing its connection.
+         */
+        private Duration reconnectDelay = Duration.ofSeconds(1);
+    }
+
+    /**
+     * Order events outbox configuration properties (pizzeria.outbox.* keys).
+     */
+    @Data
+    public static class Outbox {
+        /**
+         * Whether the order status changes are written to the outbox and dispatched to the sinks. It should be enabled
+         * together with a sink, otherwise the events are written but never dispatched.
+         */
+        private boolean enabled = false;
+        /**
+         * Maximum number of order events delivered to the sinks, and checkpointed, by a single transaction.
+         */
+        private int batchSize = 100;
+        /**
+         * Interval between the end of a dispatch and the start of the next one.
+         */
+        private Duration dispatchInterval = Duration.ofSeconds(1);
+        /**
+         * How long the dispatched order events are kept inside the order_events table.
+         */
+        private Duration retention = Duration.ofDays(7);
+        /**
+         * Interval between two deletions of the dispatched order events older than the retention.
+         */
+        private Duration cleanupInterval = Duration.ofHours(1);
+        /**
+         * File the order events are appended to, one JSON document per line. No file sink when it's not set.
+         */
+        private Path file;
+    }
+
+    /**
+     * Order status streams configuration properties (pizzeria.streams.* keys), for GET /orders/{id}/events.
+     */
+    @Data
+    public static class Streams {
+        /**
+         * How long a stream stays open. Clients connect again when it's closed, so it bounds how long a dead client
+         * that is never written to is kept.
+         */
+        private Duration timeout = Duration.ofMinutes(30);
+        /**
+         * Interval between two heartbeats sent to the open streams, that also find the dead clients.
+         */
+        private Duration heartbeatInterval = Duration.ofSeconds(30);
+        /**
+         * Maximum number of open streams. New streams are refused beyond it.
+         */
+        private int maxSubscriptions = 20000;
+        /**
+         * Number of threads writing to the streams, so that slow clients never block the order updates.
+         */
+        private int threads = 4;
+    }
+
+    /**
+     * Kitchen board configuration properties (pizzeria.board.* keys), for GET /kitchen/board and its socket.
+     */
+    @Data
+    public static class Board {
+        /**
+         * Number of board changes kept for the delta requests. Clients further behind get the whole board.
+         */
+        private int deltaLogSize = 1000;
+        /**
+         * Number of threads writing to the kitchen board sockets.
+         */
+        private int socketThreads = 2;
+        /**
+         * Maximum number of changes waiting to be written to a single socket. A socket further behind is sent a new
+         * snapshot instead.
+         */
+        private int socketMaxPendingEvents = 256;
+        /**
+         * Longest time a single write to a socket can take. The socket is closed when it's exceeded.
+         */
+        private Duration socketSendTimeout = Duration.ofSeconds(5);
+    }
+
+    /**
+     * Order metrics configuration properties (pizzeria.metrics.* keys).
+     */
+    @Data
+    public static class Metrics {
+        /**
+         * Interval between two reconciliations of the in-memory order counters with the database.
+         */
+        private Duration reconcileInterval = Duration.ofMinutes(5);
+    }
+}
@@ -0,0 +1,14 @@
+package it.sabato.pizzeria.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+
+/**
+ * Scheduling configuration class.
+ * @author Gianluca Sabato
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
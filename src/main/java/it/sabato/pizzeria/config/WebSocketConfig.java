@@ -0,0 +1,25 @@
+package it.sabato.pizzeria.config;
+
+import it.sabato.pizzeria.controller.KitchenBoardSocket;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+
+/**
+ * WebSocket configuration class.
+ * @author Gianluca Sabato
+ */
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+public class WebSocketConfig implements WebSocketConfigurer {
+    private final KitchenBoardSocket kitchenBoardSocket;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(kitchenBoardSocket, "/kitchen/board/socket");
+    }
+}
@@ -0,0 +1,284 @@
+package it.sabato.pizzeria.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.sabato.pizzeria.config.PizzaPlaceProperties;
+import it.sabato.pizzeria.dto.KitchenBoardDTO;
+import it.sabato.pizzeria.dto.KitchenBoardEventDTO;
+import it.sabato.pizzeria.factory.KitchenBoardEventDTOFactory;
+import it.sabato.pizzeria.service.KitchenBoard;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Kitchen board socket (/kitchen/board/socket). Every socket is sent a snapshot of the {@link KitchenBoard} when it
+ * connects, and then a {@link KitchenBoardEventDTO} for every board change. Each change is serialized once and the
+ * same message is written to all the sockets, by a few dedicated threads, never by the thread changing the order.
+ * <p>
+ * A socket falling more than {@code pizzeria.board.socket-max-pending-events} changes behind has its pending changes
+ * dropped, and it's sent a new snapshot instead, so a slow screen never makes the messages pile up. A write taking
+ * longer than {@code pizzeria.board.socket-send-timeout} closes the socket.
+ * @author Gianluca Sabato
+ */
+@Slf4j
+@Component
+public class KitchenBoardSocket extends TextWebSocketHandler implements InitializingBean, DisposableBean {
+    /**
+     * Tomcat user property bounding the blocking writes of a WebSocket session, in milliseconds.
+     */
+    private static final String BLOCKING_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    private final KitchenBoard kitchenBoard;
+    private final ObjectMapper objectMapper;
+    private final PizzaPlaceProperties pizzaPlaceProperties;
+    private final ExecutorService writers;
+
+    private final Map<String, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final AtomicReference<Message> lastSnapshot = new AtomicReference<>();
+    private final Consumer<KitchenBoardEventDTO> listener = this::broadcast;
+
+    /**
+     * Instantiates a new Kitchen board socket.
+     *
+     * @param kitchenBoard         the kitchen board
+     * @param objectMapper         the object mapper
+     * @param pizzaPlaceProperties the pizza place properties
+     * @author Gianluca Sabato
+     */
+    public KitchenBoardSocket(KitchenBoard kitchenBoard, ObjectMapper objectMapper,
+                              PizzaPlaceProperties pizzaPlaceProperties) {
+        this.kitchenBoard = kitchenBoard;
+        this.objectMapper = objectMapper;
+        this.pizzaPlaceProperties = pizzaPlaceProperties;
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("kitchen-board-socket-");
+        threadFactory.setDaemon(true);
+        this.writers = Executors.newFixedThreadPool(Math.max(1, pizzaPlaceProperties.getBoard().getSocketThreads()),
+                threadFactory);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        kitchenBoard.addListener(listener);
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        if (session instanceof NativeWebSocketSession nativeSession
+                && nativeSession.getNativeSession() instanceof jakarta.websocket.Session webSocketSession) {
+            webSocketSession.getUserProperties().put(BLOCKING_SEND_TIMEOUT,
+                    pizzaPlaceProperties.getBoard().getSocketSendTimeout().toMillis());
+        }
+
+        // Registered before the snapshot is read, so that no change is lost in between
+        Subscriber subscriber = new Subscriber(session);
+        subscribers.put(session.getId(), subscriber);
+
+        synchronized (subscriber) {
+            subscriber.resync = true;
+            schedule(subscriber);
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        subscribers.remove(session.getId());
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        log.debug("Kitchen board socket {} failed", session.getId(), exception);
+        close(session);
+    }
+
+    /**
+     * Gets the number of open sockets.
+     *
+     * @return the subscriber count
+     * @author Gianluca Sabato
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @Override
+    public void destroy() {
+        kitchenBoard.removeListener(listener);
+        subscribers.values().forEach(subscriber -> close(subscriber.session));
+        writers.shutdownNow();
+    }
+
+    private void broadcast(KitchenBoardEventDTO event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+
+        Message message = toMessage(event);
+
+        if (message == null) {
+            return;
+        }
+
+        int maxPendingEvents = Math.max(1, pizzaPlaceProperties.getBoard().getSocketMaxPendingEvents());
+
+        for (Subscriber subscriber : subscribers.values()) {
+            synchronized (subscriber) {
+                if (subscriber.resync) {
+                    // The snapshot is read when it's written, so it already has this change
+                    continue;
+                }
+
+                if (subscriber.pending.size() >= maxPendingEvents) {
+                    subscriber.pending.clear();
+                    subscriber.resync = true;
+                } else {
+                    subscriber.pending.addLast(message);
+                }
+
+                schedule(subscriber);
+            }
+        }
+    }
+
+    /**
+     * Start writing to a subscriber, unless a writer is already on it. Called holding the subscriber lock.
+     */
+    private void schedule(Subscriber subscriber) {
+        if (!subscriber.draining) {
+            subscriber.draining = true;
+            writers.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        while (true) {
+            Message next;
+
+            synchronized (subscriber) {
+                if (subscriber.resync) {
+                    subscriber.resync = false;
+                    next = null;
+                } else {
+                    next = subscriber.pending.pollFirst();
+
+                    if (next == null) {
+                        subscriber.draining = false;
+
+                        return;
+                    }
+                }
+            }
+
+            if (next == null) {
+                next = getSnapshot();
+
+                if (next == null) {
+                    close(subscriber.session);
+
+                    return;
+                }
+            }
+
+            if (next.version() <= subscriber.lastVersion) {
+                continue;
+            }
+
+            try {
+                subscriber.session.sendMessage(next.message());
+                subscriber.lastVersion = next.version();
+            } catch (IOException | RuntimeException e) {
+                log.debug("Kitchen board socket {} closed by the client", subscriber.session.getId(), e);
+                close(subscriber.session);
+
+                synchronized (subscriber) {
+                    subscriber.draining = false;
+                }
+
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the message of the current snapshot, serialized only once per board version.
+     */
+    private Message getSnapshot() {
+        KitchenBoardDTO board = kitchenBoard.getBoard(null, null);
+        Message snapshot = lastSnapshot.get();
+
+        if (snapshot == null || snapshot.version() != board.getVersion()) {
+            snapshot = toMessage(KitchenBoardEventDTOFactory.getKitchenBoardEventDTO(board));
+
+            if (snapshot != null) {
+                lastSnapshot.set(snapshot);
+            }
+        }
+
+        return snapshot;
+    }
+
+    private Message toMessage(KitchenBoardEventDTO event) {
+        try {
+            return new Message(event.getVersion(), new TextMessage(objectMapper.writeValueAsString(event)));
+        } catch (JsonProcessingException e) {
+            log.error("Kitchen board event {} not serialized", event.getVersion(), e);
+
+            return null;
+        }
+    }
+
+    private void close(WebSocketSession session) {
+        subscribers.remove(session.getId());
+
+        try {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            log.debug("Kitchen board socket {} not closed cleanly", session.getId(), e);
+        }
+    }
+
+    private record Message(long version, TextMessage message) {
+    }
+
+    private static final class Subscriber {
+        private final WebSocketSession session;
+        /**
+         * The changes waiting to be written, guarded by the subscriber lock, as the two flags.
+         */
+        private final Deque<Message> pending = new ArrayDeque<>();
+        /**
+         * Whether the next message must be a new snapshot.
+         */
+        private boolean resync;
+        /**
+         * Whether a writer is on the subscriber. Only one writer at a time, so that the messages keep their order.
+         */
+        private boolean draining;
+        /**
+         * The version of the last message written, used only by the writer on the subscriber.
+         */
+        private long lastVersion = Long.MIN_VALUE;
+
+        private Subscriber(WebSocketSession session) {
+            this.session = session;
+        }
+    }
+}
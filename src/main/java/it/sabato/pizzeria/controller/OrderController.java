@@ -1,21 +1,42 @@
 package it.sabato.pizzeria.controller;
 
+import it.sabato.pizzeria.config.PizzaPlaceProperties;
+import it.sabato.pizzeria.dto.IdempotentOrderDTO;
+import it.sabato.pizzeria.dto.KitchenBoardDTO;
+import it.sabato.pizzeria.dto.OrderBatchItemDTO;
+import it.sabato.pizzeria.dto.OrderCursor;
 import it.sabato.pizzeria.dto.OrderDTO;
+import it.sabato.pizzeria.dto.OrderPageDTO;
+import it.sabato.pizzeria.dto.OrderSearchDTO;
 import it.sabato.pizzeria.dto.OrderStatusDTO;
+import it.sabato.pizzeria.dto.OrderStatusUpdateDTO;
+import it.sabato.pizzeria.service.OrderExportService;
+import it.sabato.pizzeria.service.OrderIdempotencyService;
 import it.sabato.pizzeria.service.OrderService;
 import it.sabato.pizzeria.service.OrderStatusService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.IanaLinkRelations;
 import org.springframework.hateoas.Link;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import javax.naming.ConfigurationException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -32,26 +53,115 @@ import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 @RestController
 @RequiredArgsConstructor
 public class OrderController {
+    private static final String PREFER = "Prefer";
+    private static final String PREFERENCE_APPLIED = "Preference-Applied";
+    private static final String RESPOND_ASYNC = "respond-async";
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+    private static final int IDEMPOTENCY_KEY_MAX_LENGTH = 255;
+    private static final long NEXT_ORDER_WAIT_MARGIN_MILLIS = 5000;
     private final OrderService orderService;
+    private final OrderIdempotencyService orderIdempotencyService;
+    private final OrderExportService orderExportService;
     private final OrderStatusService orderStatusService;
+    private final SelfLinkRenderer selfLinkRenderer;
+    private final OrderStatusStreams orderStatusStreams;
+    private final PizzaPlaceProperties pizzaPlaceProperties;
 
     //Order
 
     /**
-     * Gets orders.
+     * Gets a page of orders. Pages are read with keyset pagination on (createdDate, orderId), and the next and prev
+     * links carry the cursors of the adjacent pages.
      *
+     * @param after  the cursor the page starts after
+     * @param before the cursor the page ends before
+     * @param size   the page size
      * @return the orders
      * @author Gianluca Sabato
      */
     @GetMapping("/orders")
-    public CollectionModel<OrderDTO> getOrders() {
-        List<OrderDTO> orderDTOS = orderService.getOrders();
-        orderDTOS = orderDTOS.stream().peek(o -> {
-            final Link selfLink = linkTo(OrderController.class).slash(o.getOrderId()).withSelfRel();
+    public CollectionModel<OrderDTO> getOrders(@RequestParam(required = false) String after,
+                                               @RequestParam(required = false) String before,
+                                               @RequestParam(required = false) Integer size) {
+        if (after != null && before != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "after and before cannot be used together");
+        }
+
+        OrderPageDTO orderPage = orderService.getOrders(getOrderCursor(after), getOrderCursor(before), size);
+        SelfLinkRenderer.SelfLinks selfLinks = selfLinkRenderer.getOrderSelfLinks();
+        List<OrderDTO> orderDTOS = orderPage.getOrders().stream().peek(o -> {
+            final Link selfLink = selfLinks.getSelfLink(o.getOrderId());
+            o.add(selfLink);
+        }).toList();
+
+        List<Link> links = new ArrayList<>();
+        links.add(linkTo(methodOn(OrderController.class).getOrders(after, before, size)).withSelfRel());
+
+        if (orderPage.getNext() != null) {
+            links.add(linkTo(methodOn(OrderController.class).getOrders(orderPage.getNext().toToken(), null, size))
+                    .withRel(IanaLinkRelations.NEXT));
+        }
+
+        if (orderPage.getPrevious() != null) {
+            links.add(linkTo(methodOn(OrderController.class).getOrders(null, orderPage.getPrevious().toToken(), size))
+                    .withRel(IanaLinkRelations.PREV));
+        }
+
+        return CollectionModel.of(orderDTOS, links);
+    }
+
+    /**
+     * Search the orders by status, created and last modified date ranges and pizza. The matching orders are paged as
+     * in {@link #getOrders(String, String, Integer)}, and the next and prev links keep the search filters.
+     *
+     * @param orderSearch the search filters
+     * @return the matching orders
+     * @author Gianluca Sabato
+     */
+    @GetMapping("/orders/search")
+    public CollectionModel<OrderDTO> searchOrders(@ParameterObject OrderSearchDTO orderSearch) {
+        if (orderSearch.getAfter() != null && orderSearch.getBefore() != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "after and before cannot be used together");
+        }
+
+        OrderPageDTO orderPage = orderService.searchOrders(orderSearch, getOrderCursor(orderSearch.getAfter()),
+                getOrderCursor(orderSearch.getBefore()));
+        SelfLinkRenderer.SelfLinks selfLinks = selfLinkRenderer.getOrderSelfLinks();
+        List<OrderDTO> orderDTOS = orderPage.getOrders().stream().peek(o -> {
+            final Link selfLink = selfLinks.getSelfLink(o.getOrderId());
             o.add(selfLink);
         }).toList();
 
-        return CollectionModel.of(orderDTOS);
+        List<Link> links = new ArrayList<>();
+        links.add(Link.of(ServletUriComponentsBuilder.fromCurrentRequest().toUriString()).withSelfRel());
+
+        if (orderPage.getNext() != null) {
+            links.add(Link.of(ServletUriComponentsBuilder.fromCurrentRequest().replaceQueryParam("before")
+                    .replaceQueryParam("after", orderPage.getNext().toToken()).toUriString(), IanaLinkRelations.NEXT));
+        }
+
+        if (orderPage.getPrevious() != null) {
+            links.add(Link.of(ServletUriComponentsBuilder.fromCurrentRequest().replaceQueryParam("after")
+                    .replaceQueryParam("before", orderPage.getPrevious().toToken()).toUriString(),
+                    IanaLinkRelations.PREV));
+        }
+
+        return CollectionModel.of(orderDTOS, links);
+    }
+
+    /**
+     * Export all the orders as newline delimited JSON. The orders are written while they are read from the database,
+     * without building the whole response in memory.
+     *
+     * @return the orders, one per line
+     * @author Gianluca Sabato
+     */
+    @GetMapping(value = "/orders/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportOrders() {
+        StreamingResponseBody body = orderExportService::exportOrders;
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
     /**
@@ -74,6 +184,40 @@ public class OrderController {
         }
     }
 
+    /**
+     * Retrieve the next order to be processed, waiting up to waitMs milliseconds for a new order when there is none.
+     * The waiting request holds neither a thread nor a database connection, and it's answered as soon as an order is
+     * received. A 404 is returned when the wait is over, as by the plain request.
+     *
+     * @param waitMs the longest wait, in milliseconds
+     * @return the next order
+     * @author Gianluca Sabato
+     */
+    @GetMapping(value = "/orders/next", params = "waitMs")
+    public DeferredResult<EntityModel<OrderDTO>> getNextOrder(@RequestParam long waitMs) {
+        Duration maxWait = pizzaPlaceProperties.getOrders().getMaxNextOrderWait();
+
+        if (waitMs < 0 || waitMs > maxWait.toMillis()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "waitMs must be between 0 and " +
+                    maxWait.toMillis());
+        }
+
+        // The wait is ended by the service, the request timeout is only a safety net
+        DeferredResult<EntityModel<OrderDTO>> result = new DeferredResult<>(waitMs + NEXT_ORDER_WAIT_MARGIN_MILLIS);
+
+        orderService.getNextOrder(Duration.ofMillis(waitMs)).whenComplete((nextOrderOptional, e) -> {
+            if (e != null) {
+                result.setErrorResult(e);
+            } else if (nextOrderOptional.isPresent()) {
+                result.setResult(EntityModel.of(nextOrderOptional.get()));
+            } else {
+                result.setErrorResult(new ResponseStatusException(HttpStatus.NOT_FOUND, "next order not found"));
+            }
+        });
+
+        return result;
+    }
+
     /**
      * Update the status of the current order (from PROCESSING to CLOSED) and then retrieve the next order to be
      * processed updating its status (from RECEIVED to PROCESSING).
@@ -96,23 +240,49 @@ public class OrderController {
     }
 
     /**
-     * Gets order.
+     * Gets the kitchen board: the RECEVIED and PROCESSING orders in queue order, with their counts and the board
+     * version and epoch. With the since and epoch parameters only the orders changed after that version are returned
+     * (delta true), unless the version is too old or belongs to another epoch, in which case the whole board is
+     * returned. The board is kept in memory, so it never queries the database.
      *
-     * @param id the order id
+     * @param since the board version the client has
+     * @param epoch the epoch of the board version the client has
+     * @return the kitchen board
+     * @author Gianluca Sabato
+     */
+    @GetMapping("/kitchen/board")
+    public EntityModel<KitchenBoardDTO> getKitchenBoard(@RequestParam(required = false) Long since,
+                                                        @RequestParam(required = false) UUID epoch) {
+        return EntityModel.of(orderService.getKitchenBoard(since, epoch));
+    }
+
+    /**
+     * Gets order. The response carries an ETag, and when the If-None-Match header matches it a 304 is returned
+     * without building the response. Both are served by the order cache, so repeated reads don't query the database.
+     *
+     * @param id         the order id
+     * @param webRequest the web request
      * @return the order
      * @author Gianluca Sabato
      */
     @GetMapping("/orders/{id}")
-    public EntityModel<OrderDTO> getOrder(@PathVariable UUID id) {
+    public EntityModel<OrderDTO> getOrder(@PathVariable UUID id, WebRequest webRequest) {
+        // The ETag is read before the order: if the order changes in between, the next request just gets a 200 again
+        Optional<String> eTagOptional = orderService.getOrderETag(id);
+
+        if (eTagOptional.isPresent() && webRequest.checkNotModified(eTagOptional.get())) {
+            return null;
+        }
+
         Optional<OrderDTO> optionalOrderDTO = orderService.getOrder(id);
 
         if (optionalOrderDTO.isPresent()) {
             OrderDTO orderDTO = optionalOrderDTO.get();
-            final Link selfLink = linkTo(methodOn(OrderController.class).getOrder(id)).withSelfRel();
+            final Link selfLink = linkTo(methodOn(OrderController.class).getOrder(id, null)).withSelfRel();
             orderDTO.add(selfLink);
 
-            final Link orderLink = linkTo(methodOn(OrderController.class).getOrderStatusForOrder(id)).withRel(
-                    "orderStatus");
+            final Link orderLink = linkTo(methodOn(OrderController.class).getOrderStatusForOrder(id, null))
+                    .withRel("orderStatus");
             orderDTO.add(orderLink);
 
             return EntityModel.of(orderDTO);
@@ -122,21 +292,31 @@ public class OrderController {
     }
 
     /**
-     * Gets order status for order.
+     * Gets order status for order. The response carries an ETag, and when the If-None-Match header matches it a 304 is
+     * returned without building the response. Both are served by the order cache, so repeated reads don't query the
+     * database.
      *
-     * @param id the order id
+     * @param id         the order id
+     * @param webRequest the web request
      * @return the order status for order
      * @author Gianluca Sabato
      */
     @GetMapping("/orders/{id}/orderStatus")
-    public EntityModel<OrderStatusDTO> getOrderStatusForOrder(@PathVariable UUID id) {
+    public EntityModel<OrderStatusDTO> getOrderStatusForOrder(@PathVariable UUID id, WebRequest webRequest) {
+        Optional<String> eTagOptional = orderStatusService.getOrderStatusForOrderIdETag(id);
+
+        if (eTagOptional.isPresent() && webRequest.checkNotModified(eTagOptional.get())) {
+            return null;
+        }
+
         Optional<OrderStatusDTO> optionalOrderStatusDTO = orderStatusService.getOrderStatusForOrderId(id);
         OrderStatusDTO orderStatusDTO;
 
         if (optionalOrderStatusDTO.isPresent()) {
             orderStatusDTO = optionalOrderStatusDTO.get();
 
-            final Link selfLink = linkTo(methodOn(OrderController.class).getOrderStatusForOrder(id)).withSelfRel();
+            final Link selfLink = linkTo(methodOn(OrderController.class).getOrderStatusForOrder(id, null))
+                    .withSelfRel();
             orderStatusDTO.add(selfLink);
         } else {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "order status not found");
@@ -146,56 +326,180 @@ public class OrderController {
     }
 
     /**
-     * Updates the order status for a specific order.
+     * Streams the status of an order as Server-Sent Events. The first "orderStatus" event carries the current status,
+     * a new one is sent on every status change, and the stream is closed once the order is COMPLETED or CANCELLED.
+     * An open stream holds no request thread, and it's fed by the changes done by every application instance.
+     *
+     * @param id the order id
+     * @return the order status stream
+     * @author Gianluca Sabato
+     */
+    @GetMapping(value = "/orders/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter getOrderEvents(@PathVariable UUID id) {
+        if (!orderStatusStreams.hasCapacity()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "too many order status streams");
+        }
+
+        Optional<SseEmitter> emitterOptional = orderStatusStreams.subscribe(id);
+
+        if (emitterOptional.isPresent()) {
+            return emitterOptional.get();
+        } else {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "order status not found");
+        }
+    }
+
+    /**
+     * Updates the order status for a specific order. The order is updated by a single statement, only along the legal
+     * transitions (RECEVIED to PROCESSING to COMPLETED, and to CANCELLED before COMPLETED) and, with the
+     * expectedOrderStatusId parameter, only if it still has that status (a 409 otherwise).
      *
      * @param id                    the order id
      * @param orderStatusDTORequest the order status dto request
+     * @param expectedOrderStatusId the status the order must have
      * @return the order status
-     * @throws ConfigurationException the configuration exception (missing database configuration values)
      * @author Gianluca Sabato
      */
     @PutMapping("/orders/{id}/orderStatus")
     public EntityModel<OrderStatusDTO> putOrderStatusForOrder(@PathVariable UUID id,
-                                                              @RequestBody @Valid OrderStatusDTO orderStatusDTORequest)
-            throws ConfigurationException {
-        Optional<OrderDTO> optionalOrderDTO = orderService.getOrder(id);
-
-        if (optionalOrderDTO.isPresent()) {
-            OrderDTO orderDTO = optionalOrderDTO.get();
+                                                              @RequestBody @Valid OrderStatusDTO orderStatusDTORequest,
+                                                              @RequestParam(required = false)
+                                                              UUID expectedOrderStatusId) {
+        OrderStatusUpdateDTO orderStatusUpdate = orderService.updateOrderStatus(id,
+                orderStatusDTORequest.getOrderStatusId(), expectedOrderStatusId);
 
-            Optional<OrderStatusDTO> optionalOrderStatusDTO = orderStatusService.getOrderStatus(
-                    orderStatusDTORequest.getOrderStatusId());
+        if (orderStatusUpdate.getOutcome() == OrderStatusUpdateDTO.Outcome.ORDER_NOT_FOUND) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "order not found");
+        } else if (orderStatusUpdate.getOutcome() == OrderStatusUpdateDTO.Outcome.ORDER_STATUS_NOT_FOUND) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "order status not found");
+        } else if (orderStatusUpdate.getOutcome() == OrderStatusUpdateDTO.Outcome.CONFLICT) {
+            OrderStatusDTO currentOrderStatus = orderStatusUpdate.getOrderStatus();
 
-            if (optionalOrderStatusDTO.isPresent()) {
-                OrderStatusDTO orderStatusDTO = optionalOrderStatusDTO.get();
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "the order status is " + (currentOrderStatus != null
+                    ? currentOrderStatus.getOrderStatus() : "unknown") + ", not the expected one");
+        } else if (orderStatusUpdate.getOutcome() == OrderStatusUpdateDTO.Outcome.ILLEGAL_TRANSITION) {
+            OrderStatusDTO currentOrderStatus = orderStatusUpdate.getOrderStatus();
 
-                orderService.saveOrder(orderDTO, orderStatusDTO);
-            } else {
-                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "order status not found");
-            }
-        } else {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "order not found");
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "the order can't be moved from " +
+                    (currentOrderStatus != null ? currentOrderStatus.getOrderStatus() : "unknown") +
+                    " to the requested status");
         }
 
-        return EntityModel.of(orderStatusDTORequest);
+        return EntityModel.of(orderStatusUpdate.getOrderStatus());
     }
 
     /**
-     * Create a new order.
+     * Create a new order. With the "Prefer: respond-async" header the order is accepted by the asynchronous intake
+     * and written shortly after: the response is a 202 whose Location is the order (a 503 if the intake is full).
+     * With an "Idempotency-Key" header the order is created only once for the key: repeating the request returns the
+     * original order and Location, with an "Idempotent-Replayed: true" header, and reusing the key for a different
+     * order is a 422. Such requests are always written synchronously, since the key is stored with the order.
      *
      * @param orderDTORequest the order dto request
+     * @param prefer          the Prefer header
+     * @param idempotencyKey  the Idempotency-Key header
      * @return the new order
      * @throws ConfigurationException the configuration exception (missing database configuration values)
      * @author Gianluca Sabato
      */
     @PostMapping("/orders")
-    public ResponseEntity<OrderDTO> postOrder(@RequestBody @Valid OrderDTO orderDTORequest)
-            throws ConfigurationException {
+    public ResponseEntity<OrderDTO> postOrder(@RequestBody @Valid OrderDTO orderDTORequest,
+                                              @RequestHeader(value = PREFER, required = false) String prefer,
+                                              @RequestHeader(value = IDEMPOTENCY_KEY, required = false)
+                                              String idempotencyKey) throws ConfigurationException {
+        if (idempotencyKey != null) {
+            return postOrder(orderDTORequest, idempotencyKey);
+        }
+
+        if (pizzaPlaceProperties.getIntake().isEnabled() && isRespondAsync(prefer)) {
+            Optional<OrderDTO> orderDTOOptional = orderService.submitOrder(orderDTORequest);
+
+            if (orderDTOOptional.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1")
+                        .build();
+            }
+
+            OrderDTO orderDTO = orderDTOOptional.get();
+            orderDTO.add(selfLinkRenderer.getOrderSelfLinks().getSelfLink(orderDTO.getOrderId()));
+
+            return ResponseEntity.accepted().location(orderDTO.getRequiredLink(IanaLinkRelations.SELF).toUri())
+                    .header(PREFERENCE_APPLIED, RESPOND_ASYNC).body(orderDTO);
+        }
+
         OrderDTO orderDTO = orderService.createOrder(orderDTORequest);
 
-        final Link selfLink = linkTo(methodOn(OrderController.class).getOrder(orderDTO.getOrderId())).withSelfRel();
+        final Link selfLink = linkTo(methodOn(OrderController.class).getOrder(orderDTO.getOrderId(), null))
+                .withSelfRel();
         orderDTO.add(selfLink);
 
         return ResponseEntity.created(orderDTO.getRequiredLink(IanaLinkRelations.SELF).toUri()).body(orderDTO);
     }
+
+    /**
+     * Create a batch of orders. Each order gets its own result, so invalid orders don't prevent the valid ones from
+     * being created.
+     *
+     * @param orderDTORequests the order dto requests
+     * @return the result of every order, in request order
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * @author Gianluca Sabato
+     */
+    @PostMapping("/orders/batch")
+    public CollectionModel<OrderBatchItemDTO> postOrders(@RequestBody List<OrderDTO> orderDTORequests)
+            throws ConfigurationException {
+        int maxBatchSize = pizzaPlaceProperties.getOrders().getMaxBatchSize();
+
+        if (orderDTORequests == null || orderDTORequests.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "the batch cannot be empty");
+        } else if (orderDTORequests.size() > maxBatchSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "the batch cannot contain more than " +
+                    maxBatchSize + " orders");
+        }
+
+        List<OrderBatchItemDTO> results = orderService.createOrders(orderDTORequests);
+        SelfLinkRenderer.SelfLinks selfLinks = selfLinkRenderer.getOrderSelfLinks();
+        results.stream().filter(r -> r.getOrderId() != null).forEach(r -> r.add(selfLinks.getSelfLink(
+                r.getOrderId())));
+
+        return CollectionModel.of(results);
+    }
+
+    private ResponseEntity<OrderDTO> postOrder(OrderDTO orderDTORequest, String idempotencyKey)
+            throws ConfigurationException {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > IDEMPOTENCY_KEY_MAX_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "the Idempotency-Key must be between 1 and " +
+                    IDEMPOTENCY_KEY_MAX_LENGTH + " characters");
+        }
+
+        IdempotentOrderDTO idempotentOrder = orderIdempotencyService.createOrder(idempotencyKey, orderDTORequest);
+
+        if (idempotentOrder.getOutcome() == IdempotentOrderDTO.Outcome.MISMATCH) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    "the Idempotency-Key has already been used for a different order");
+        }
+
+        OrderDTO orderDTO = idempotentOrder.getOrder();
+        orderDTO.add(selfLinkRenderer.getOrderSelfLinks().getSelfLink(orderDTO.getOrderId()));
+        ResponseEntity.BodyBuilder response = ResponseEntity.created(orderDTO.getRequiredLink(IanaLinkRelations.SELF)
+                .toUri());
+
+        if (idempotentOrder.getOutcome() == IdempotentOrderDTO.Outcome.REPLAYED) {
+            response.header(IDEMPOTENT_REPLAYED, Boolean.TRUE.toString());
+        }
+
+        return response.body(orderDTO);
+    }
+
+    private static boolean isRespondAsync(String prefer) {
+        return prefer != null && Arrays.stream(prefer.split(",")).map(String::trim).anyMatch(
+                p -> p.equalsIgnoreCase(RESPOND_ASYNC));
+    }
+
+    private static OrderCursor getOrderCursor(String token) {
+        try {
+            return token != null ? OrderCursor.fromToken(token) : null;
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid cursor", e);
+        }
+    }
 }
@@ -10,6 +10,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
@@ -26,18 +27,26 @@ import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 @RequiredArgsConstructor
 public class OrderStatusController {
     private final OrderStatusService orderStatusService;
+    private final SelfLinkRenderer selfLinkRenderer;
 
     /**
-     * Gets order statuses
+     * Gets order statuses. The response carries the catalog version as ETag, and when the If-None-Match header
+     * matches it a 304 is returned.
      *
+     * @param webRequest the web request
      * @return the order statuses
      * @author Gianluca Sabato
      */
     @GetMapping("/orderStatuses")
-    public CollectionModel<OrderStatusDTO> getOrders() {
+    public CollectionModel<OrderStatusDTO> getOrders(WebRequest webRequest) {
+        if (webRequest.checkNotModified(orderStatusService.getOrderStatusesETag())) {
+            return null;
+        }
+
         List<OrderStatusDTO> orderStatusDTOS = orderStatusService.getOrderStatuses();
+        SelfLinkRenderer.SelfLinks selfLinks = selfLinkRenderer.getOrderStatusSelfLinks();
         orderStatusDTOS = orderStatusDTOS.stream().peek(os -> {
-            final Link selfLink = linkTo(OrderStatusController.class).slash(os.getOrderStatusId()).withSelfRel();
+            final Link selfLink = selfLinks.getSelfLink(os.getOrderStatusId());
             os.add(selfLink);
         }).toList();
 
@@ -45,19 +54,26 @@ public class OrderStatusController {
     }
 
     /**
-     * Gets order status.
+     * Gets order status. The response carries the catalog version as ETag, and when the If-None-Match header matches
+     * it a 304 is returned.
      *
-     * @param id the order status id
+     * @param id         the order status id
+     * @param webRequest the web request
      * @return the order status
      * @author Gianluca Sabato
      */
     @GetMapping("/orderStatuses/{id}")
-    public EntityModel<OrderStatusDTO> getOrderStatus(@PathVariable UUID id) {
+    public EntityModel<OrderStatusDTO> getOrderStatus(@PathVariable UUID id, WebRequest webRequest) {
+        if (webRequest.checkNotModified(orderStatusService.getOrderStatusesETag())) {
+            return null;
+        }
+
         Optional<OrderStatusDTO> optionalOrderStatusDTO = orderStatusService.getOrderStatus(id);
 
         if (optionalOrderStatusDTO.isPresent()) {
             OrderStatusDTO orderStatusDTO = optionalOrderStatusDTO.get();
-            final Link selfLink = linkTo(methodOn(OrderStatusController.class).getOrderStatus(id)).withSelfRel();
+            final Link selfLink = linkTo(methodOn(OrderStatusController.class).getOrderStatus(id, null))
+                    .withSelfRel();
             orderStatusDTO.add(selfLink);
 
             return EntityModel.of(orderStatusDTO);
@@ -0,0 +1,286 @@
+package it.sabato.pizzeria.controller;
+
+import it.sabato.pizzeria.config.PizzaPlaceProperties;
+import it.sabato.pizzeria.dto.OrderStatusDTO;
+import it.sabato.pizzeria.event.OrderChangedEvent;
+import it.sabato.pizzeria.event.OrderInvalidatedEvent;
+import it.sabato.pizzeria.factory.OrderStatusDTOFactory;
+import it.sabato.pizzeria.factory.OrderStatusEventDTOFactory;
+import it.sabato.pizzeria.service.OrderStateMachine;
+import it.sabato.pizzeria.service.OrderStatusRegistry;
+import it.sabato.pizzeria.service.OrderStatusService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registry of the open order status streams (GET /orders/{id}/events), indexed by order id. Every order change is
+ * fanned out from here to the streams of that order, and the changes of orders without streams cost a map lookup.
+ * <p>
+ * The streams are asynchronous requests, so an open stream holds its connection and a small subscription, but no
+ * thread. The events are written by a few dedicated threads, never by the thread changing the order. A stream is sent
+ * a status only if it can be reached from the last one it was sent, so duplicated and late events are dropped, and it
+ * is closed once the order reaches a final status.
+ * <p>
+ * Orders changed by other application instances are found through the {@link OrderInvalidatedEvent}s.
+ * @author Gianluca Sabato
+ */
+@Slf4j
+@Component
+public class OrderStatusStreams implements DisposableBean {
+    private static final String ORDER_STATUS_EVENT = "orderStatus";
+    private static final String HEARTBEAT_COMMENT = "heartbeat";
+
+    private final OrderStatusService orderStatusService;
+    private final OrderStatusRegistry orderStatusRegistry;
+    private final OrderStateMachine orderStateMachine;
+    private final PizzaPlaceProperties pizzaPlaceProperties;
+    private final ExecutorService writers;
+
+    private final Map<UUID, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriptionCount = new AtomicInteger();
+
+    /**
+     * Instantiates a new Order status streams registry.
+     *
+     * @param orderStatusService   the order status service
+     * @param orderStatusRegistry  the order status registry
+     * @param orderStateMachine    the order state machine
+     * @param pizzaPlaceProperties the pizza place properties
+     * @author Gianluca Sabato
+     */
+    public OrderStatusStreams(OrderStatusService orderStatusService, OrderStatusRegistry orderStatusRegistry,
+                              OrderStateMachine orderStateMachine, PizzaPlaceProperties pizzaPlaceProperties) {
+        this.orderStatusService = orderStatusService;
+        this.orderStatusRegistry = orderStatusRegistry;
+        this.orderStateMachine = orderStateMachine;
+        this.pizzaPlaceProperties = pizzaPlaceProperties;
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("order-status-stream-");
+        threadFactory.setDaemon(true);
+        this.writers = Executors.newFixedThreadPool(Math.max(1, pizzaPlaceProperties.getStreams().getThreads()),
+                threadFactory);
+    }
+
+    /**
+     * Whether a new stream can be opened. The limit is checked before subscribing, so concurrent subscriptions can
+     * exceed it by a few streams.
+     *
+     * @return true if there is room for a new stream
+     * @author Gianluca Sabato
+     */
+    public boolean hasCapacity() {
+        return subscriptionCount.get() < pizzaPlaceProperties.getStreams().getMaxSubscriptions();
+    }
+
+    /**
+     * Open a stream of the status of an order. Its first event carries the current status, read after the stream is
+     * registered, so that no change is lost in between.
+     *
+     * @param orderId the order id
+     * @return the stream (empty if the order is not found)
+     * @author Gianluca Sabato
+     */
+    public Optional<SseEmitter> subscribe(UUID orderId) {
+        SseEmitter emitter = new SseEmitter(pizzaPlaceProperties.getStreams().getTimeout().toMillis());
+        Subscription subscription = new Subscription(orderId, emitter);
+
+        subscriptionCount.incrementAndGet();
+        subscriptions.compute(orderId, (id, orderSubscriptions) -> {
+            Set<Subscription> result = orderSubscriptions != null ? orderSubscriptions : ConcurrentHashMap.newKeySet();
+            result.add(subscription);
+
+            return result;
+        });
+
+        emitter.onCompletion(() -> unsubscribe(subscription));
+        emitter.onError(e -> unsubscribe(subscription));
+        emitter.onTimeout(() -> close(subscription));
+
+        Optional<OrderStatusDTO> orderStatusOptional = orderStatusService.getOrderStatusForOrderId(orderId);
+
+        if (orderStatusOptional.isEmpty()) {
+            unsubscribe(subscription);
+
+            return Optional.empty();
+        }
+
+        send(subscription, orderStatusOptional.get());
+
+        return Optional.of(emitter);
+    }
+
+    /**
+     * Gets the number of open streams.
+     *
+     * @return the subscription count
+     * @author Gianluca Sabato
+     */
+    public int getSubscriptionCount() {
+        return subscriptionCount.get();
+    }
+
+    /**
+     * Send the new status to the streams of the changed order, once the change is committed.
+     *
+     * @param event the order changed event
+     * @author Gianluca Sabato
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        Set<Subscription> orderSubscriptions = subscriptions.get(event.getOrderId());
+
+        if (orderSubscriptions != null) {
+            orderStatusRegistry.findByStatus(event.getStatus()).map(OrderStatusDTOFactory::getOrderStatusDTO)
+                    .ifPresent(orderStatus -> writers.execute(() -> orderSubscriptions.forEach(
+                            subscription -> send(subscription, orderStatus))));
+        }
+    }
+
+    /**
+     * Send the status changes done by the other application instances to the streams of the changed orders. When
+     * some changes may have been lost, read again the status of every order with streams.
+     *
+     * @param event the order invalidated event
+     * @author Gianluca Sabato
+     */
+    @EventListener
+    public void onOrderInvalidated(OrderInvalidatedEvent event) {
+        if (!event.isAll()) {
+            onOrderChanged(event.getChange());
+        } else {
+            for (UUID orderId : subscriptions.keySet()) {
+                writers.execute(() -> refresh(orderId));
+            }
+        }
+    }
+
+    /**
+     * Send a heartbeat to all the open streams, closing the ones whose client is gone.
+     *
+     * @author Gianluca Sabato
+     */
+    @Scheduled(fixedDelayString = "${pizzeria.streams.heartbeat-interval:PT30S}")
+    public void sendHeartbeats() {
+        for (Set<Subscription> orderSubscriptions : subscriptions.values()) {
+            writers.execute(() -> orderSubscriptions.forEach(this::sendHeartbeat));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        subscriptions.values().forEach(orderSubscriptions -> orderSubscriptions.forEach(this::close));
+        writers.shutdownNow();
+    }
+
+    private void refresh(UUID orderId) {
+        Set<Subscription> orderSubscriptions = subscriptions.get(orderId);
+
+        if (orderSubscriptions != null) {
+            orderStatusService.getOrderStatusForOrderId(orderId).ifPresent(orderStatus -> orderSubscriptions.forEach(
+                    subscription -> send(subscription, orderStatus)));
+        }
+    }
+
+    private void send(Subscription subscription, OrderStatusDTO orderStatus) {
+        String status = orderStatus.getOrderStatus();
+
+        synchronized (subscription) {
+            if (subscription.isClosed() || (subscription.status != null && !orderStateMachine.isReachable(
+                    subscription.status, status))) {
+                return;
+            }
+
+            try {
+                subscription.emitter.send(SseEmitter.event().name(ORDER_STATUS_EVENT).data(
+                        OrderStatusEventDTOFactory.getOrderStatusEventDTO(subscription.orderId, orderStatus)));
+                subscription.status = status;
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Order status stream of the order {} closed by the client", subscription.orderId, e);
+                unsubscribe(subscription);
+
+                return;
+            }
+        }
+
+        if (orderStateMachine.isFinal(status)) {
+            close(subscription);
+        }
+    }
+
+    private void sendHeartbeat(Subscription subscription) {
+        synchronized (subscription) {
+            if (subscription.isClosed()) {
+                return;
+            }
+
+            try {
+                subscription.emitter.send(SseEmitter.event().comment(HEARTBEAT_COMMENT));
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Order status stream of the order {} closed by the client", subscription.orderId, e);
+                unsubscribe(subscription);
+            }
+        }
+    }
+
+    private void close(Subscription subscription) {
+        if (unsubscribe(subscription)) {
+            subscription.emitter.complete();
+        }
+    }
+
+    /**
+     * Remove a subscription, only once.
+     *
+     * @return true if the subscription has been removed by this call
+     */
+    private boolean unsubscribe(Subscription subscription) {
+        if (!subscription.closed.compareAndSet(false, true)) {
+            return false;
+        }
+
+        subscriptionCount.decrementAndGet();
+        subscriptions.computeIfPresent(subscription.orderId, (id, orderSubscriptions) -> {
+            orderSubscriptions.remove(subscription);
+
+            return orderSubscriptions.isEmpty() ? null : orderSubscriptions;
+        });
+
+        return true;
+    }
+
+    private static final class Subscription {
+        private final UUID orderId;
+        private final SseEmitter emitter;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        /**
+         * The last status sent, guarded by the subscription lock.
+         */
+        private String status;
+
+        private Subscription(UUID orderId, SseEmitter emitter) {
+            this.orderId = orderId;
+            this.emitter = emitter;
+        }
+
+        private boolean isClosed() {
+            return closed.get();
+        }
+    }
+}
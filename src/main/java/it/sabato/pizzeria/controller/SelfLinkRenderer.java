@@ -0,0 +1,67 @@
+package it.sabato.pizzeria.controller;
+
+import org.springframework.hateoas.Link;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.util.UUID;
+
+/**
+ * Renders the self links of the elements returned by the list endpoints. {@code linkTo(methodOn(...))} rebuilds the
+ * base URI and inspects the controller method for every element; here the base URI of the current request is resolved
+ * once per list, and only the id is appended for each element. The links are the same ones built by
+ * {@code linkTo(methodOn(...))} for the single resource endpoints.
+ * @author Gianluca Sabato
+ */
+@Component
+public class SelfLinkRenderer {
+    private static final String ORDERS_PATH = "/orders/";
+    private static final String ORDER_STATUSES_PATH = "/orderStatuses/";
+
+    /**
+     * Gets the self links of the orders, for the current request.
+     *
+     * @return the self links
+     * @author Gianluca Sabato
+     */
+    public SelfLinks getOrderSelfLinks() {
+        return new SelfLinks(getBaseUri() + ORDERS_PATH);
+    }
+
+    /**
+     * Gets the self links of the order statuses, for the current request.
+     *
+     * @return the self links
+     * @author Gianluca Sabato
+     */
+    public SelfLinks getOrderStatusSelfLinks() {
+        return new SelfLinks(getBaseUri() + ORDER_STATUSES_PATH);
+    }
+
+    private static String getBaseUri() {
+        // The same base used by WebMvcLinkBuilder (it honours the X-Forwarded-* headers too)
+        return ServletUriComponentsBuilder.fromCurrentServletMapping().build().toUriString();
+    }
+
+    /**
+     * Self links of one resource type, sharing the prefix resolved for the current request.
+     */
+    public static final class SelfLinks {
+        private final String prefix;
+
+        private SelfLinks(String prefix) {
+            this.prefix = prefix;
+        }
+
+        /**
+         * Gets the self link of the resource with the given id.
+         *
+         * @param id the resource id
+         * @return the self link
+         * @author Gianluca Sabato
+         */
+        public Link getSelfLink(UUID id) {
+            return Link.of(prefix + id);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package it.sabato.pizzeria.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The type Cached order dto. The immutable view of an order kept by the order cache: enough to answer the order and
+ * order status reads, and their entity tags. The pizzas are kept as menu ids and named on every read, so a menu change
+ * is seen by the cached orders too.
+ * @author Gianluca Sabato
+ */
+@Value
+@Builder
+public class CachedOrderDTO {
+    UUID orderId;
+    List<Integer> pizzaIds;
+    UUID orderStatusId;
+    /**
+     * The last modified date, or the created date if the order was never modified.
+     */
+    LocalDateTime lastModifiedDate;
+}
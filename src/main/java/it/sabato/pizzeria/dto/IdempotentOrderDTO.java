@@ -0,0 +1,36 @@
+package it.sabato.pizzeria.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * The type Idempotent order dto. The outcome of an order request carrying an Idempotency-Key header.
+ * @author Gianluca Sabato
+ */
+@Value
+@Builder
+public class IdempotentOrderDTO {
+    /**
+     * The order created for the key (null when the outcome is MISMATCH).
+     */
+    OrderDTO order;
+    Outcome outcome;
+
+    /**
+     * The outcome of an order request carrying an Idempotency-Key header.
+     */
+    public enum Outcome {
+        /**
+         * The key was new and the order has been created.
+         */
+        CREATED,
+        /**
+         * The key was already used by the same request: the original order is returned and nothing is written.
+         */
+        REPLAYED,
+        /**
+         * The key was already used by a different request.
+         */
+        MISMATCH
+    }
+}
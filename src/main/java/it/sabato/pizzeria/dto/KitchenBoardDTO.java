@@ -0,0 +1,26 @@
+package it.sabato.pizzeria.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The type Kitchen board dto. It carries either the whole board, with its orders in queue order, or (when delta is
+ * true) only the orders changed since the version asked by the client. The counts always refer to the whole board.
+ * @author Gianluca Sabato
+ */
+@Value
+@Builder
+public class KitchenBoardDTO {
+    long version;
+    /**
+     * The epoch of the version, to be sent back with it when asking for the changes since that version.
+     */
+    UUID epoch;
+    boolean delta;
+    long receivedCount;
+    long processingCount;
+    List<KitchenBoardOrderDTO> orders;
+}
@@ -0,0 +1,52 @@
+package it.sabato.pizzeria.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The type Kitchen board event dto, pushed to the kitchen board sockets. A SNAPSHOT carries the whole board inside
+ * orders, the other types carry the single changed order. The counts always refer to the whole board, as of the
+ * version.
+ * @author Gianluca Sabato
+ */
+@Value
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class KitchenBoardEventDTO {
+    Type type;
+    long version;
+    /**
+     * The epoch of the version, carried only by the SNAPSHOT events.
+     */
+    UUID epoch;
+    long receivedCount;
+    long processingCount;
+    KitchenBoardOrderDTO order;
+    List<KitchenBoardOrderDTO> orders;
+
+    /**
+     * The kitchen board event type.
+     */
+    public enum Type {
+        /**
+         * The whole board, replacing whatever the client has.
+         */
+        SNAPSHOT,
+        /**
+         * An order entered the board.
+         */
+        ADDED,
+        /**
+         * An order on the board changed status, and it's still on the board.
+         */
+        MOVED,
+        /**
+         * An order left the board.
+         */
+        REMOVED
+    }
+}
@@ -0,0 +1,22 @@
+package it.sabato.pizzeria.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The type Kitchen board order dto. Inside a delta, an order with a status other than RECEVIED and PROCESSING has
+ * left the board.
+ * @author Gianluca Sabato
+ */
+@Value
+@Builder
+public class KitchenBoardOrderDTO {
+    UUID orderId;
+    String orderStatus;
+    List<String> pizzas;
+    LocalDateTime createdDate;
+}
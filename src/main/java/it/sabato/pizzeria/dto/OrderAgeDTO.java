@@ -0,0 +1,22 @@
+package it.sabato.pizzeria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * The type Order age dto. The status and creation date of an order, built by the repository queries through its all
+ * args constructor.
+ * @author Gianluca Sabato
+ */
+@Value
+@Builder
+@AllArgsConstructor
+public class OrderAgeDTO {
+    UUID orderId;
+    String status;
+    LocalDateTime createdDate;
+}
@@ -0,0 +1,23 @@
+package it.sabato.pizzeria.dto;
+
+import lombok.*;
+import org.springframework.hateoas.RepresentationModel;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The type Order batch item dto. The result of one order of a batch: its position inside the request, the HTTP status
+ * it would have got as a single request (201 or 400), the new order id and the validation errors.
+ * @author Gianluca Sabato
+ */
+@EqualsAndHashCode(callSuper = true)
+@Data
+@Builder
+@AllArgsConstructor
+public class OrderBatchItemDTO extends RepresentationModel<OrderBatchItemDTO> {
+    private final int index;
+    private final int status;
+    private UUID orderId;
+    private List<String> errors;
+}
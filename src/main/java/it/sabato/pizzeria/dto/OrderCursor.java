@@ -0,0 +1,53 @@
+package it.sabato.pizzeria.dto;
+
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * The type Order cursor. It is the position of an order inside the (createdDate, orderId) ordering used by the keyset
+ * pagination, and it is exchanged with the clients as an opaque token.
+ * @author Gianluca Sabato
+ */
+@Value
+public class OrderCursor {
+    private static final String SEPARATOR = "|";
+
+    LocalDateTime createdDate;
+    UUID orderId;
+
+    /**
+     * Gets the opaque token for this cursor.
+     *
+     * @return the token
+     * @author Gianluca Sabato
+     */
+    public String toToken() {
+        String value = createdDate + SEPARATOR + orderId;
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parse a token generated by {@link #toToken()}.
+     *
+     * @param token the token
+     * @return the order cursor
+     * @throws IllegalArgumentException if the token is not valid
+     * @author Gianluca Sabato
+     */
+    public static OrderCursor fromToken(String token) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = value.indexOf(SEPARATOR);
+
+            return new OrderCursor(LocalDateTime.parse(value.substring(0, separator)),
+                    UUID.fromString(value.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid order cursor: " + token, e);
+        }
+    }
+}
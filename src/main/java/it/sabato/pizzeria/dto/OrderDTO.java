@@ -1,5 +1,6 @@
 package it.sabato.pizzeria.dto;
 
+import it.sabato.pizzeria.validation.OnMenu;
 import jakarta.validation.constraints.NotEmpty;
 import lombok.*;
 import org.springframework.hateoas.RepresentationModel;
@@ -20,5 +21,5 @@ public class OrderDTO extends RepresentationModel<OrderDTO> {
 
     private UUID orderId;
     @NotEmpty(message = "Input pizza list cannot be empty.")
-    private final List<String> pizzas;
+    private final List<@OnMenu String> pizzas;
 }
@@ -0,0 +1,22 @@
+package it.sabato.pizzeria.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * The type Order event dto, delivered to the order event sinks. The event id grows with the order of the writes, and
+ * it stays the same when an event is delivered again.
+ * @author Gianluca Sabato
+ */
+@Value
+@Builder
+public class OrderEventDTO {
+    Long eventId;
+    UUID orderId;
+    String previousStatus;
+    String status;
+    LocalDateTime createdDate;
+}
@@ -0,0 +1,22 @@
+package it.sabato.pizzeria.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The type Order export dto. An order as written by the order export, one JSON document per line.
+ * @author Gianluca Sabato
+ */
+@Value
+@Builder
+public class OrderExportDTO {
+    UUID orderId;
+    List<String> pizzas;
+    String status;
+    LocalDateTime createdDate;
+    LocalDateTime lastModifiedDate;
+}
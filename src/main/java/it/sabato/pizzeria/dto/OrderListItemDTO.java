@@ -0,0 +1,24 @@
+package it.sabato.pizzeria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The type Order list item dto. The columns of an order read by the listings: the ones shown by {@link OrderDTO} and
+ * the created date needed by the {@link OrderCursor}. Repository queries build it directly through its all args
+ * constructor, without joining the order statuses, so the pizzas are still the menu ids stored inside the database.
+ * @author Gianluca Sabato
+ */
+@Value
+@Builder
+@AllArgsConstructor
+public class OrderListItemDTO {
+    UUID orderId;
+    List<Integer> pizzaIds;
+    LocalDateTime createdDate;
+}
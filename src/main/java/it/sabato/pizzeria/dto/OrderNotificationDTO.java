@@ -0,0 +1,35 @@
+package it.sabato.pizzeria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The type Order notification dto, sent to the other application instances as the payload of a PostgreSQL
+ * notification. It carries the whole order change, so that the other instances can apply it to their in-memory views
+ * without reading the order again.
+ * @author Gianluca Sabato
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderNotificationDTO {
+    /**
+     * The instance that changed the order, which skips its own notifications.
+     */
+    private UUID instanceId;
+    private UUID orderId;
+    /**
+     * The pizza ids, null when they would not fit into a notification.
+     */
+    private List<Integer> pizzaIds;
+    private LocalDateTime createdDate;
+    private String previousStatus;
+    private String status;
+}
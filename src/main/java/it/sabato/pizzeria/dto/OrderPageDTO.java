@@ -0,0 +1,19 @@
+package it.sabato.pizzeria.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * The type Order page dto. A page of orders read with keyset pagination, with the cursors of the adjacent pages
+ * (null when there is no such page).
+ * @author Gianluca Sabato
+ */
+@Value
+@Builder
+public class OrderPageDTO {
+    List<OrderDTO> orders;
+    OrderCursor next;
+    OrderCursor previous;
+}
@@ -0,0 +1,28 @@
+package it.sabato.pizzeria.dto;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * The type Order search dto. Every filter is optional, and the ones that are set are combined with AND. The date
+ * ranges are inclusive. The after and before cursors select the page, as for the orders listing.
+ * @author Gianluca Sabato
+ */
+@Data
+public class OrderSearchDTO {
+    private String status;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime createdFrom;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime createdTo;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime lastModifiedFrom;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime lastModifiedTo;
+    private String pizza;
+    private Integer size;
+    private String after;
+    private String before;
+}
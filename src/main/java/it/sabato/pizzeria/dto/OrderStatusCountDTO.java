@@ -0,0 +1,18 @@
+package it.sabato.pizzeria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * The type Order status count dto. The number of orders with a status, built by the repository queries through its
+ * all args constructor.
+ * @author Gianluca Sabato
+ */
+@Value
+@Builder
+@AllArgsConstructor
+public class OrderStatusCountDTO {
+    String status;
+    long count;
+}
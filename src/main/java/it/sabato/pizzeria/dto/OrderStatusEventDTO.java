@@ -0,0 +1,18 @@
+package it.sabato.pizzeria.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.UUID;
+
+/**
+ * The type Order status event dto, sent by the order status streams. It carries no links, so it's written as plain
+ * JSON inside the events.
+ * @author Gianluca Sabato
+ */
+@Value
+@Builder
+public class OrderStatusEventDTO {
+    UUID orderId;
+    String orderStatus;
+}
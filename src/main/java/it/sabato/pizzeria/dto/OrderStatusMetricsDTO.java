@@ -0,0 +1,21 @@
+package it.sabato.pizzeria.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * The type Order status metrics dto. The number of orders per status and, for the RECEVIED and PROCESSING orders,
+ * the age in seconds of the oldest one (missing when there is no such order).
+ * @author Gianluca Sabato
+ */
+@Value
+@Builder
+public class OrderStatusMetricsDTO {
+    Map<String, Long> counts;
+    Map<String, Long> oldestAgeSeconds;
+    LocalDateTime lastReconciledDate;
+    long lastReconciliationDrift;
+}
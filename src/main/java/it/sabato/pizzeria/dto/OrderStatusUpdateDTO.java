@@ -0,0 +1,45 @@
+package it.sabato.pizzeria.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * The type Order status update dto. The outcome of a change of the status of an order.
+ * @author Gianluca Sabato
+ */
+@Value
+@Builder
+public class OrderStatusUpdateDTO {
+    /**
+     * The status of the order after the update, or its current status on CONFLICT and ILLEGAL_TRANSITION (null when
+     * the order or the requested status doesn't exist).
+     */
+    OrderStatusDTO orderStatus;
+    Outcome outcome;
+
+    /**
+     * The outcome of a change of the status of an order.
+     */
+    public enum Outcome {
+        /**
+         * The order has been moved to the requested status.
+         */
+        UPDATED,
+        /**
+         * The order doesn't exist.
+         */
+        ORDER_NOT_FOUND,
+        /**
+         * The requested status doesn't exist.
+         */
+        ORDER_STATUS_NOT_FOUND,
+        /**
+         * The order doesn't have the expected status, so it has been left unchanged.
+         */
+        CONFLICT,
+        /**
+         * The order can't be moved from its current status to the requested one, so it has been left unchanged.
+         */
+        ILLEGAL_TRANSITION
+    }
+}
@@ -0,0 +1,26 @@
+package it.sabato.pizzeria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The type Order summary dto. A flat, link-free view of an order, used when all the orders are exported. Repository
+ * queries build it directly through its all args constructor, so the pizzas are still the menu ids stored inside the
+ * database.
+ * @author Gianluca Sabato
+ */
+@Value
+@Builder
+@AllArgsConstructor
+public class OrderSummaryDTO {
+    UUID orderId;
+    List<Integer> pizzaIds;
+    String status;
+    LocalDateTime createdDate;
+    LocalDateTime lastModifiedDate;
+}
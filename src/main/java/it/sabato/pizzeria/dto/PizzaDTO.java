@@ -0,0 +1,15 @@
+package it.sabato.pizzeria.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * The type Pizza dto. A menu entry, as exposed by the pizzas actuator endpoint.
+ * @author Gianluca Sabato
+ */
+@Value
+@Builder
+public class PizzaDTO {
+    Integer pizzaId;
+    String name;
+}
@@ -0,0 +1,55 @@
+package it.sabato.pizzeria.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.sabato.pizzeria.config.PizzaPlaceProperties;
+import it.sabato.pizzeria.dto.OrderEventDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Order event sink appending the events to the file set by {@code pizzeria.outbox.file}, one JSON document per line.
+ * Every batch is forced to the disk before it is checkpointed.
+ * @author Gianluca Sabato
+ */
+@Component
+@ConditionalOnProperty("pizzeria.outbox.file")
+@RequiredArgsConstructor
+public class FileOrderEventSink implements OrderEventSink {
+    private final ObjectMapper objectMapper;
+    private final PizzaPlaceProperties pizzaPlaceProperties;
+
+    @Override
+    public synchronized void deliver(List<OrderEventDTO> events) {
+        try (FileChannel channel = FileChannel.open(pizzaPlaceProperties.getOutbox().getFile(), CREATE, WRITE,
+                APPEND)) {
+            ByteArrayOutputStream lines = new ByteArrayOutputStream();
+
+            for (OrderEventDTO event : events) {
+                lines.write(objectMapper.writeValueAsBytes(event));
+                lines.write('\n');
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toByteArray());
+
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
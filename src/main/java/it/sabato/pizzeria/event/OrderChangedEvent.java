@@ -0,0 +1,26 @@
+package it.sabato.pizzeria.event;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Application event published by the order service every time an order is created or its status changes.
+ * It carries a snapshot of the order, so that listeners never need to go back to the database.
+ * @author Gianluca Sabato
+ */
+@Value
+@Builder
+public class OrderChangedEvent {
+    UUID orderId;
+    List<String> pizzas;
+    LocalDateTime createdDate;
+    /**
+     * The status before the change, null when the order has just been created.
+     */
+    String previousStatus;
+    String status;
+}
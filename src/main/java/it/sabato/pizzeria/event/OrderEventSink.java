@@ -0,0 +1,22 @@
+package it.sabato.pizzeria.event;
+
+import it.sabato.pizzeria.dto.OrderEventDTO;
+
+import java.util.List;
+
+/**
+ * Destination of the order events dispatched from the outbox. Every bean implementing it receives all the events.
+ * <p>
+ * Delivery is at least once: a batch is checkpointed only after all the sinks have taken it, so a failure or a crash
+ * delivers it again, to all the sinks. Sinks can tell a redelivery by the event id.
+ * @author Gianluca Sabato
+ */
+public interface OrderEventSink {
+    /**
+     * Deliver a batch of order events. Throwing an exception leaves the whole batch pending.
+     *
+     * @param events the order events, oldest first
+     * @author Gianluca Sabato
+     */
+    void deliver(List<OrderEventDTO> events);
+}
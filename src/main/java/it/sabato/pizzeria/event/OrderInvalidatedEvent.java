@@ -0,0 +1,24 @@
+package it.sabato.pizzeria.event;
+
+import lombok.Value;
+
+/**
+ * Application event published when an order change done by another application instance is notified. It carries the
+ * change, so that the in-memory views can apply it as they apply the local {@link OrderChangedEvent}s. The change is
+ * null when the notifications may have been lost, and every order has to be considered changed.
+ * @author Gianluca Sabato
+ */
+@Value
+public class OrderInvalidatedEvent {
+    OrderChangedEvent change;
+
+    /**
+     * Whether every order has to be considered changed, and the views have to be loaded again.
+     *
+     * @return true if all the orders are invalidated
+     * @author Gianluca Sabato
+     */
+    public boolean isAll() {
+        return change == null;
+    }
+}
@@ -1,7 +1,9 @@
 package it.sabato.pizzeria.exception;
 
 import it.sabato.pizzeria.dto.ErrorDTO;
+import jakarta.persistence.OptimisticLockException;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -14,7 +16,8 @@ import javax.naming.ConfigurationException;
 
 /**
  * The type Rest response entity exception handler.
- * It handles {@link javax.naming.ConfigurationException} exceptions generated by REST controllers.
+ * It handles {@link javax.naming.ConfigurationException} and optimistic locking exceptions generated by REST
+ * controllers.
  * @author Gianluca Sabato
  */
 @ControllerAdvice
@@ -40,4 +43,27 @@ public class RestResponseEntityExceptionHandler extends ResponseEntityExceptionH
 
         return handleExceptionInternal(ex, errorDTO, new HttpHeaders(), HttpStatus.INTERNAL_SERVER_ERROR, request);
     }
+
+    /**
+     * Handle optimistic locking exception response entity: the entity has been changed by a concurrent request, so the
+     * client gets a 409 and can read it again before retrying.
+     *
+     * @param ex      the ex
+     * @param request the request
+     * @return the response entity
+     * @author Gianluca Sabato
+     */
+    @ExceptionHandler(value = {OptimisticLockingFailureException.class, OptimisticLockException.class})
+    public ResponseEntity<Object> handleOptimisticLockingException(RuntimeException ex, WebRequest request) {
+        ErrorDTO errorDTO = new ErrorDTO();
+        errorDTO.setType("about:blank");
+        errorDTO.setTitle(HttpStatus.CONFLICT.getReasonPhrase());
+        errorDTO.setStatus(HttpStatus.CONFLICT.value());
+        errorDTO.setDetail("The resource has been changed by a concurrent request");
+
+        String[] split = StringUtils.split(request.getDescription(false), "=");
+        errorDTO.setInstance(split[1]);
+
+        return handleExceptionInternal(ex, errorDTO, new HttpHeaders(), HttpStatus.CONFLICT, request);
+    }
 }
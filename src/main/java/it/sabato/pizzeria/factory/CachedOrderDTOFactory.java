@@ -0,0 +1,30 @@
+package it.sabato.pizzeria.factory;
+
+import it.sabato.pizzeria.dto.CachedOrderDTO;
+import it.sabato.pizzeria.model.Order;
+
+import java.util.List;
+
+/**
+ * The type Cached order dto factory.
+ * @author Gianluca Sabato
+ */
+public class CachedOrderDTOFactory {
+    private CachedOrderDTOFactory() {
+    }
+
+    /**
+     * Gets cached order dto.
+     *
+     * @param order the order
+     * @return the cached order dto
+     * @author Gianluca Sabato
+     */
+    public static CachedOrderDTO getCachedOrderDTO(Order order) {
+        return CachedOrderDTO.builder().orderId(order.getOrderId())
+                .pizzaIds(order.getPizzaIds() != null ? List.copyOf(order.getPizzaIds()) : null)
+                .orderStatusId(order.getOrderStatus() != null ? order.getOrderStatus().getOrderStatusId() : null)
+                .lastModifiedDate(order.getLastModifiedDate() != null ? order.getLastModifiedDate() :
+                        order.getCreatedDate()).build();
+    }
+}
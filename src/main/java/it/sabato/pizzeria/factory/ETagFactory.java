@@ -0,0 +1,38 @@
+package it.sabato.pizzeria.factory;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * The type ETag factory. The entity tags are returned without quotes, Spring adds them when the header is written.
+ * @author Gianluca Sabato
+ */
+public class ETagFactory {
+    private ETagFactory() {
+    }
+
+    /**
+     * Gets the entity tag of a resource that changes every time its last modified date changes.
+     *
+     * @param lastModifiedDate the last modified date
+     * @return the entity tag
+     * @author Gianluca Sabato
+     */
+    public static String getETag(LocalDateTime lastModifiedDate) {
+        // PostgreSQL timestamps have microsecond precision
+        long micros = lastModifiedDate.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + lastModifiedDate.getNano() / 1_000;
+
+        return Long.toHexString(micros);
+    }
+
+    /**
+     * Gets the entity tag of a resource built from other resources, which changes every time one of them changes.
+     *
+     * @param eTags the entity tags of the other resources
+     * @return the entity tag
+     * @author Gianluca Sabato
+     */
+    public static String getETag(String... eTags) {
+        return String.join("-", eTags);
+    }
+}
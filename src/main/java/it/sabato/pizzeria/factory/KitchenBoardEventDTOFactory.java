@@ -0,0 +1,26 @@
+package it.sabato.pizzeria.factory;
+
+import it.sabato.pizzeria.dto.KitchenBoardDTO;
+import it.sabato.pizzeria.dto.KitchenBoardEventDTO;
+
+/**
+ * The type Kitchen board event dto factory.
+ * @author Gianluca Sabato
+ */
+public class KitchenBoardEventDTOFactory {
+    private KitchenBoardEventDTOFactory() {
+    }
+
+    /**
+     * Gets the snapshot kitchen board event dto of a whole board.
+     *
+     * @param board the whole kitchen board
+     * @return the kitchen board event dto
+     * @author Gianluca Sabato
+     */
+    public static KitchenBoardEventDTO getKitchenBoardEventDTO(KitchenBoardDTO board) {
+        return KitchenBoardEventDTO.builder().type(KitchenBoardEventDTO.Type.SNAPSHOT).version(board.getVersion())
+                .epoch(board.getEpoch()).receivedCount(board.getReceivedCount())
+                .processingCount(board.getProcessingCount()).orders(board.getOrders()).build();
+    }
+}
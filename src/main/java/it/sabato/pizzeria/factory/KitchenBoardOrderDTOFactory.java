@@ -0,0 +1,47 @@
+package it.sabato.pizzeria.factory;
+
+import it.sabato.pizzeria.dto.KitchenBoardOrderDTO;
+import it.sabato.pizzeria.event.OrderChangedEvent;
+import it.sabato.pizzeria.model.Order;
+import it.sabato.pizzeria.service.PizzaCatalog;
+
+import java.util.List;
+
+/**
+ * The type Kitchen board order dto factory.
+ * @author Gianluca Sabato
+ */
+public class KitchenBoardOrderDTOFactory {
+    private KitchenBoardOrderDTOFactory() {
+    }
+
+    /**
+     * Gets kitchen board order dto.
+     *
+     * @param order        the order
+     * @param pizzaCatalog the pizza catalog, translating the pizza ids to names
+     * @return the kitchen board order dto
+     * @author Gianluca Sabato
+     */
+    public static KitchenBoardOrderDTO getKitchenBoardOrderDTO(Order order, PizzaCatalog pizzaCatalog) {
+        return KitchenBoardOrderDTO.builder().orderId(order.getOrderId())
+                .orderStatus(order.getOrderStatus().getStatus()).pizzas(pizzaCatalog.getNames(order.getPizzaIds()))
+                .createdDate(order.getCreatedDate()).build();
+    }
+
+    /**
+     * Gets kitchen board order dto.
+     *
+     * @param event the order changed event
+     * @return the kitchen board order dto
+     * @author Gianluca Sabato
+     */
+    public static KitchenBoardOrderDTO getKitchenBoardOrderDTO(OrderChangedEvent event) {
+        return KitchenBoardOrderDTO.builder().orderId(event.getOrderId()).orderStatus(event.getStatus())
+                .pizzas(copyOf(event.getPizzas())).createdDate(event.getCreatedDate()).build();
+    }
+
+    private static List<String> copyOf(List<String> pizzas) {
+        return pizzas == null ? List.of() : List.copyOf(pizzas);
+    }
+}
@@ -0,0 +1,64 @@
+package it.sabato.pizzeria.factory;
+
+import it.sabato.pizzeria.dto.OrderNotificationDTO;
+import it.sabato.pizzeria.event.OrderChangedEvent;
+import it.sabato.pizzeria.model.Order;
+import it.sabato.pizzeria.model.OrderTransition;
+import it.sabato.pizzeria.service.PizzaCatalog;
+
+import java.util.List;
+
+/**
+ * The type Order changed event factory.
+ * @author Gianluca Sabato
+ */
+public class OrderChangedEventFactory {
+    private OrderChangedEventFactory() {
+    }
+
+    /**
+     * Gets order changed event.
+     *
+     * @param order          the order, already carrying its new status
+     * @param previousStatus the previous status (null for new orders)
+     * @param pizzaCatalog   the pizza catalog, translating the pizza ids to names
+     * @return the order changed event
+     * @author Gianluca Sabato
+     */
+    public static OrderChangedEvent getOrderChangedEvent(Order order, String previousStatus,
+                                                         PizzaCatalog pizzaCatalog) {
+        return OrderChangedEvent.builder().orderId(order.getOrderId())
+                .pizzas(pizzaCatalog.getNames(order.getPizzaIds())).createdDate(order.getCreatedDate())
+                .previousStatus(previousStatus)
+                .status(order.getOrderStatus().getStatus()).build();
+    }
+
+    /**
+     * Gets order changed event.
+     *
+     * @param transition     the order transition
+     * @param previousStatus the previous status
+     * @param status         the new status
+     * @return the order changed event
+     * @author Gianluca Sabato
+     */
+    public static OrderChangedEvent getOrderChangedEvent(OrderTransition transition, String previousStatus,
+                                                         String status) {
+        return OrderChangedEvent.builder().orderId(transition.getOrderId()).pizzas(transition.getPizzas())
+                .createdDate(transition.getCreatedDate()).previousStatus(previousStatus).status(status).build();
+    }
+
+    /**
+     * Gets the order changed event of an order change notified by another application instance.
+     *
+     * @param notification the order notification
+     * @param pizzas       the pizza names
+     * @return the order changed event
+     * @author Gianluca Sabato
+     */
+    public static OrderChangedEvent getOrderChangedEvent(OrderNotificationDTO notification, List<String> pizzas) {
+        return OrderChangedEvent.builder().orderId(notification.getOrderId()).pizzas(pizzas)
+                .createdDate(notification.getCreatedDate()).previousStatus(notification.getPreviousStatus())
+                .status(notification.getStatus()).build();
+    }
+}
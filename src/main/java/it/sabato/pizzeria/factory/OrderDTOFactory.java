@@ -1,7 +1,11 @@
 package it.sabato.pizzeria.factory;
 
+import it.sabato.pizzeria.dto.CachedOrderDTO;
 import it.sabato.pizzeria.dto.OrderDTO;
+import it.sabato.pizzeria.dto.OrderListItemDTO;
 import it.sabato.pizzeria.model.Order;
+import it.sabato.pizzeria.model.OrderTransition;
+import it.sabato.pizzeria.service.PizzaCatalog;
 
 /**
  * The type Order dto factory.
@@ -14,11 +18,50 @@ public class OrderDTOFactory {
     /**
      * Gets order dto.
      *
-     * @param order the order
+     * @param order        the order
+     * @param pizzaCatalog the pizza catalog, translating the pizza ids to names
      * @return the order dto
      * @author Gianluca Sabato
      */
-    public static OrderDTO getOrderDTO(Order order) {
-        return OrderDTO.builder().orderId(order.getOrderId()).pizzas(order.getPizzas()).build();
+    public static OrderDTO getOrderDTO(Order order, PizzaCatalog pizzaCatalog) {
+        return OrderDTO.builder().orderId(order.getOrderId()).pizzas(pizzaCatalog.getNames(order.getPizzaIds()))
+                .build();
+    }
+
+    /**
+     * Gets order dto.
+     *
+     * @param transition the order transition
+     * @return the order dto
+     * @author Gianluca Sabato
+     */
+    public static OrderDTO getOrderDTO(OrderTransition transition) {
+        return OrderDTO.builder().orderId(transition.getOrderId()).pizzas(transition.getPizzas()).build();
+    }
+
+    /**
+     * Gets order dto.
+     *
+     * @param orderListItem the order list item
+     * @param pizzaCatalog  the pizza catalog, translating the pizza ids to names
+     * @return the order dto
+     * @author Gianluca Sabato
+     */
+    public static OrderDTO getOrderDTO(OrderListItemDTO orderListItem, PizzaCatalog pizzaCatalog) {
+        return OrderDTO.builder().orderId(orderListItem.getOrderId())
+                .pizzas(pizzaCatalog.getNames(orderListItem.getPizzaIds())).build();
+    }
+
+    /**
+     * Gets order dto.
+     *
+     * @param cachedOrder  the cached order
+     * @param pizzaCatalog the pizza catalog, translating the pizza ids to names
+     * @return the order dto
+     * @author Gianluca Sabato
+     */
+    public static OrderDTO getOrderDTO(CachedOrderDTO cachedOrder, PizzaCatalog pizzaCatalog) {
+        return OrderDTO.builder().orderId(cachedOrder.getOrderId())
+                .pizzas(pizzaCatalog.getNames(cachedOrder.getPizzaIds())).build();
     }
 }
@@ -0,0 +1,26 @@
+package it.sabato.pizzeria.factory;
+
+import it.sabato.pizzeria.dto.OrderEventDTO;
+import it.sabato.pizzeria.model.OrderEvent;
+
+/**
+ * The type Order event dto factory.
+ * @author Gianluca Sabato
+ */
+public class OrderEventDTOFactory {
+    private OrderEventDTOFactory() {
+    }
+
+    /**
+     * Gets order event dto.
+     *
+     * @param orderEvent the order event
+     * @return the order event dto
+     * @author Gianluca Sabato
+     */
+    public static OrderEventDTO getOrderEventDTO(OrderEvent orderEvent) {
+        return OrderEventDTO.builder().eventId(orderEvent.getEventId()).orderId(orderEvent.getOrderId())
+                .previousStatus(orderEvent.getPreviousStatus()).status(orderEvent.getStatus())
+                .createdDate(orderEvent.getCreatedDate()).build();
+    }
+}
@@ -0,0 +1,32 @@
+package it.sabato.pizzeria.factory;
+
+import it.sabato.pizzeria.event.OrderChangedEvent;
+import it.sabato.pizzeria.model.OrderEvent;
+
+import java.time.LocalDateTime;
+
+/**
+ * The type Order event factory.
+ * @author Gianluca Sabato
+ */
+public class OrderEventFactory {
+    private OrderEventFactory() {
+    }
+
+    /**
+     * Gets the outbox order event of an order change.
+     *
+     * @param event the order changed event
+     * @return the order event
+     * @author Gianluca Sabato
+     */
+    public static OrderEvent getOrderEvent(OrderChangedEvent event) {
+        OrderEvent orderEvent = new OrderEvent();
+        orderEvent.setOrderId(event.getOrderId());
+        orderEvent.setPreviousStatus(event.getPreviousStatus());
+        orderEvent.setStatus(event.getStatus());
+        orderEvent.setCreatedDate(LocalDateTime.now());
+
+        return orderEvent;
+    }
+}
@@ -0,0 +1,29 @@
+package it.sabato.pizzeria.factory;
+
+import it.sabato.pizzeria.dto.OrderExportDTO;
+import it.sabato.pizzeria.dto.OrderSummaryDTO;
+import it.sabato.pizzeria.service.PizzaCatalog;
+
+/**
+ * The type Order export dto factory.
+ * @author Gianluca Sabato
+ */
+public class OrderExportDTOFactory {
+    private OrderExportDTOFactory() {
+    }
+
+    /**
+     * Gets order export dto.
+     *
+     * @param orderSummary the order summary
+     * @param pizzaCatalog the pizza catalog, translating the pizza ids to names
+     * @return the order export dto
+     * @author Gianluca Sabato
+     */
+    public static OrderExportDTO getOrderExportDTO(OrderSummaryDTO orderSummary, PizzaCatalog pizzaCatalog) {
+        return OrderExportDTO.builder().orderId(orderSummary.getOrderId())
+                .pizzas(pizzaCatalog.getNames(orderSummary.getPizzaIds())).status(orderSummary.getStatus())
+                .createdDate(orderSummary.getCreatedDate()).lastModifiedDate(orderSummary.getLastModifiedDate())
+                .build();
+    }
+}
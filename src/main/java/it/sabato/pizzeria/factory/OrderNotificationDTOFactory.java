@@ -0,0 +1,33 @@
+package it.sabato.pizzeria.factory;
+
+import it.sabato.pizzeria.dto.OrderNotificationDTO;
+import it.sabato.pizzeria.event.OrderChangedEvent;
+import it.sabato.pizzeria.service.PizzaCatalog;
+
+import java.util.UUID;
+
+/**
+ * The type Order notification dto factory.
+ * @author Gianluca Sabato
+ */
+public class OrderNotificationDTOFactory {
+    private OrderNotificationDTOFactory() {
+    }
+
+    /**
+     * Gets the order notification dto of an order change.
+     *
+     * @param instanceId   the id of the instance sending the notification
+     * @param event        the order changed event
+     * @param pizzaCatalog the pizza catalog, translating the pizza names to ids
+     * @return the order notification dto
+     * @author Gianluca Sabato
+     */
+    public static OrderNotificationDTO getOrderNotificationDTO(UUID instanceId, OrderChangedEvent event,
+                                                               PizzaCatalog pizzaCatalog) {
+        return OrderNotificationDTO.builder().instanceId(instanceId).orderId(event.getOrderId())
+                .pizzaIds(event.getPizzas() == null ? null : pizzaCatalog.getPizzaIds(event.getPizzas()))
+                .createdDate(event.getCreatedDate()).previousStatus(event.getPreviousStatus())
+                .status(event.getStatus()).build();
+    }
+}
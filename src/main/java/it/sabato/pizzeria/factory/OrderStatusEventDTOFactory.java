@@ -0,0 +1,27 @@
+package it.sabato.pizzeria.factory;
+
+import it.sabato.pizzeria.dto.OrderStatusDTO;
+import it.sabato.pizzeria.dto.OrderStatusEventDTO;
+
+import java.util.UUID;
+
+/**
+ * The type Order status event dto factory.
+ * @author Gianluca Sabato
+ */
+public class OrderStatusEventDTOFactory {
+    private OrderStatusEventDTOFactory() {
+    }
+
+    /**
+     * Gets order status event dto.
+     *
+     * @param orderId     the order id
+     * @param orderStatus the order status
+     * @return the order status event dto
+     * @author Gianluca Sabato
+     */
+    public static OrderStatusEventDTO getOrderStatusEventDTO(UUID orderId, OrderStatusDTO orderStatus) {
+        return OrderStatusEventDTO.builder().orderId(orderId).orderStatus(orderStatus.getOrderStatus()).build();
+    }
+}
@@ -0,0 +1,24 @@
+package it.sabato.pizzeria.factory;
+
+import it.sabato.pizzeria.dto.PizzaDTO;
+import it.sabato.pizzeria.model.Pizza;
+
+/**
+ * The type Pizza dto factory.
+ * @author Gianluca Sabato
+ */
+public class PizzaDTOFactory {
+    private PizzaDTOFactory() {
+    }
+
+    /**
+     * Gets pizza dto.
+     *
+     * @param pizza the pizza
+     * @return the pizza dto
+     * @author Gianluca Sabato
+     */
+    public static PizzaDTO getPizzaDTO(Pizza pizza) {
+        return PizzaDTO.builder().pizzaId(pizza.getPizzaId()).name(pizza.getName()).build();
+    }
+}
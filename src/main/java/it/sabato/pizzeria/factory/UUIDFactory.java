@@ -0,0 +1,56 @@
+package it.sabato.pizzeria.factory;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The type UUID factory.
+ * @author Gianluca Sabato
+ */
+public class UUIDFactory {
+    private static final SecureRandom RANDOM = new SecureRandom();
+    /**
+     * The timestamp (48 bits) and the counter (12 bits) of the last time ordered UUID.
+     */
+    private static final AtomicLong LAST_TIMESTAMP_AND_COUNTER = new AtomicLong();
+
+    private UUIDFactory() {
+    }
+
+    /**
+     * Gets a time ordered UUID (version 7, RFC 9562): a 48 bit Unix timestamp in milliseconds, a 12 bit counter and
+     * 62 random bits. Within a millisecond the counter starts from a random value and is incremented for every UUID
+     * (when it overflows the timestamp is moved one millisecond ahead), so the UUIDs generated by this JVM are
+     * strictly increasing, as unsigned values like PostgreSQL compares them, even across threads.
+     *
+     * @return the time ordered uuid
+     * @author Gianluca Sabato
+     */
+    public static UUID getTimeOrderedUUID() {
+        long randomA = RANDOM.nextLong();
+        long randomB = RANDOM.nextLong();
+        // Lock free: the update is retried when another thread wins the compare and set
+        long timestampAndCounter = LAST_TIMESTAMP_AND_COUNTER.updateAndGet(last -> getNextTimestampAndCounter(last,
+                System.currentTimeMillis(), randomA));
+
+        return getTimeOrderedUUID(timestampAndCounter, randomB);
+    }
+
+    static long getNextTimestampAndCounter(long last, long timestamp, long randomA) {
+        // The counter starts in the lower half of its range, leaving at least 2048 increments to the millisecond
+        long candidate = (timestamp << 12) | (randomA & 0x07FFL);
+
+        // Also when the clock goes backwards, the last value is incremented
+        return candidate > last ? candidate : last + 1;
+    }
+
+    static UUID getTimeOrderedUUID(long timestampAndCounter, long randomB) {
+        // unix_ts_ms (48 bits) | ver (4 bits) | rand_a, used as counter (12 bits)
+        long mostSignificantBits = ((timestampAndCounter >>> 12) << 16) | 0x7000L | (timestampAndCounter & 0x0FFFL);
+        // var (2 bits) | rand_b (62 bits)
+        long leastSignificantBits = (randomB & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+}
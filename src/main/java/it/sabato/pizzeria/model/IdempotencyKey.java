@@ -0,0 +1,29 @@
+package it.sabato.pizzeria.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * The type Idempotency key. It remembers the order created for an Idempotency-Key header, together with a hash of the
+ * request that created it.
+ * @author Gianluca Sabato
+ */
+@Data
+@Entity
+@Table(name = "idempotency_keys")
+public class IdempotencyKey {
+    @Id
+    @Column(updatable = false, nullable = false)
+    private String idempotencyKey;
+    @Column(updatable = false, nullable = false)
+    private String requestHash;
+    private UUID orderId;
+    @Column(updatable = false, nullable = false)
+    private LocalDateTime createdDate;
+}
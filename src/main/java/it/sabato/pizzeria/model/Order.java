@@ -26,10 +26,15 @@ import static jakarta.persistence.CascadeType.*;
 @EntityListeners(AuditingEntityListener.class)
 public class Order extends RepresentationModel<Order> {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedUUID
     @Column(updatable = false, nullable = false)
     private UUID orderId;
-    private List<String> pizzas = new ArrayList<>();
+    /**
+     * The menu ids of the pizzas, translated to names by the {@link it.sabato.pizzeria.service.PizzaCatalog} where the
+     * order becomes a DTO. The pizzas of an order never change, so they are written only by the insert.
+     */
+    @Column(name = "pizza_ids", updatable = false)
+    private List<Integer> pizzaIds = new ArrayList<>();
     @ManyToOne(fetch = FetchType.EAGER, cascade = {MERGE, REMOVE, REFRESH, DETACH})
     @JoinColumn(name = "order_status_order_status_id")
     private OrderStatus orderStatus;
@@ -37,4 +42,10 @@ public class Order extends RepresentationModel<Order> {
     private LocalDateTime createdDate;
     @LastModifiedDate
     private LocalDateTime lastModifiedDate;
+    /**
+     * Incremented by every update, also by the ones done through plain SQL, so that an outdated entity is never
+     * written over a newer row.
+     */
+    @Version
+    private Long version;
 }
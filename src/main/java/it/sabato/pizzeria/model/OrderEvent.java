@@ -0,0 +1,40 @@
+package it.sabato.pizzeria.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * The type Order event. An order status change waiting inside the outbox to be dispatched to the order event sinks.
+ * It is written by the same transaction that changes the order status, so it exists if and only if the change has
+ * been committed.
+ * @author Gianluca Sabato
+ */
+@Data
+@Entity
+@Table(name = "order_events")
+public class OrderEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(updatable = false, nullable = false)
+    private Long eventId;
+    @Column(updatable = false, nullable = false)
+    private UUID orderId;
+    @Column(updatable = false)
+    private String previousStatus;
+    @Column(updatable = false, nullable = false)
+    private String status;
+    @Column(updatable = false, nullable = false)
+    private LocalDateTime createdDate;
+    /**
+     * The delivery checkpoint: null until the event has been delivered to all the sinks.
+     */
+    private LocalDateTime dispatchedDate;
+}
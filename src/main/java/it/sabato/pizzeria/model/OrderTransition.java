@@ -0,0 +1,26 @@
+package it.sabato.pizzeria.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The type Order transition. It is the row returned by the statements that change the status of an order directly
+ * inside the database, without loading the {@link Order} entity first.
+ * @author Gianluca Sabato
+ */
+@Value
+@Builder(toBuilder = true)
+public class OrderTransition {
+    UUID orderId;
+    List<String> pizzas;
+    LocalDateTime createdDate;
+    UUID orderStatusId;
+    /**
+     * The status the order had before the statement (null when the statement doesn't read it).
+     */
+    UUID previousOrderStatusId;
+}
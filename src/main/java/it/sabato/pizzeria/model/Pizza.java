@@ -0,0 +1,22 @@
+package it.sabato.pizzeria.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * The type Pizza. A menu entry: orders store its compact integer id instead of its name.
+ * @author Gianluca Sabato
+ */
+@Data
+@Entity
+@Table(name = "pizzas")
+public class Pizza {
+    @Id
+    @Column(updatable = false, nullable = false)
+    private Integer pizzaId;
+    @Column(nullable = false, unique = true)
+    private String name;
+}
@@ -0,0 +1,19 @@
+package it.sabato.pizzeria.model;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generate the annotated id as a time ordered UUID (version 7), so that new rows are appended at the end of the
+ * primary key index instead of being scattered across it.
+ * @author Gianluca Sabato
+ */
+@IdGeneratorType(TimeOrderedUUIDGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface TimeOrderedUUID {
+}
@@ -0,0 +1,26 @@
+package it.sabato.pizzeria.model;
+
+import it.sabato.pizzeria.factory.UUIDFactory;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+
+import java.util.EnumSet;
+
+/**
+ * The type Time ordered UUID generator, backing {@link TimeOrderedUUID}.
+ * @author Gianluca Sabato
+ */
+public class TimeOrderedUUIDGenerator implements BeforeExecutionGenerator {
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue,
+                           EventType eventType) {
+        return UUIDFactory.getTimeOrderedUUID();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+}
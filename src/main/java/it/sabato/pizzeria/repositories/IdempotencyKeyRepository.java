@@ -0,0 +1,55 @@
+package it.sabato.pizzeria.repositories;
+
+import it.sabato.pizzeria.model.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * The interface Idempotency key repository.
+ * @author Gianluca Sabato
+ */
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+    /**
+     * Claim an idempotency key. When the key is being claimed by another transaction the statement waits for it, so
+     * a key is claimed only once even across application instances.
+     *
+     * @param idempotencyKey the idempotency key
+     * @param requestHash    the hash of the request
+     * @param createdDate    the created date
+     * @return 1 if the key has been claimed, 0 if it was already there
+     */
+    @Modifying
+    @Query(value = "insert into idempotency_keys (idempotency_key, request_hash, created_date) " +
+            "values (:idempotencyKey, :requestHash, :createdDate) on conflict (idempotency_key) do nothing",
+            nativeQuery = true)
+    int claim(String idempotencyKey, String requestHash, LocalDateTime createdDate);
+
+    /**
+     * Bind a claimed idempotency key to the order created for it.
+     *
+     * @param idempotencyKey the idempotency key
+     * @param orderId        the order id
+     * @return the number of updated keys
+     */
+    @Modifying
+    @Query("update IdempotencyKey k set k.orderId = :orderId where k.idempotencyKey = :idempotencyKey")
+    int bindOrder(String idempotencyKey, UUID orderId);
+
+    /**
+     * Delete the idempotency keys created before the given date.
+     *
+     * @param createdDate the created date
+     * @return the number of deleted keys
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyKey k where k.createdDate < :createdDate")
+    int deleteByCreatedDateBefore(LocalDateTime createdDate);
+}
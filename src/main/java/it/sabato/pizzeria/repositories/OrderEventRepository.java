@@ -0,0 +1,51 @@
+package it.sabato.pizzeria.repositories;
+
+import it.sabato.pizzeria.model.OrderEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * The interface Order event repository.
+ * @author Gianluca Sabato
+ */
+@Repository
+public interface OrderEventRepository extends JpaRepository<OrderEvent, Long> {
+    /**
+     * Lock the oldest order events not dispatched yet. The events locked by another dispatcher are skipped, so
+     * concurrent dispatchers, also from other application instances, never deliver the same batch together.
+     *
+     * @param limit the maximum number of events
+     * @return the locked events, oldest first
+     */
+    @Query(value = "select * from order_events where dispatched_date is null order by event_id limit :limit " +
+            "for update skip locked", nativeQuery = true)
+    List<OrderEvent> lockPendingEvents(int limit);
+
+    /**
+     * Checkpoint the given order events as dispatched.
+     *
+     * @param eventIds       the event ids
+     * @param dispatchedDate the dispatched date
+     * @return the number of updated events
+     */
+    @Modifying
+    @Query("update OrderEvent e set e.dispatchedDate = :dispatchedDate where e.eventId in :eventIds")
+    int markDispatched(List<Long> eventIds, LocalDateTime dispatchedDate);
+
+    /**
+     * Delete the order events dispatched before the given date.
+     *
+     * @param dispatchedDate the dispatched date
+     * @return the number of deleted events
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from OrderEvent e where e.dispatchedDate < :dispatchedDate")
+    int deleteByDispatchedDateBefore(LocalDateTime dispatchedDate);
+}
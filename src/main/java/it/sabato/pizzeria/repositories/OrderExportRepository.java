@@ -0,0 +1,22 @@
+package it.sabato.pizzeria.repositories;
+
+import it.sabato.pizzeria.dto.OrderSummaryDTO;
+
+import java.util.stream.Stream;
+
+/**
+ * Repository fragment with the query streaming the orders to the export. It is implemented by
+ * {@link OrderExportRepositoryImpl}, so that the fetch size comes from the configuration.
+ * @author Gianluca Sabato
+ */
+public interface OrderExportRepository {
+    /**
+     * Stream all the orders in (createdDate, orderId) order. The rows are read through a cursor in batches of fetch
+     * size rows, so the stream must be consumed and closed inside a transaction.
+     *
+     * @param fetchSize the number of rows read by every round trip
+     * @return the orders
+     * @author Gianluca Sabato
+     */
+    Stream<OrderSummaryDTO> streamAllForExport(int fetchSize);
+}
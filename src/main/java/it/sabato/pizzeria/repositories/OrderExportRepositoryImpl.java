@@ -0,0 +1,27 @@
+package it.sabato.pizzeria.repositories;
+
+import it.sabato.pizzeria.dto.OrderSummaryDTO;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+/**
+ * JPA implementation of {@link OrderExportRepository}.
+ * @author Gianluca Sabato
+ */
+public class OrderExportRepositoryImpl implements OrderExportRepository {
+    private static final String STREAM_ALL_FOR_EXPORT = OrderRepository.SELECT_ORDER_SUMMARY +
+            " order by o.createdDate asc, o.orderId asc";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Stream<OrderSummaryDTO> streamAllForExport(int fetchSize) {
+        return entityManager.createQuery(STREAM_ALL_FOR_EXPORT, OrderSummaryDTO.class)
+                .setHint(HINT_FETCH_SIZE, fetchSize).getResultStream();
+    }
+}
@@ -0,0 +1,21 @@
+package it.sabato.pizzeria.repositories;
+
+import it.sabato.pizzeria.model.Order;
+
+import java.util.List;
+
+/**
+ * Repository fragment with the bulk insert used by the asynchronous order intake.
+ * It is implemented with plain JDBC by {@link OrderIntakeRepositoryImpl}.
+ * @author Gianluca Sabato
+ */
+public interface OrderIntakeRepository {
+    /**
+     * Insert the given orders, which already carry their id, status and dates, with a single JDBC batch. Unlike
+     * {@code saveAll} the orders are not attached to the persistence context.
+     *
+     * @param orders the orders
+     * @author Gianluca Sabato
+     */
+    void insertOrders(List<Order> orders);
+}
@@ -0,0 +1,33 @@
+package it.sabato.pizzeria.repositories;
+
+import it.sabato.pizzeria.model.Order;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * JDBC implementation of {@link OrderIntakeRepository}.
+ * @author Gianluca Sabato
+ */
+@RequiredArgsConstructor
+public class OrderIntakeRepositoryImpl implements OrderIntakeRepository {
+    private static final String INSERT_ORDER = """
+            INSERT INTO orders (order_id, pizza_ids, order_status_order_status_id, created_date, last_modified_date,
+                version)
+            VALUES (?, ?, ?, ?, ?, 0)""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertOrders(List<Order> orders) {
+        jdbcTemplate.batchUpdate(INSERT_ORDER, orders, orders.size(), (ps, order) -> {
+            ps.setObject(1, order.getOrderId());
+            ps.setArray(2, ps.getConnection().createArrayOf("integer", order.getPizzaIds().toArray()));
+            ps.setObject(3, order.getOrderStatus().getOrderStatusId());
+            ps.setTimestamp(4, Timestamp.valueOf(order.getCreatedDate()));
+            ps.setTimestamp(5, Timestamp.valueOf(order.getLastModifiedDate()));
+        });
+    }
+}
@@ -1,12 +1,21 @@
 package it.sabato.pizzeria.repositories;
 
+import it.sabato.pizzeria.dto.OrderAgeDTO;
+import it.sabato.pizzeria.dto.OrderStatusCountDTO;
+import it.sabato.pizzeria.dto.OrderListItemDTO;
+import it.sabato.pizzeria.dto.OrderSummaryDTO;
 import it.sabato.pizzeria.model.Order;
 import it.sabato.pizzeria.model.OrderStatus;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 /**
@@ -14,7 +23,8 @@ import java.util.UUID;
  * @author Gianluca Sabato
  */
 @Repository
-public interface OrderRepository extends JpaRepository<Order, UUID>, JpaSpecificationExecutor<Order> {
+public interface OrderRepository extends JpaRepository<Order, UUID>, JpaSpecificationExecutor<Order>,
+        OrderTransitionRepository, OrderIntakeRepository, OrderExportRepository, OrderSearchRepository {
     /**
      * Find by order status order and by created date with asc ordering.
      *
@@ -23,4 +33,86 @@ public interface OrderRepository extends JpaRepository<Order, UUID>, JpaSpecific
      * @author Gianluca Sabato
      */
     List<Order> findByOrderStatusOrderByCreatedDateAsc(OrderStatus orderStatus);
+
+    /**
+     * Select clause shared by the listing projections. The rows are read straight into {@link OrderListItemDTO}s, so no
+     * entity is loaded into the persistence context and the order statuses are not joined.
+     */
+    String SELECT_ORDER_LIST_ITEM = "select new it.sabato.pizzeria.dto.OrderListItemDTO(o.orderId, o.pizzaIds, " +
+            "o.createdDate) from Order o";
+
+    /**
+     * Select clause of the summary projection read by the export. The rows are read straight into
+     * {@link OrderSummaryDTO}s, so no entity is loaded into the persistence context and the status comes from the same
+     * query.
+     */
+    String SELECT_ORDER_SUMMARY = "select new it.sabato.pizzeria.dto.OrderSummaryDTO(o.orderId, o.pizzaIds, " +
+            "s.status, o.createdDate, o.lastModifiedDate) from Order o left join o.orderStatus s";
+
+    /**
+     * Find the first orders in (createdDate, orderId) order.
+     *
+     * @param limit the maximum number of orders
+     * @return the orders
+     * @author Gianluca Sabato
+     */
+    @Query(SELECT_ORDER_LIST_ITEM + " order by o.createdDate asc, o.orderId asc")
+    List<OrderListItemDTO> findFirstPage(Limit limit);
+
+    /**
+     * Find the orders that follow the given (createdDate, orderId) position, in ascending order.
+     *
+     * @param createdDate the created date of the cursor
+     * @param orderId     the order id of the cursor
+     * @param limit       the maximum number of orders
+     * @return the orders
+     * @author Gianluca Sabato
+     */
+    @Query(SELECT_ORDER_LIST_ITEM + " where (o.createdDate, o.orderId) > (:createdDate, :orderId) " +
+            "order by o.createdDate asc, o.orderId asc")
+    List<OrderListItemDTO> findPageAfter(LocalDateTime createdDate, UUID orderId, Limit limit);
+
+    /**
+     * Find the orders that precede the given (createdDate, orderId) position, in descending order.
+     *
+     * @param createdDate the created date of the cursor
+     * @param orderId     the order id of the cursor
+     * @param limit       the maximum number of orders
+     * @return the orders
+     * @author Gianluca Sabato
+     */
+    @Query(SELECT_ORDER_LIST_ITEM + " where (o.createdDate, o.orderId) < (:createdDate, :orderId) " +
+            "order by o.createdDate desc, o.orderId desc")
+    List<OrderListItemDTO> findPageBefore(LocalDateTime createdDate, UUID orderId, Limit limit);
+
+    /**
+     * Find the last modified date of an order (its created date, if it was never modified), without loading it.
+     *
+     * @param orderId the order id
+     * @return the last modified date
+     * @author Gianluca Sabato
+     */
+    @Query("select coalesce(o.lastModifiedDate, o.createdDate) from Order o where o.orderId = :orderId")
+    Optional<LocalDateTime> findLastModifiedDateByOrderId(UUID orderId);
+
+    /**
+     * Count the orders of every status.
+     *
+     * @return the order counts, one per status with orders
+     * @author Gianluca Sabato
+     */
+    @Query("select new it.sabato.pizzeria.dto.OrderStatusCountDTO(s.status, count(o)) from Order o " +
+            "join o.orderStatus s group by s.status")
+    List<OrderStatusCountDTO> countByStatus();
+
+    /**
+     * Find the status and creation date of the orders with the given statuses.
+     *
+     * @param statuses the statuses
+     * @return the order ages
+     * @author Gianluca Sabato
+     */
+    @Query("select new it.sabato.pizzeria.dto.OrderAgeDTO(o.orderId, s.status, o.createdDate) from Order o " +
+            "join o.orderStatus s where s.status in :statuses")
+    List<OrderAgeDTO> findOrderAgesByStatusIn(Collection<String> statuses);
 }
@@ -0,0 +1,27 @@
+package it.sabato.pizzeria.repositories;
+
+import it.sabato.pizzeria.dto.OrderListItemDTO;
+import it.sabato.pizzeria.model.Order;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Repository fragment with the query searching the orders. It is implemented by {@link OrderSearchRepositoryImpl},
+ * so that the filters built by {@link OrderSpecifications} can be read straight into {@link OrderListItemDTO}.
+ * @author Gianluca Sabato
+ */
+public interface OrderSearchRepository {
+    /**
+     * Find the orders matching the given specification, as list items.
+     *
+     * @param specification the filters (it can be null)
+     * @param sort          the ordering
+     * @param limit         the maximum number of orders
+     * @return the orders
+     * @author Gianluca Sabato
+     */
+    List<OrderListItemDTO> findListItems(Specification<Order> specification, Sort sort, Limit limit);
+}
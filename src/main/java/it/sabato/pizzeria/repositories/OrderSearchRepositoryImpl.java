@@ -0,0 +1,53 @@
+package it.sabato.pizzeria.repositories;
+
+import it.sabato.pizzeria.dto.OrderListItemDTO;
+import it.sabato.pizzeria.model.Order;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.util.List;
+
+/**
+ * JPA implementation of {@link OrderSearchRepository}. It builds the same projection as
+ * {@link OrderRepository#SELECT_ORDER_LIST_ITEM} through the criteria API.
+ * @author Gianluca Sabato
+ */
+public class OrderSearchRepositoryImpl implements OrderSearchRepository {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<OrderListItemDTO> findListItems(Specification<Order> specification, Sort sort, Limit limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<OrderListItemDTO> query = cb.createQuery(OrderListItemDTO.class);
+        Root<Order> root = query.from(Order.class);
+
+        query.select(cb.construct(OrderListItemDTO.class, root.get("orderId"), root.get("pizzaIds"),
+                root.get("createdDate")));
+
+        Predicate predicate = specification != null ? specification.toPredicate(root, query, cb) : null;
+
+        if (predicate != null) {
+            query.where(predicate);
+        }
+
+        query.orderBy(QueryUtils.toOrders(sort, root, cb));
+
+        TypedQuery<OrderListItemDTO> typedQuery = entityManager.createQuery(query);
+
+        if (limit.isLimited()) {
+            typedQuery.setMaxResults(limit.max());
+        }
+
+        return typedQuery.getResultList();
+    }
+}
@@ -0,0 +1,106 @@
+package it.sabato.pizzeria.repositories;
+
+import it.sabato.pizzeria.model.Order;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * The type Order specifications. Every specification is translated into a SQL predicate, so the filtering is done by
+ * the database.
+ * @author Gianluca Sabato
+ */
+public class OrderSpecifications {
+    private OrderSpecifications() {
+    }
+
+    /**
+     * Orders with the given status. The foreign key column is compared directly, without joining order_statuses.
+     *
+     * @param orderStatusId the order status id
+     * @return the specification
+     * @author Gianluca Sabato
+     */
+    public static Specification<Order> hasOrderStatus(UUID orderStatusId) {
+        return (root, query, cb) -> cb.equal(root.get("orderStatus").get("orderStatusId"), orderStatusId);
+    }
+
+    /**
+     * Orders created inside the given range.
+     *
+     * @param from the range start (inclusive, it can be null)
+     * @param to   the range end (inclusive, it can be null)
+     * @return the specification
+     * @author Gianluca Sabato
+     */
+    public static Specification<Order> createdBetween(LocalDateTime from, LocalDateTime to) {
+        return between("createdDate", from, to);
+    }
+
+    /**
+     * Orders last modified inside the given range.
+     *
+     * @param from the range start (inclusive, it can be null)
+     * @param to   the range end (inclusive, it can be null)
+     * @return the specification
+     * @author Gianluca Sabato
+     */
+    public static Specification<Order> lastModifiedBetween(LocalDateTime from, LocalDateTime to) {
+        return between("lastModifiedDate", from, to);
+    }
+
+    /**
+     * Orders that contain the given pizza. It's rendered as an array containment (@&gt;) on PostgreSQL, which can use
+     * the GIN index on the pizza_ids column.
+     *
+     * @param pizzaId the pizza id
+     * @return the specification
+     * @author Gianluca Sabato
+     */
+    public static Specification<Order> containsPizza(Integer pizzaId) {
+        return (root, query, cb) -> ((HibernateCriteriaBuilder) cb).collectionContains(root.get("pizzaIds"),
+                pizzaId);
+    }
+
+    /**
+     * Orders that follow the given (createdDate, orderId) position, the keyset used by the pagination.
+     *
+     * @param createdDate the created date of the cursor
+     * @param orderId     the order id of the cursor
+     * @return the specification
+     * @author Gianluca Sabato
+     */
+    public static Specification<Order> follows(LocalDateTime createdDate, UUID orderId) {
+        return (root, query, cb) -> cb.or(cb.greaterThan(root.get("createdDate"), createdDate),
+                cb.and(cb.equal(root.get("createdDate"), createdDate), cb.greaterThan(root.get("orderId"), orderId)));
+    }
+
+    /**
+     * Orders that precede the given (createdDate, orderId) position, the keyset used by the pagination.
+     *
+     * @param createdDate the created date of the cursor
+     * @param orderId     the order id of the cursor
+     * @return the specification
+     * @author Gianluca Sabato
+     */
+    public static Specification<Order> precedes(LocalDateTime createdDate, UUID orderId) {
+        return (root, query, cb) -> cb.or(cb.lessThan(root.get("createdDate"), createdDate),
+                cb.and(cb.equal(root.get("createdDate"), createdDate), cb.lessThan(root.get("orderId"), orderId)));
+    }
+
+    private static Specification<Order> between(String attribute, LocalDateTime from, LocalDateTime to) {
+        return (root, query, cb) -> {
+            if (from != null && to != null) {
+                return cb.between(root.get(attribute), from, to);
+            } else if (from != null) {
+                return cb.greaterThanOrEqualTo(root.get(attribute), from);
+            } else if (to != null) {
+                return cb.lessThanOrEqualTo(root.get(attribute), to);
+            }
+
+            return null;
+        };
+    }
+}
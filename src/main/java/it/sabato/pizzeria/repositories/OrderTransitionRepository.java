@@ -0,0 +1,44 @@
+package it.sabato.pizzeria.repositories;
+
+import it.sabato.pizzeria.model.OrderTransition;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Repository fragment with the statements that change the status of orders in a single round trip.
+ * It is implemented with plain JDBC by {@link OrderTransitionRepositoryImpl}.
+ * @author Gianluca Sabato
+ */
+public interface OrderTransitionRepository {
+    /**
+     * Claim the oldest RECEVIED order moving it to PROCESSING and, only if such an order exists, move the oldest
+     * PROCESSING order to COMPLETED. Rows locked by concurrent callers are skipped, so the same order is never
+     * claimed twice. It must be called inside a transaction.
+     *
+     * @param receivedId   the RECEVIED order status id
+     * @param processingId the PROCESSING order status id
+     * @param completedId  the COMPLETED order status id
+     * @return the updated orders (empty if there was nothing to claim)
+     * @author Gianluca Sabato
+     */
+    List<OrderTransition> claimNextOrder(UUID receivedId, UUID processingId, UUID completedId);
+
+    /**
+     * Move an order to the given status, refreshing its last modified date, in a single statement. The order is moved
+     * only if its status is one of the given source statuses and, when an expected status is given, only if it has that
+     * status. The order row is locked first, so the returned previous status is the one the update was checked
+     * against. It must be called inside a transaction.
+     *
+     * @param orderId               the order id
+     * @param orderStatusId         the new order status id
+     * @param expectedOrderStatusId the status the order must have (it can be null)
+     * @param sourceOrderStatusIds  the statuses the order can be moved from
+     * @return the order, with its previous and current status (empty if the order doesn't exist)
+     * @author Gianluca Sabato
+     */
+    Optional<OrderTransition> transitionOrder(UUID orderId, UUID orderStatusId, UUID expectedOrderStatusId,
+                                              Collection<UUID> sourceOrderStatusIds);
+}
@@ -0,0 +1,102 @@
+package it.sabato.pizzeria.repositories;
+
+import it.sabato.pizzeria.model.OrderTransition;
+import it.sabato.pizzeria.service.PizzaCatalog;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * JDBC implementation of {@link OrderTransitionRepository}.
+ * @author Gianluca Sabato
+ */
+@RequiredArgsConstructor
+public class OrderTransitionRepositoryImpl implements OrderTransitionRepository {
+    private static final String CLAIM_NEXT_ORDER = """
+            WITH next_order AS (
+                SELECT order_id FROM orders WHERE order_status_order_status_id = ?
+                ORDER BY created_date, order_id LIMIT 1 FOR UPDATE SKIP LOCKED
+            ), current_order AS (
+                SELECT order_id FROM orders WHERE order_status_order_status_id = ? AND EXISTS (SELECT 1 FROM next_order)
+                ORDER BY created_date, order_id LIMIT 1 FOR UPDATE SKIP LOCKED
+            ), completed AS (
+                UPDATE orders SET order_status_order_status_id = ?, last_modified_date = ?, version = version + 1
+                WHERE order_id IN (SELECT order_id FROM current_order)
+                RETURNING order_id, pizza_ids, created_date, order_status_order_status_id
+            ), claimed AS (
+                UPDATE orders SET order_status_order_status_id = ?, last_modified_date = ?, version = version + 1
+                WHERE order_id IN (SELECT order_id FROM next_order)
+                RETURNING order_id, pizza_ids, created_date, order_status_order_status_id
+            )
+            SELECT * FROM claimed UNION ALL SELECT * FROM completed""";
+
+    private static final String TRANSITION_ORDER = """
+            WITH target AS (
+                SELECT order_id, pizza_ids, created_date, order_status_order_status_id FROM orders WHERE order_id = ?
+                FOR UPDATE
+            ), updated AS (
+                UPDATE orders SET order_status_order_status_id = ?, last_modified_date = ?, version = version + 1
+                WHERE order_id IN (SELECT order_id FROM target
+                    WHERE (CAST(? AS uuid) IS NULL OR order_status_order_status_id = CAST(? AS uuid))
+                    AND order_status_order_status_id = ANY (?))
+                RETURNING order_id, order_status_order_status_id
+            )
+            SELECT t.order_id, t.pizza_ids, t.created_date,
+                COALESCE(u.order_status_order_status_id, t.order_status_order_status_id)
+                    AS order_status_order_status_id,
+                t.order_status_order_status_id AS previous_order_status_id
+            FROM target t LEFT JOIN updated u ON u.order_id = t.order_id""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PizzaCatalog pizzaCatalog;
+
+    @Override
+    public List<OrderTransition> claimNextOrder(UUID receivedId, UUID processingId, UUID completedId) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        return jdbcTemplate.query(CLAIM_NEXT_ORDER, this::mapOrderTransition, receivedId, processingId,
+                completedId, now, processingId, now);
+    }
+
+    @Override
+    public Optional<OrderTransition> transitionOrder(UUID orderId, UUID orderStatusId, UUID expectedOrderStatusId,
+                                                     Collection<UUID> sourceOrderStatusIds) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        return jdbcTemplate.query(TRANSITION_ORDER, ps -> {
+            ps.setObject(1, orderId);
+            ps.setObject(2, orderStatusId);
+            ps.setTimestamp(3, now);
+            ps.setObject(4, expectedOrderStatusId, Types.OTHER);
+            ps.setObject(5, expectedOrderStatusId, Types.OTHER);
+            ps.setArray(6, ps.getConnection().createArrayOf("uuid", sourceOrderStatusIds.toArray()));
+        }, this::mapOrderTransitionWithPrevious).stream().findFirst();
+    }
+
+    private OrderTransition mapOrderTransition(ResultSet rs, int rowNum) throws SQLException {
+        Array pizzaIds = rs.getArray("pizza_ids");
+        Timestamp createdDate = rs.getTimestamp("created_date");
+
+        return OrderTransition.builder().orderId(rs.getObject("order_id", UUID.class))
+                .pizzas(pizzaIds != null ? pizzaCatalog.getNames(Arrays.asList((Integer[]) pizzaIds.getArray()))
+                        : List.of())
+                .createdDate(createdDate != null ? createdDate.toLocalDateTime() : null)
+                .orderStatusId(rs.getObject("order_status_order_status_id", UUID.class)).build();
+    }
+
+    private OrderTransition mapOrderTransitionWithPrevious(ResultSet rs, int rowNum) throws SQLException {
+        return mapOrderTransition(rs, rowNum).toBuilder()
+                .previousOrderStatusId(rs.getObject("previous_order_status_id", UUID.class)).build();
+    }
+}
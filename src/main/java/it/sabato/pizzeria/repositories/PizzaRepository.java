@@ -0,0 +1,37 @@
+package it.sabato.pizzeria.repositories;
+
+import it.sabato.pizzeria.model.Pizza;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+/**
+ * The interface Pizza repository.
+ * @author Gianluca Sabato
+ */
+@Repository
+public interface PizzaRepository extends JpaRepository<Pizza, Integer> {
+    /**
+     * Whether any order contains one of the given pizzas. The array overlap (&amp;&amp;) can use the GIN index on the
+     * pizza_ids column.
+     *
+     * @param pizzaIds the pizza ids
+     * @return true if an order contains one of them
+     * @author Gianluca Sabato
+     */
+    @Query(value = "select exists (select 1 from orders where pizza_ids && cast(:pizzaIds as integer[]))",
+            nativeQuery = true)
+    boolean existsOrderWithAny(Integer[] pizzaIds);
+
+    /**
+     * Whether any order contains a pizza other than the given ones. It reads the whole orders table when no order
+     * does.
+     *
+     * @param pizzaIds the pizza ids
+     * @return true if an order contains another pizza
+     * @author Gianluca Sabato
+     */
+    @Query(value = "select exists (select 1 from orders where not (pizza_ids <@ cast(:pizzaIds as integer[])))",
+            nativeQuery = true)
+    boolean existsOrderWithOther(Integer[] pizzaIds);
+}
@@ -0,0 +1,283 @@
+package it.sabato.pizzeria.service;
+
+import it.sabato.pizzeria.config.OrderStatusConstants;
+import it.sabato.pizzeria.config.PizzaPlaceProperties;
+import it.sabato.pizzeria.dto.KitchenBoardDTO;
+import it.sabato.pizzeria.dto.KitchenBoardEventDTO;
+import it.sabato.pizzeria.dto.KitchenBoardOrderDTO;
+import it.sabato.pizzeria.event.OrderChangedEvent;
+import it.sabato.pizzeria.event.OrderInvalidatedEvent;
+import it.sabato.pizzeria.factory.KitchenBoardEventDTOFactory;
+import it.sabato.pizzeria.factory.KitchenBoardOrderDTOFactory;
+import it.sabato.pizzeria.repositories.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.naming.ConfigurationException;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-memory materialized view of the kitchen board: the RECEVIED and PROCESSING orders in queue order (creation date
+ * and then order id, as by the {@link KitchenQueue}), with their counts. It is loaded from the database at startup and
+ * updated incrementally through the {@link OrderChangedEvent}s published by every order creation and transition.
+ * <p>
+ * Every change increments the board version, and the last {@code pizzeria.board.delta-log-size} changes are kept, so
+ * that clients can ask only for the orders changed since the version they have. The versions are counted within an
+ * epoch, that changes with every reload and with every run of the application: older versions, and versions of
+ * another epoch, get the whole board instead.
+ * <p>
+ * Every change is also handed to the registered listeners as a {@link KitchenBoardEventDTO}, in version order, and
+ * every reload as a snapshot.
+ * @author Gianluca Sabato
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class KitchenBoard implements InitializingBean {
+    private final OrderRepository orderRepository;
+    private final OrderStatusRegistry orderStatusRegistry;
+    private final PizzaCatalog pizzaCatalog;
+    private final PizzaPlaceProperties pizzaPlaceProperties;
+
+    private KitchenIndex<KitchenBoardOrderDTO> orders = new KitchenIndex<>();
+    private final Deque<Change> changes = new ArrayDeque<>();
+    private final List<Consumer<KitchenBoardEventDTO>> listeners = new CopyOnWriteArrayList<>();
+    private long version;
+    /**
+     * Identifies the last load of the board. The versions of another epoch belong to a board that no longer exists.
+     */
+    private UUID epoch;
+    private long receivedCount;
+    private long processingCount;
+    private KitchenBoardDTO snapshot;
+
+    @Override
+    public void afterPropertiesSet() throws ConfigurationException {
+        reload();
+    }
+
+    /**
+     * Reload the board from the database, discarding its current content and its changes, and starting a new epoch.
+     *
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * @author Gianluca Sabato
+     */
+    public void reload() throws ConfigurationException {
+        reload(false);
+    }
+
+    /**
+     * The reload for an out of order change keeps the retired orders, since the late change is still to come.
+     */
+    private synchronized void reload(boolean keepRetired) throws ConfigurationException {
+        KitchenIndex<KitchenBoardOrderDTO> reloadedOrders = KitchenIndex.load(orderRepository, orderStatusRegistry,
+                order -> KitchenBoardOrderDTOFactory.getKitchenBoardOrderDTO(order, pizzaCatalog),
+                OrderStatusConstants.RECEVIED, OrderStatusConstants.PROCESSING);
+
+        if (keepRetired) {
+            reloadedOrders.keepRetired(orders);
+        }
+        orders = reloadedOrders;
+        changes.clear();
+        receivedCount = 0;
+        processingCount = 0;
+
+        for (KitchenBoardOrderDTO order : orders.values()) {
+            count(order.getOrderStatus(), 1);
+        }
+
+        // The version keeps growing, so that the socket listeners never see it going back
+        version++;
+        epoch = UUID.randomUUID();
+        snapshot = null;
+
+        if (!listeners.isEmpty()) {
+            KitchenBoardEventDTO boardEvent = KitchenBoardEventDTOFactory.getKitchenBoardEventDTO(getSnapshot());
+            listeners.forEach(listener -> listener.accept(boardEvent));
+        }
+    }
+
+    /**
+     * Gets the board, or only its changes since a version.
+     *
+     * @param since the version the client has (null for the whole board)
+     * @param epoch the epoch of the version the client has
+     * @return the board, as a delta when the changes since the version are still known
+     * @author Gianluca Sabato
+     */
+    public synchronized KitchenBoardDTO getBoard(Long since, UUID epoch) {
+        if (since == null || !this.epoch.equals(epoch) || since > version || (!changes.isEmpty()
+                && since < changes.getFirst().version() - 1)) {
+            return getSnapshot();
+        }
+
+        Map<UUID, KitchenBoardOrderDTO> changedOrders = new LinkedHashMap<>();
+        Iterator<Change> iterator = changes.descendingIterator();
+
+        while (iterator.hasNext()) {
+            Change change = iterator.next();
+
+            if (change.version() <= since) {
+                break;
+            }
+
+            changedOrders.putIfAbsent(change.order().getOrderId(), change.order());
+        }
+
+        List<KitchenBoardOrderDTO> delta = new ArrayList<>(changedOrders.values());
+        Collections.reverse(delta);
+
+        return KitchenBoardDTO.builder().version(version).epoch(epoch).delta(true).receivedCount(receivedCount)
+                .processingCount(processingCount).orders(delta).build();
+    }
+
+    /**
+     * Register a listener of the board changes. Listeners are run while the board is locked, so that they get the
+     * changes in version order, and they must be quick.
+     *
+     * @param listener the listener
+     * @author Gianluca Sabato
+     */
+    public void addListener(Consumer<KitchenBoardEventDTO> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove a listener of the board changes.
+     *
+     * @param listener the listener
+     * @author Gianluca Sabato
+     */
+    public void removeListener(Consumer<KitchenBoardEventDTO> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Apply the order changes done by the other application instances, or reload the board when some of them may
+     * have been lost.
+     *
+     * @param event the order invalidated event
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * @author Gianluca Sabato
+     */
+    @EventListener
+    public void onOrderInvalidated(OrderInvalidatedEvent event) throws ConfigurationException {
+        if (event.isAll()) {
+            reload();
+        } else {
+            onOrderChanged(event.getChange());
+        }
+    }
+
+    /**
+     * Apply the order changes to the board, once they are committed. The listeners of two changes of the same order
+     * may run in reverse order: a change whose previous status is not the one on the board reloads it, while a change
+     * arriving after the order left the board is dropped.
+     *
+     * @param event the order changed event
+     * @author Gianluca Sabato
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onOrderChanged(OrderChangedEvent event) {
+        KitchenBoardOrderDTO order = KitchenBoardOrderDTOFactory.getKitchenBoardOrderDTO(event);
+        boolean onBoard = isOnBoard(event.getStatus());
+
+        if (orders.isRetired(event.getOrderId())) {
+            return;
+        }
+
+        Optional<KitchenBoardOrderDTO> boardOrder = orders.remove(event.getOrderId());
+        boolean wasOnBoard = boardOrder.isPresent();
+        String boardStatus = boardOrder.map(KitchenBoardOrderDTO::getOrderStatus).orElse(null);
+        String previousStatus = isOnBoard(event.getPreviousStatus()) ? event.getPreviousStatus() : null;
+
+        boardOrder.ifPresent(previous -> count(previous.getOrderStatus(), -1));
+
+        if (!onBoard) {
+            orders.retire(event.getOrderId());
+        }
+
+        if (!Objects.equals(previousStatus, boardStatus)) {
+            log.info("Order {} changed from {} to {} out of order, reloading the kitchen board", event.getOrderId(),
+                    event.getPreviousStatus(), event.getStatus());
+            reloadOutOfOrder();
+
+            return;
+        }
+
+        if (!onBoard && !wasOnBoard) {
+            return;
+        }
+
+        if (onBoard) {
+            put(order);
+        }
+
+        version++;
+        snapshot = null;
+        changes.addLast(new Change(version, order));
+
+        while (changes.size() > Math.max(1, pizzaPlaceProperties.getBoard().getDeltaLogSize())) {
+            changes.removeFirst();
+        }
+
+        if (!listeners.isEmpty()) {
+            KitchenBoardEventDTO.Type type;
+
+            if (!wasOnBoard) {
+                type = KitchenBoardEventDTO.Type.ADDED;
+            } else if (onBoard) {
+                type = KitchenBoardEventDTO.Type.MOVED;
+            } else {
+                type = KitchenBoardEventDTO.Type.REMOVED;
+            }
+
+            KitchenBoardEventDTO boardEvent = KitchenBoardEventDTO.builder().type(type).version(version)
+                    .receivedCount(receivedCount).processingCount(processingCount).order(order).build();
+            listeners.forEach(listener -> listener.accept(boardEvent));
+        }
+    }
+
+    private KitchenBoardDTO getSnapshot() {
+        if (snapshot == null) {
+            snapshot = KitchenBoardDTO.builder().version(version).epoch(epoch).delta(false)
+                    .receivedCount(receivedCount).processingCount(processingCount).orders(orders.values()).build();
+        }
+
+        return snapshot;
+    }
+
+    private void put(KitchenBoardOrderDTO order) {
+        orders.put(order.getOrderId(), order.getCreatedDate(), order);
+        count(order.getOrderStatus(), 1);
+    }
+
+    private void reloadOutOfOrder() {
+        try {
+            reload(true);
+        } catch (ConfigurationException e) {
+            throw new IllegalStateException("Unable to reload the kitchen board", e);
+        }
+    }
+
+    private void count(String status, int delta) {
+        if (OrderStatusConstants.RECEVIED.equals(status)) {
+            receivedCount += delta;
+        } else if (OrderStatusConstants.PROCESSING.equals(status)) {
+            processingCount += delta;
+        }
+    }
+
+    private static boolean isOnBoard(String status) {
+        return OrderStatusConstants.RECEVIED.equals(status) || OrderStatusConstants.PROCESSING.equals(status);
+    }
+
+    private record Change(long version, KitchenBoardOrderDTO order) {
+    }
+}
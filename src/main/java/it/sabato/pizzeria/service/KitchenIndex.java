@@ -0,0 +1,220 @@
+package it.sabato.pizzeria.service;
+
+import it.sabato.pizzeria.model.Order;
+import it.sabato.pizzeria.repositories.OrderRepository;
+
+import javax.naming.ConfigurationException;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+/**
+ * Orders kept in queue order: by creation date and then by order id, the same ordering used by the database. Shared
+ * by the {@link KitchenQueue}, the {@link KitchenBoard} and the {@link OrderStatusCounters}, each storing its own
+ * value for every order.
+ * <p>
+ * The orders leaving the index for good are retired: they are remembered for a while, so that the owner can drop the
+ * changes arriving after a later change of the same order.
+ * <p>
+ * The writes and the retired orders must be serialized by the owner, while the other reads are safe from any thread.
+ *
+ * @param <V> the type of the value stored for every order
+ * @author Gianluca Sabato
+ */
+class KitchenIndex<V> {
+    private static final Comparator<Key> KEY_COMPARATOR = Comparator.comparing(Key::createdDate)
+            .thenComparing(Key::orderId, KitchenIndex::compareUnsigned);
+    /**
+     * Greater than every order without a creation date, which sorts first.
+     */
+    private static final Key LAST_UNDATED = new Key(LocalDateTime.MIN, new UUID(-1L, -1L));
+    /**
+     * The late changes arrive moments after the later ones, so only the orders retired last are remembered.
+     */
+    private static final int MAX_RETIRED = 10_000;
+
+    private final ConcurrentSkipListMap<Key, V> orders = new ConcurrentSkipListMap<>(KEY_COMPARATOR);
+    private final Map<UUID, Key> keys = new ConcurrentHashMap<>();
+    private final Set<UUID> retired = Collections.newSetFromMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, Boolean> eldest) {
+            return size() > MAX_RETIRED;
+        }
+    });
+
+    /**
+     * Load the orders with the given statuses from the database.
+     *
+     * @param orderRepository     the order repository
+     * @param orderStatusRegistry the order status registry
+     * @param value               the value stored for every order
+     * @param statuses            the statuses of the loaded orders
+     * @param <V>                 the type of the value stored for every order
+     * @return the loaded index
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * @author Gianluca Sabato
+     */
+    static <V> KitchenIndex<V> load(OrderRepository orderRepository, OrderStatusRegistry orderStatusRegistry,
+                                    Function<Order, V> value, String... statuses) throws ConfigurationException {
+        KitchenIndex<V> index = new KitchenIndex<>();
+
+        for (String status : statuses) {
+            List<Order> orders = orderRepository.findByOrderStatusOrderByCreatedDateAsc(
+                    orderStatusRegistry.getRequired(status));
+
+            if (orders != null) {
+                for (Order order : orders) {
+                    index.put(order.getOrderId(), order.getCreatedDate(), value.apply(order));
+                }
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Add an order, or replace it when it's already there.
+     *
+     * @param orderId     the order id
+     * @param createdDate the creation date (null sorts first)
+     * @param value       the value stored for the order
+     * @return the value replaced, if any
+     * @author Gianluca Sabato
+     */
+    Optional<V> put(UUID orderId, LocalDateTime createdDate, V value) {
+        Key key = new Key(createdDate == null ? LocalDateTime.MIN : createdDate, orderId);
+        Key previous = keys.put(orderId, key);
+        V previousValue = previous != null ? orders.remove(previous) : null;
+
+        orders.put(key, value);
+
+        return Optional.ofNullable(previousValue);
+    }
+
+    /**
+     * Remove an order.
+     *
+     * @param orderId the order id
+     * @return the value removed, if any
+     * @author Gianluca Sabato
+     */
+    Optional<V> remove(UUID orderId) {
+        Key key = keys.remove(orderId);
+
+        return key != null ? Optional.ofNullable(orders.remove(key)) : Optional.empty();
+    }
+
+    /**
+     * Remove an order for good: it can't be added again, since it will never get back the statuses of the index.
+     *
+     * @param orderId the order id
+     * @return the value removed, if any
+     * @author Gianluca Sabato
+     */
+    Optional<V> retire(UUID orderId) {
+        retired.add(orderId);
+
+        return remove(orderId);
+    }
+
+    /**
+     * Whether an order has been retired, so that its changes are late.
+     *
+     * @param orderId the order id
+     * @return true if the order has been retired
+     * @author Gianluca Sabato
+     */
+    boolean isRetired(UUID orderId) {
+        return retired.contains(orderId);
+    }
+
+    /**
+     * Remember the orders retired by the index this one replaces, removing them in case they were loaded before
+     * leaving.
+     *
+     * @param previous the replaced index
+     * @author Gianluca Sabato
+     */
+    void keepRetired(KitchenIndex<?> previous) {
+        for (UUID orderId : previous.retired) {
+            retire(orderId);
+        }
+    }
+
+    /**
+     * Whether an order is there.
+     *
+     * @param orderId the order id
+     * @return true if the order is there
+     * @author Gianluca Sabato
+     */
+    boolean contains(UUID orderId) {
+        return keys.containsKey(orderId);
+    }
+
+    /**
+     * Gets the value of the first order.
+     *
+     * @return the first value
+     * @author Gianluca Sabato
+     */
+    Optional<V> first() {
+        Map.Entry<Key, V> first = orders.firstEntry();
+
+        return first != null ? Optional.of(first.getValue()) : Optional.empty();
+    }
+
+    /**
+     * Gets the creation date of the first order having one.
+     *
+     * @return the first creation date
+     * @author Gianluca Sabato
+     */
+    Optional<LocalDateTime> firstCreatedDate() {
+        Map.Entry<Key, V> first = orders.higherEntry(LAST_UNDATED);
+
+        return first != null ? Optional.of(first.getKey().createdDate()) : Optional.empty();
+    }
+
+    /**
+     * Gets the values of all the orders, in queue order.
+     *
+     * @return the values
+     * @author Gianluca Sabato
+     */
+    List<V> values() {
+        return List.copyOf(orders.values());
+    }
+
+    /**
+     * Gets the number of orders.
+     *
+     * @return the size
+     * @author Gianluca Sabato
+     */
+    int size() {
+        return orders.size();
+    }
+
+    /**
+     * PostgreSQL compares uuid values as unsigned bytes, while {@link UUID#compareTo(UUID)} uses signed longs.
+     */
+    private static int compareUnsigned(UUID first, UUID second) {
+        int result = Long.compareUnsigned(first.getMostSignificantBits(), second.getMostSignificantBits());
+
+        return result != 0 ? result : Long.compareUnsigned(first.getLeastSignificantBits(),
+                second.getLeastSignificantBits());
+    }
+
+    private record Key(LocalDateTime createdDate, UUID orderId) {
+    }
+}
@@ -0,0 +1,203 @@
+package it.sabato.pizzeria.service;
+
+import it.sabato.pizzeria.config.OrderStatusConstants;
+import it.sabato.pizzeria.dto.OrderDTO;
+import it.sabato.pizzeria.event.OrderChangedEvent;
+import it.sabato.pizzeria.event.OrderInvalidatedEvent;
+import it.sabato.pizzeria.repositories.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.naming.ConfigurationException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory queue of the RECEVIED orders, ordered by creation date and then by order id (the same ordering used by
+ * the database). It is loaded from the database at startup and kept up to date through {@link OrderChangedEvent}s,
+ * so that the next order can be read without querying the database.
+ * <p>
+ * Callers waiting for the next order register a waiter, that is run every time an order is queued.
+ * @author Gianluca Sabato
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class KitchenQueue implements InitializingBean {
+    private final OrderRepository orderRepository;
+    private final OrderStatusRegistry orderStatusRegistry;
+    private final PizzaCatalog pizzaCatalog;
+
+    private volatile KitchenIndex<OrderDTO> queue = new KitchenIndex<>();
+    private final Set<Runnable> waiters = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void afterPropertiesSet() throws ConfigurationException {
+        reload();
+    }
+
+    /**
+     * Reload the queue from the database, discarding its current content.
+     *
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * @author Gianluca Sabato
+     */
+    public void reload() throws ConfigurationException {
+        reload(false);
+    }
+
+    /**
+     * The reload for an out of order change keeps the retired orders, since the late change is still to come.
+     */
+    private synchronized void reload(boolean keepRetired) throws ConfigurationException {
+        KitchenIndex<OrderDTO> reloadedQueue = KitchenIndex.load(orderRepository, orderStatusRegistry,
+                order -> snapshot(order.getOrderId(), pizzaCatalog.getNames(order.getPizzaIds())),
+                OrderStatusConstants.RECEVIED);
+
+        if (keepRetired) {
+            reloadedQueue.keepRetired(queue);
+        }
+        queue = reloadedQueue;
+
+        if (reloadedQueue.size() > 0) {
+            wakeWaiters();
+        }
+    }
+
+    /**
+     * Gets the oldest RECEVIED order, without removing it from the queue.
+     *
+     * @return the next order
+     * @author Gianluca Sabato
+     */
+    public Optional<OrderDTO> peek() {
+        // Callers add HATEOAS links to the returned DTO, so the queued instance is never handed out
+        return queue.first().map(orderDTO -> OrderDTO.builder().orderId(orderDTO.getOrderId())
+                .pizzas(orderDTO.getPizzas()).build());
+    }
+
+    /**
+     * Gets the creation date of the oldest RECEVIED order.
+     *
+     * @return the creation date (empty if there is no such order)
+     * @author Gianluca Sabato
+     */
+    public Optional<LocalDateTime> getOldestCreatedDate() {
+        return queue.firstCreatedDate();
+    }
+
+    /**
+     * Gets the number of queued orders.
+     *
+     * @return the queue size
+     * @author Gianluca Sabato
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * Register a waiter, run by the thread queueing an order every time an order is queued, until it's removed.
+     * Waiters must be quick, since they delay the thread committing the order.
+     *
+     * @param waiter the waiter
+     * @author Gianluca Sabato
+     */
+    public void addWaiter(Runnable waiter) {
+        waiters.add(waiter);
+    }
+
+    /**
+     * Remove a waiter.
+     *
+     * @param waiter the waiter
+     * @author Gianluca Sabato
+     */
+    public void removeWaiter(Runnable waiter) {
+        waiters.remove(waiter);
+    }
+
+    /**
+     * Apply the order changes done by the other application instances, or reload the queue when some of them may
+     * have been lost.
+     *
+     * @param event the order invalidated event
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * @author Gianluca Sabato
+     */
+    @EventListener
+    public void onOrderInvalidated(OrderInvalidatedEvent event) throws ConfigurationException {
+        if (event.isAll()) {
+            reload();
+        } else {
+            onOrderChanged(event.getChange());
+        }
+    }
+
+    /**
+     * Keep the queue in sync with the order changes, once they are committed. The listeners of two changes of the same
+     * order may run in reverse order: a change that doesn't match the queue reloads it, while a change arriving after
+     * the order left the queue is dropped, since an order never goes back to RECEVIED.
+     *
+     * @param event the order changed event
+     * @author Gianluca Sabato
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        if (apply(event)) {
+            wakeWaiters();
+        }
+    }
+
+    private synchronized boolean apply(OrderChangedEvent event) {
+        UUID orderId = event.getOrderId();
+        boolean queued = OrderStatusConstants.RECEVIED.equals(event.getStatus());
+
+        if (queue.isRetired(orderId)) {
+            return false;
+        }
+
+        boolean expected = OrderStatusConstants.RECEVIED.equals(event.getPreviousStatus()) == queue.contains(orderId);
+
+        if (!queued) {
+            queue.retire(orderId);
+        }
+
+        if (!expected) {
+            log.info("Order {} changed from {} to {} out of order, reloading the kitchen queue", orderId,
+                    event.getPreviousStatus(), event.getStatus());
+            reloadOutOfOrder();
+
+            return false;
+        }
+
+        if (queued) {
+            queue.put(orderId, event.getCreatedDate(), snapshot(orderId, event.getPizzas()));
+        }
+
+        return queued;
+    }
+
+    private void reloadOutOfOrder() {
+        try {
+            reload(true);
+        } catch (ConfigurationException e) {
+            throw new IllegalStateException("Unable to reload the kitchen queue", e);
+        }
+    }
+
+    private void wakeWaiters() {
+        for (Runnable waiter : waiters) {
+            waiter.run();
+        }
+    }
+
+    private static OrderDTO snapshot(UUID orderId, List<String> pizzas) {
+        return OrderDTO.builder().orderId(orderId).pizzas(pizzas == null ? List.of() : List.copyOf(pizzas)).build();
+    }
+}
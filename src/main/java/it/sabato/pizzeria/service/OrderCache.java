@@ -0,0 +1,119 @@
+package it.sabato.pizzeria.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import it.sabato.pizzeria.config.PizzaPlaceProperties;
+import it.sabato.pizzeria.dto.CachedOrderDTO;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Bounded, time expiring read-through cache of the orders, used by the order and order status reads. Missing orders
+ * are not cached, so orders written later (for example by the asynchronous intake) are found as soon as they exist.
+ * <p>
+ * Writers invalidate the orders they change right away and again when their transaction completes. Loads and
+ * invalidations of the same order are serialized by the cache, so a load that read the order before the commit is
+ * always followed by the invalidation, and the cache never keeps a stale order. Orders changed by other application
+ * instances are invalidated by the {@link OrderInvalidationListener}, or refreshed when they expire if the
+ * notification is lost.
+ * <p>
+ * Hits, misses and evictions are published as the "cache.*" metrics, tagged with cache=orders.
+ * @author Gianluca Sabato
+ */
+@Component
+public class OrderCache {
+    private static final String CACHE_NAME = "orders";
+
+    private final Cache<UUID, CachedOrderDTO> orders;
+
+    /**
+     * Instantiates a new Order cache.
+     *
+     * @param pizzaPlaceProperties the pizza place properties
+     * @param meterRegistry        the meter registry
+     * @author Gianluca Sabato
+     */
+    public OrderCache(PizzaPlaceProperties pizzaPlaceProperties, MeterRegistry meterRegistry) {
+        PizzaPlaceProperties.Cache cache = pizzaPlaceProperties.getCache();
+        this.orders = Caffeine.newBuilder().maximumSize(cache.getMaxSize()).expireAfterWrite(cache.getTtl())
+                .recordStats().build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, orders, CACHE_NAME);
+    }
+
+    /**
+     * Gets an order, loading it on a miss.
+     *
+     * @param orderId the order id
+     * @param loader  the order loader, called at most once at a time for the same order
+     * @return the order
+     * @author Gianluca Sabato
+     */
+    public Optional<CachedOrderDTO> get(UUID orderId, Function<UUID, Optional<CachedOrderDTO>> loader) {
+        return Optional.ofNullable(orders.get(orderId, id -> loader.apply(id).orElse(null)));
+    }
+
+    /**
+     * Gets an order only if it is cached, without loading it.
+     *
+     * @param orderId the order id
+     * @return the order (empty on a miss)
+     * @author Gianluca Sabato
+     */
+    public Optional<CachedOrderDTO> getIfPresent(UUID orderId) {
+        return Optional.ofNullable(orders.getIfPresent(orderId));
+    }
+
+    /**
+     * Gets the last modified date of an order, the source of its entity tags. It is taken from the cached order when
+     * there is one, otherwise it is read by the loader, without loading the order nor caching it.
+     *
+     * @param orderId the order id
+     * @param loader  the last modified date loader, called on a miss
+     * @return the last modified date
+     * @author Gianluca Sabato
+     */
+    public Optional<LocalDateTime> getLastModifiedDate(UUID orderId,
+                                                       Function<UUID, Optional<LocalDateTime>> loader) {
+        CachedOrderDTO cachedOrder = orders.getIfPresent(orderId);
+
+        return cachedOrder != null ? Optional.ofNullable(cachedOrder.getLastModifiedDate()) : loader.apply(orderId);
+    }
+
+    /**
+     * Invalidate all the orders.
+     *
+     * @author Gianluca Sabato
+     */
+    public void invalidateAll() {
+        orders.invalidateAll();
+    }
+
+    /**
+     * Invalidate an order. Inside a transaction it is invalidated again when the transaction completes, so that a
+     * concurrent load can't cache the order as it was before the commit.
+     *
+     * @param orderId the order id
+     * @author Gianluca Sabato
+     */
+    public void invalidate(UUID orderId) {
+        orders.invalidate(orderId);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    orders.invalidate(orderId);
+                }
+            });
+        }
+    }
+}
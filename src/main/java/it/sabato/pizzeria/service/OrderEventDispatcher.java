@@ -0,0 +1,114 @@
+package it.sabato.pizzeria.service;
+
+import it.sabato.pizzeria.config.PizzaPlaceProperties;
+import it.sabato.pizzeria.dto.OrderEventDTO;
+import it.sabato.pizzeria.event.OrderEventSink;
+import it.sabato.pizzeria.factory.OrderEventDTOFactory;
+import it.sabato.pizzeria.model.OrderEvent;
+import it.sabato.pizzeria.repositories.OrderEventRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Dispatches the order events written to the outbox by the order status changes to all the {@link OrderEventSink}s,
+ * in the background, so that the status changes pay only the outbox insert.
+ * <p>
+ * Every batch is locked, delivered and checkpointed by a single transaction. The locked events are skipped by the
+ * other dispatchers, so several application instances can dispatch together, and a batch that fails stays pending
+ * and is delivered again by the next dispatch. When no sink is configured nothing is dispatched, so the events stay
+ * pending until a sink is.
+ * @author Gianluca Sabato
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderEventDispatcher implements InitializingBean {
+    private final OrderEventRepository orderEventRepository;
+    private final List<OrderEventSink> orderEventSinks;
+    private final TransactionTemplate transactionTemplate;
+    private final PizzaPlaceProperties pizzaPlaceProperties;
+
+    @Override
+    public void afterPropertiesSet() {
+        if (pizzaPlaceProperties.getOutbox().isEnabled() && orderEventSinks.isEmpty()) {
+            log.warn("Order events outbox enabled without any sink: the order events will stay pending");
+        }
+    }
+
+    /**
+     * Dispatch the pending order events, one batch after the other, until there are no more or a batch fails.
+     *
+     * @return the number of dispatched events
+     * @author Gianluca Sabato
+     */
+    @Scheduled(fixedDelayString = "${pizzeria.outbox.dispatch-interval:PT1S}")
+    public int dispatchPendingEvents() {
+        PizzaPlaceProperties.Outbox outbox = pizzaPlaceProperties.getOutbox();
+
+        // Without sinks nobody would receive the events, so they are not checkpointed
+        if (!outbox.isEnabled() || orderEventSinks.isEmpty()) {
+            return 0;
+        }
+
+        int batchSize = Math.max(1, outbox.getBatchSize());
+        int dispatched = 0;
+        int batch;
+
+        do {
+            batch = dispatchBatch(batchSize);
+            dispatched += batch;
+        } while (batch == batchSize);
+
+        return dispatched;
+    }
+
+    /**
+     * Delete the order events dispatched before the retention.
+     *
+     * @author Gianluca Sabato
+     */
+    @Scheduled(fixedDelayString = "${pizzeria.outbox.cleanup-interval:PT1H}")
+    public void deleteDispatchedEvents() {
+        LocalDateTime expiration = LocalDateTime.now().minus(pizzaPlaceProperties.getOutbox().getRetention());
+        int deleted = orderEventRepository.deleteByDispatchedDateBefore(expiration);
+
+        log.debug("Deleted {} dispatched order events", deleted);
+    }
+
+    private int dispatchBatch(int batchSize) {
+        try {
+            Integer dispatched = transactionTemplate.execute(status -> {
+                List<OrderEvent> orderEvents = orderEventRepository.lockPendingEvents(batchSize);
+
+                if (orderEvents.isEmpty()) {
+                    return 0;
+                }
+
+                List<OrderEventDTO> events = orderEvents.stream().map(OrderEventDTOFactory::getOrderEventDTO)
+                        .toList();
+
+                for (OrderEventSink orderEventSink : orderEventSinks) {
+                    orderEventSink.deliver(events);
+                }
+
+                orderEventRepository.markDispatched(orderEvents.stream().map(OrderEvent::getEventId).toList(),
+                        LocalDateTime.now());
+
+                return orderEvents.size();
+            });
+
+            return dispatched != null ? dispatched : 0;
+        } catch (RuntimeException e) {
+            log.warn("Order event dispatch failed, the events will be delivered again", e);
+
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package it.sabato.pizzeria.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import it.sabato.pizzeria.config.PizzaPlaceProperties;
+import it.sabato.pizzeria.dto.OrderExportDTO;
+import it.sabato.pizzeria.dto.OrderSummaryDTO;
+import it.sabato.pizzeria.factory.OrderExportDTOFactory;
+import it.sabato.pizzeria.repositories.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * The type Order export service. It writes all the orders as newline delimited JSON, reading them as projections
+ * through a database cursor, so that memory use doesn't grow with the number of orders. Every chunk of
+ * {@code pizzeria.orders.export-chunk-size} orders is read by one round trip and flushed to the response.
+ * @author Gianluca Sabato
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderExportService {
+    private final OrderRepository orderRepository;
+    private final ObjectMapper objectMapper;
+    private final PizzaCatalog pizzaCatalog;
+    private final PizzaPlaceProperties pizzaPlaceProperties;
+
+    /**
+     * Write all the orders to the given stream, one {@link OrderExportDTO} JSON document per line.
+     *
+     * @param outputStream the output stream (it's flushed, not closed)
+     * @return the number of exported orders
+     * @throws IOException the io exception
+     * @author Gianluca Sabato
+     */
+    @Transactional(readOnly = true)
+    public long exportOrders(OutputStream outputStream) throws IOException {
+        int chunkSize = Math.max(1, pizzaPlaceProperties.getOrders().getExportChunkSize());
+        ObjectWriter writer = objectMapper.writerFor(OrderExportDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        long count = 0;
+
+        try (Stream<OrderSummaryDTO> orders = orderRepository.streamAllForExport(chunkSize);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            Iterator<OrderSummaryDTO> iterator = orders.iterator();
+
+            while (iterator.hasNext()) {
+                writer.writeValue(generator, OrderExportDTOFactory.getOrderExportDTO(iterator.next(), pizzaCatalog));
+                generator.writeRaw('\n');
+
+                if (++count % chunkSize == 0) {
+                    generator.flush();
+                }
+            }
+
+            generator.flush();
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,146 @@
+package it.sabato.pizzeria.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import it.sabato.pizzeria.config.PizzaPlaceProperties;
+import it.sabato.pizzeria.dto.IdempotentOrderDTO;
+import it.sabato.pizzeria.dto.OrderDTO;
+import it.sabato.pizzeria.repositories.IdempotencyKeyRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import javax.naming.ConfigurationException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Idempotency-Key support for the order creation. The keys seen recently are kept in a bounded, time expiring
+ * in-memory cache, so replays are answered without touching the database, and concurrent requests with the same key
+ * wait for the first one instead of racing it. Every key is also stored in the idempotency_keys table, together with
+ * its order, so that replays are recognized after a restart and across application instances.
+ * @author Gianluca Sabato
+ */
+@Slf4j
+@Service
+public class OrderIdempotencyService {
+    private final OrderService orderService;
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final PizzaPlaceProperties pizzaPlaceProperties;
+    /**
+     * The requests by idempotency key. A request still being written is an uncompleted future, and a future completed
+     * with null means that the request didn't create an order, so the key is looked up again.
+     */
+    private final Cache<String, CompletableFuture<IdempotentRequest>> requests;
+
+    /**
+     * Instantiates a new Order idempotency service.
+     *
+     * @param orderService             the order service
+     * @param idempotencyKeyRepository the idempotency key repository
+     * @param pizzaPlaceProperties     the pizza place properties
+     * @author Gianluca Sabato
+     */
+    public OrderIdempotencyService(OrderService orderService, IdempotencyKeyRepository idempotencyKeyRepository,
+                                   PizzaPlaceProperties pizzaPlaceProperties) {
+        this.orderService = orderService;
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.pizzaPlaceProperties = pizzaPlaceProperties;
+
+        PizzaPlaceProperties.Idempotency idempotency = pizzaPlaceProperties.getIdempotency();
+        this.requests = Caffeine.newBuilder().maximumSize(idempotency.getCacheSize())
+                .expireAfterWrite(idempotency.getTtl()).build();
+    }
+
+    /**
+     * Create an order only once for the given idempotency key. Repeating a request returns the order it created,
+     * without writing it again.
+     *
+     * @param idempotencyKey the idempotency key
+     * @param orderRequest   the order request
+     * @return the outcome, with the order created for the key
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * @author Gianluca Sabato
+     */
+    public IdempotentOrderDTO createOrder(String idempotencyKey, OrderDTO orderRequest)
+            throws ConfigurationException {
+        String requestHash = getRequestHash(orderRequest);
+        ConcurrentMap<String, CompletableFuture<IdempotentRequest>> requestsMap = requests.asMap();
+
+        while (true) {
+            CompletableFuture<IdempotentRequest> request = new CompletableFuture<>();
+            CompletableFuture<IdempotentRequest> previousRequest = requestsMap.putIfAbsent(idempotencyKey, request);
+
+            if (previousRequest != null) {
+                IdempotentRequest previous = previousRequest.join();
+
+                if (previous != null) {
+                    return previous.getIdempotentOrder(requestHash);
+                }
+
+                // The previous request has been removed, so the next attempt either claims the key or waits for
+                // another request
+                continue;
+            }
+
+            IdempotentOrderDTO idempotentOrder = null;
+
+            try {
+                idempotentOrder = orderService.createOrder(orderRequest, idempotencyKey, requestHash);
+
+                return idempotentOrder;
+            } finally {
+                if (idempotentOrder == null || idempotentOrder.getOutcome() == IdempotentOrderDTO.Outcome.MISMATCH) {
+                    // Only the database knows the request of this key
+                    requestsMap.remove(idempotencyKey, request);
+                    request.complete(null);
+                } else {
+                    OrderDTO orderDTO = idempotentOrder.getOrder();
+                    request.complete(new IdempotentRequest(requestHash, orderDTO.getOrderId(),
+                            List.copyOf(orderDTO.getPizzas())));
+                }
+            }
+        }
+    }
+
+    /**
+     * Delete the expired idempotency keys from the database.
+     *
+     * @author Gianluca Sabato
+     */
+    @Scheduled(fixedDelayString = "${pizzeria.idempotency.cleanup-interval:PT1H}")
+    public void deleteExpiredKeys() {
+        LocalDateTime expiration = LocalDateTime.now().minus(pizzaPlaceProperties.getIdempotency().getTtl());
+        int deleted = idempotencyKeyRepository.deleteByCreatedDateBefore(expiration);
+
+        log.debug("Deleted {} expired idempotency keys", deleted);
+    }
+
+    /**
+     * Gets the hash of an order request, used to tell a replay from a different request reusing the same key.
+     */
+    private static String getRequestHash(OrderDTO orderRequest) {
+        StringBuilder content = new StringBuilder();
+        orderRequest.getPizzas().forEach(p -> content.append(p).append('\n'));
+
+        return DigestUtils.md5DigestAsHex(content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private record IdempotentRequest(String requestHash, UUID orderId, List<String> pizzas) {
+        private IdempotentOrderDTO getIdempotentOrder(String otherRequestHash) {
+            if (!requestHash.equals(otherRequestHash)) {
+                return IdempotentOrderDTO.builder().outcome(IdempotentOrderDTO.Outcome.MISMATCH).build();
+            }
+
+            // Callers add HATEOAS links to the returned DTO, so a new instance is handed out every time
+            OrderDTO orderDTO = OrderDTO.builder().orderId(orderId).pizzas(pizzas).build();
+
+            return IdempotentOrderDTO.builder().order(orderDTO).outcome(IdempotentOrderDTO.Outcome.REPLAYED).build();
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package it.sabato.pizzeria.service;
+
+import it.sabato.pizzeria.config.OrderStatusConstants;
+import it.sabato.pizzeria.config.PizzaPlaceProperties;
+import it.sabato.pizzeria.dto.OrderDTO;
+import it.sabato.pizzeria.factory.OrderChangedEventFactory;
+import it.sabato.pizzeria.factory.OrderDTOFactory;
+import it.sabato.pizzeria.factory.UUIDFactory;
+import it.sabato.pizzeria.model.Order;
+import it.sabato.pizzeria.repositories.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.naming.ConfigurationException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous order intake. Accepted orders get a time ordered id and wait inside a bounded buffer, and a single
+ * writer thread inserts them with group commits: a commit is done when {@code pizzeria.intake.batch-size} orders are
+ * waiting, or {@code pizzeria.intake.flush-interval} after the first one.
+ * <p>
+ * When the buffer is full new orders are refused, so that callers can back off. Transient database errors are
+ * retried, a group commit refused by the database is split until only the refused orders are left out, and at
+ * shutdown, or when the writer is interrupted, the buffer is drained for up to
+ * {@code pizzeria.intake.shutdown-timeout}. So an accepted order is lost only by a crash (at most
+ * {@code pizzeria.intake.capacity} orders), when the shutdown drain times out, or when the database refuses it for
+ * good.
+ * <p>
+ * The intake starts only when {@code pizzeria.intake.enabled} is set.
+ * @author Gianluca Sabato
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderIntake implements SmartLifecycle {
+    /**
+     * Lower than the web server phases, so that the intake stops after the web server has stopped taking requests.
+     */
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 2048;
+    private static final long RETRY_INTERVAL_MILLIS = 100;
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final OrderRepository orderRepository;
+    private final OrderStatusRegistry orderStatusRegistry;
+    private final PizzaCatalog pizzaCatalog;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final PizzaPlaceProperties pizzaPlaceProperties;
+
+    private final Map<UUID, Order> pendingOrders = new ConcurrentHashMap<>();
+    private volatile BlockingQueue<Order> buffer;
+    private volatile boolean running;
+    private volatile long shutdownDeadline;
+    private Thread writer;
+
+    /**
+     * Accept an order, to be written asynchronously.
+     *
+     * @param orderRequest the order request
+     * @return the accepted order, with its id (empty if the intake is full or stopped)
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * @author Gianluca Sabato
+     */
+    public Optional<OrderDTO> submit(OrderDTO orderRequest) throws ConfigurationException {
+        BlockingQueue<Order> currentBuffer = buffer;
+
+        if (!running || currentBuffer == null) {
+            return Optional.empty();
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Order order = new Order();
+        order.setOrderId(UUIDFactory.getTimeOrderedUUID());
+        order.setPizzaIds(pizzaCatalog.getPizzaIds(orderRequest.getPizzas()));
+        order.setOrderStatus(orderStatusRegistry.getRequired(OrderStatusConstants.RECEVIED));
+        order.setCreatedDate(now);
+        order.setLastModifiedDate(now);
+
+        pendingOrders.put(order.getOrderId(), order);
+
+        if (!currentBuffer.offer(order)) {
+            pendingOrders.remove(order.getOrderId());
+
+            return Optional.empty();
+        }
+
+        // The writer exits only once the buffer is empty, so an order offered while stopping is either taken by the
+        // writer or still inside the buffer
+        if (!running && currentBuffer.remove(order)) {
+            pendingOrders.remove(order.getOrderId());
+
+            return Optional.empty();
+        }
+
+        return Optional.of(OrderDTOFactory.getOrderDTO(order, pizzaCatalog));
+    }
+
+    /**
+     * Gets an accepted order that has not been written yet.
+     *
+     * @param orderId the order id
+     * @return the pending order
+     * @author Gianluca Sabato
+     */
+    public Optional<OrderDTO> getPendingOrder(UUID orderId) {
+        return Optional.ofNullable(pendingOrders.get(orderId)).map(order -> OrderDTOFactory.getOrderDTO(order,
+                pizzaCatalog));
+    }
+
+    /**
+     * Gets the number of accepted orders that have not been written yet.
+     *
+     * @return the pending orders count
+     * @author Gianluca Sabato
+     */
+    public int getPendingOrdersCount() {
+        return pendingOrders.size();
+    }
+
+    @Override
+    public synchronized void start() {
+        // Without the intake POST /orders writes synchronously, so neither the buffer nor the writer are needed
+        if (running || !pizzaPlaceProperties.getIntake().isEnabled()) {
+            return;
+        }
+
+        buffer = new ArrayBlockingQueue<>(pizzaPlaceProperties.getIntake().getCapacity());
+        running = true;
+        writer = new Thread(this::write, "order-intake-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+
+        Duration shutdownTimeout = pizzaPlaceProperties.getIntake().getShutdownTimeout();
+        shutdownDeadline = System.nanoTime() + shutdownTimeout.toNanos();
+        running = false;
+
+        try {
+            writer.join(shutdownTimeout.toMillis() + IDLE_POLL_MILLIS + RETRY_INTERVAL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (writer.isAlive() || !buffer.isEmpty()) {
+            log.error("Order intake stopped with {} orders not written", pendingOrders.size());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    private void write() {
+        PizzaPlaceProperties.Intake intake = pizzaPlaceProperties.getIntake();
+        int batchSize = Math.max(1, intake.getBatchSize());
+        long flushIntervalNanos = intake.getFlushInterval().toNanos();
+        List<Order> batch = new ArrayList<>(batchSize);
+
+        while (running || !buffer.isEmpty()) {
+            try {
+                Order first = buffer.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+
+                while (batch.size() < batchSize) {
+                    buffer.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+
+                    if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                        break;
+                    }
+
+                    Order next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+
+                    if (next == null) {
+                        break;
+                    }
+
+                    batch.add(next);
+                }
+
+                flush(batch);
+                batch = new ArrayList<>(batchSize);
+            } catch (InterruptedException e) {
+                // Handled as a stop: no more orders are accepted, and the ones already accepted are still written
+                log.warn("Order intake writer interrupted, writing {} accepted orders", pendingOrders.size());
+                shutdownDeadline = System.nanoTime() + intake.getShutdownTimeout().toNanos();
+                running = false;
+                drain(batch, batchSize);
+                Thread.currentThread().interrupt();
+
+                return;
+            }
+        }
+    }
+
+    private void drain(List<Order> batch, int batchSize) {
+        buffer.drainTo(batch, batchSize - batch.size());
+
+        try {
+            while (!batch.isEmpty()) {
+                flush(batch);
+                batch = new ArrayList<>(batchSize);
+                buffer.drainTo(batch, batchSize);
+            }
+        } catch (InterruptedException e) {
+            log.error("Order intake writer interrupted with {} orders not written", pendingOrders.size());
+        }
+    }
+
+    private void flush(List<Order> batch) throws InterruptedException {
+        while (true) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> orderRepository.insertOrders(batch));
+                break;
+            } catch (NonTransientDataAccessException e) {
+                if (batch.size() > 1) {
+                    // The orders refused are found by halves, so that the rest of the group commit is still written
+                    int half = batch.size() / 2;
+                    flush(batch.subList(0, half));
+                    flush(batch.subList(half, batch.size()));
+
+                    return;
+                }
+
+                log.error("Order intake dropped order {} refused by the database", batch.get(0).getOrderId(), e);
+                pendingOrders.remove(batch.get(0).getOrderId());
+
+                return;
+            } catch (RuntimeException e) {
+                if (!running && System.nanoTime() - shutdownDeadline > 0) {
+                    log.error("Order intake dropped {} orders at shutdown", batch.size(), e);
+                    batch.forEach(o -> pendingOrders.remove(o.getOrderId()));
+
+                    return;
+                }
+
+                log.warn("Order intake failed to write {} orders, retrying", batch.size(), e);
+                Thread.sleep(RETRY_INTERVAL_MILLIS);
+            }
+        }
+
+        for (Order order : batch) {
+            eventPublisher.publishEvent(OrderChangedEventFactory.getOrderChangedEvent(order, null, pizzaCatalog));
+            pendingOrders.remove(order.getOrderId());
+        }
+    }
+}
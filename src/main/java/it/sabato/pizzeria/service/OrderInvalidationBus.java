@@ -0,0 +1,140 @@
+package it.sabato.pizzeria.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.sabato.pizzeria.config.PizzaPlaceProperties;
+import it.sabato.pizzeria.dto.OrderNotificationDTO;
+import it.sabato.pizzeria.event.OrderChangedEvent;
+import it.sabato.pizzeria.factory.OrderNotificationDTOFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Notifies the order changes to all the application instances, through PostgreSQL notifications carrying an
+ * {@link OrderNotificationDTO}. The notifications of a transaction are sent together just before its commit, so they
+ * are delivered by the commit and dropped by a rollback, and the other instances never see a change before it is
+ * written. The notifications are received by the {@link OrderInvalidationListener} of every instance, which skips
+ * the ones sent by its own instance.
+ * @author Gianluca Sabato
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderInvalidationBus {
+    private static final String NOTIFY_QUERY = "select pg_notify(?, payload) from unnest(cast(? as text[])) payload";
+    /**
+     * PostgreSQL refuses the notification payloads of 8000 bytes or longer.
+     */
+    private static final int MAX_PAYLOAD_BYTES = 7999;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PizzaPlaceProperties pizzaPlaceProperties;
+    private final PizzaCatalog pizzaCatalog;
+    private final ObjectMapper objectMapper;
+
+    private final UUID instanceId = UUID.randomUUID();
+
+    /**
+     * Gets the id of this application instance, carried by the notifications it sends.
+     *
+     * @return the instance id
+     * @author Gianluca Sabato
+     */
+    public UUID getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * Notify an order change, by the commit of the current transaction if there is one, or right away.
+     *
+     * @param event the order changed event
+     * @author Gianluca Sabato
+     */
+    @EventListener
+    public void onOrderChanged(OrderChangedEvent event) {
+        PizzaPlaceProperties.Invalidation invalidation = pizzaPlaceProperties.getInvalidation();
+
+        if (!invalidation.isEnabled()) {
+            return;
+        }
+
+        String payload = getPayload(event);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            getPendingPayloads().add(payload);
+        } else {
+            send(List.of(payload));
+        }
+    }
+
+    private String getPayload(OrderChangedEvent event) {
+        OrderNotificationDTO notification;
+
+        try {
+            notification = OrderNotificationDTOFactory.getOrderNotificationDTO(instanceId, event, pizzaCatalog);
+        } catch (IllegalArgumentException e) {
+            // A pizza dropped from the menu meanwhile: the other instances read the pizzas of the order instead
+            notification = OrderNotificationDTOFactory.getOrderNotificationDTO(instanceId,
+                    OrderChangedEvent.builder().orderId(event.getOrderId()).createdDate(event.getCreatedDate())
+                            .previousStatus(event.getPreviousStatus()).status(event.getStatus()).build(),
+                    pizzaCatalog);
+        }
+
+        String payload = write(notification);
+
+        if (payload.getBytes(StandardCharsets.UTF_8).length > MAX_PAYLOAD_BYTES) {
+            notification.setPizzaIds(null);
+            payload = write(notification);
+        }
+
+        return payload;
+    }
+
+    private String write(OrderNotificationDTO notification) {
+        try {
+            return objectMapper.writeValueAsString(notification);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to write the notification of order " +
+                    notification.getOrderId(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> getPendingPayloads() {
+        List<String> pendingPayloads = (List<String>) TransactionSynchronizationManager.getResource(this);
+
+        if (pendingPayloads == null) {
+            List<String> payloads = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, payloads);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    send(payloads);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(OrderInvalidationBus.this);
+                }
+            });
+            pendingPayloads = payloads;
+        }
+
+        return pendingPayloads;
+    }
+
+    private void send(List<String> payloads) {
+        if (!payloads.isEmpty()) {
+            jdbcTemplate.queryForList(NOTIFY_QUERY, pizzaPlaceProperties.getInvalidation().getChannel(),
+                    payloads.toArray(new String[0]));
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package it.sabato.pizzeria.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.sabato.pizzeria.config.PizzaPlaceProperties;
+import it.sabato.pizzeria.dto.OrderNotificationDTO;
+import it.sabato.pizzeria.event.OrderInvalidatedEvent;
+import it.sabato.pizzeria.factory.OrderChangedEventFactory;
+import it.sabato.pizzeria.model.Order;
+import it.sabato.pizzeria.repositories.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Receives the order notifications sent by the {@link OrderInvalidationBus} of the other application instances,
+ * invalidates the notified orders inside the local {@link OrderCache}, and publishes an {@link OrderInvalidatedEvent}
+ * carrying each change, so that the in-memory views apply it.
+ * <p>
+ * It listens on a dedicated connection, outside the connection pool, since a listening connection is never given
+ * back. Notifications sent while the connection is down are lost, so the whole cache is invalidated, and an
+ * {@link OrderInvalidatedEvent} for all the orders is published, every time the listener connects.
+ * @author Gianluca Sabato
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderInvalidationListener implements SmartLifecycle {
+    /**
+     * Same phase of the order intake: it starts before the web server takes requests.
+     */
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 2048;
+    private static final long STOP_MARGIN_MILLIS = 1000;
+
+    private final JdbcConnectionDetails jdbcConnectionDetails;
+    private final OrderCache orderCache;
+    private final OrderInvalidationBus orderInvalidationBus;
+    private final OrderRepository orderRepository;
+    private final PizzaCatalog pizzaCatalog;
+    private final ObjectMapper objectMapper;
+    private final PizzaPlaceProperties pizzaPlaceProperties;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private volatile boolean running;
+    private volatile boolean listening;
+    private Thread listener;
+
+    /**
+     * Whether the listener is connected and listening. Until then, the changes done by other instances are noticed
+     * only when the cached orders expire.
+     *
+     * @return true if listening
+     * @author Gianluca Sabato
+     */
+    public boolean isListening() {
+        return listening;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running || !pizzaPlaceProperties.getInvalidation().isEnabled()) {
+            return;
+        }
+
+        running = true;
+        listener = new Thread(this::listen, "order-invalidation-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+
+        running = false;
+
+        try {
+            listener.join(pizzaPlaceProperties.getInvalidation().getPollTimeout().toMillis() + STOP_MARGIN_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    private void listen() {
+        PizzaPlaceProperties.Invalidation invalidation = pizzaPlaceProperties.getInvalidation();
+        int pollTimeoutMillis = (int) Math.max(1, invalidation.getPollTimeout().toMillis());
+
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(jdbcConnectionDetails.getJdbcUrl(),
+                    jdbcConnectionDetails.getUsername(), jdbcConnectionDetails.getPassword());
+                 Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN \"" + invalidation.getChannel().replace("\"", "\"\"") + "\"");
+                orderCache.invalidateAll();
+                publish(new OrderInvalidatedEvent(null));
+                listening = true;
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(pollTimeoutMillis);
+
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            invalidate(notification);
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (running) {
+                    log.warn("Order invalidation listener disconnected, connecting again", e);
+                    sleep(invalidation.getReconnectDelay().toMillis());
+                }
+            } finally {
+                listening = false;
+            }
+        }
+    }
+
+    private void invalidate(PGNotification notification) {
+        OrderNotificationDTO orderNotification = read(notification);
+
+        if (orderNotification == null || orderNotification.getOrderId() == null) {
+            log.warn("Order invalidation listener ignored the notification {}", notification.getParameter());
+
+            return;
+        }
+
+        if (orderInvalidationBus.getInstanceId().equals(orderNotification.getInstanceId())) {
+            return;
+        }
+
+        orderCache.invalidate(orderNotification.getOrderId());
+
+        List<String> pizzas;
+
+        try {
+            // The pizzas too many for a notification are read from the order
+            List<Integer> pizzaIds = orderNotification.getPizzaIds() != null ? orderNotification.getPizzaIds()
+                    : orderRepository.findById(orderNotification.getOrderId()).map(Order::getPizzaIds).orElse(null);
+            pizzas = pizzaCatalog.getNames(pizzaIds);
+        } catch (RuntimeException e) {
+            log.warn("Order invalidation listener failed to read the pizzas of order {}",
+                    orderNotification.getOrderId(), e);
+
+            return;
+        }
+
+        publish(new OrderInvalidatedEvent(OrderChangedEventFactory.getOrderChangedEvent(orderNotification, pizzas)));
+    }
+
+    private OrderNotificationDTO read(PGNotification notification) {
+        try {
+            return objectMapper.readValue(notification.getParameter(), OrderNotificationDTO.class);
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private void publish(OrderInvalidatedEvent event) {
+        try {
+            eventPublisher.publishEvent(event);
+        } catch (RuntimeException e) {
+            // A failing view must not stop the notifications to the other ones
+            log.warn("Order invalidation listener failed to apply a notification", e);
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
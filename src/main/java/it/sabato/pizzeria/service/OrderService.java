@@ -1,20 +1,55 @@
 package it.sabato.pizzeria.service;
 
 import it.sabato.pizzeria.config.OrderStatusConstants;
+import it.sabato.pizzeria.config.PizzaPlaceProperties;
+import it.sabato.pizzeria.dto.CachedOrderDTO;
+import it.sabato.pizzeria.dto.IdempotentOrderDTO;
+import it.sabato.pizzeria.dto.KitchenBoardDTO;
+import it.sabato.pizzeria.dto.OrderBatchItemDTO;
+import it.sabato.pizzeria.dto.OrderCursor;
 import it.sabato.pizzeria.dto.OrderDTO;
-import it.sabato.pizzeria.dto.OrderStatusDTO;
+import it.sabato.pizzeria.dto.OrderListItemDTO;
+import it.sabato.pizzeria.dto.OrderPageDTO;
+import it.sabato.pizzeria.dto.OrderSearchDTO;
+import it.sabato.pizzeria.dto.OrderStatusUpdateDTO;
+import it.sabato.pizzeria.event.OrderChangedEvent;
+import it.sabato.pizzeria.factory.CachedOrderDTOFactory;
+import it.sabato.pizzeria.factory.ETagFactory;
+import it.sabato.pizzeria.factory.OrderChangedEventFactory;
 import it.sabato.pizzeria.factory.OrderDTOFactory;
+import it.sabato.pizzeria.factory.OrderEventFactory;
+import it.sabato.pizzeria.factory.OrderStatusDTOFactory;
+import it.sabato.pizzeria.model.IdempotencyKey;
 import it.sabato.pizzeria.model.Order;
 import it.sabato.pizzeria.model.OrderStatus;
+import it.sabato.pizzeria.model.OrderTransition;
+import it.sabato.pizzeria.model.Pizza;
+import it.sabato.pizzeria.repositories.IdempotencyKeyRepository;
+import it.sabato.pizzeria.repositories.OrderEventRepository;
 import it.sabato.pizzeria.repositories.OrderRepository;
-import it.sabato.pizzeria.repositories.OrderStatusRepository;
+import it.sabato.pizzeria.repositories.OrderSpecifications;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.naming.ConfigurationException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 
 /**
  * The type Order service.
@@ -27,106 +62,186 @@ public class OrderService {
      * The constant WRONG_CONFIGURATION_MESSAGE.
      */
     public final static String WRONG_CONFIGURATION_MESSAGE = "Missing or wrong configuration data";
+    private static final Sort ASCENDING_ORDER = Sort.by(Sort.Direction.ASC, "createdDate", "orderId");
+    private static final Sort DESCENDING_ORDER = Sort.by(Sort.Direction.DESC, "createdDate", "orderId");
     private final OrderRepository orderRepository;
-    private final OrderStatusRepository orderStatusRepository;
+    private final OrderStatusRegistry orderStatusRegistry;
+    private final PizzaCatalog pizzaCatalog;
+    private final KitchenQueue kitchenQueue;
+    private final KitchenBoard kitchenBoard;
+    private final OrderCache orderCache;
+    private final OrderEventRepository orderEventRepository;
+    private final OrderIntake orderIntake;
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final TransactionRetry transactionRetry;
+    private final OrderStateMachine orderStateMachine;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PizzaPlaceProperties pizzaPlaceProperties;
+    private final Validator validator;
 
     /**
-     * Gets orders.
+     * Gets a page of orders, using keyset pagination on (createdDate, orderId). When both cursors are null the first
+     * page is returned. The orders are read as {@link OrderListItemDTO} projections, without loading the entities.
      *
-     * @return the orders
+     * @param after  the cursor the page starts after (it can be null)
+     * @param before the cursor the page ends before (it can be null, it's ignored when after is set)
+     * @param size   the requested page size (null for the default one)
+     * @return the orders page
      * @author Gianluca Sabato
      */
-    public List<OrderDTO> getOrders() {
-        List<Order> orders = orderRepository.findAll();
+    public OrderPageDTO getOrders(OrderCursor after, OrderCursor before, Integer size) {
+        return getOrderPage(after, before, size, (cursor, limit) -> cursor == null ?
+                        orderRepository.findFirstPage(limit) :
+                        orderRepository.findPageAfter(cursor.getCreatedDate(), cursor.getOrderId(), limit),
+                (cursor, limit) -> orderRepository.findPageBefore(cursor.getCreatedDate(), cursor.getOrderId(), limit));
+    }
+
+    /**
+     * Search a page of the orders matching all the given filters, using the same keyset pagination on (createdDate,
+     * orderId) as {@link #getOrders(OrderCursor, OrderCursor, Integer)}. The orders are read as
+     * {@link OrderListItemDTO} projections, without loading the entities.
+     *
+     * @param orderSearch the search filters
+     * @param after       the cursor the page starts after (it can be null)
+     * @param before      the cursor the page ends before (it can be null, it's ignored when after is set)
+     * @return the orders page
+     * @author Gianluca Sabato
+     */
+    public OrderPageDTO searchOrders(OrderSearchDTO orderSearch, OrderCursor after, OrderCursor before) {
+        List<Specification<Order>> specifications = new ArrayList<>();
+
+        if (orderSearch.getStatus() != null) {
+            Optional<OrderStatus> orderStatusOptional = orderStatusRegistry.findByStatus(orderSearch.getStatus());
+
+            if (orderStatusOptional.isEmpty()) {
+                return OrderPageDTO.builder().orders(List.of()).build();
+            }
+
+            specifications.add(OrderSpecifications.hasOrderStatus(orderStatusOptional.get().getOrderStatusId()));
+        }
+
+        if (orderSearch.getCreatedFrom() != null || orderSearch.getCreatedTo() != null) {
+            specifications.add(OrderSpecifications.createdBetween(orderSearch.getCreatedFrom(),
+                    orderSearch.getCreatedTo()));
+        }
+
+        if (orderSearch.getLastModifiedFrom() != null || orderSearch.getLastModifiedTo() != null) {
+            specifications.add(OrderSpecifications.lastModifiedBetween(orderSearch.getLastModifiedFrom(),
+                    orderSearch.getLastModifiedTo()));
+        }
+
+        if (orderSearch.getPizza() != null) {
+            Optional<Pizza> pizzaOptional = pizzaCatalog.findByName(orderSearch.getPizza());
 
-        return orders.stream().map(OrderDTOFactory::getOrderDTO).toList();
+            if (pizzaOptional.isEmpty()) {
+                return OrderPageDTO.builder().orders(List.of()).build();
+            }
+
+            specifications.add(OrderSpecifications.containsPizza(pizzaOptional.get().getPizzaId()));
+        }
+
+        Specification<Order> specification = Specification.allOf(specifications);
+
+        return getOrderPage(after, before, orderSearch.getSize(), (cursor, limit) -> orderRepository.findListItems(
+                        cursor == null ? specification : specification.and(OrderSpecifications.follows(
+                                cursor.getCreatedDate(), cursor.getOrderId())), ASCENDING_ORDER, limit),
+                (cursor, limit) -> orderRepository.findListItems(specification.and(OrderSpecifications.precedes(
+                        cursor.getCreatedDate(), cursor.getOrderId())), DESCENDING_ORDER, limit));
     }
 
     /**
-     * Gets next order.
+     * Gets next order. It is served by the in-memory {@link KitchenQueue}, without querying the database.
      *
      * @return the next order
      * @throws ConfigurationException the configuration exception (missing database configuration values)
      * @author Gianluca Sabato
      */
     public Optional<OrderDTO> getNextOrder() throws ConfigurationException {
-        Optional<OrderDTO> nextOrderOptional = Optional.empty();
-        List<OrderStatus> statuses = orderStatusRepository.findByStatus(OrderStatusConstants.RECEVIED);
-
-        if (statuses != null && statuses.size() == 1) {
-            OrderStatus received = statuses.get(0);
-            List<Order> orders = orderRepository.findByOrderStatusOrderByCreatedDateAsc(received);
+        return kitchenQueue.peek();
+    }
 
-            if (orders != null && !orders.isEmpty()) {
-                Order order = orders.get(0);
-                OrderDTO nextOrder = OrderDTOFactory.getOrderDTO(order);
+    /**
+     * Wait for the next order. The result is completed as soon as an order is queued by the {@link KitchenQueue},
+     * or with no order once the wait is over. No thread is blocked meanwhile, and the database is never queried.
+     *
+     * @param wait the longest wait
+     * @return the next order (empty if no order is queued within the wait)
+     * @author Gianluca Sabato
+     */
+    public CompletableFuture<Optional<OrderDTO>> getNextOrder(Duration wait) {
+        Optional<OrderDTO> nextOrderOptional = kitchenQueue.peek();
 
-                nextOrderOptional = Optional.of(nextOrder);
-            }
-        } else {
-            throw new ConfigurationException(WRONG_CONFIGURATION_MESSAGE);
+        if (nextOrderOptional.isPresent() || wait.isZero() || wait.isNegative()) {
+            return CompletableFuture.completedFuture(nextOrderOptional);
         }
 
-        return nextOrderOptional;
+        CompletableFuture<Optional<OrderDTO>> nextOrder = new CompletableFuture<>();
+        Runnable waiter = () -> kitchenQueue.peek().ifPresent(o -> nextOrder.complete(Optional.of(o)));
+
+        kitchenQueue.addWaiter(waiter);
+        nextOrder.whenComplete((o, e) -> kitchenQueue.removeWaiter(waiter));
+        nextOrder.completeOnTimeout(Optional.empty(), wait.toMillis(), TimeUnit.MILLISECONDS);
+        // An order queued before the waiter was registered
+        waiter.run();
+
+        return nextOrder;
+    }
+
+    /**
+     * Gets the kitchen board, served by the in-memory {@link KitchenBoard} without querying the database.
+     *
+     * @param since the board version the client has (null for the whole board)
+     * @param epoch the epoch of the board version the client has
+     * @return the board, or its changes since the version
+     * @author Gianluca Sabato
+     */
+    public KitchenBoardDTO getKitchenBoard(Long since, UUID epoch) {
+        return kitchenBoard.getBoard(since, epoch);
     }
 
     /**
      * Update the status of the current order (from PROCESSING to CLOSED) and then retrieve the next order to be
      * processed updating its status (from RECEIVED to PROCESSING).
+     * Both orders are claimed and updated by a single statement that skips the rows locked by concurrent callers,
+     * so that two kitchen stations never get the same order. The transaction is retried, with a jittered backoff, when
+     * it fails because of concurrent updates.
      *
      * @return the optional
      * @throws ConfigurationException the configuration exception (missing database configuration values)
      * @author Gianluca Sabato
      */
     public Optional<OrderDTO> updateNextOrder() throws ConfigurationException {
-        Optional<OrderDTO> nextOrderOptional = Optional.empty();
-        List<OrderStatus> statuses = orderStatusRepository.findByStatus(OrderStatusConstants.RECEVIED);
-
-        if (statuses != null && statuses.size() == 1) {
-            OrderStatus received = statuses.get(0);
-            statuses = orderStatusRepository.findByStatus(OrderStatusConstants.PROCESSING);
-
-            if (statuses != null && statuses.size() == 1) {
-                OrderStatus processing = statuses.get(0);
-
-                statuses = orderStatusRepository.findByStatus(OrderStatusConstants.COMPLETED);
+        OrderStatus received = orderStatusRegistry.getRequired(OrderStatusConstants.RECEVIED);
+        OrderStatus processing = orderStatusRegistry.getRequired(OrderStatusConstants.PROCESSING);
+        OrderStatus completed = orderStatusRegistry.getRequired(OrderStatusConstants.COMPLETED);
 
-                if (statuses != null && statuses.size() == 1) {
-                    OrderStatus completed = statuses.get(0);
+        return transactionRetry.execute(status -> {
+            Optional<OrderDTO> nextOrderOptional = Optional.empty();
+            List<OrderTransition> transitions = orderRepository.claimNextOrder(received.getOrderStatusId(),
+                    processing.getOrderStatusId(), completed.getOrderStatusId());
 
-                    List<Order> receivedOrders = orderRepository.findByOrderStatusOrderByCreatedDateAsc(received);
-                    List<Order> processingOrders = orderRepository.findByOrderStatusOrderByCreatedDateAsc(processing);
+            for (OrderTransition transition : transitions) {
+                orderCache.invalidate(transition.getOrderId());
 
-                    if (receivedOrders != null && !receivedOrders.isEmpty()) {
-                        Order receivedOrder = receivedOrders.get(0);
+                if (processing.getOrderStatusId().equals(transition.getOrderStatusId())) {
+                    publishStatusChange(OrderChangedEventFactory.getOrderChangedEvent(transition,
+                            OrderStatusConstants.RECEVIED, OrderStatusConstants.PROCESSING));
 
-                        if (processingOrders != null && !processingOrders.isEmpty()) {
-                            Order processingOrder = processingOrders.get(0);
-                            processingOrder.setOrderStatus(completed);
-                            orderRepository.save(processingOrder);
-                        }
-
-                        receivedOrder.setOrderStatus(processing);
-                        receivedOrder = orderRepository.save(receivedOrder);
-
-                        OrderDTO nextOrder = OrderDTOFactory.getOrderDTO(receivedOrder);
-                        nextOrderOptional = Optional.of(nextOrder);
-                    }
+                    OrderDTO nextOrder = OrderDTOFactory.getOrderDTO(transition);
+                    nextOrderOptional = Optional.of(nextOrder);
                 } else {
-                    throw new ConfigurationException(WRONG_CONFIGURATION_MESSAGE);
+                    publishStatusChange(OrderChangedEventFactory.getOrderChangedEvent(transition,
+                            OrderStatusConstants.PROCESSING, OrderStatusConstants.COMPLETED));
                 }
-            } else {
-                throw new ConfigurationException(WRONG_CONFIGURATION_MESSAGE);
             }
-        } else {
-            throw new ConfigurationException(WRONG_CONFIGURATION_MESSAGE);
-        }
 
-        return nextOrderOptional;
+            return nextOrderOptional;
+        });
     }
 
     /**
-     * Gets order.
+     * Gets order. It is served by the {@link OrderCache}, and orders accepted by the asynchronous intake are returned
+     * even before they are written.
      *
      * @param id the order id
      * @return the order
@@ -135,18 +250,36 @@ public class OrderService {
     public Optional<OrderDTO> getOrder(UUID id) {
         Optional<OrderDTO> optionalOrderDTO = Optional.empty();
 
-        Optional<Order> orderOptional = orderRepository.findById(id);
+        Optional<CachedOrderDTO> cachedOrderOptional = getCachedOrder(id);
 
-        if (orderOptional.isPresent()) {
-            Order order = orderOptional.get();
-            OrderDTO orderDTO = OrderDTOFactory.getOrderDTO(order);
+        if (cachedOrderOptional.isPresent()) {
+            CachedOrderDTO cachedOrder = cachedOrderOptional.get();
+            OrderDTO orderDTO = OrderDTOFactory.getOrderDTO(cachedOrder, pizzaCatalog);
 
             optionalOrderDTO = Optional.of(orderDTO);
+        } else {
+            // Accepted by the asynchronous intake, but not written yet
+            optionalOrderDTO = orderIntake.getPendingOrder(id);
         }
 
         return optionalOrderDTO;
     }
 
+    /**
+     * Gets the order entity tag, from the last modified date of the order and the menu version, since the pizza names
+     * come from the {@link PizzaCatalog}. The date is taken from the {@link OrderCache} when the order is cached,
+     * otherwise only the date is read, without loading the order: a matching conditional request never needs it.
+     *
+     * @param id the order id
+     * @return the order entity tag
+     * @author Gianluca Sabato
+     */
+    public Optional<String> getOrderETag(UUID id) {
+        return orderCache.getLastModifiedDate(id, orderRepository::findLastModifiedDateByOrderId).map(
+                lastModifiedDate -> ETagFactory.getETag(ETagFactory.getETag(lastModifiedDate),
+                        pizzaCatalog.getVersion()));
+    }
+
     /**
      * Create order.
      *
@@ -156,51 +289,256 @@ public class OrderService {
      * @author Gianluca Sabato
      */
     public OrderDTO createOrder(OrderDTO orderRequest) throws ConfigurationException {
-        OrderDTO orderDTO;
+        OrderStatus received = orderStatusRegistry.getRequired(OrderStatusConstants.RECEVIED);
 
-        List<OrderStatus> orderStatuses = orderStatusRepository.findByStatus(OrderStatusConstants.RECEVIED);
+        Order order = new Order();
+        order.setPizzaIds(pizzaCatalog.getPizzaIds(orderRequest.getPizzas()));
+        order.setOrderStatus(received);
 
-        if (orderStatuses != null && orderStatuses.size() == 1) {
-            OrderStatus received = orderStatuses.get(0);
+        order = orderRepository.save(order);
+        eventPublisher.publishEvent(OrderChangedEventFactory.getOrderChangedEvent(order, null, pizzaCatalog));
 
-            Order order = new Order();
-            order.setPizzas(orderRequest.getPizzas());
-            order.setOrderStatus(received);
+        return OrderDTOFactory.getOrderDTO(order, pizzaCatalog);
+    }
 
-            order = orderRepository.save(order);
-            orderDTO = OrderDTOFactory.getOrderDTO(order);
-        } else {
-            throw new ConfigurationException(WRONG_CONFIGURATION_MESSAGE);
+    /**
+     * Create an order only once for the given idempotency key. The key is claimed in the same transaction that
+     * inserts the order, so a concurrent request with the same key waits for this one and then finds the key taken.
+     * A key that is already taken by the same request gives back its order without writing anything.
+     *
+     * @param orderRequest   the order request
+     * @param idempotencyKey the idempotency key
+     * @param requestHash    the hash of the order request
+     * @return the outcome, with the order created for the key
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * @author Gianluca Sabato
+     */
+    @Transactional
+    public IdempotentOrderDTO createOrder(OrderDTO orderRequest, String idempotencyKey, String requestHash)
+            throws ConfigurationException {
+        // A taken key can be deleted by the cleanup before it is read, in that case it is claimed again
+        while (idempotencyKeyRepository.claim(idempotencyKey, requestHash, LocalDateTime.now()) == 0) {
+            Optional<IdempotencyKey> idempotencyKeyOptional = idempotencyKeyRepository.findById(idempotencyKey);
+
+            if (idempotencyKeyOptional.isPresent()) {
+                IdempotencyKey taken = idempotencyKeyOptional.get();
+
+                if (!taken.getRequestHash().equals(requestHash)) {
+                    return IdempotentOrderDTO.builder().outcome(IdempotentOrderDTO.Outcome.MISMATCH).build();
+                }
+
+                // Same hash, so the original request had the same pizzas
+                OrderDTO orderDTO = OrderDTO.builder().orderId(taken.getOrderId()).pizzas(List.copyOf(
+                        orderRequest.getPizzas())).build();
+
+                return IdempotentOrderDTO.builder().order(orderDTO).outcome(IdempotentOrderDTO.Outcome.REPLAYED)
+                        .build();
+            }
         }
 
-        return orderDTO;
+        OrderDTO orderDTO = createOrder(orderRequest);
+        idempotencyKeyRepository.bindOrder(idempotencyKey, orderDTO.getOrderId());
+
+        return IdempotentOrderDTO.builder().order(orderDTO).outcome(IdempotentOrderDTO.Outcome.CREATED).build();
+    }
+
+    /**
+     * Submit an order to the asynchronous intake. The order is written later, together with the other orders accepted
+     * in the meantime.
+     *
+     * @param orderRequest the order request
+     * @return the accepted order (empty if the intake can't take more orders)
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * @author Gianluca Sabato
+     */
+    public Optional<OrderDTO> submitOrder(OrderDTO orderRequest) throws ConfigurationException {
+        return orderIntake.submit(orderRequest);
     }
 
     /**
-     * Save order.
+     * Create a batch of orders. Every order is validated on its own: the valid ones are inserted together, as JDBC
+     * batches, and the invalid ones are reported without failing the others.
      *
-     * @param orderRequest       the order request
-     * @param orderStatusRequest the order status request
+     * @param orderRequests the order requests
+     * @return the result of every order, in request order
      * @throws ConfigurationException the configuration exception (missing database configuration values)
      * @author Gianluca Sabato
      */
-    public void saveOrder(OrderDTO orderRequest, OrderStatusDTO orderStatusRequest) throws ConfigurationException {
-        Optional<Order> orderOptional = orderRepository.findById(orderRequest.getOrderId());
+    @Transactional
+    public List<OrderBatchItemDTO> createOrders(List<OrderDTO> orderRequests) throws ConfigurationException {
+        OrderStatus received = orderStatusRegistry.getRequired(OrderStatusConstants.RECEVIED);
+        List<OrderBatchItemDTO> results = new ArrayList<>(orderRequests.size());
+        List<Order> orders = new ArrayList<>(orderRequests.size());
+        List<OrderBatchItemDTO> createdResults = new ArrayList<>(orderRequests.size());
+
+        for (int i = 0; i < orderRequests.size(); i++) {
+            OrderDTO orderRequest = orderRequests.get(i);
+            List<String> errors = orderRequest == null ? List.of("Order cannot be null.") : validator.validate(
+                    orderRequest).stream().map(ConstraintViolation::getMessage).sorted().toList();
+
+            if (errors.isEmpty()) {
+                Order order = new Order();
+                order.setPizzaIds(pizzaCatalog.getPizzaIds(orderRequest.getPizzas()));
+                order.setOrderStatus(received);
+                orders.add(order);
+
+                OrderBatchItemDTO result = OrderBatchItemDTO.builder().index(i).status(HttpStatus.CREATED.value())
+                        .build();
+                createdResults.add(result);
+                results.add(result);
+            } else {
+                results.add(OrderBatchItemDTO.builder().index(i).status(HttpStatus.BAD_REQUEST.value()).errors(errors)
+                        .build());
+            }
+        }
 
-        if (orderOptional.isPresent()) {
-            Order order = orderOptional.get();
-            Optional<OrderStatus> orderStatusOptional = orderStatusRepository.findById(
-                    orderStatusRequest.getOrderStatusId());
+        // The ids are generated in memory, so the inserts are delayed until the flush and sent in batches
+        orders = orderRepository.saveAll(orders);
 
-            if (orderStatusOptional.isPresent()) {
-                OrderStatus orderStatus = orderStatusOptional.get();
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = orders.get(i);
 
-                order.setOrderStatus(orderStatus);
-                orderRepository.save(order);
-            } else {
-                throw new ConfigurationException(WRONG_CONFIGURATION_MESSAGE);
+            createdResults.get(i).setOrderId(order.getOrderId());
+            eventPublisher.publishEvent(OrderChangedEventFactory.getOrderChangedEvent(order, null, pizzaCatalog));
+        }
+
+        return results;
+    }
+
+    /**
+     * Update the status of an order with a single statement, without loading the order first. The order is updated
+     * only if the {@link OrderStateMachine} allows the transition and, when an expected status is given, only if it
+     * still has that status. Both checks are part of the update predicate, so refused transitions cost no extra query.
+     * Updating an order to the status it already has succeeds without changing it or publishing any event.
+     *
+     * @param orderId               the order id
+     * @param orderStatusId         the new order status id
+     * @param expectedOrderStatusId the status the order must have (it can be null)
+     * @return the outcome, with the status of the order after the update
+     * @author Gianluca Sabato
+     */
+    @Transactional
+    public OrderStatusUpdateDTO updateOrderStatus(UUID orderId, UUID orderStatusId, UUID expectedOrderStatusId) {
+        Optional<OrderStatus> orderStatusOptional = orderStatusRegistry.findById(orderStatusId);
+
+        if (orderStatusOptional.isEmpty()) {
+            return OrderStatusUpdateDTO.builder().outcome(OrderStatusUpdateDTO.Outcome.ORDER_STATUS_NOT_FOUND).build();
+        }
+
+        OrderStatus orderStatus = orderStatusOptional.get();
+        List<UUID> sourceOrderStatusIds = orderStateMachine.getSourceStatuses(orderStatus.getStatus()).stream()
+                .map(orderStatusRegistry::findByStatus).flatMap(Optional::stream).map(OrderStatus::getOrderStatusId)
+                .toList();
+        Optional<OrderTransition> transitionOptional = orderRepository.transitionOrder(orderId, orderStatusId,
+                expectedOrderStatusId, sourceOrderStatusIds);
+
+        if (transitionOptional.isEmpty()) {
+            return OrderStatusUpdateDTO.builder().outcome(OrderStatusUpdateDTO.Outcome.ORDER_NOT_FOUND).build();
+        }
+
+        OrderTransition transition = transitionOptional.get();
+        Optional<OrderStatus> previousOrderStatusOptional = Optional.ofNullable(
+                transition.getPreviousOrderStatusId()).flatMap(orderStatusRegistry::findById);
+        String previousStatus = previousOrderStatusOptional.map(OrderStatus::getStatus).orElse(null);
+
+        if (expectedOrderStatusId != null && !expectedOrderStatusId.equals(transition.getPreviousOrderStatusId())) {
+            return OrderStatusUpdateDTO.builder().orderStatus(previousOrderStatusOptional.map(
+                    OrderStatusDTOFactory::getOrderStatusDTO).orElse(null))
+                    .outcome(OrderStatusUpdateDTO.Outcome.CONFLICT).build();
+        }
+
+        // Moving an order to the status it already has changes nothing, and succeeds so that PUT stays idempotent
+        if (orderStatusId.equals(transition.getPreviousOrderStatusId())) {
+            return OrderStatusUpdateDTO.builder().orderStatus(OrderStatusDTOFactory.getOrderStatusDTO(orderStatus))
+                    .outcome(OrderStatusUpdateDTO.Outcome.UPDATED).build();
+        }
+
+        if (!orderStateMachine.isLegal(previousStatus, orderStatus.getStatus())) {
+            return OrderStatusUpdateDTO.builder().orderStatus(previousOrderStatusOptional.map(
+                    OrderStatusDTOFactory::getOrderStatusDTO).orElse(null))
+                    .outcome(OrderStatusUpdateDTO.Outcome.ILLEGAL_TRANSITION).build();
+        }
+
+        orderCache.invalidate(orderId);
+        publishStatusChange(OrderChangedEventFactory.getOrderChangedEvent(transition, previousStatus,
+                orderStatus.getStatus()));
+
+        return OrderStatusUpdateDTO.builder().orderStatus(OrderStatusDTOFactory.getOrderStatusDTO(orderStatus))
+                .outcome(OrderStatusUpdateDTO.Outcome.UPDATED).build();
+    }
+
+    /**
+     * Write a status change to the outbox, inside the transaction that changes the status, and publish it. Nothing
+     * is written when the outbox is disabled, since nothing would ever dispatch or delete it.
+     */
+    private void publishStatusChange(OrderChangedEvent event) {
+        if (pizzaPlaceProperties.getOutbox().isEnabled()) {
+            orderEventRepository.save(OrderEventFactory.getOrderEvent(event));
+        }
+
+        eventPublisher.publishEvent(event);
+    }
+
+    private Optional<CachedOrderDTO> getCachedOrder(UUID id) {
+        return orderCache.get(id, orderId -> orderRepository.findById(orderId).map(
+                CachedOrderDTOFactory::getCachedOrderDTO));
+    }
+
+    private int getPageSize(Integer size) {
+        PizzaPlaceProperties.Orders ordersProperties = pizzaPlaceProperties.getOrders();
+
+        if (size == null) {
+            return Math.min(ordersProperties.getPageSize(), ordersProperties.getMaxPageSize());
+        }
+
+        return Math.max(1, Math.min(size, ordersProperties.getMaxPageSize()));
+    }
+
+    /**
+     * Reads a keyset page. The pages after a cursor are read in ascending order and the ones before a cursor in
+     * descending order, so that both are served by the (createdDate, orderId) index.
+     */
+    private OrderPageDTO getOrderPage(OrderCursor after, OrderCursor before, Integer size,
+                                      BiFunction<OrderCursor, Limit, List<OrderListItemDTO>> pageAfter,
+                                      BiFunction<OrderCursor, Limit, List<OrderListItemDTO>> pageBefore) {
+        int pageSize = getPageSize(size);
+        // One more order is read to know if there is another page
+        Limit limit = Limit.of(pageSize + 1);
+        List<OrderListItemDTO> orders;
+        OrderCursor next = null;
+        OrderCursor previous = null;
+
+        if (after == null && before != null) {
+            orders = new ArrayList<>(pageBefore.apply(before, limit));
+
+            if (orders.size() > pageSize) {
+                orders = orders.subList(0, pageSize);
+                previous = getOrderCursor(orders.get(pageSize - 1));
+            }
+
+            Collections.reverse(orders);
+
+            if (!orders.isEmpty()) {
+                next = getOrderCursor(orders.get(orders.size() - 1));
+            }
+        } else {
+            orders = pageAfter.apply(after, limit);
+
+            if (orders.size() > pageSize) {
+                orders = orders.subList(0, pageSize);
+                next = getOrderCursor(orders.get(pageSize - 1));
+            }
+
+            if (after != null && !orders.isEmpty()) {
+                previous = getOrderCursor(orders.get(0));
             }
         }
 
+        return OrderPageDTO.builder().orders(orders.stream().map(o -> OrderDTOFactory.getOrderDTO(o, pizzaCatalog))
+                .toList()).next(next).previous(previous).build();
+    }
+
+    private static OrderCursor getOrderCursor(OrderListItemDTO orderListItem) {
+        return new OrderCursor(orderListItem.getCreatedDate(), orderListItem.getOrderId());
     }
 }
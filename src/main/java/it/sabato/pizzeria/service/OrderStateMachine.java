@@ -0,0 +1,130 @@
+package it.sabato.pizzeria.service;
+
+import it.sabato.pizzeria.config.OrderStatusConstants;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The order state machine: RECEVIED to PROCESSING to COMPLETED, and RECEVIED or PROCESSING to CANCELLED. COMPLETED
+ * and CANCELLED orders can't be moved any more. The transitions are compiled once into a bitmap, with a bit for
+ * every (from, to) pair of statuses, so checking a transition is a map lookup and a bit test.
+ * @author Gianluca Sabato
+ */
+@Component
+public class OrderStateMachine {
+    private static final List<String> STATUSES = List.of(OrderStatusConstants.RECEVIED,
+            OrderStatusConstants.PROCESSING, OrderStatusConstants.COMPLETED, OrderStatusConstants.CANCELLED);
+    private static final Map<String, List<String>> TRANSITIONS = Map.of(
+            OrderStatusConstants.RECEVIED, List.of(OrderStatusConstants.PROCESSING, OrderStatusConstants.CANCELLED),
+            OrderStatusConstants.PROCESSING, List.of(OrderStatusConstants.COMPLETED, OrderStatusConstants.CANCELLED));
+
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final int bitmap;
+    private final int reachableBitmap;
+    private final List<List<String>> sourceStatuses = new ArrayList<>();
+
+    /**
+     * Instantiates a new Order state machine, compiling its transitions.
+     *
+     * @author Gianluca Sabato
+     */
+    public OrderStateMachine() {
+        for (int i = 0; i < STATUSES.size(); i++) {
+            indexes.put(STATUSES.get(i), i);
+            sourceStatuses.add(new ArrayList<>());
+        }
+
+        int compiledBitmap = 0;
+
+        for (Map.Entry<String, List<String>> transition : TRANSITIONS.entrySet()) {
+            int from = indexes.get(transition.getKey());
+
+            for (String status : transition.getValue()) {
+                int to = indexes.get(status);
+                compiledBitmap |= 1 << getBit(from, to);
+                sourceStatuses.get(to).add(transition.getKey());
+            }
+        }
+
+        bitmap = compiledBitmap;
+        sourceStatuses.replaceAll(List::copyOf);
+
+        // Transitive closure of the transitions, through every intermediate status
+        int compiledReachableBitmap = compiledBitmap;
+
+        for (int via = 0; via < STATUSES.size(); via++) {
+            for (int from = 0; from < STATUSES.size(); from++) {
+                for (int to = 0; to < STATUSES.size(); to++) {
+                    if ((compiledReachableBitmap & (1 << getBit(from, via))) != 0 &&
+                            (compiledReachableBitmap & (1 << getBit(via, to))) != 0) {
+                        compiledReachableBitmap |= 1 << getBit(from, to);
+                    }
+                }
+            }
+        }
+
+        reachableBitmap = compiledReachableBitmap;
+    }
+
+    /**
+     * Whether an order can be moved from a status to another one.
+     *
+     * @param fromStatus the current order status name
+     * @param toStatus   the new order status name
+     * @return true if the transition is legal
+     * @author Gianluca Sabato
+     */
+    public boolean isLegal(String fromStatus, String toStatus) {
+        Integer from = fromStatus != null ? indexes.get(fromStatus) : null;
+        Integer to = toStatus != null ? indexes.get(toStatus) : null;
+
+        return from != null && to != null && (bitmap & (1 << getBit(from, to))) != 0;
+    }
+
+    /**
+     * Whether an order can reach a status from another one, through any number of legal transitions.
+     *
+     * @param fromStatus the current order status name
+     * @param toStatus   the later order status name
+     * @return true if the status can be reached
+     * @author Gianluca Sabato
+     */
+    public boolean isReachable(String fromStatus, String toStatus) {
+        Integer from = fromStatus != null ? indexes.get(fromStatus) : null;
+        Integer to = toStatus != null ? indexes.get(toStatus) : null;
+
+        return from != null && to != null && (reachableBitmap & (1 << getBit(from, to))) != 0;
+    }
+
+    /**
+     * Gets the statuses an order can be moved to the given status from.
+     *
+     * @param toStatus the new order status name
+     * @return the source order status names
+     * @author Gianluca Sabato
+     */
+    public List<String> getSourceStatuses(String toStatus) {
+        Integer to = toStatus != null ? indexes.get(toStatus) : null;
+
+        return to != null ? sourceStatuses.get(to) : List.of();
+    }
+
+    /**
+     * Whether an order with the given status can't be moved any more (COMPLETED and CANCELLED).
+     *
+     * @param status the order status name
+     * @return true if the status is final
+     * @author Gianluca Sabato
+     */
+    public boolean isFinal(String status) {
+        return status != null && indexes.containsKey(status) && !TRANSITIONS.containsKey(status);
+    }
+
+    private static int getBit(int from, int to) {
+        return from * STATUSES.size() + to;
+    }
+}
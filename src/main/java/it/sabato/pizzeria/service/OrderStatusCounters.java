@@ -0,0 +1,337 @@
+package it.sabato.pizzeria.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import it.sabato.pizzeria.config.OrderStatusConstants;
+import it.sabato.pizzeria.dto.OrderAgeDTO;
+import it.sabato.pizzeria.dto.OrderStatusCountDTO;
+import it.sabato.pizzeria.dto.OrderStatusMetricsDTO;
+import it.sabato.pizzeria.event.OrderChangedEvent;
+import it.sabato.pizzeria.event.OrderInvalidatedEvent;
+import it.sabato.pizzeria.repositories.OrderRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory counters of the orders per status, with the age of the oldest RECEVIED and PROCESSING orders, so that
+ * they can be read without querying the database. They are updated without locks through the
+ * {@link OrderChangedEvent}s published by every order creation and transition, and reconciled with the database every
+ * {@code pizzeria.metrics.reconcile-interval}, which also covers the notifications of the other application instances
+ * that have been lost. The age of the oldest RECEVIED order is read from the {@link KitchenQueue}, while the
+ * PROCESSING orders are kept here.
+ * <p>
+ * The counters are published as the "pizzeria.orders" gauges, and the ages as the "pizzeria.orders.oldest.age"
+ * gauges, both tagged with the status.
+ * @author Gianluca Sabato
+ */
+@Slf4j
+@Component
+public class OrderStatusCounters implements InitializingBean {
+    private static final List<String> STATUSES = List.of(OrderStatusConstants.RECEVIED,
+            OrderStatusConstants.PROCESSING, OrderStatusConstants.COMPLETED, OrderStatusConstants.CANCELLED);
+    private static final List<String> AGED_STATUSES = List.of(OrderStatusConstants.RECEVIED,
+            OrderStatusConstants.PROCESSING);
+    /**
+     * The changes lost instead of delayed leave their order here, so only the latest ones are remembered.
+     */
+    private static final int MAX_OUT_OF_ORDER_ORDERS = 1_000;
+
+    private final OrderRepository orderRepository;
+    private final KitchenQueue kitchenQueue;
+
+    private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+    /**
+     * Guards the writes to the PROCESSING orders, the changes recorded while reconciling and the out of order orders.
+     */
+    private final Object processingLock = new Object();
+    private volatile KitchenIndex<UUID> processingOrders = new KitchenIndex<>();
+    /**
+     * The changes of the PROCESSING orders applied while reconciling, null when not reconciling.
+     */
+    private List<OrderChangedEvent> reconcilingChanges;
+    /**
+     * The orders reconciled when one of their changes arrived out of order, whose late change is still to come.
+     */
+    private final Set<UUID> outOfOrderOrders = Collections.newSetFromMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, Boolean> eldest) {
+            return size() > MAX_OUT_OF_ORDER_ORDERS;
+        }
+    });
+    private volatile LocalDateTime lastReconciledDate;
+    private volatile long lastReconciliationDrift;
+
+    /**
+     * Instantiates new Order status counters, and registers their gauges.
+     *
+     * @param orderRepository the order repository
+     * @param kitchenQueue    the kitchen queue, with the RECEVIED orders
+     * @param meterRegistry   the meter registry
+     * @author Gianluca Sabato
+     */
+    public OrderStatusCounters(OrderRepository orderRepository, KitchenQueue kitchenQueue,
+                               MeterRegistry meterRegistry) {
+        this.orderRepository = orderRepository;
+        this.kitchenQueue = kitchenQueue;
+
+        for (String status : STATUSES) {
+            counts.put(status, new LongAdder());
+            Gauge.builder("pizzeria.orders", this, c -> c.getCount(status)).tag("status", status)
+                    .description("Number of orders with the status").register(meterRegistry);
+        }
+
+        for (String status : AGED_STATUSES) {
+            TimeGauge.builder("pizzeria.orders.oldest.age", this, TimeUnit.MILLISECONDS,
+                            c -> c.getOldestAge(status).map(Duration::toMillis).orElse(0L))
+                    .tag("status", status).description("Age of the oldest order with the status")
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        reconcile();
+    }
+
+    /**
+     * Gets the number of orders with a status.
+     *
+     * @param status the status
+     * @return the order count
+     * @author Gianluca Sabato
+     */
+    public long getCount(String status) {
+        LongAdder count = counts.get(status);
+
+        return count != null ? count.sum() : 0;
+    }
+
+    /**
+     * Gets the age of the oldest order with a status, tracked only for RECEVIED and PROCESSING.
+     *
+     * @param status the status
+     * @return the age (empty if there is no such order, or the status is not tracked)
+     * @author Gianluca Sabato
+     */
+    public Optional<Duration> getOldestAge(String status) {
+        Optional<LocalDateTime> oldestCreatedDate;
+
+        if (OrderStatusConstants.RECEVIED.equals(status)) {
+            oldestCreatedDate = kitchenQueue.getOldestCreatedDate();
+        } else if (OrderStatusConstants.PROCESSING.equals(status)) {
+            oldestCreatedDate = processingOrders.firstCreatedDate();
+        } else {
+            oldestCreatedDate = Optional.empty();
+        }
+
+        return oldestCreatedDate.map(createdDate -> Duration.between(createdDate, LocalDateTime.now()));
+    }
+
+    /**
+     * Gets the counters, the ages and the outcome of the last reconciliation.
+     *
+     * @return the order status metrics
+     * @author Gianluca Sabato
+     */
+    public OrderStatusMetricsDTO getMetrics() {
+        Map<String, Long> countsByStatus = new LinkedHashMap<>();
+        counts.forEach((status, count) -> countsByStatus.put(status, count.sum()));
+
+        Map<String, Long> oldestAgeSeconds = new LinkedHashMap<>();
+        AGED_STATUSES.forEach(status -> getOldestAge(status).ifPresent(age -> oldestAgeSeconds.put(status,
+                age.toSeconds())));
+
+        return OrderStatusMetricsDTO.builder().counts(countsByStatus).oldestAgeSeconds(oldestAgeSeconds)
+                .lastReconciledDate(lastReconciledDate).lastReconciliationDrift(lastReconciliationDrift).build();
+    }
+
+    /**
+     * Keep the counters in sync with the order changes, once they are committed. The listeners of two changes of the
+     * same order may run in reverse order, which the counts don't mind: a change that doesn't match the PROCESSING
+     * orders reconciles them, while a change arriving after the order left PROCESSING for good is dropped.
+     *
+     * @param event the order changed event
+     * @author Gianluca Sabato
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        boolean counted = true;
+        boolean outOfOrder = false;
+
+        if (OrderStatusConstants.PROCESSING.equals(event.getPreviousStatus())
+                || OrderStatusConstants.PROCESSING.equals(event.getStatus())) {
+            synchronized (processingLock) {
+                // The reconciliation run for the out of order change already counted the late one
+                counted = !processingOrders.isRetired(event.getOrderId())
+                        || !outOfOrderOrders.remove(event.getOrderId());
+                // A reconciliation in progress replays the change on the orders it reads
+                outOfOrder = !applyProcessing(processingOrders, event) && reconcilingChanges == null;
+
+                if (outOfOrder) {
+                    outOfOrderOrders.add(event.getOrderId());
+                }
+
+                if (reconcilingChanges != null) {
+                    reconcilingChanges.add(event);
+                }
+            }
+        }
+
+        if (counted) {
+            if (event.getPreviousStatus() != null) {
+                counts.computeIfAbsent(event.getPreviousStatus(), s -> new LongAdder()).decrement();
+            }
+
+            counts.computeIfAbsent(event.getStatus(), s -> new LongAdder()).increment();
+        }
+
+        if (outOfOrder) {
+            log.info("Order {} changed from {} to {} out of order, reconciling the order status counters",
+                    event.getOrderId(), event.getPreviousStatus(), event.getStatus());
+            reconcile(true);
+        }
+    }
+
+    /**
+     * Apply the order changes done by the other application instances, or reconcile the counters when some of them
+     * may have been lost.
+     *
+     * @param event the order invalidated event
+     * @author Gianluca Sabato
+     */
+    @EventListener
+    public void onOrderInvalidated(OrderInvalidatedEvent event) {
+        if (event.isAll()) {
+            reconcile();
+        } else {
+            onOrderChanged(event.getChange());
+        }
+    }
+
+    /**
+     * Reconcile the counters and the PROCESSING orders with the database. The changes applied while querying are
+     * kept, but a change committed just before the queries and applied just after the counts are taken is counted
+     * twice, until the next reconciliation.
+     *
+     * @return the drift, that is the sum of the count corrections in absolute value
+     * @author Gianluca Sabato
+     */
+    @Scheduled(fixedDelayString = "${pizzeria.metrics.reconcile-interval:PT5M}",
+            initialDelayString = "${pizzeria.metrics.reconcile-interval:PT5M}")
+    public long reconcile() {
+        return reconcile(false);
+    }
+
+    /**
+     * The reconciliation for an out of order change keeps the orders that left PROCESSING, since the late change is
+     * still to come.
+     */
+    private synchronized long reconcile(boolean keepRetired) {
+        // The corrections are computed against the counts taken before the queries, so that the changes counted
+        // while querying are kept
+        Map<String, Long> countsBefore = new HashMap<>();
+        counts.forEach((status, count) -> countsBefore.put(status, count.sum()));
+
+        synchronized (processingLock) {
+            reconcilingChanges = new ArrayList<>();
+        }
+
+        try {
+            Map<String, Long> databaseCounts = new HashMap<>();
+
+            for (OrderStatusCountDTO orderStatusCount : orderRepository.countByStatus()) {
+                databaseCounts.put(orderStatusCount.getStatus(), orderStatusCount.getCount());
+            }
+
+            KitchenIndex<UUID> reconciledProcessingOrders = new KitchenIndex<>();
+
+            for (OrderAgeDTO orderAge : orderRepository.findOrderAgesByStatusIn(
+                    List.of(OrderStatusConstants.PROCESSING))) {
+                reconciledProcessingOrders.put(orderAge.getOrderId(), orderAge.getCreatedDate(),
+                        orderAge.getOrderId());
+            }
+
+            long drift = 0;
+
+            for (String status : STATUSES) {
+                databaseCounts.putIfAbsent(status, 0L);
+            }
+
+            for (Map.Entry<String, Long> databaseCount : databaseCounts.entrySet()) {
+                LongAdder count = counts.computeIfAbsent(databaseCount.getKey(), s -> new LongAdder());
+                long correction = databaseCount.getValue() - countsBefore.getOrDefault(databaseCount.getKey(), 0L);
+
+                count.add(correction);
+                drift += Math.abs(correction);
+            }
+
+            synchronized (processingLock) {
+                if (keepRetired) {
+                    reconciledProcessingOrders.keepRetired(processingOrders);
+                }
+
+                // The query may have missed them, and applying them again is harmless
+                reconcilingChanges.forEach(event -> applyProcessing(reconciledProcessingOrders, event));
+                processingOrders = reconciledProcessingOrders;
+            }
+
+            lastReconciledDate = LocalDateTime.now();
+            lastReconciliationDrift = drift;
+
+            if (drift != 0) {
+                log.info("Order status counters reconciled with the database, drift {}", drift);
+            }
+
+            return drift;
+        } finally {
+            synchronized (processingLock) {
+                reconcilingChanges = null;
+            }
+        }
+    }
+
+    /**
+     * Apply a change to the PROCESSING orders, unless it arrives after the order left PROCESSING.
+     *
+     * @return false if the previous status of the change doesn't match the PROCESSING orders
+     */
+    private static boolean applyProcessing(KitchenIndex<UUID> orders, OrderChangedEvent event) {
+        UUID orderId = event.getOrderId();
+
+        if (orders.isRetired(orderId)) {
+            return true;
+        }
+
+        boolean expected = OrderStatusConstants.PROCESSING.equals(event.getPreviousStatus())
+                == orders.contains(orderId);
+
+        if (!OrderStatusConstants.PROCESSING.equals(event.getStatus())) {
+            // Leaving PROCESSING, the order is done
+            orders.retire(orderId);
+        } else if (expected) {
+            orders.put(orderId, event.getCreatedDate(), orderId);
+        }
+
+        return expected;
+    }
+}
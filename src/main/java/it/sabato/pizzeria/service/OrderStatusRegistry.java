@@ -0,0 +1,138 @@
+package it.sabato.pizzeria.service;
+
+import it.sabato.pizzeria.config.OrderStatusConstants;
+import it.sabato.pizzeria.model.OrderStatus;
+import it.sabato.pizzeria.repositories.OrderStatusRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import javax.naming.ConfigurationException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static it.sabato.pizzeria.service.OrderService.WRONG_CONFIGURATION_MESSAGE;
+
+/**
+ * In-memory registry of the order statuses stored inside the database. It is loaded and validated at startup, so that
+ * a missing {@link OrderStatusConstants} value prevents the application from starting, and it can be refreshed at
+ * runtime through the orderstatuses actuator endpoint.
+ * The returned {@link OrderStatus} entities are detached and shared, so they must not be modified.
+ * @author Gianluca Sabato
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderStatusRegistry implements InitializingBean {
+    private static final List<String> REQUIRED_STATUSES = List.of(OrderStatusConstants.RECEVIED,
+            OrderStatusConstants.CANCELLED, OrderStatusConstants.PROCESSING, OrderStatusConstants.COMPLETED);
+
+    private final OrderStatusRepository orderStatusRepository;
+
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), Map.of(), List.of(), getVersion(List.of()));
+
+    @Override
+    public void afterPropertiesSet() throws ConfigurationException {
+        refresh();
+    }
+
+    /**
+     * Reload the order statuses from the database. The current statuses are kept if the new ones are not valid.
+     *
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * @author Gianluca Sabato
+     */
+    public void refresh() throws ConfigurationException {
+        List<OrderStatus> orderStatuses = orderStatusRepository.findAll();
+        Map<String, OrderStatus> byStatus = new HashMap<>();
+        Map<UUID, OrderStatus> byId = new HashMap<>();
+
+        for (OrderStatus orderStatus : orderStatuses) {
+            if (orderStatus.getStatus() == null || byStatus.put(orderStatus.getStatus(), orderStatus) != null) {
+                throw new ConfigurationException(WRONG_CONFIGURATION_MESSAGE);
+            }
+
+            byId.put(orderStatus.getOrderStatusId(), orderStatus);
+        }
+
+        if (!byStatus.keySet().containsAll(REQUIRED_STATUSES)) {
+            throw new ConfigurationException(WRONG_CONFIGURATION_MESSAGE);
+        }
+
+        snapshot = new Snapshot(Map.copyOf(byStatus), Map.copyOf(byId), List.copyOf(orderStatuses),
+                getVersion(orderStatuses));
+    }
+
+    /**
+     * Gets the catalog version. It's a digest of the order statuses, so it changes only when they change, and every
+     * instance loading the same statuses has the same version.
+     *
+     * @return the version
+     * @author Gianluca Sabato
+     */
+    public String getVersion() {
+        return snapshot.version();
+    }
+
+    /**
+     * Gets the order status with the given name.
+     *
+     * @param status one of the {@link OrderStatusConstants} values
+     * @return the order status
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * @author Gianluca Sabato
+     */
+    public OrderStatus getRequired(String status) throws ConfigurationException {
+        OrderStatus orderStatus = snapshot.byStatus().get(status);
+
+        if (orderStatus == null) {
+            throw new ConfigurationException(WRONG_CONFIGURATION_MESSAGE);
+        }
+
+        return orderStatus;
+    }
+
+    /**
+     * Find by status.
+     *
+     * @param status the order status name
+     * @return the order status
+     * @author Gianluca Sabato
+     */
+    public Optional<OrderStatus> findByStatus(String status) {
+        return Optional.ofNullable(snapshot.byStatus().get(status));
+    }
+
+    /**
+     * Find by id.
+     *
+     * @param id the order status id
+     * @return the order status
+     * @author Gianluca Sabato
+     */
+    public Optional<OrderStatus> findById(UUID id) {
+        return Optional.ofNullable(snapshot.byId().get(id));
+    }
+
+    /**
+     * Gets all the order statuses.
+     *
+     * @return the order statuses
+     * @author Gianluca Sabato
+     */
+    public List<OrderStatus> getAll() {
+        return snapshot.all();
+    }
+
+    private static String getVersion(List<OrderStatus> orderStatuses) {
+        String content = orderStatuses.stream().sorted(Comparator.comparing(OrderStatus::getOrderStatusId))
+                .map(os -> os.getOrderStatusId() + "=" + os.getStatus()).collect(Collectors.joining("\n"));
+
+        return DigestUtils.md5DigestAsHex(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private record Snapshot(Map<String, OrderStatus> byStatus, Map<UUID, OrderStatus> byId, List<OrderStatus> all,
+                            String version) {
+    }
+}
@@ -1,11 +1,12 @@
 package it.sabato.pizzeria.service;
 
+import it.sabato.pizzeria.dto.CachedOrderDTO;
 import it.sabato.pizzeria.dto.OrderStatusDTO;
+import it.sabato.pizzeria.factory.CachedOrderDTOFactory;
+import it.sabato.pizzeria.factory.ETagFactory;
 import it.sabato.pizzeria.factory.OrderStatusDTOFactory;
-import it.sabato.pizzeria.model.Order;
 import it.sabato.pizzeria.model.OrderStatus;
 import it.sabato.pizzeria.repositories.OrderRepository;
-import it.sabato.pizzeria.repositories.OrderStatusRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -20,8 +21,9 @@ import java.util.UUID;
 @Service
 @RequiredArgsConstructor
 public class OrderStatusService {
-    private final OrderStatusRepository orderStatusRepository;
+    private final OrderStatusRegistry orderStatusRegistry;
     private final OrderRepository orderRepository;
+    private final OrderCache orderCache;
 
     /**
      * Gets order statuses.
@@ -30,7 +32,7 @@ public class OrderStatusService {
      * @author Gianluca Sabato
      */
     public List<OrderStatusDTO> getOrderStatuses() {
-        List<OrderStatus> orderStatuses = orderStatusRepository.findAll();
+        List<OrderStatus> orderStatuses = orderStatusRegistry.getAll();
 
         return orderStatuses.stream().map(OrderStatusDTOFactory::getOrderStatusDTO).toList();
     }
@@ -44,7 +46,7 @@ public class OrderStatusService {
      */
     public Optional<OrderStatusDTO> getOrderStatus(UUID id) {
         Optional<OrderStatusDTO> optionalOrderStatusDTO = Optional.empty();
-        Optional<OrderStatus> orderStatusOptional = orderStatusRepository.findById(id);
+        Optional<OrderStatus> orderStatusOptional = orderStatusRegistry.findById(id);
 
         if (orderStatusOptional.isPresent()) {
             OrderStatus orderStatus = orderStatusOptional.get();
@@ -57,7 +59,7 @@ public class OrderStatusService {
     }
 
     /**
-     * Gets order status for order id.
+     * Gets order status for order id. The order is served by the {@link OrderCache}.
      *
      * @param orderId the order id
      * @return the order status for order id
@@ -65,14 +67,15 @@ public class OrderStatusService {
      */
     public Optional<OrderStatusDTO> getOrderStatusForOrderId(UUID orderId) {
         Optional<OrderStatusDTO> optionalOrderStatusDTO = Optional.empty();
-        Optional<Order> orderOptional = orderRepository.findById(orderId);
+        Optional<CachedOrderDTO> cachedOrderOptional = getCachedOrder(orderId);
 
-        if (orderOptional.isPresent()) {
-            Order order = orderOptional.get();
-            OrderStatus orderStatus = order.getOrderStatus();
+        if (cachedOrderOptional.isPresent()) {
+            CachedOrderDTO cachedOrder = cachedOrderOptional.get();
+            Optional<OrderStatus> orderStatusOptional = Optional.ofNullable(cachedOrder.getOrderStatusId())
+                    .flatMap(orderStatusRegistry::findById);
 
-            if (orderStatus != null) {
-                OrderStatusDTO orderStatusDTO = OrderStatusDTOFactory.getOrderStatusDTO(orderStatus);
+            if (orderStatusOptional.isPresent()) {
+                OrderStatusDTO orderStatusDTO = OrderStatusDTOFactory.getOrderStatusDTO(orderStatusOptional.get());
 
                 optionalOrderStatusDTO = Optional.of(orderStatusDTO);
             }
@@ -80,4 +83,34 @@ public class OrderStatusService {
 
         return optionalOrderStatusDTO;
     }
+
+    /**
+     * Gets the order statuses entity tag, that is the catalog version.
+     *
+     * @return the order statuses entity tag
+     * @author Gianluca Sabato
+     */
+    public String getOrderStatusesETag() {
+        return orderStatusRegistry.getVersion();
+    }
+
+    /**
+     * Gets the entity tag of the order status of an order, from the last modified date of the order. It is taken from
+     * the {@link OrderCache} when the order is cached, otherwise only the date is read, without loading the order. It
+     * changes when the order or the catalog change.
+     *
+     * @param orderId the order id
+     * @return the entity tag
+     * @author Gianluca Sabato
+     */
+    public Optional<String> getOrderStatusForOrderIdETag(UUID orderId) {
+        return orderCache.getLastModifiedDate(orderId, orderRepository::findLastModifiedDateByOrderId).map(
+                lastModifiedDate -> ETagFactory.getETag(ETagFactory.getETag(lastModifiedDate),
+                        orderStatusRegistry.getVersion()));
+    }
+
+    private Optional<CachedOrderDTO> getCachedOrder(UUID orderId) {
+        return orderCache.get(orderId, id -> orderRepository.findById(id).map(
+                CachedOrderDTOFactory::getCachedOrderDTO));
+    }
 }
@@ -0,0 +1,174 @@
+package it.sabato.pizzeria.service;
+
+import it.sabato.pizzeria.model.Pizza;
+import it.sabato.pizzeria.repositories.PizzaRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import javax.naming.ConfigurationException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static it.sabato.pizzeria.service.OrderService.WRONG_CONFIGURATION_MESSAGE;
+
+/**
+ * In-memory catalog of the menu stored inside the database. It is loaded and validated at startup, it can be refreshed
+ * at runtime through the pizzas actuator endpoint, and it translates the pizza names used by the API to the integer
+ * ids stored inside the orders, and back, without querying the database. Order requests are validated against it, so
+ * unknown pizzas are refused before reaching the database.
+ * The returned {@link Pizza} entities are detached and shared, so they must not be modified.
+ * @author Gianluca Sabato
+ */
+@Component
+@RequiredArgsConstructor
+public class PizzaCatalog implements InitializingBean {
+    private final PizzaRepository pizzaRepository;
+
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), Map.of(), List.of(), getVersion(List.of()));
+
+    @Override
+    public void afterPropertiesSet() throws ConfigurationException {
+        refresh();
+    }
+
+    /**
+     * Reload the menu from the database. The current menu is kept if the new one is not valid, and a menu missing a
+     * pizza still contained by an order is not valid: the orders have no foreign key to the menu, and their pizza
+     * names could not be read any more.
+     *
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * @author Gianluca Sabato
+     */
+    public void refresh() throws ConfigurationException {
+        List<Pizza> pizzas = pizzaRepository.findAll();
+        Map<String, Pizza> byName = new HashMap<>();
+        Map<Integer, Pizza> byId = new HashMap<>();
+
+        for (Pizza pizza : pizzas) {
+            if (pizza.getPizzaId() == null || pizza.getName() == null || byName.put(pizza.getName(), pizza) != null) {
+                throw new ConfigurationException(WRONG_CONFIGURATION_MESSAGE);
+            }
+
+            byId.put(pizza.getPizzaId(), pizza);
+        }
+
+        if (pizzas.isEmpty() || isDroppingOrderedPizzas(byId)) {
+            throw new ConfigurationException(WRONG_CONFIGURATION_MESSAGE);
+        }
+
+        snapshot = new Snapshot(Map.copyOf(byName), Map.copyOf(byId), List.copyOf(pizzas), getVersion(pizzas));
+    }
+
+    /**
+     * Gets the menu version. It's a digest of the pizzas, so it changes only when the menu changes, and every instance
+     * loading the same menu has the same version.
+     *
+     * @return the version
+     * @author Gianluca Sabato
+     */
+    public String getVersion() {
+        return snapshot.version();
+    }
+
+    /**
+     * Find by name.
+     *
+     * @param name the pizza name
+     * @return the pizza
+     * @author Gianluca Sabato
+     */
+    public Optional<Pizza> findByName(String name) {
+        return Optional.ofNullable(name != null ? snapshot.byName().get(name) : null);
+    }
+
+    /**
+     * Find by id.
+     *
+     * @param id the pizza id
+     * @return the pizza
+     * @author Gianluca Sabato
+     */
+    public Optional<Pizza> findById(Integer id) {
+        return Optional.ofNullable(id != null ? snapshot.byId().get(id) : null);
+    }
+
+    /**
+     * Gets the whole menu.
+     *
+     * @return the pizzas
+     * @author Gianluca Sabato
+     */
+    public List<Pizza> getAll() {
+        return snapshot.all();
+    }
+
+    /**
+     * Gets the ids of the given pizzas, in the same order. Repeating a pizza repeats its id, so the quantities are
+     * kept.
+     *
+     * @param names the pizza names
+     * @return the pizza ids
+     * @throws IllegalArgumentException if a pizza is not on the menu
+     * @author Gianluca Sabato
+     */
+    public List<Integer> getPizzaIds(List<String> names) {
+        List<Integer> ids = new ArrayList<>(names.size());
+
+        for (String name : names) {
+            ids.add(findByName(name).orElseThrow(() -> new IllegalArgumentException("Unknown pizza: " + name))
+                    .getPizzaId());
+        }
+
+        return ids;
+    }
+
+    /**
+     * Gets the names of the given pizzas, in the same order.
+     *
+     * @param ids the pizza ids (null for no pizzas)
+     * @return the pizza names
+     * @throws IllegalArgumentException if a pizza is not on the menu
+     * @author Gianluca Sabato
+     */
+    public List<String> getNames(List<Integer> ids) {
+        if (ids == null) {
+            return List.of();
+        }
+
+        List<String> names = new ArrayList<>(ids.size());
+
+        for (Integer id : ids) {
+            names.add(findById(id).orElseThrow(() -> new IllegalArgumentException("Unknown pizza id: " + id))
+                    .getName());
+        }
+
+        return List.copyOf(names);
+    }
+
+    private boolean isDroppingOrderedPizzas(Map<Integer, Pizza> byId) {
+        Map<Integer, Pizza> currentById = snapshot.byId();
+
+        // At startup every ordered pizza is checked, afterwards only the ones dropped from the current menu
+        if (currentById.isEmpty()) {
+            return pizzaRepository.existsOrderWithOther(byId.keySet().toArray(new Integer[0]));
+        }
+
+        Integer[] droppedIds = currentById.keySet().stream().filter(id -> !byId.containsKey(id))
+                .toArray(Integer[]::new);
+
+        return droppedIds.length > 0 && pizzaRepository.existsOrderWithAny(droppedIds);
+    }
+
+    private static String getVersion(List<Pizza> pizzas) {
+        String content = pizzas.stream().sorted(Comparator.comparing(Pizza::getPizzaId))
+                .map(p -> p.getPizzaId() + "=" + p.getName()).collect(Collectors.joining("\n"));
+
+        return DigestUtils.md5DigestAsHex(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private record Snapshot(Map<String, Pizza> byName, Map<Integer, Pizza> byId, List<Pizza> all, String version) {
+    }
+}
@@ -0,0 +1,70 @@
+package it.sabato.pizzeria.service;
+
+import it.sabato.pizzeria.config.PizzaPlaceProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Run a transaction, retrying it when it fails because of concurrent updates (optimistic locking failures, lock
+ * timeouts, deadlocks and serialization failures). Attempts are spaced by an exponential backoff with full jitter,
+ * so that the transactions that collided don't collide again, up to {@code pizzeria.retry.max-attempts} attempts.
+ * Every attempt is a new transaction, so it must be called outside a transaction.
+ * @author Gianluca Sabato
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TransactionRetry {
+    private final TransactionTemplate transactionTemplate;
+    private final PizzaPlaceProperties pizzaPlaceProperties;
+
+    /**
+     * Run the action in a transaction, retrying it on concurrency failures.
+     *
+     * @param <T>    the result type
+     * @param action the action
+     * @return the action result
+     * @author Gianluca Sabato
+     */
+    public <T> T execute(TransactionCallback<T> action) {
+        PizzaPlaceProperties.Retry retry = pizzaPlaceProperties.getRetry();
+        int maxAttempts = Math.max(1, retry.getMaxAttempts());
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(action);
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+
+                long backoffMillis = getBackoffMillis(retry, attempt);
+                log.debug("Transaction failed by a concurrent update (attempt {}), retrying in {} ms", attempt,
+                        backoffMillis, e);
+
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static long getBackoffMillis(PizzaPlaceProperties.Retry retry, int attempt) {
+        long maxBackoffMillis = retry.getMaxBackoff().toMillis();
+        // The shift is bounded, so that the cap can't overflow
+        long capMillis = Math.min(maxBackoffMillis, retry.getInitialBackoff().toMillis() << Math.min(attempt - 1,
+                20));
+
+        return capMillis > 0 ? ThreadLocalRandom.current().nextLong(capMillis + 1) : 0;
+    }
+}
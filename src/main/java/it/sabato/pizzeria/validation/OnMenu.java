@@ -0,0 +1,40 @@
+package it.sabato.pizzeria.validation;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.Payload;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The annotated pizza name must be on the menu, as loaded by the
+ * {@link it.sabato.pizzeria.service.PizzaCatalog}. Null names are not on the menu.
+ * @author Gianluca Sabato
+ */
+@Constraint(validatedBy = OnMenuValidator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.PARAMETER, ElementType.TYPE_USE})
+public @interface OnMenu {
+    /**
+     * The message.
+     *
+     * @return the message
+     */
+    String message() default "Input pizza must be on the menu.";
+
+    /**
+     * The groups.
+     *
+     * @return the groups
+     */
+    Class<?>[] groups() default {};
+
+    /**
+     * The payload.
+     *
+     * @return the payload
+     */
+    Class<? extends Payload>[] payload() default {};
+}
@@ -0,0 +1,20 @@
+package it.sabato.pizzeria.validation;
+
+import it.sabato.pizzeria.service.PizzaCatalog;
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Validator of {@link OnMenu}. It checks the in-memory {@link PizzaCatalog}, so it doesn't query the database.
+ * @author Gianluca Sabato
+ */
+@RequiredArgsConstructor
+public class OnMenuValidator implements ConstraintValidator<OnMenu, String> {
+    private final PizzaCatalog pizzaCatalog;
+
+    @Override
+    public boolean isValid(String pizza, ConstraintValidatorContext context) {
+        return pizzaCatalog.findByName(pizza).isPresent();
+    }
+}
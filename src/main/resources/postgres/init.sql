@@ -1,6 +1,28 @@
+create table pizzas (pizza_id integer not null, name varchar(255) not null unique, primary key (pizza_id));
 create table order_statuses (order_status_id uuid not null, status varchar(255), primary key (order_status_id));
-create table orders (created_date timestamp(6), last_modified_date timestamp(6), order_id uuid not null, order_status_order_status_id uuid, pizzas varchar(255) array, primary key (order_id));
+create table orders (created_date timestamp(6), last_modified_date timestamp(6), order_id uuid not null, order_status_order_status_id uuid, pizza_ids integer array, version bigint default 0 not null, primary key (order_id));
 alter table if exists orders add constraint FKonxtg4qet51il6ioosgj48e2u foreign key (order_status_order_status_id) references order_statuses;
+create index orders_created_date_order_id_idx on orders (created_date, order_id);
+create index orders_order_status_created_date_idx on orders (order_status_order_status_id, created_date);
+create index orders_created_date_brin_idx on orders using brin (created_date);
+create index orders_pizza_ids_gin_idx on orders using gin (pizza_ids);
+create table idempotency_keys (idempotency_key varchar(255) not null, request_hash varchar(64) not null, order_id uuid, created_date timestamp(6) not null, primary key (idempotency_key));
+create index idempotency_keys_created_date_idx on idempotency_keys (created_date);
+create table order_events (event_id bigserial not null, order_id uuid not null, previous_status varchar(255), status varchar(255) not null, created_date timestamp(6) not null, dispatched_date timestamp(6), primary key (event_id));
+create index order_events_pending_idx on order_events (event_id) where dispatched_date is null;
+create index order_events_dispatched_date_idx on order_events (dispatched_date) where dispatched_date is not null;
+
+INSERT INTO pizzas (pizza_id,name) VALUES
+	 (1,'Margherita'),
+	 (2,'Marinara'),
+	 (3,'Diavola'),
+	 (4,'Bufalina'),
+	 (5,'Quattro stagioni'),
+	 (6,'Affumicata'),
+	 (7,'Deliziosa'),
+	 (8,'Tirolese'),
+	 (9,'Capricciosa'),
+	 (10,'Quattro formaggi');
 
 INSERT INTO order_statuses (order_status_id,status) VALUES
 	 ('addf422c-4b37-4631-b0d0-3cfcbb68fe41','RECEVIED'),
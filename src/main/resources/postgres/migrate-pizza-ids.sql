@@ -0,0 +1,39 @@
+-- Migrates a database created before the pizzas menu table: the orders stored their pizzas as names inside the
+-- pizzas varchar array, they now store the menu ids inside the pizza_ids integer array. init.sql runs only on an empty
+-- database, so this script has to be run once on the existing ones, before starting the application.
+BEGIN;
+
+create table if not exists pizzas (pizza_id integer not null, name varchar(255) not null unique, primary key (pizza_id));
+
+INSERT INTO pizzas (pizza_id,name) VALUES
+	 (1,'Margherita'),
+	 (2,'Marinara'),
+	 (3,'Diavola'),
+	 (4,'Bufalina'),
+	 (5,'Quattro stagioni'),
+	 (6,'Affumicata'),
+	 (7,'Deliziosa'),
+	 (8,'Tirolese'),
+	 (9,'Capricciosa'),
+	 (10,'Quattro formaggi')
+ON CONFLICT DO NOTHING;
+
+-- Pizzas ordered in the past but missing from the menu are added to it, so that no order loses its pizzas
+INSERT INTO pizzas (pizza_id,name)
+SELECT (SELECT coalesce(max(pizza_id), 0) FROM pizzas) + row_number() OVER (ORDER BY name), name
+FROM (SELECT DISTINCT unnest(pizzas) AS name FROM orders) ordered
+WHERE name IS NOT NULL AND NOT EXISTS (SELECT 1 FROM pizzas p WHERE p.name = ordered.name);
+
+alter table orders add column pizza_ids integer array;
+
+-- The ids keep the order of the names, and a repeated pizza keeps its repetitions
+UPDATE orders o SET pizza_ids = coalesce((SELECT array_agg(p.pizza_id ORDER BY u.position)
+                                          FROM unnest(o.pizzas) WITH ORDINALITY AS u(name, position)
+                                          JOIN pizzas p ON p.name = u.name), '{}')
+WHERE o.pizzas IS NOT NULL;
+
+drop index if exists orders_pizzas_gin_idx;
+alter table orders drop column pizzas;
+create index orders_pizza_ids_gin_idx on orders using gin (pizza_ids);
+
+COMMIT;
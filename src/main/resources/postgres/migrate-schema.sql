@@ -0,0 +1,24 @@
+-- Migrates a database created before the order versioning, the Idempotency-Key support and the order events outbox.
+-- init.sql runs only on an empty database, so this script has to be run on the existing ones before starting the
+-- application. Every statement is skipped when its change is already there, so the script can be run more than once,
+-- before or after migrate-pizza-ids.sql.
+BEGIN;
+
+-- Optimistic locking of the orders: the existing orders start from version 0
+alter table orders add column if not exists version bigint default 0 not null;
+
+-- Keyset pagination, kitchen queue and date range search
+create index if not exists orders_created_date_order_id_idx on orders (created_date, order_id);
+create index if not exists orders_order_status_created_date_idx on orders (order_status_order_status_id, created_date);
+create index if not exists orders_created_date_brin_idx on orders using brin (created_date);
+
+-- Idempotency-Key support of POST /orders
+create table if not exists idempotency_keys (idempotency_key varchar(255) not null, request_hash varchar(64) not null, order_id uuid, created_date timestamp(6) not null, primary key (idempotency_key));
+create index if not exists idempotency_keys_created_date_idx on idempotency_keys (created_date);
+
+-- Transactional outbox of the order status changes
+create table if not exists order_events (event_id bigserial not null, order_id uuid not null, previous_status varchar(255), status varchar(255) not null, created_date timestamp(6) not null, dispatched_date timestamp(6), primary key (event_id));
+create index if not exists order_events_pending_idx on order_events (event_id) where dispatched_date is null;
+create index if not exists order_events_dispatched_date_idx on order_events (dispatched_date) where dispatched_date is not null;
+
+COMMIT;
@@ -0,0 +1,335 @@
+package it.sabato.pizzeria;
+
+import it.sabato.pizzeria.config.OrderStatusTestConstants;
+import it.sabato.pizzeria.config.PizzaPlaceDockerTestConf;
+import it.sabato.pizzeria.dto.OrderDTO;
+import it.sabato.pizzeria.factory.OrderDTOFactory;
+import it.sabato.pizzeria.factory.UUIDFactory;
+import it.sabato.pizzeria.repositories.OrderRepository;
+import it.sabato.pizzeria.service.KitchenQueue;
+import it.sabato.pizzeria.service.OrderService;
+import it.sabato.pizzeria.service.PizzaCatalog;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static it.sabato.pizzeria.config.IntegrationTestsQueries.DELETE_ORDERS;
+import static it.sabato.pizzeria.config.IntegrationTestsQueries.INSERT_ORDERS;
+import static org.springframework.test.context.jdbc.Sql.ExecutionPhase.AFTER_TEST_METHOD;
+import static org.springframework.test.context.jdbc.Sql.ExecutionPhase.BEFORE_TEST_METHOD;
+
+/**
+ * The type Pizza place benchmark tests. They are excluded from the default build and run with the benchmark profile
+ * (mvn test -Pbenchmark). Every benchmark logs its figures and only asserts the direction of the gain, since absolute
+ * numbers depend on the machine.
+ * @author Gianluca Sabato
+ */
+@Slf4j
+@Tag("benchmark")
+@SpringBootTest
+class PizzaPlaceBenchmarkTests extends PizzaPlaceDockerTestConf {
+    private static final int ORDERS = 20000;
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 10;
+    private static final int ORDER_IDS = 500000;
+    private static final int INSERT_BATCH_SIZE = 1000;
+    private static final int CLAIMED_ORDERS = 5000;
+    private static final int PIZZA_ORDERS = 500000;
+    private static final int[] WRITERS = {1, 8, 64};
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private KitchenQueue kitchenQueue;
+    @Autowired
+    private PizzaCatalog pizzaCatalog;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Compare reading an order listing through entities with reading it through {@link
+     * it.sabato.pizzeria.dto.OrderSummaryDTO} projections.
+     * @author Gianluca Sabato
+     */
+    @Test
+    @Sql(statements = {DELETE_ORDERS}, executionPhase = BEFORE_TEST_METHOD)
+    @Sql(statements = {DELETE_ORDERS, INSERT_ORDERS}, executionPhase = AFTER_TEST_METHOD)
+    public void benchmarkOrderListing() {
+        insertOrders(ORDERS);
+
+        Measurement entities = measure(() -> orderRepository.findAll(Sort.by("createdDate", "orderId")).stream()
+                .map(o -> OrderDTOFactory.getOrderDTO(o, pizzaCatalog)).toList());
+        Measurement projections = measure(() -> orderRepository.findFirstPage(Limit.of(ORDERS)).stream()
+                .map(o -> OrderDTOFactory.getOrderDTO(o, pizzaCatalog)).toList());
+
+        log.info("Order listing of {} orders, entities: {}", ORDERS, entities);
+        log.info("Order listing of {} orders, projections: {}", ORDERS, projections);
+
+        Assertions.assertTrue(projections.allocatedBytes() < entities.allocatedBytes());
+    }
+
+    /**
+     * Compare random (version 4) and time ordered (version 7) UUID primary keys: insert throughput and size of the
+     * primary key index. Random keys land all over the index and split its pages, time ordered keys are appended to
+     * its last page.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void benchmarkOrderIds() {
+        IdMeasurement random = measureInserts("order_ids_v4_benchmark", UUID::randomUUID);
+        IdMeasurement timeOrdered = measureInserts("order_ids_v7_benchmark", UUIDFactory::getTimeOrderedUUID);
+
+        log.info("Insert of {} random (v4) order ids: {}", ORDER_IDS, random);
+        log.info("Insert of {} time ordered (v7) order ids: {}", ORDER_IDS, timeOrdered);
+
+        Assertions.assertTrue(timeOrdered.indexBytes() < random.indexBytes());
+    }
+
+    /**
+     * Compare storing the pizzas of the orders as names and as menu ids: size of the table and of its GIN index, and
+     * latency of counting the orders of every pizza.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void benchmarkPizzaStorage() {
+        jdbcTemplate.execute("drop table if exists order_pizza_ids_benchmark");
+        jdbcTemplate.execute("drop table if exists order_pizza_names_benchmark");
+
+        try {
+            // Three pizzas per order, picked from the menu, with the same content inside both tables
+            jdbcTemplate.execute("create table order_pizza_ids_benchmark as select gen_random_uuid() as order_id, " +
+                    "array[(i % 10) + 1, (i / 10 % 10) + 1, (i / 100 % 10) + 1] as pizzas " +
+                    "from generate_series(1, " + PIZZA_ORDERS + ") i");
+            jdbcTemplate.execute("create table order_pizza_names_benchmark as select o.order_id, array(select " +
+                    "p.name::varchar(255) from unnest(o.pizzas) with ordinality u(pizza_id, n) join pizzas p " +
+                    "on p.pizza_id = u.pizza_id order by u.n) as pizzas from order_pizza_ids_benchmark o");
+
+            StorageMeasurement names = measureStorage("order_pizza_names_benchmark");
+            StorageMeasurement ids = measureStorage("order_pizza_ids_benchmark");
+
+            log.info("Pizzas of {} orders stored as names: {}", PIZZA_ORDERS, names);
+            log.info("Pizzas of {} orders stored as menu ids: {}", PIZZA_ORDERS, ids);
+
+            Assertions.assertTrue(ids.tableBytes() < names.tableBytes());
+            // A GIN index is mostly made of posting lists, and a menu has few keys, so the key width barely matters
+            Assertions.assertTrue(ids.indexBytes() <= names.indexBytes());
+        } finally {
+            jdbcTemplate.execute("drop table if exists order_pizza_ids_benchmark");
+            jdbcTemplate.execute("drop table if exists order_pizza_names_benchmark");
+        }
+    }
+
+    /**
+     * Measure the next order advancement throughput with 1, 8 and 64 concurrent kitchen stations, and check that no
+     * order is claimed twice.
+     *
+     * @throws Exception the exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    @Sql(statements = {DELETE_ORDERS}, executionPhase = BEFORE_TEST_METHOD)
+    @Sql(statements = {DELETE_ORDERS, INSERT_ORDERS}, executionPhase = AFTER_TEST_METHOD)
+    public void benchmarkNextOrderContention() throws Exception {
+        for (int writers : WRITERS) {
+            jdbcTemplate.update(DELETE_ORDERS);
+            insertOrders(CLAIMED_ORDERS);
+            kitchenQueue.reload();
+
+            Set<UUID> claimedOrderIds = ConcurrentHashMap.newKeySet();
+            AtomicInteger claims = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(writers);
+            long start = System.nanoTime();
+
+            try {
+                List<Future<?>> futures = new ArrayList<>(writers);
+
+                for (int i = 0; i < writers; i++) {
+                    futures.add(executor.submit(() -> {
+                        Optional<OrderDTO> nextOrder;
+
+                        while ((nextOrder = orderService.updateNextOrder()).isPresent()) {
+                            claimedOrderIds.add(nextOrder.get().getOrderId());
+                            claims.incrementAndGet();
+                        }
+
+                        return null;
+                    }));
+                }
+
+                for (Future<?> future : futures) {
+                    future.get(5, TimeUnit.MINUTES);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            log.info("Next order advancement with {} concurrent writers: {} orders claimed, {} claims/s", writers,
+                    claims.get(), String.format("%.0f", claims.get() / seconds));
+
+            Assertions.assertEquals(CLAIMED_ORDERS, claims.get());
+            Assertions.assertEquals(CLAIMED_ORDERS, claimedOrderIds.size());
+        }
+    }
+
+    private void insertOrders(int orders) {
+        jdbcTemplate.update("insert into orders (order_id, created_date, last_modified_date, " +
+                "order_status_order_status_id, pizza_ids) select gen_random_uuid(), now() - make_interval(secs => i), " +
+                "now() - make_interval(secs => i), ?, '{1,3,5}' " +
+                "from generate_series(1, ?) i", OrderStatusTestConstants.RECEVIED_ID, orders);
+    }
+
+    /**
+     * Insert the ids into a new table shaped like the orders primary key, in JDBC batches, and measure the throughput
+     * and the final size of the primary key index.
+     */
+    private IdMeasurement measureInserts(String table, Supplier<UUID> ids) {
+        jdbcTemplate.execute("drop table if exists " + table);
+        jdbcTemplate.execute("create table " + table + " (order_id uuid not null, created_date timestamp(6), " +
+                "primary key (order_id))");
+
+        try {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            long start = System.nanoTime();
+
+            for (int i = 0; i < ORDER_IDS; i += INSERT_BATCH_SIZE) {
+                List<Object[]> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+
+                for (int j = 0; j < INSERT_BATCH_SIZE; j++) {
+                    batch.add(new Object[]{ids.get(), now});
+                }
+
+                jdbcTemplate.batchUpdate("insert into " + table + " (order_id, created_date) values (?, ?)", batch);
+            }
+
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            Long indexBytes = jdbcTemplate.queryForObject("select pg_relation_size(?::regclass)", Long.class,
+                    table + "_pkey");
+
+            return new IdMeasurement(ORDER_IDS / seconds, indexBytes == null ? 0 : indexBytes);
+        } finally {
+            jdbcTemplate.execute("drop table " + table);
+        }
+    }
+
+    /**
+     * Index the pizzas column of the given table, and measure the size of the table and of the index and the median
+     * latency of counting the orders of every pizza.
+     */
+    private StorageMeasurement measureStorage(String table) {
+        jdbcTemplate.execute("create index " + table + "_gin_idx on " + table + " using gin (pizzas)");
+        jdbcTemplate.execute("vacuum analyze " + table);
+
+        String aggregation = "select pizza, count(*) from " + table + ", unnest(pizzas) as pizza group by pizza";
+        long[] nanos = new long[ITERATIONS];
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            jdbcTemplate.queryForList(aggregation);
+        }
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            jdbcTemplate.queryForList(aggregation);
+            nanos[i] = System.nanoTime() - start;
+        }
+
+        Long tableBytes = jdbcTemplate.queryForObject("select pg_table_size(?::regclass)", Long.class, table);
+        Long indexBytes = jdbcTemplate.queryForObject("select pg_relation_size(?::regclass)", Long.class,
+                table + "_gin_idx");
+
+        return new StorageMeasurement(tableBytes == null ? 0 : tableBytes, indexBytes == null ? 0 : indexBytes,
+                median(nanos) / 1_000_000.0);
+    }
+
+    /**
+     * Run the read path inside a read only transaction (as a request would, with the persistence context open), and
+     * measure the median latency and the bytes allocated by the current thread.
+     */
+    private Measurement measure(Supplier<List<?>> readPath) {
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            transactionTemplate.execute(status -> readPath.get());
+        }
+
+        long[] nanos = new long[ITERATIONS];
+        long[] allocatedBytes = new long[ITERATIONS];
+        long threadId = Thread.currentThread().getId();
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+
+            List<?> result = transactionTemplate.execute(status -> readPath.get());
+
+            nanos[i] = System.nanoTime() - start;
+            allocatedBytes[i] = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+            Assertions.assertNotNull(result);
+        }
+
+        return new Measurement(median(nanos) / 1_000_000.0, median(allocatedBytes));
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        return sorted[sorted.length / 2];
+    }
+
+    private record Measurement(double latencyMillis, long allocatedBytes) {
+        @Override
+        public String toString() {
+            return String.format("median latency %.2f ms, median allocation %.2f MB", latencyMillis,
+                    allocatedBytes / (1024.0 * 1024.0));
+        }
+    }
+
+    private record IdMeasurement(double insertsPerSecond, long indexBytes) {
+        @Override
+        public String toString() {
+            return String.format("%.0f inserts/s, primary key index %.2f MB", insertsPerSecond,
+                    indexBytes / (1024.0 * 1024.0));
+        }
+    }
+
+    private record StorageMeasurement(long tableBytes, long indexBytes, double aggregationMillis) {
+        @Override
+        public String toString() {
+            return String.format("table %.2f MB, GIN index %.2f MB, per pizza count median latency %.2f ms",
+                    tableBytes / (1024.0 * 1024.0), indexBytes / (1024.0 * 1024.0), aggregationMillis);
+        }
+    }
+}
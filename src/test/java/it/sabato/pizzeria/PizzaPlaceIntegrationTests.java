@@ -1,32 +1,69 @@
 package it.sabato.pizzeria;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import it.sabato.pizzeria.config.OrderStatusTestConstants;
 import it.sabato.pizzeria.config.PizzaPlaceDockerTestConf;
+import it.sabato.pizzeria.dto.OrderBatchItemDTO;
 import it.sabato.pizzeria.dto.OrderDTO;
+import it.sabato.pizzeria.dto.OrderEventDTO;
 import it.sabato.pizzeria.dto.OrderStatusDTO;
+import it.sabato.pizzeria.event.OrderEventSink;
+import it.sabato.pizzeria.service.KitchenBoard;
+import it.sabato.pizzeria.service.KitchenQueue;
+import it.sabato.pizzeria.service.OrderStatusCounters;
+import it.sabato.pizzeria.service.OrderCache;
+import it.sabato.pizzeria.service.OrderEventDispatcher;
+import it.sabato.pizzeria.service.OrderInvalidationListener;
 import it.sabato.pizzeria.service.OrderService;
 import it.sabato.pizzeria.service.OrderStatusService;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.IanaLinkRelations;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.jdbc.Sql;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
 
-import java.util.Collection;
-import java.util.List;
-import java.util.Set;
-import java.util.UUID;
+import javax.naming.ConfigurationException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static it.sabato.pizzeria.config.IntegrationTestsQueries.*;
 import static org.springframework.test.context.jdbc.Sql.ExecutionPhase.AFTER_TEST_METHOD;
@@ -36,17 +73,59 @@ import static org.springframework.test.context.jdbc.Sql.ExecutionPhase.BEFORE_TE
  * The type Pizza place integration tests.
  * @author Gianluca Sabato
  */
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "pizzeria.outbox.enabled=true")
 class PizzaPlaceIntegrationTests extends PizzaPlaceDockerTestConf {
     @Autowired
     private OrderService orderService;
     @Autowired
     private OrderStatusService orderStatusService;
     @Autowired
+    private KitchenQueue kitchenQueue;
+    @Autowired
+    private KitchenBoard kitchenBoard;
+    @Autowired
+    private OrderStatusCounters orderStatusCounters;
+    @Autowired
+    private OrderCache orderCache;
+    @Autowired
     private TestRestTemplate restTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private JdbcConnectionDetails jdbcConnectionDetails;
+    @Autowired
+    private OrderEventDispatcher orderEventDispatcher;
+    @Autowired
+    private InMemoryOrderEventSink inMemoryOrderEventSink;
     @LocalServerPort
     private int port;
 
+    /**
+     * Reload the kitchen queue and board, and reconcile the order status counters, since the @Sql scripts change the
+     * orders table behind the application back.
+     *
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * @author Gianluca Sabato
+     */
+    @BeforeEach
+    public void reloadKitchen() throws ConfigurationException {
+        kitchenQueue.reload();
+        kitchenBoard.reload();
+        orderStatusCounters.reconcile();
+    }
+
+    /**
+     * Invalidate the order cache, for the same reason.
+     * @author Gianluca Sabato
+     */
+    @BeforeEach
+    public void invalidateOrderCache() {
+        orderCache.invalidateAll();
+    }
+
     /**
      * Test get orders.
      * @author Gianluca Sabato
@@ -65,7 +144,154 @@ class PizzaPlaceIntegrationTests extends PizzaPlaceDockerTestConf {
             Assertions.assertNotNull(o.getOrderId());
             Assertions.assertNotNull(o.getPizzas());
             Assertions.assertFalse(o.getPizzas().isEmpty());
+            Assertions.assertEquals("http://localhost:" + port + "/orders/" + o.getOrderId(),
+                    o.getRequiredLink(IanaLinkRelations.SELF).getHref());
         });
+
+        OrderDTO orderDTO = collectionModel.getContent().iterator().next();
+        ResponseEntity<?> responseEntity = restTemplate.getForEntity(
+                orderDTO.getRequiredLink(IanaLinkRelations.SELF).toUri(), EntityModel.class);
+
+        Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+    }
+
+    /**
+     * Test get orders following the next and prev links.
+     * @author Gianluca Sabato
+     */
+    @Test
+    @Sql(statements = {DELETE_ORDERS, INSERT_ORDERS}, executionPhase = BEFORE_TEST_METHOD)
+    public void testGetOrdersPagination() {
+        ParameterizedTypeReference<CollectionModel<OrderDTO>> type = new ParameterizedTypeReference<>() {
+        };
+
+        CollectionModel<OrderDTO> firstPage = restTemplate.exchange("http://localhost:" + port + "/orders?size=3",
+                HttpMethod.GET, null, type).getBody();
+
+        Assertions.assertNotNull(firstPage);
+        Assertions.assertEquals(3, firstPage.getContent().size());
+        Assertions.assertTrue(firstPage.getLink(IanaLinkRelations.PREV).isEmpty());
+        Assertions.assertTrue(firstPage.getLink(IanaLinkRelations.NEXT).isPresent());
+
+        CollectionModel<OrderDTO> secondPage = restTemplate.exchange(
+                firstPage.getRequiredLink(IanaLinkRelations.NEXT).toUri(), HttpMethod.GET, null, type).getBody();
+
+        Assertions.assertNotNull(secondPage);
+        Assertions.assertEquals(1, secondPage.getContent().size());
+        Assertions.assertTrue(secondPage.getLink(IanaLinkRelations.NEXT).isEmpty());
+        Assertions.assertTrue(secondPage.getLink(IanaLinkRelations.PREV).isPresent());
+
+        Set<UUID> ids = new HashSet<>();
+        firstPage.getContent().forEach(o -> ids.add(o.getOrderId()));
+        secondPage.getContent().forEach(o -> ids.add(o.getOrderId()));
+
+        Assertions.assertEquals(4, ids.size());
+
+        CollectionModel<OrderDTO> previousPage = restTemplate.exchange(
+                secondPage.getRequiredLink(IanaLinkRelations.PREV).toUri(), HttpMethod.GET, null, type).getBody();
+
+        Assertions.assertNotNull(previousPage);
+        Assertions.assertEquals(firstPage.getContent().stream().map(OrderDTO::getOrderId).toList(),
+                previousPage.getContent().stream().map(OrderDTO::getOrderId).toList());
+    }
+
+    /**
+     * Test get orders with an invalid cursor.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testGetOrdersInvalidCursor() {
+        ResponseEntity<?> responseEntity = restTemplate.getForEntity(
+                "http://localhost:" + port + "/orders?after=invalid", CollectionModel.class);
+
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+    }
+
+    /**
+     * Test search orders, with each filter alone and combined.
+     * @author Gianluca Sabato
+     */
+    @Test
+    @Sql(statements = {DELETE_ORDERS, INSERT_ORDERS}, executionPhase = BEFORE_TEST_METHOD)
+    public void testSearchOrders() {
+        Assertions.assertEquals(3, searchOrders("status=" + OrderStatusTestConstants.RECEVIED).size());
+        Assertions.assertEquals(4, searchOrders("pizza=Quattro stagioni").size());
+        Assertions.assertEquals(0, searchOrders("pizza=Margherita").size());
+        Assertions.assertEquals(0, searchOrders("pizza=Hawaiian").size());
+        Assertions.assertEquals(2, searchOrders("createdFrom=2024-02-15T01:42:00&createdTo=2024-02-15T01:44:00").size());
+        Assertions.assertEquals(2, searchOrders("lastModifiedFrom=2024-02-16T00:00:00").size());
+        Assertions.assertEquals(0, searchOrders("status=UNKNOWN").size());
+
+        List<OrderDTO> orderDTOS = searchOrders("status=" + OrderStatusTestConstants.RECEVIED +
+                "&lastModifiedFrom=2024-02-16T00:00:00&pizza=Affumicata");
+
+        Assertions.assertEquals(1, orderDTOS.size());
+        Assertions.assertEquals(UUID.fromString("22a80655-1aac-4d3b-9b59-3902616b21a5"), orderDTOS.get(0).getOrderId());
+        Assertions.assertTrue(orderDTOS.get(0).getRequiredLink(IanaLinkRelations.SELF).getHref().endsWith(
+                "/orders/22a80655-1aac-4d3b-9b59-3902616b21a5"));
+    }
+
+    /**
+     * Test search orders following the next and prev links, which keep the search filters.
+     * @author Gianluca Sabato
+     */
+    @Test
+    @Sql(statements = {DELETE_ORDERS, INSERT_ORDERS}, executionPhase = BEFORE_TEST_METHOD)
+    public void testSearchOrdersPagination() {
+        ParameterizedTypeReference<CollectionModel<OrderDTO>> type = new ParameterizedTypeReference<>() {
+        };
+
+        CollectionModel<OrderDTO> firstPage = restTemplate.exchange("http://localhost:" + port +
+                "/orders/search?status=" + OrderStatusTestConstants.RECEVIED + "&size=2", HttpMethod.GET, null,
+                type).getBody();
+
+        Assertions.assertNotNull(firstPage);
+        Assertions.assertEquals(2, firstPage.getContent().size());
+        Assertions.assertTrue(firstPage.getLink(IanaLinkRelations.PREV).isEmpty());
+        Assertions.assertTrue(firstPage.getRequiredLink(IanaLinkRelations.NEXT).getHref().contains(
+                "status=" + OrderStatusTestConstants.RECEVIED));
+
+        CollectionModel<OrderDTO> secondPage = restTemplate.exchange(
+                firstPage.getRequiredLink(IanaLinkRelations.NEXT).toUri(), HttpMethod.GET, null, type).getBody();
+
+        Assertions.assertNotNull(secondPage);
+        Assertions.assertEquals(1, secondPage.getContent().size());
+        Assertions.assertTrue(secondPage.getLink(IanaLinkRelations.NEXT).isEmpty());
+
+        CollectionModel<OrderDTO> previousPage = restTemplate.exchange(
+                secondPage.getRequiredLink(IanaLinkRelations.PREV).toUri(), HttpMethod.GET, null, type).getBody();
+
+        Assertions.assertNotNull(previousPage);
+        Assertions.assertEquals(firstPage.getContent().stream().map(OrderDTO::getOrderId).toList(),
+                previousPage.getContent().stream().map(OrderDTO::getOrderId).toList());
+    }
+
+    /**
+     * Test export orders as newline delimited JSON.
+     * @author Gianluca Sabato
+     */
+    @Test
+    @Sql(statements = {DELETE_ORDERS, INSERT_ORDERS}, executionPhase = BEFORE_TEST_METHOD)
+    public void testExportOrders() throws JsonProcessingException {
+        ResponseEntity<String> responseEntity = restTemplate.getForEntity("http://localhost:" + port + "/orders/export",
+                String.class);
+
+        Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        Assertions.assertNotNull(responseEntity.getHeaders().getContentType());
+        Assertions.assertTrue(MediaType.APPLICATION_NDJSON.isCompatibleWith(
+                responseEntity.getHeaders().getContentType()));
+        Assertions.assertNotNull(responseEntity.getBody());
+
+        List<String> lines = responseEntity.getBody().lines().toList();
+
+        Assertions.assertEquals(4, lines.size());
+        for (String line : lines) {
+            JsonNode node = objectMapper.readTree(line);
+
+            Assertions.assertNotNull(UUID.fromString(node.get("orderId").asText()));
+            Assertions.assertFalse(node.get("status").asText().isEmpty());
+            Assertions.assertFalse(node.get("pizzas").isEmpty());
+        }
     }
 
     /**
@@ -104,11 +330,49 @@ class PizzaPlaceIntegrationTests extends PizzaPlaceDockerTestConf {
         Assertions.assertEquals(responseEntity.getStatusCode(), HttpStatus.NOT_FOUND);
     }
 
+    /**
+     * Test get next order with a wait: the waiting request is answered by the first order created, and a 404 is
+     * returned when no order is created within the wait.
+     *
+     * @throws Exception the exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    @Sql(statements = {DELETE_ORDERS}, executionPhase = BEFORE_TEST_METHOD)
+    @Sql(statements = {DELETE_ORDERS, INSERT_ORDERS}, executionPhase = AFTER_TEST_METHOD)
+    public void testGetNextOrderWait() throws Exception {
+        String url = "http://localhost:" + port + "/orders/next";
+
+        ResponseEntity<?> timeout = restTemplate.getForEntity(url + "?waitMs=100", EntityModel.class);
+
+        Assertions.assertEquals(HttpStatus.NOT_FOUND, timeout.getStatusCode());
+
+        ResponseEntity<?> tooLong = restTemplate.getForEntity(url + "?waitMs=3600000", EntityModel.class);
+
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, tooLong.getStatusCode());
+
+        CompletableFuture<ResponseEntity<EntityModel<OrderDTO>>> nextOrder = CompletableFuture.supplyAsync(
+                () -> restTemplate.exchange(url + "?waitMs=10000", HttpMethod.GET, null,
+                        new ParameterizedTypeReference<EntityModel<OrderDTO>>() {
+                        }));
+
+        OrderDTO order = orderService.createOrder(new OrderDTO(List.of("Margherita", "Diavola")));
+        ResponseEntity<EntityModel<OrderDTO>> response = nextOrder.get(10, TimeUnit.SECONDS);
+
+        Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+        Assertions.assertNotNull(response.getBody());
+        Assertions.assertNotNull(response.getBody().getContent());
+        Assertions.assertEquals(order.getOrderId(), response.getBody().getContent().getOrderId());
+        Assertions.assertIterableEquals(List.of("Margherita", "Diavola"), response.getBody().getContent()
+                .getPizzas());
+    }
+
     /**
      * Test put next order.
      * @author Gianluca Sabato
      */
     @Test
+    @Sql(statements = {DELETE_ORDERS, INSERT_ORDERS}, executionPhase = AFTER_TEST_METHOD)
     public void testPutNextOrder() {
         EntityModel<OrderDTO> entityModel = restTemplate.exchange("http://localhost:" + port + "/orders/next",
                 HttpMethod.PUT, null, new ParameterizedTypeReference<EntityModel<OrderDTO>>() {
@@ -140,6 +404,56 @@ class PizzaPlaceIntegrationTests extends PizzaPlaceDockerTestConf {
         Assertions.assertEquals(responseEntity.getStatusCode(), HttpStatus.NOT_FOUND);
     }
 
+    /**
+     * Test put next order with many kitchen stations calling it at the same time: every RECEIVED order must be
+     * claimed exactly once.
+     *
+     * @throws Exception the exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    @Sql(statements = {DELETE_ORDERS}, executionPhase = BEFORE_TEST_METHOD)
+    @Sql(statements = {DELETE_ORDERS, INSERT_ORDERS}, executionPhase = AFTER_TEST_METHOD)
+    public void testPutNextOrderConcurrentStations() throws Exception {
+        int orders = 200;
+        int stations = 16;
+
+        for (int i = 0; i < orders; i++) {
+            orderService.createOrder(new OrderDTO(List.of("Margherita")));
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(stations);
+        List<Future<List<UUID>>> futures = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < stations; i++) {
+                futures.add(executorService.submit(() -> {
+                    List<UUID> claimed = new ArrayList<>();
+                    Optional<OrderDTO> nextOrder = orderService.updateNextOrder();
+
+                    while (nextOrder.isPresent()) {
+                        claimed.add(nextOrder.get().getOrderId());
+                        nextOrder = orderService.updateNextOrder();
+                    }
+
+                    return claimed;
+                }));
+            }
+
+            List<UUID> claimedOrders = new ArrayList<>();
+
+            for (Future<List<UUID>> future : futures) {
+                claimedOrders.addAll(future.get(1, TimeUnit.MINUTES));
+            }
+
+            Assertions.assertEquals(orders, claimedOrders.size());
+            Assertions.assertEquals(orders, new HashSet<>(claimedOrders).size());
+            Assertions.assertTrue(orderService.getNextOrder().isEmpty());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
     /**
      * Test get order.
      * @author Gianluca Sabato
@@ -161,6 +475,43 @@ class PizzaPlaceIntegrationTests extends PizzaPlaceDockerTestConf {
         Assertions.assertFalse(orderDTO.getPizzas().isEmpty());
     }
 
+    /**
+     * Test conditional get order: a matching If-None-Match gets a 304 until the order changes.
+     * @author Gianluca Sabato
+     */
+    @Test
+    @Sql(statements = {DELETE_ORDERS, INSERT_ORDERS}, executionPhase = AFTER_TEST_METHOD)
+    public void testGetOrderNotModified() {
+        String orderUrl = "http://localhost:" + port + "/orders/22a80655-1aac-4d3b-9b59-3902616b21a5";
+        String orderStatusUrl = orderUrl + "/orderStatus";
+
+        ResponseEntity<String> orderResponse = restTemplate.getForEntity(orderUrl, String.class);
+        ResponseEntity<String> orderStatusResponse = restTemplate.getForEntity(orderStatusUrl, String.class);
+        String orderETag = orderResponse.getHeaders().getETag();
+        String orderStatusETag = orderStatusResponse.getHeaders().getETag();
+
+        Assertions.assertEquals(HttpStatus.OK, orderResponse.getStatusCode());
+        Assertions.assertNotNull(orderETag);
+        Assertions.assertNotNull(orderStatusETag);
+        Assertions.assertEquals(HttpStatus.NOT_MODIFIED, getIfNoneMatch(orderUrl, orderETag).getStatusCode());
+        Assertions.assertNull(getIfNoneMatch(orderUrl, orderETag).getBody());
+        Assertions.assertEquals(HttpStatus.NOT_MODIFIED, getIfNoneMatch(orderStatusUrl, orderStatusETag)
+                .getStatusCode());
+
+        OrderStatusDTO orderStatusDTORequest = new OrderStatusDTO(OrderStatusTestConstants.CANCELLED_ID);
+        restTemplate.exchange(orderStatusUrl, HttpMethod.PUT, new HttpEntity<>(orderStatusDTORequest),
+                EntityModel.class);
+
+        ResponseEntity<String> modifiedOrderResponse = getIfNoneMatch(orderUrl, orderETag);
+        ResponseEntity<String> modifiedOrderStatusResponse = getIfNoneMatch(orderStatusUrl, orderStatusETag);
+
+        Assertions.assertEquals(HttpStatus.OK, modifiedOrderResponse.getStatusCode());
+        Assertions.assertNotEquals(orderETag, modifiedOrderResponse.getHeaders().getETag());
+        Assertions.assertEquals(HttpStatus.OK, modifiedOrderStatusResponse.getStatusCode());
+        Assertions.assertNotNull(modifiedOrderStatusResponse.getBody());
+        Assertions.assertTrue(modifiedOrderStatusResponse.getBody().contains(OrderStatusTestConstants.CANCELLED));
+    }
+
     /**
      * Test get order when the order does not exist.
      * @author Gianluca Sabato
@@ -211,18 +562,24 @@ class PizzaPlaceIntegrationTests extends PizzaPlaceDockerTestConf {
     }
 
     /**
-     * Test put order status for order.
+     * Test put order status for order. The order status read before the update is cached, and the update invalidates
+     * it.
      * @author Gianluca Sabato
      */
     @Test
+    @Sql(statements = {DELETE_ORDERS, INSERT_ORDERS}, executionPhase = AFTER_TEST_METHOD)
     public void testPutOrderStatusForOrder() {
+        String url = "http://localhost:" + port + "/orders/c2292f78-ca47-432b-b5cf-df0b0c739592/orderStatus";
+
+        Assertions.assertEquals(OrderStatusTestConstants.PROCESSING, restTemplate.getForObject(url,
+                OrderStatusDTO.class).getOrderStatus());
+
         OrderStatusDTO orderStatusDTORequest = new OrderStatusDTO(OrderStatusTestConstants.CANCELLED_ID);
         orderStatusDTORequest.setOrderStatus(OrderStatusTestConstants.CANCELLED);
         HttpEntity<OrderStatusDTO> request = new HttpEntity<>(orderStatusDTORequest);
 
-        EntityModel<OrderStatusDTO> entityModel = restTemplate.exchange(
-                "http://localhost:" + port + "/orders/c2292f78-ca47-432b-b5cf-df0b0c739592/orderStatus", HttpMethod.PUT,
-                request, new ParameterizedTypeReference<EntityModel<OrderStatusDTO>>() {
+        EntityModel<OrderStatusDTO> entityModel = restTemplate.exchange(url, HttpMethod.PUT, request,
+                new ParameterizedTypeReference<EntityModel<OrderStatusDTO>>() {
                 }).getBody();
 
         Assertions.assertNotNull(entityModel);
@@ -234,6 +591,92 @@ class PizzaPlaceIntegrationTests extends PizzaPlaceDockerTestConf {
         Assertions.assertTrue(StringUtils.isNotBlank(orderStatusDTO.getOrderStatus()));
         Assertions.assertEquals(orderStatusDTORequest.getOrderStatusId(), orderStatusDTO.getOrderStatusId());
         Assertions.assertEquals(orderStatusDTORequest.getOrderStatus(), orderStatusDTO.getOrderStatus());
+        Assertions.assertEquals(OrderStatusTestConstants.CANCELLED, restTemplate.getForObject(url,
+                OrderStatusDTO.class).getOrderStatus());
+    }
+
+    /**
+     * Test put order status for order with an expected status: the order is updated only if it has that status, and
+     * its last modified date and version are refreshed.
+     * @author Gianluca Sabato
+     */
+    @Test
+    @Sql(statements = {DELETE_ORDERS, INSERT_ORDERS}, executionPhase = AFTER_TEST_METHOD)
+    public void testPutOrderStatusForOrderExpectedStatus() {
+        OrderStatusDTO orderStatusDTORequest = new OrderStatusDTO(OrderStatusTestConstants.COMPLETED_ID);
+        HttpEntity<OrderStatusDTO> request = new HttpEntity<>(orderStatusDTORequest);
+        String url = "http://localhost:" + port + "/orders/c2292f78-ca47-432b-b5cf-df0b0c739592/orderStatus" +
+                "?expectedOrderStatusId=";
+
+        ResponseEntity<String> conflict = restTemplate.exchange(url + OrderStatusTestConstants.RECEVIED_ID,
+                HttpMethod.PUT, request, String.class);
+
+        Assertions.assertEquals(HttpStatus.CONFLICT, conflict.getStatusCode());
+        Assertions.assertEquals(OrderStatusTestConstants.PROCESSING_ID, jdbcTemplate.queryForObject(
+                "select order_status_order_status_id from orders where order_id = " +
+                        "'c2292f78-ca47-432b-b5cf-df0b0c739592'", UUID.class));
+
+        EntityModel<OrderStatusDTO> entityModel = restTemplate.exchange(url + OrderStatusTestConstants.PROCESSING_ID,
+                HttpMethod.PUT, request, new ParameterizedTypeReference<EntityModel<OrderStatusDTO>>() {
+                }).getBody();
+
+        Assertions.assertNotNull(entityModel);
+        Assertions.assertNotNull(entityModel.getContent());
+        Assertions.assertEquals(OrderStatusTestConstants.COMPLETED, entityModel.getContent().getOrderStatus());
+        Assertions.assertEquals(OrderStatusTestConstants.COMPLETED_ID, jdbcTemplate.queryForObject(
+                "select order_status_order_status_id from orders where order_id = " +
+                        "'c2292f78-ca47-432b-b5cf-df0b0c739592'", UUID.class));
+        Assertions.assertEquals(Boolean.TRUE, jdbcTemplate.queryForObject("select last_modified_date > " +
+                "'2024-02-16 04:45:27.447545' from orders where order_id = 'c2292f78-ca47-432b-b5cf-df0b0c739592'",
+                Boolean.class));
+        Assertions.assertEquals(1L, jdbcTemplate.queryForObject("select version from orders where order_id = " +
+                "'c2292f78-ca47-432b-b5cf-df0b0c739592'", Long.class));
+    }
+
+    /**
+     * Test put order status for order along an illegal transition (COMPLETED to RECEVIED).
+     * @author Gianluca Sabato
+     */
+    @Test
+    @Sql(statements = {DELETE_ORDERS, INSERT_ORDERS}, executionPhase = AFTER_TEST_METHOD)
+    public void testPutOrderStatusForOrderIllegalTransition() {
+        String url = "http://localhost:" + port + "/orders/c2292f78-ca47-432b-b5cf-df0b0c739592/orderStatus";
+
+        ResponseEntity<String> completed = restTemplate.exchange(url, HttpMethod.PUT, new HttpEntity<>(
+                new OrderStatusDTO(OrderStatusTestConstants.COMPLETED_ID)), String.class);
+        ResponseEntity<String> received = restTemplate.exchange(url, HttpMethod.PUT, new HttpEntity<>(
+                new OrderStatusDTO(OrderStatusTestConstants.RECEVIED_ID)), String.class);
+
+        Assertions.assertEquals(HttpStatus.OK, completed.getStatusCode());
+        Assertions.assertEquals(HttpStatus.CONFLICT, received.getStatusCode());
+        Assertions.assertEquals(OrderStatusTestConstants.COMPLETED_ID, jdbcTemplate.queryForObject(
+                "select order_status_order_status_id from orders where order_id = " +
+                        "'c2292f78-ca47-432b-b5cf-df0b0c739592'", UUID.class));
+    }
+
+    /**
+     * Test put order status for order repeated with the status the order already has: PUT is idempotent, so it
+     * succeeds and leaves the order unchanged.
+     * @author Gianluca Sabato
+     */
+    @Test
+    @Sql(statements = {DELETE_ORDERS, INSERT_ORDERS}, executionPhase = AFTER_TEST_METHOD)
+    public void testPutOrderStatusForOrderSameStatus() {
+        String url = "http://localhost:" + port + "/orders/c2292f78-ca47-432b-b5cf-df0b0c739592/orderStatus";
+        HttpEntity<OrderStatusDTO> request = new HttpEntity<>(new OrderStatusDTO(
+                OrderStatusTestConstants.PROCESSING_ID));
+        String countEvents = "select count(*) from order_events where order_id = " +
+                "'c2292f78-ca47-432b-b5cf-df0b0c739592'";
+        Integer events = jdbcTemplate.queryForObject(countEvents, Integer.class);
+
+        ResponseEntity<String> first = restTemplate.exchange(url, HttpMethod.PUT, request, String.class);
+        ResponseEntity<String> second = restTemplate.exchange(url, HttpMethod.PUT, request, String.class);
+
+        Assertions.assertEquals(HttpStatus.OK, first.getStatusCode());
+        Assertions.assertEquals(HttpStatus.OK, second.getStatusCode());
+        Assertions.assertEquals(0L, jdbcTemplate.queryForObject("select version from orders where order_id = " +
+                "'c2292f78-ca47-432b-b5cf-df0b0c739592'", Long.class));
+        Assertions.assertEquals(events, jdbcTemplate.queryForObject(countEvents, Integer.class));
     }
 
     /**
@@ -274,6 +717,392 @@ class PizzaPlaceIntegrationTests extends PizzaPlaceDockerTestConf {
         Assertions.assertEquals(responseEntity.getStatusCode(), HttpStatus.NOT_FOUND);
     }
 
+    /**
+     * Test put order status for order with a second application instance on the same database: the order cached by
+     * the second instance is invalidated by the notification sent by the first one, and the kitchen queue and the
+     * order counters of the second instance follow the changes done by the first one.
+     *
+     * @throws InterruptedException the interrupted exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    @Sql(statements = {DELETE_ORDERS, INSERT_ORDERS}, executionPhase = AFTER_TEST_METHOD)
+    public void testPutOrderStatusForOrderOtherInstance() throws InterruptedException {
+        UUID orderId = UUID.fromString("c2292f78-ca47-432b-b5cf-df0b0c739592");
+
+        try (ConfigurableApplicationContext otherInstance = new SpringApplicationBuilder(PizzaPlaceApplication.class)
+                .run("--server.port=0", "--spring.datasource.url=" + jdbcConnectionDetails.getJdbcUrl(),
+                        "--spring.datasource.username=" + jdbcConnectionDetails.getUsername(),
+                        "--spring.datasource.password=" + jdbcConnectionDetails.getPassword())) {
+            OrderStatusService otherOrderStatusService = otherInstance.getBean(OrderStatusService.class);
+            OrderInvalidationListener otherListener = otherInstance.getBean(OrderInvalidationListener.class);
+            KitchenQueue otherKitchenQueue = otherInstance.getBean(KitchenQueue.class);
+            OrderStatusCounters otherOrderStatusCounters = otherInstance.getBean(OrderStatusCounters.class);
+
+            long deadline = System.currentTimeMillis() + 5000;
+
+            while (!otherListener.isListening() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            Assertions.assertTrue(otherListener.isListening());
+
+            int queued = otherKitchenQueue.size();
+            long completed = otherOrderStatusCounters.getCount(OrderStatusTestConstants.COMPLETED);
+            long processing = otherOrderStatusCounters.getCount(OrderStatusTestConstants.PROCESSING);
+
+            Assertions.assertEquals(OrderStatusTestConstants.PROCESSING, otherOrderStatusService
+                    .getOrderStatusForOrderId(orderId).orElseThrow().getOrderStatus());
+
+            HttpEntity<OrderStatusDTO> request = new HttpEntity<>(new OrderStatusDTO(
+                    OrderStatusTestConstants.COMPLETED_ID));
+            ResponseEntity<String> responseEntity = restTemplate.exchange("http://localhost:" + port + "/orders/" +
+                    orderId + "/orderStatus", HttpMethod.PUT, request, String.class);
+
+            Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+
+            deadline = System.currentTimeMillis() + 5000;
+            String orderStatus = OrderStatusTestConstants.PROCESSING;
+
+            while (!OrderStatusTestConstants.COMPLETED.equals(orderStatus) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+                orderStatus = otherOrderStatusService.getOrderStatusForOrderId(orderId).orElseThrow()
+                        .getOrderStatus();
+            }
+
+            Assertions.assertEquals(OrderStatusTestConstants.COMPLETED, orderStatus);
+            Assertions.assertEquals(completed + 1, otherOrderStatusCounters.getCount(
+                    OrderStatusTestConstants.COMPLETED));
+            Assertions.assertEquals(processing - 1, otherOrderStatusCounters.getCount(
+                    OrderStatusTestConstants.PROCESSING));
+
+            Assertions.assertEquals(HttpStatus.CREATED, restTemplate.postForEntity("http://localhost:" + port +
+                    "/orders", new OrderDTO(List.of("Margherita")), String.class).getStatusCode());
+
+            deadline = System.currentTimeMillis() + 5000;
+
+            while (otherKitchenQueue.size() == queued && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            Assertions.assertEquals(queued + 1, otherKitchenQueue.size());
+        }
+    }
+
+    /**
+     * Test put order status for order writes the status change to the outbox, and the dispatcher delivers it to the
+     * sinks and checkpoints it. The refused changes don't write anything.
+     *
+     * @throws InterruptedException the interrupted exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    @Sql(statements = DELETE_ORDER_EVENTS, executionPhase = BEFORE_TEST_METHOD)
+    @Sql(statements = {DELETE_ORDERS, INSERT_ORDERS}, executionPhase = AFTER_TEST_METHOD)
+    public void testPutOrderStatusForOrderOutbox() throws InterruptedException {
+        UUID orderId = UUID.fromString("c2292f78-ca47-432b-b5cf-df0b0c739592");
+        String url = "http://localhost:" + port + "/orders/" + orderId + "/orderStatus";
+
+        Assertions.assertEquals(HttpStatus.CONFLICT, restTemplate.exchange(url, HttpMethod.PUT,
+                new HttpEntity<>(new OrderStatusDTO(OrderStatusTestConstants.RECEVIED_ID)), String.class)
+                .getStatusCode());
+        Assertions.assertEquals(HttpStatus.OK, restTemplate.exchange(url, HttpMethod.PUT,
+                new HttpEntity<>(new OrderStatusDTO(OrderStatusTestConstants.COMPLETED_ID)), String.class)
+                .getStatusCode());
+        Assertions.assertEquals(1, jdbcTemplate.queryForObject("select count(*) from order_events where order_id = " +
+                "? and previous_status = ? and status = ?", Integer.class, orderId, OrderStatusTestConstants.PROCESSING,
+                OrderStatusTestConstants.COMPLETED));
+
+        orderEventDispatcher.dispatchPendingEvents();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        Integer pending = 1;
+
+        while (pending > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            pending = jdbcTemplate.queryForObject("select count(*) from order_events where dispatched_date is null",
+                    Integer.class);
+        }
+
+        Assertions.assertEquals(0, pending);
+        Assertions.assertTrue(inMemoryOrderEventSink.getEvents().stream().anyMatch(e -> orderId.equals(
+                e.getOrderId()) && OrderStatusTestConstants.COMPLETED.equals(e.getStatus())));
+    }
+
+    /**
+     * Test get kitchen board: the whole board in queue order, and then only the orders changed since its version and
+     * epoch.
+     *
+     * @throws Exception the exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    @Sql(statements = {DELETE_ORDERS, INSERT_ORDERS}, executionPhase = AFTER_TEST_METHOD)
+    public void testGetKitchenBoard() throws Exception {
+        String url = "http://localhost:" + port + "/kitchen/board";
+        JsonNode board = objectMapper.readTree(restTemplate.getForObject(url, String.class));
+
+        Assertions.assertFalse(board.get("delta").asBoolean());
+        Assertions.assertEquals(3, board.get("receivedCount").asLong());
+        Assertions.assertEquals(1, board.get("processingCount").asLong());
+        Assertions.assertEquals(List.of("c2292f78-ca47-432b-b5cf-df0b0c739592", "22a80655-1aac-4d3b-9b59-3902616b21a5",
+                "0b0fa7e5-7b7b-40a0-80ce-f7da87e1463a", "280cf23b-701c-4368-a28d-2392971ff324"),
+                board.get("orders").findValuesAsText("orderId"));
+
+        long version = board.get("version").asLong();
+        String epoch = board.get("epoch").asText();
+        OrderDTO order = orderService.createOrder(new OrderDTO(List.of("Margherita")));
+        restTemplate.put("http://localhost:" + port + "/orders/c2292f78-ca47-432b-b5cf-df0b0c739592/orderStatus",
+                new OrderStatusDTO(OrderStatusTestConstants.COMPLETED_ID));
+
+        JsonNode delta = objectMapper.readTree(restTemplate.getForObject(url + "?since=" + version + "&epoch=" +
+                epoch, String.class));
+
+        Assertions.assertTrue(delta.get("delta").asBoolean());
+        Assertions.assertEquals(version + 2, delta.get("version").asLong());
+        Assertions.assertEquals(4, delta.get("receivedCount").asLong());
+        Assertions.assertEquals(0, delta.get("processingCount").asLong());
+        Assertions.assertEquals(List.of(order.getOrderId().toString(), "c2292f78-ca47-432b-b5cf-df0b0c739592"),
+                delta.get("orders").findValuesAsText("orderId"));
+        Assertions.assertEquals(List.of(OrderStatusTestConstants.RECEVIED, OrderStatusTestConstants.COMPLETED),
+                delta.get("orders").findValuesAsText("orderStatus"));
+
+        JsonNode unchanged = objectMapper.readTree(restTemplate.getForObject(url + "?since=" + (version + 2) +
+                "&epoch=" + epoch, String.class));
+
+        Assertions.assertTrue(unchanged.get("delta").asBoolean());
+        Assertions.assertTrue(unchanged.get("orders").isEmpty());
+    }
+
+    /**
+     * Test kitchen board socket: the socket starts with a snapshot of the board, and then gets the board changes.
+     *
+     * @throws Exception the exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    @Sql(statements = {DELETE_ORDERS, INSERT_ORDERS}, executionPhase = AFTER_TEST_METHOD)
+    public void testKitchenBoardSocket() throws Exception {
+        BlockingQueue<JsonNode> messages = new LinkedBlockingQueue<>();
+        WebSocketSession session = new StandardWebSocketClient().execute(new TextWebSocketHandler() {
+            @Override
+            protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+                messages.add(objectMapper.readTree(message.getPayload()));
+            }
+        }, "ws://localhost:" + port + "/kitchen/board/socket").get(10, TimeUnit.SECONDS);
+
+        try {
+            JsonNode snapshot = messages.poll(10, TimeUnit.SECONDS);
+
+            Assertions.assertNotNull(snapshot);
+            Assertions.assertEquals("SNAPSHOT", snapshot.get("type").asText());
+            Assertions.assertEquals(4, snapshot.get("orders").size());
+
+            OrderDTO order = orderService.createOrder(new OrderDTO(List.of("Margherita")));
+            JsonNode added = messages.poll(10, TimeUnit.SECONDS);
+
+            Assertions.assertNotNull(added);
+            Assertions.assertEquals("ADDED", added.get("type").asText());
+            Assertions.assertEquals(snapshot.get("version").asLong() + 1, added.get("version").asLong());
+            Assertions.assertEquals(order.getOrderId().toString(), added.get("order").get("orderId").asText());
+            Assertions.assertEquals(4, added.get("receivedCount").asLong());
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Test the pizzas actuator endpoint: a menu change is picked up by a refresh, without a restart.
+     *
+     * @throws Exception the exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testRefreshPizzas() throws Exception {
+        String url = "http://localhost:" + port + "/actuator/pizzas";
+        JsonNode pizzas = objectMapper.readTree(restTemplate.getForObject(url, String.class));
+
+        Assertions.assertEquals(10, pizzas.size());
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        jdbcTemplate.update("INSERT INTO pizzas (pizza_id, name) VALUES (11, 'Ortolana')");
+
+        try {
+            Assertions.assertEquals(HttpStatus.BAD_REQUEST, restTemplate.postForEntity("http://localhost:" + port +
+                    "/orders", new OrderDTO(List.of("Ortolana")), String.class).getStatusCode());
+
+            pizzas = objectMapper.readTree(restTemplate.postForObject(url, new HttpEntity<>(Map.of(), headers),
+                    String.class));
+
+            Assertions.assertEquals(11, pizzas.size());
+            Assertions.assertEquals(List.of("Ortolana"), orderService.createOrder(new OrderDTO(List.of("Ortolana")))
+                    .getPizzas());
+        } finally {
+            jdbcTemplate.update("DELETE FROM orders WHERE 11 = ANY(pizza_ids)");
+            jdbcTemplate.update("DELETE FROM pizzas WHERE pizza_id = 11");
+            restTemplate.postForObject(url, new HttpEntity<>(Map.of(), headers), String.class);
+        }
+    }
+
+    /**
+     * Test conditional get order after a pizza is renamed: the ETag changes with the menu, and the order, even if
+     * cached, gets the new name.
+     *
+     * @throws Exception the exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    @Sql(statements = {DELETE_ORDERS, INSERT_ORDERS}, executionPhase = BEFORE_TEST_METHOD)
+    public void testGetOrderRenamedPizza() throws Exception {
+        String url = "http://localhost:" + port + "/actuator/pizzas";
+        String orderUrl = "http://localhost:" + port + "/orders/22a80655-1aac-4d3b-9b59-3902616b21a5";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        String orderETag = restTemplate.getForEntity(orderUrl, String.class).getHeaders().getETag();
+
+        jdbcTemplate.update("UPDATE pizzas SET name = 'Affumicata speciale' WHERE name = 'Affumicata'");
+
+        try {
+            restTemplate.postForObject(url, new HttpEntity<>(Map.of(), headers), String.class);
+            ResponseEntity<String> orderResponse = getIfNoneMatch(orderUrl, orderETag);
+
+            Assertions.assertEquals(HttpStatus.OK, orderResponse.getStatusCode());
+            Assertions.assertNotEquals(orderETag, orderResponse.getHeaders().getETag());
+            Assertions.assertTrue(objectMapper.readTree(orderResponse.getBody()).get("pizzas").toString().contains(
+                    "Affumicata speciale"));
+        } finally {
+            jdbcTemplate.update("UPDATE pizzas SET name = 'Affumicata' WHERE name = 'Affumicata speciale'");
+            restTemplate.postForObject(url, new HttpEntity<>(Map.of(), headers), String.class);
+        }
+    }
+
+    /**
+     * Test the pizzas actuator endpoint refuses a menu missing a pizza still ordered, and keeps the current one.
+     *
+     * @throws Exception the exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testRefreshPizzasDroppedOrderedPizza() throws Exception {
+        String url = "http://localhost:" + port + "/actuator/pizzas";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        jdbcTemplate.update("INSERT INTO pizzas (pizza_id, name) VALUES (11, 'Ortolana')");
+
+        try {
+            restTemplate.postForObject(url, new HttpEntity<>(Map.of(), headers), String.class);
+            UUID orderId = orderService.createOrder(new OrderDTO(List.of("Ortolana"))).getOrderId();
+            jdbcTemplate.update("DELETE FROM pizzas WHERE pizza_id = 11");
+
+            Assertions.assertFalse(restTemplate.postForEntity(url, new HttpEntity<>(Map.of(), headers), String.class)
+                    .getStatusCode().is2xxSuccessful());
+            Assertions.assertEquals(11, objectMapper.readTree(restTemplate.getForObject(url, String.class)).size());
+            Assertions.assertEquals(List.of("Ortolana"), restTemplate.getForObject("http://localhost:" + port +
+                    "/orders/" + orderId, OrderDTO.class).getPizzas());
+        } finally {
+            jdbcTemplate.update("DELETE FROM orders WHERE 11 = ANY(pizza_ids)");
+            jdbcTemplate.update("DELETE FROM pizzas WHERE pizza_id = 11");
+            restTemplate.postForObject(url, new HttpEntity<>(Map.of(), headers), String.class);
+        }
+    }
+
+    /**
+     * Test the order metrics actuator endpoint and gauges: they are served by the in-memory counters, kept up to date
+     * by the order changes.
+     *
+     * @throws Exception the exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    @Sql(statements = {DELETE_ORDERS, INSERT_ORDERS}, executionPhase = AFTER_TEST_METHOD)
+    public void testOrderMetrics() throws Exception {
+        String url = "http://localhost:" + port + "/actuator/ordermetrics";
+        JsonNode metrics = objectMapper.readTree(restTemplate.getForObject(url, String.class));
+        long received = metrics.get("counts").get(OrderStatusTestConstants.RECEVIED).asLong();
+        long processing = metrics.get("counts").get(OrderStatusTestConstants.PROCESSING).asLong();
+        long completed = metrics.get("counts").get(OrderStatusTestConstants.COMPLETED).asLong();
+
+        Assertions.assertTrue(received > 0);
+        Assertions.assertEquals(1, processing);
+        Assertions.assertTrue(metrics.get("oldestAgeSeconds").get(OrderStatusTestConstants.RECEVIED).asLong() > 0);
+        Assertions.assertTrue(metrics.get("oldestAgeSeconds").get(OrderStatusTestConstants.PROCESSING).asLong() > 0);
+
+        orderService.createOrder(new OrderDTO(List.of("Margherita")));
+        restTemplate.put("http://localhost:" + port + "/orders/c2292f78-ca47-432b-b5cf-df0b0c739592/orderStatus",
+                new OrderStatusDTO(OrderStatusTestConstants.COMPLETED_ID));
+
+        metrics = objectMapper.readTree(restTemplate.getForObject(url, String.class));
+
+        Assertions.assertEquals(received + 1, metrics.get("counts").get(OrderStatusTestConstants.RECEVIED).asLong());
+        Assertions.assertEquals(0, metrics.get("counts").get(OrderStatusTestConstants.PROCESSING).asLong());
+        Assertions.assertEquals(completed + 1, metrics.get("counts").get(OrderStatusTestConstants.COMPLETED)
+                .asLong());
+        Assertions.assertNull(metrics.get("oldestAgeSeconds").get(OrderStatusTestConstants.PROCESSING));
+
+        JsonNode gauge = objectMapper.readTree(restTemplate.getForObject("http://localhost:" + port +
+                "/actuator/metrics/pizzeria.orders?tag=status:" + OrderStatusTestConstants.RECEVIED, String.class));
+
+        Assertions.assertEquals(received + 1, gauge.get("measurements").get(0).get("value").asLong());
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        JsonNode reconciled = objectMapper.readTree(restTemplate.postForObject(url, new HttpEntity<>(Map.of(),
+                headers), String.class));
+
+        Assertions.assertEquals(0, reconciled.get("lastReconciliationDrift").asLong());
+        Assertions.assertEquals(received + 1, reconciled.get("counts").get(OrderStatusTestConstants.RECEVIED)
+                .asLong());
+    }
+
+    /**
+     * Test get order events: the stream starts with the current status, gets the status changes, and it's closed when
+     * the order is completed.
+     *
+     * @throws Exception the exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    @Sql(statements = {DELETE_ORDERS, INSERT_ORDERS}, executionPhase = AFTER_TEST_METHOD)
+    public void testGetOrderEvents() throws Exception {
+        String url = "http://localhost:" + port + "/orders/c2292f78-ca47-432b-b5cf-df0b0c739592";
+        HttpClient httpClient = HttpClient.newHttpClient();
+        HttpRequest eventsRequest = HttpRequest.newBuilder(URI.create(url + "/events"))
+                .header(HttpHeaders.ACCEPT, MediaType.TEXT_EVENT_STREAM_VALUE).build();
+
+        HttpResponse<Stream<String>> response = httpClient.send(eventsRequest, HttpResponse.BodyHandlers.ofLines());
+
+        Assertions.assertEquals(HttpStatus.OK.value(), response.statusCode());
+
+        Iterator<String> dataLines = response.body().filter(line -> line.startsWith("data:")).iterator();
+
+        Assertions.assertEquals(OrderStatusTestConstants.PROCESSING, objectMapper.readTree(dataLines.next()
+                .substring("data:".length())).get("orderStatus").asText());
+
+        restTemplate.put(url + "/orderStatus", new OrderStatusDTO(OrderStatusTestConstants.COMPLETED_ID));
+
+        List<String> statuses = CompletableFuture.supplyAsync(() -> {
+            List<String> remaining = new ArrayList<>();
+            dataLines.forEachRemaining(line -> remaining.add(line));
+
+            return remaining;
+        }).get(10, TimeUnit.SECONDS).stream().map(line -> {
+            try {
+                return objectMapper.readTree(line.substring("data:".length())).get("orderStatus").asText();
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        }).toList();
+
+        Assertions.assertEquals(List.of(OrderStatusTestConstants.COMPLETED), statuses);
+
+        HttpResponse<Void> notFound = httpClient.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port +
+                "/orders/c2292f78-ca47-432b-b5cf-df0b0c73959a/events")).header(HttpHeaders.ACCEPT,
+                MediaType.TEXT_EVENT_STREAM_VALUE).build(), HttpResponse.BodyHandlers.discarding());
+
+        Assertions.assertEquals(HttpStatus.NOT_FOUND.value(), notFound.statusCode());
+    }
+
     /**
      * Test post order.
      * @author Gianluca Sabato
@@ -293,11 +1122,177 @@ class PizzaPlaceIntegrationTests extends PizzaPlaceDockerTestConf {
         OrderDTO orderDTO = entityModel.getContent();
 
         Assertions.assertNotNull(orderDTO.getOrderId());
+        Assertions.assertEquals(7, orderDTO.getOrderId().version());
         Assertions.assertNotNull(orderDTO.getPizzas());
         Assertions.assertFalse(orderDTO.getPizzas().isEmpty());
         Assertions.assertIterableEquals(orderDTO.getPizzas(), orderDTORequest.getPizzas());
     }
 
+    /**
+     * Test post order with a pizza that is not on the menu: it's refused without writing anything.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testPostOrderUnknownPizza() {
+        Integer orders = jdbcTemplate.queryForObject("select count(*) from orders", Integer.class);
+
+        ResponseEntity<String> responseEntity = restTemplate.exchange("http://localhost:" + port + "/orders",
+                HttpMethod.POST, new HttpEntity<>(new OrderDTO(List.of("Margherita", "Hawaiian"))), String.class);
+
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        Assertions.assertEquals(orders, jdbcTemplate.queryForObject("select count(*) from orders", Integer.class));
+    }
+
+    /**
+     * Test post order with "Prefer: respond-async": the order is accepted, readable right away and written shortly
+     * after.
+     *
+     * @throws InterruptedException the interrupted exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    @Sql(statements = {DELETE_ORDERS, INSERT_ORDERS}, executionPhase = AFTER_TEST_METHOD)
+    public void testPostOrderAsync() throws InterruptedException {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Prefer", "respond-async");
+        OrderDTO orderDTORequest = new OrderDTO(List.of("Margherita", "Bufalina"));
+
+        ResponseEntity<OrderDTO> responseEntity = restTemplate.exchange("http://localhost:" + port + "/orders",
+                HttpMethod.POST, new HttpEntity<>(orderDTORequest, headers), OrderDTO.class);
+
+        Assertions.assertEquals(HttpStatus.ACCEPTED, responseEntity.getStatusCode());
+        Assertions.assertEquals("respond-async", responseEntity.getHeaders().getFirst("Preference-Applied"));
+        Assertions.assertNotNull(responseEntity.getBody());
+        Assertions.assertNotNull(responseEntity.getHeaders().getLocation());
+
+        UUID orderId = responseEntity.getBody().getOrderId();
+
+        Assertions.assertEquals(7, orderId.version());
+        Assertions.assertTrue(responseEntity.getHeaders().getLocation().toString().endsWith("/orders/" + orderId));
+
+        EntityModel<OrderDTO> entityModel = restTemplate.exchange(responseEntity.getHeaders().getLocation(),
+                HttpMethod.GET, null, new ParameterizedTypeReference<EntityModel<OrderDTO>>() {
+                }).getBody();
+
+        Assertions.assertNotNull(entityModel);
+        Assertions.assertNotNull(entityModel.getContent());
+        Assertions.assertEquals(orderDTORequest.getPizzas(), entityModel.getContent().getPizzas());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        Integer count = 0;
+
+        while (count == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            count = jdbcTemplate.queryForObject("select count(*) from orders where order_id = ?", Integer.class,
+                    orderId);
+        }
+
+        Assertions.assertEquals(1, count);
+        Assertions.assertEquals(OrderStatusTestConstants.RECEVIED_ID, jdbcTemplate.queryForObject(
+                "select order_status_order_status_id from orders where order_id = ?", UUID.class, orderId));
+    }
+
+    /**
+     * Test post order with an Idempotency-Key: a replay returns the original order without writing it again, and a
+     * different order with the same key is refused.
+     * @author Gianluca Sabato
+     */
+    @Test
+    @Sql(statements = {DELETE_ORDERS, INSERT_ORDERS}, executionPhase = AFTER_TEST_METHOD)
+    public void testPostOrderIdempotencyKey() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Idempotency-Key", UUID.randomUUID().toString());
+        headers.set("Prefer", "respond-async");
+        OrderDTO orderDTORequest = new OrderDTO(List.of("Margherita", "Bufalina"));
+        String url = "http://localhost:" + port + "/orders";
+
+        ResponseEntity<OrderDTO> created = restTemplate.exchange(url, HttpMethod.POST, new HttpEntity<>(
+                orderDTORequest, headers), OrderDTO.class);
+        ResponseEntity<OrderDTO> replayed = restTemplate.exchange(url, HttpMethod.POST, new HttpEntity<>(
+                orderDTORequest, headers), OrderDTO.class);
+        ResponseEntity<String> mismatch = restTemplate.exchange(url, HttpMethod.POST, new HttpEntity<>(
+                new OrderDTO(List.of("Diavola")), headers), String.class);
+
+        Assertions.assertEquals(HttpStatus.CREATED, created.getStatusCode());
+        Assertions.assertNull(created.getHeaders().getFirst("Idempotent-Replayed"));
+        Assertions.assertNotNull(created.getBody());
+        Assertions.assertEquals(HttpStatus.CREATED, replayed.getStatusCode());
+        Assertions.assertEquals("true", replayed.getHeaders().getFirst("Idempotent-Replayed"));
+        Assertions.assertNotNull(replayed.getBody());
+        Assertions.assertEquals(created.getBody().getOrderId(), replayed.getBody().getOrderId());
+        Assertions.assertEquals(created.getHeaders().getLocation(), replayed.getHeaders().getLocation());
+        Assertions.assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, mismatch.getStatusCode());
+        // Margherita and Bufalina, by menu id
+        Assertions.assertEquals(1, jdbcTemplate.queryForObject("select count(*) from orders where pizza_ids = " +
+                "'{1,4}'", Integer.class));
+        Assertions.assertEquals(created.getBody().getOrderId(), jdbcTemplate.queryForObject(
+                "select order_id from idempotency_keys where idempotency_key = ?", UUID.class,
+                headers.getFirst("Idempotency-Key")));
+
+        headers.set("Idempotency-Key", " ");
+
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, restTemplate.exchange(url, HttpMethod.POST,
+                new HttpEntity<>(orderDTORequest, headers), String.class).getStatusCode());
+    }
+
+    /**
+     * Test post a batch of orders, with an invalid one.
+     * @author Gianluca Sabato
+     */
+    @Test
+    @Sql(statements = {DELETE_ORDERS}, executionPhase = BEFORE_TEST_METHOD)
+    @Sql(statements = {DELETE_ORDERS, INSERT_ORDERS}, executionPhase = AFTER_TEST_METHOD)
+    public void testPostOrders() {
+        List<OrderDTO> orderDTORequests = new ArrayList<>();
+
+        for (int i = 0; i < 1000; i++) {
+            orderDTORequests.add(new OrderDTO(i == 10 ? List.of() : i == 20 ? List.of("Margherita", "Hawaiian") :
+                    List.of("Margherita", i % 2 == 0 ? "Diavola" : "Bufalina")));
+        }
+
+        CollectionModel<OrderBatchItemDTO> collectionModel = restTemplate.exchange(
+                "http://localhost:" + port + "/orders/batch", HttpMethod.POST, new HttpEntity<>(orderDTORequests),
+                new ParameterizedTypeReference<CollectionModel<OrderBatchItemDTO>>() {
+                }).getBody();
+
+        Assertions.assertNotNull(collectionModel);
+
+        List<OrderBatchItemDTO> results = new ArrayList<>(collectionModel.getContent());
+
+        Assertions.assertEquals(orderDTORequests.size(), results.size());
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST.value(), results.get(10).getStatus());
+        Assertions.assertFalse(results.get(10).getErrors().isEmpty());
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST.value(), results.get(20).getStatus());
+        Assertions.assertEquals(List.of("Input pizza must be on the menu."), results.get(20).getErrors());
+        Assertions.assertEquals(998, results.stream().filter(r -> r.getStatus() == HttpStatus.CREATED.value())
+                .count());
+        Assertions.assertEquals(998, jdbcTemplate.queryForObject("select count(*) from orders", Integer.class));
+        Assertions.assertEquals(998, kitchenQueue.size());
+
+        OrderBatchItemDTO result = results.get(999);
+        EntityModel<OrderDTO> entityModel = restTemplate.exchange(result.getRequiredLink(IanaLinkRelations.SELF)
+                .toUri(), HttpMethod.GET, null, new ParameterizedTypeReference<EntityModel<OrderDTO>>() {
+        }).getBody();
+
+        Assertions.assertNotNull(entityModel);
+        Assertions.assertNotNull(entityModel.getContent());
+        Assertions.assertEquals(List.of("Margherita", "Bufalina"), entityModel.getContent().getPizzas());
+    }
+
+    /**
+     * Test post a batch of orders bigger than the maximum batch size.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testPostOrdersTooMany() {
+        List<OrderDTO> orderDTORequests = Collections.nCopies(1001, new OrderDTO(List.of("Margherita")));
+
+        ResponseEntity<String> responseEntity = restTemplate.exchange("http://localhost:" + port + "/orders/batch",
+                HttpMethod.POST, new HttpEntity<>(orderDTORequests), String.class);
+
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+    }
+
     /**
      * Test get order statuses.
      * @author Gianluca Sabato
@@ -314,6 +1309,8 @@ class PizzaPlaceIntegrationTests extends PizzaPlaceDockerTestConf {
         Assertions.assertFalse(collectionModel.getContent().isEmpty());
 
         Collection<OrderStatusDTO> orderStatusDTOS = collectionModel.getContent();
+        orderStatusDTOS.forEach(os -> Assertions.assertEquals("http://localhost:" + port + "/orderStatuses/" +
+                os.getOrderStatusId(), os.getRequiredLink(IanaLinkRelations.SELF).getHref()));
         Set<UUID> ids = orderStatusDTOS.stream().map(OrderStatusDTO::getOrderStatusId).collect(Collectors.toSet());
         Set<String> statuses = orderStatusDTOS.stream().map(OrderStatusDTO::getOrderStatus).collect(Collectors.toSet());
 
@@ -348,6 +1345,23 @@ class PizzaPlaceIntegrationTests extends PizzaPlaceDockerTestConf {
         Assertions.assertEquals(orderStatusDTO.getOrderStatus(), OrderStatusTestConstants.CANCELLED);
     }
 
+    /**
+     * Test conditional get order statuses, with the catalog version as ETag.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testGetOrderStatusesNotModified() {
+        String orderStatusesUrl = "http://localhost:" + port + "/orderStatuses";
+        String orderStatusUrl = orderStatusesUrl + "/" + OrderStatusTestConstants.CANCELLED_ID;
+
+        String eTag = restTemplate.getForEntity(orderStatusesUrl, String.class).getHeaders().getETag();
+
+        Assertions.assertNotNull(eTag);
+        Assertions.assertEquals(HttpStatus.NOT_MODIFIED, getIfNoneMatch(orderStatusesUrl, eTag).getStatusCode());
+        Assertions.assertEquals(HttpStatus.NOT_MODIFIED, getIfNoneMatch(orderStatusUrl, eTag).getStatusCode());
+        Assertions.assertEquals(HttpStatus.OK, getIfNoneMatch(orderStatusesUrl, "\"stale\"").getStatusCode());
+    }
+
     /**
      * Test get order status when the order status is invalid.
      * @author Gianluca Sabato
@@ -361,4 +1375,63 @@ class PizzaPlaceIntegrationTests extends PizzaPlaceDockerTestConf {
         Assertions.assertNotNull(responseEntity.getStatusCode());
         Assertions.assertEquals(responseEntity.getStatusCode(), HttpStatus.NOT_FOUND);
     }
+
+    private List<OrderDTO> searchOrders(String query) {
+        CollectionModel<OrderDTO> collectionModel = restTemplate.exchange("http://localhost:" + port +
+                "/orders/search?" + query, HttpMethod.GET, null,
+                new ParameterizedTypeReference<CollectionModel<OrderDTO>>() {
+                }).getBody();
+
+        Assertions.assertNotNull(collectionModel);
+
+        return new ArrayList<>(collectionModel.getContent());
+    }
+
+    private ResponseEntity<String> getIfNoneMatch(String url, String eTag) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(eTag);
+
+        return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    }
+
+    /**
+     * Order event sink keeping the dispatched events in memory.
+     * @author Gianluca Sabato
+     */
+    static class InMemoryOrderEventSink implements OrderEventSink {
+        private final Queue<OrderEventDTO> events = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public void deliver(List<OrderEventDTO> events) {
+            this.events.addAll(events);
+        }
+
+        /**
+         * Gets the delivered events.
+         *
+         * @return the events
+         * @author Gianluca Sabato
+         */
+        public List<OrderEventDTO> getEvents() {
+            return List.copyOf(events);
+        }
+    }
+
+    /**
+     * Registers the in-memory order event sink.
+     * @author Gianluca Sabato
+     */
+    @TestConfiguration
+    static class OrderEventSinkConfiguration {
+        /**
+         * In-memory order event sink.
+         *
+         * @return the in-memory order event sink
+         * @author Gianluca Sabato
+         */
+        @Bean
+        InMemoryOrderEventSink inMemoryOrderEventSink() {
+            return new InMemoryOrderEventSink();
+        }
+    }
 }
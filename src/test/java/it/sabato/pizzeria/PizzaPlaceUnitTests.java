@@ -1,39 +1,141 @@
 package it.sabato.pizzeria;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import it.sabato.pizzeria.config.OrderStatusTestConstants;
+import it.sabato.pizzeria.config.PizzaPlaceProperties;
+import it.sabato.pizzeria.controller.KitchenBoardSocket;
+import it.sabato.pizzeria.controller.OrderController;
+import it.sabato.pizzeria.controller.OrderStatusController;
+import it.sabato.pizzeria.controller.OrderStatusStreams;
+import it.sabato.pizzeria.controller.SelfLinkRenderer;
+import it.sabato.pizzeria.dto.CachedOrderDTO;
 import it.sabato.pizzeria.dto.ErrorDTO;
+import it.sabato.pizzeria.dto.IdempotentOrderDTO;
+import it.sabato.pizzeria.dto.KitchenBoardDTO;
+import it.sabato.pizzeria.dto.KitchenBoardOrderDTO;
+import it.sabato.pizzeria.dto.OrderAgeDTO;
+import it.sabato.pizzeria.dto.OrderBatchItemDTO;
+import it.sabato.pizzeria.dto.OrderCursor;
 import it.sabato.pizzeria.dto.OrderDTO;
+import it.sabato.pizzeria.dto.OrderEventDTO;
+import it.sabato.pizzeria.dto.OrderListItemDTO;
+import it.sabato.pizzeria.dto.OrderNotificationDTO;
+import it.sabato.pizzeria.dto.OrderPageDTO;
+import it.sabato.pizzeria.dto.OrderSearchDTO;
+import it.sabato.pizzeria.dto.OrderStatusCountDTO;
 import it.sabato.pizzeria.dto.OrderStatusDTO;
+import it.sabato.pizzeria.dto.OrderStatusUpdateDTO;
+import it.sabato.pizzeria.dto.OrderSummaryDTO;
+import it.sabato.pizzeria.event.OrderChangedEvent;
+import it.sabato.pizzeria.event.FileOrderEventSink;
+import it.sabato.pizzeria.event.OrderEventSink;
+import it.sabato.pizzeria.event.OrderInvalidatedEvent;
 import it.sabato.pizzeria.exception.RestResponseEntityExceptionHandler;
+import it.sabato.pizzeria.factory.ETagFactory;
 import it.sabato.pizzeria.factory.OrderDTOFactory;
+import it.sabato.pizzeria.factory.OrderEventDTOFactory;
+import it.sabato.pizzeria.factory.UUIDFactory;
+import it.sabato.pizzeria.model.IdempotencyKey;
 import it.sabato.pizzeria.model.Order;
+import it.sabato.pizzeria.model.OrderEvent;
 import it.sabato.pizzeria.model.OrderStatus;
+import it.sabato.pizzeria.model.OrderTransition;
+import it.sabato.pizzeria.model.Pizza;
+import it.sabato.pizzeria.model.TimeOrderedUUIDGenerator;
+import it.sabato.pizzeria.repositories.IdempotencyKeyRepository;
+import it.sabato.pizzeria.repositories.OrderEventRepository;
 import it.sabato.pizzeria.repositories.OrderRepository;
 import it.sabato.pizzeria.repositories.OrderStatusRepository;
+import it.sabato.pizzeria.repositories.PizzaRepository;
+import it.sabato.pizzeria.service.KitchenBoard;
+import it.sabato.pizzeria.service.KitchenQueue;
+import it.sabato.pizzeria.service.OrderCache;
+import it.sabato.pizzeria.service.OrderEventDispatcher;
+import it.sabato.pizzeria.service.OrderIntake;
+import it.sabato.pizzeria.service.OrderExportService;
+import it.sabato.pizzeria.service.OrderIdempotencyService;
+import it.sabato.pizzeria.service.OrderInvalidationBus;
 import it.sabato.pizzeria.service.OrderService;
+import it.sabato.pizzeria.service.OrderStateMachine;
+import it.sabato.pizzeria.service.OrderStatusCounters;
+import it.sabato.pizzeria.service.OrderStatusRegistry;
 import it.sabato.pizzeria.service.OrderStatusService;
+import it.sabato.pizzeria.service.PizzaCatalog;
+import it.sabato.pizzeria.service.TransactionRetry;
+import it.sabato.pizzeria.validation.OnMenuValidator;
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorFactory;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
 import org.apache.commons.lang3.StringUtils;
+import org.hibernate.generator.EventType;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.hateoas.Link;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
 
 import javax.naming.ConfigurationException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import static it.sabato.pizzeria.service.OrderService.WRONG_CONFIGURATION_MESSAGE;
 import static org.mockito.Mockito.when;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 
 /**
  * The type Pizza place unit tests.
@@ -43,173 +145,179 @@ import static org.mockito.Mockito.when;
 class PizzaPlaceUnitTests {
     private final RestResponseEntityExceptionHandler handler = new RestResponseEntityExceptionHandler();
     private final MockHttpServletRequest servletRequest = new MockHttpServletRequest();
+    private final SelfLinkRenderer selfLinkRenderer = new SelfLinkRenderer();
     @Mock
     private OrderRepository orderRepository;
     @Mock
     private OrderStatusRepository orderStatusRepository;
+    @Mock
+    private OrderStatusRegistry orderStatusRegistry;
+    @Mock
+    private KitchenQueue kitchenQueue;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private OrderIntake orderIntake;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+    @Mock
+    private PizzaRepository pizzaRepository;
+    @Mock
+    private OrderEventRepository orderEventRepository;
+    @Spy
+    private PizzaPlaceProperties pizzaPlaceProperties = new PizzaPlaceProperties();
+    @Spy
+    private PizzaCatalog pizzaCatalog = getPizzaCatalog();
+    @Spy
+    private Validator validator = getValidator(pizzaCatalog);
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    @Spy
+    private OrderCache orderCache = new OrderCache(new PizzaPlaceProperties(), new SimpleMeterRegistry());
+    @Spy
+    private OrderStateMachine orderStateMachine = new OrderStateMachine();
+    @Spy
+    private TransactionRetry transactionRetry = new TransactionRetry(new TransactionTemplate(Mockito.mock(
+            PlatformTransactionManager.class)), new PizzaPlaceProperties());
     @InjectMocks
     private OrderService orderService;
     @InjectMocks
     private OrderStatusService orderStatusService;
+    @InjectMocks
+    private OrderExportService orderExportService;
 
     // OrderService
 
     /**
-     * Test get orders.
+     * Test get orders (first page).
      * @author Gianluca Sabato
      */
     @Test
     public void testGetOrders() {
-        List<String> pizzas = List.of("Margherita", "Diavola", "Tirolese");
-
-        OrderStatus received = new OrderStatus();
-        received.setStatus(OrderStatusTestConstants.RECEVIED);
-        received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
-
-        Order order1 = new Order();
-        order1.setOrderId(UUID.randomUUID());
-        order1.setOrderStatus(received);
-        order1.setPizzas(pizzas);
-
-        Order order2 = new Order();
-        order2.setOrderId(UUID.randomUUID());
-        order2.setOrderStatus(received);
-        order2.setPizzas(pizzas);
+        List<OrderListItemDTO> orders = getOrderListItems(3);
 
-        List<Order> orders = List.of(order1, order2);
+        when(orderRepository.findFirstPage(Limit.of(21))).thenReturn(orders);
 
-        when(orderRepository.findAll()).thenReturn(orders);
-
-        List<OrderDTO> orderDTOS = orderService.getOrders();
+        OrderPageDTO orderPage = orderService.getOrders(null, null, null);
+        List<OrderDTO> orderDTOS = orderPage.getOrders();
 
         Assertions.assertNotNull(orderDTOS);
-        Assertions.assertFalse(orderDTOS.isEmpty());
+        Assertions.assertEquals(orders.size(), orderDTOS.size());
+        Assertions.assertNull(orderPage.getNext());
+        Assertions.assertNull(orderPage.getPrevious());
 
         for (int i = 0; i < orders.size(); i++) {
             OrderDTO orderDTO = orderDTOS.get(i);
-            Assertions.assertNotNull(orderDTO.getOrderId());
+            Assertions.assertEquals(orders.get(i).getOrderId(), orderDTO.getOrderId());
             Assertions.assertNotNull(orderDTO.getPizzas());
             Assertions.assertFalse(orderDTO.getPizzas().isEmpty());
-            Assertions.assertIterableEquals(orderDTOS.get(i).getPizzas(), orderDTO.getPizzas());
+            Assertions.assertIterableEquals(pizzaCatalog.getNames(orders.get(i).getPizzaIds()), orderDTO.getPizzas());
         }
     }
 
     /**
-     * Test get next order.
-     *
-     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * Test get orders after a cursor, when there is another page.
      * @author Gianluca Sabato
      */
     @Test
-    public void testGetNextOrder() throws ConfigurationException {
-        OrderStatus received = new OrderStatus();
-        received.setStatus(OrderStatusTestConstants.RECEVIED);
-        received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
-        List<OrderStatus> receivedList = List.of(received);
+    public void testGetOrdersAfter() {
+        List<OrderListItemDTO> orders = getOrderListItems(3);
+        OrderCursor after = new OrderCursor(LocalDateTime.now().minusDays(1), UUID.randomUUID());
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(receivedList);
+        when(orderRepository.findPageAfter(after.getCreatedDate(), after.getOrderId(), Limit.of(3))).thenReturn(
+                orders);
 
-        List<String> pizzas = List.of("Margherita", "Diavola", "Tirolese");
-        OrderDTO orderDTO = new OrderDTO(pizzas);
-
-        Order order = new Order();
-        order.setOrderId(UUID.randomUUID());
-        order.setOrderStatus(received);
-        order.setPizzas(pizzas);
-
-        List<Order> orders = List.of(order);
+        OrderPageDTO orderPage = orderService.getOrders(after, null, 2);
 
-        when(orderRepository.findByOrderStatusOrderByCreatedDateAsc(received)).thenReturn(orders);
+        Assertions.assertEquals(2, orderPage.getOrders().size());
+        Assertions.assertEquals(orders.get(0).getOrderId(), orderPage.getOrders().get(0).getOrderId());
+        Assertions.assertEquals(orders.get(1).getOrderId(), orderPage.getNext().getOrderId());
+        Assertions.assertEquals(orders.get(0).getOrderId(), orderPage.getPrevious().getOrderId());
+    }
 
-        Optional<OrderDTO> nextOrderOptional = orderService.getNextOrder();
+    /**
+     * Test get orders before a cursor: the orders are read backwards and returned in ascending order.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testGetOrdersBefore() {
+        List<OrderListItemDTO> orders = new ArrayList<>(getOrderListItems(3));
+        Collections.reverse(orders);
+        OrderCursor before = new OrderCursor(LocalDateTime.now(), UUID.randomUUID());
 
-        Assertions.assertTrue(nextOrderOptional.isPresent());
+        when(orderRepository.findPageBefore(before.getCreatedDate(), before.getOrderId(), Limit.of(3))).thenReturn(
+                orders);
 
-        OrderDTO createdOrderDTO = nextOrderOptional.get();
+        OrderPageDTO orderPage = orderService.getOrders(null, before, 2);
 
-        Assertions.assertNotNull(createdOrderDTO.getOrderId());
-        Assertions.assertNotNull(createdOrderDTO.getPizzas());
-        Assertions.assertFalse(createdOrderDTO.getPizzas().isEmpty());
-        Assertions.assertIterableEquals(orderDTO.getPizzas(), createdOrderDTO.getPizzas());
+        Assertions.assertEquals(2, orderPage.getOrders().size());
+        Assertions.assertEquals(orders.get(1).getOrderId(), orderPage.getOrders().get(0).getOrderId());
+        Assertions.assertEquals(orders.get(0).getOrderId(), orderPage.getOrders().get(1).getOrderId());
+        Assertions.assertEquals(orders.get(1).getOrderId(), orderPage.getPrevious().getOrderId());
+        Assertions.assertEquals(orders.get(0).getOrderId(), orderPage.getNext().getOrderId());
     }
 
     /**
-     * Test get next order with missing status configuration.
+     * Test get orders page size limit.
      * @author Gianluca Sabato
      */
     @Test
-    public void testGetNextOrderMissingStatusConfiguration() {
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(new ArrayList<>());
+    public void testGetOrdersMaxPageSize() {
+        when(orderRepository.findFirstPage(Limit.of(101))).thenReturn(new ArrayList<>());
 
-        Exception exception = Assertions.assertThrows(ConfigurationException.class, () -> {
-            orderService.getNextOrder();
-        });
-
-        String actualMessage = exception.getMessage();
+        OrderPageDTO orderPage = orderService.getOrders(null, null, 100000);
 
-        Assertions.assertTrue(actualMessage.contains(WRONG_CONFIGURATION_MESSAGE));
+        Assertions.assertTrue(orderPage.getOrders().isEmpty());
+        Assertions.assertNull(orderPage.getNext());
     }
 
     /**
-     * Test get next order with null status configuration.
+     * Test order cursor token round trip.
      * @author Gianluca Sabato
      */
     @Test
-    public void testGetNextOrderNullStatusConfiguration() {
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(null);
-
-        Exception exception = Assertions.assertThrows(ConfigurationException.class, () -> {
-            orderService.getNextOrder();
-        });
+    public void testOrderCursor() {
+        OrderCursor orderCursor = new OrderCursor(LocalDateTime.now(), UUID.randomUUID());
 
-        String actualMessage = exception.getMessage();
-
-        Assertions.assertTrue(actualMessage.contains(WRONG_CONFIGURATION_MESSAGE));
+        Assertions.assertEquals(orderCursor, OrderCursor.fromToken(orderCursor.toToken()));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> OrderCursor.fromToken("not a cursor"));
     }
 
     /**
-     * Test get next order with wrong status configuration.
+     * Test get next order.
+     *
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
      * @author Gianluca Sabato
      */
     @Test
-    public void testGetNextOrderWrongStatusConfiguration() {
-        OrderStatus received = new OrderStatus();
-        received.setStatus(OrderStatusTestConstants.RECEVIED);
-        received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
-
-        OrderStatus duplicated = new OrderStatus();
-        duplicated.setStatus(OrderStatusTestConstants.RECEVIED);
-        duplicated.setOrderStatusId(UUID.randomUUID());
+    public void testGetNextOrder() throws ConfigurationException {
+        List<String> pizzas = List.of("Margherita", "Diavola", "Tirolese");
+        OrderDTO orderDTO = OrderDTO.builder().orderId(UUID.randomUUID()).pizzas(pizzas).build();
 
-        List<OrderStatus> receivedList = List.of(received, duplicated);
+        when(kitchenQueue.peek()).thenReturn(Optional.of(orderDTO));
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(receivedList);
+        Optional<OrderDTO> nextOrderOptional = orderService.getNextOrder();
 
-        Exception exception = Assertions.assertThrows(ConfigurationException.class, () -> {
-            orderService.getNextOrder();
-        });
+        Assertions.assertTrue(nextOrderOptional.isPresent());
 
-        String actualMessage = exception.getMessage();
+        OrderDTO nextOrderDTO = nextOrderOptional.get();
 
-        Assertions.assertTrue(actualMessage.contains(WRONG_CONFIGURATION_MESSAGE));
+        Assertions.assertEquals(orderDTO.getOrderId(), nextOrderDTO.getOrderId());
+        Assertions.assertIterableEquals(orderDTO.getPizzas(), nextOrderDTO.getPizzas());
+        Mockito.verifyNoInteractions(orderRepository, orderStatusRegistry);
     }
 
     /**
-     * Test get next order with empty orders list.
+     * Test get next order with an empty kitchen queue.
      *
      * @throws ConfigurationException the configuration exception (missing database configuration values)
      * @author Gianluca Sabato
      */
     @Test
-    public void testGetNextOrderNotFound1() throws ConfigurationException {
-        OrderStatus received = new OrderStatus();
-        received.setStatus(OrderStatusTestConstants.RECEVIED);
-        received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
-        List<OrderStatus> receivedList = List.of(received);
-
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(receivedList);
-
-        when(orderRepository.findByOrderStatusOrderByCreatedDateAsc(received)).thenReturn(new ArrayList<>());
+    public void testGetNextOrderNotFound() throws ConfigurationException {
+        when(kitchenQueue.peek()).thenReturn(Optional.empty());
 
         Optional<OrderDTO> nextOrderOptional = orderService.getNextOrder();
 
@@ -217,85 +325,86 @@ class PizzaPlaceUnitTests {
     }
 
     /**
-     * Test get next with null orders list.
+     * Test get next order with a wait: the result is completed once an order is queued.
      *
-     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * @throws Exception the exception
      * @author Gianluca Sabato
      */
     @Test
-    public void testGetNextOrderNotFound2() throws ConfigurationException {
-        OrderStatus received = new OrderStatus();
-        received.setStatus(OrderStatusTestConstants.RECEVIED);
-        received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
-        List<OrderStatus> receivedList = List.of(received);
+    public void testGetNextOrderWait() throws Exception {
+        OrderDTO orderDTO = OrderDTO.builder().orderId(UUID.randomUUID()).pizzas(List.of("Margherita")).build();
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(receivedList);
+        when(kitchenQueue.peek()).thenReturn(Optional.empty(), Optional.empty(), Optional.of(orderDTO));
 
-        when(orderRepository.findByOrderStatusOrderByCreatedDateAsc(received)).thenReturn(null);
+        CompletableFuture<Optional<OrderDTO>> nextOrder = orderService.getNextOrder(Duration.ofSeconds(30));
 
-        Optional<OrderDTO> nextOrderOptional = orderService.getNextOrder();
+        Assertions.assertFalse(nextOrder.isDone());
 
-        Assertions.assertTrue(nextOrderOptional.isEmpty());
+        ArgumentCaptor<Runnable> waiter = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(kitchenQueue).addWaiter(waiter.capture());
+
+        waiter.getValue().run();
+
+        Assertions.assertEquals(orderDTO.getOrderId(), nextOrder.get(5, TimeUnit.SECONDS).orElseThrow().getOrderId());
+        Mockito.verify(kitchenQueue).removeWaiter(waiter.getValue());
+    }
+
+    /**
+     * Test get next order with a wait, when no order is queued within it.
+     *
+     * @throws Exception the exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testGetNextOrderWaitTimeout() throws Exception {
+        when(kitchenQueue.peek()).thenReturn(Optional.empty());
+
+        CompletableFuture<Optional<OrderDTO>> nextOrder = orderService.getNextOrder(Duration.ofMillis(50));
+
+        Assertions.assertTrue(nextOrder.get(5, TimeUnit.SECONDS).isEmpty());
+
+        ArgumentCaptor<Runnable> waiter = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(kitchenQueue).addWaiter(waiter.capture());
+        // The waiter is removed by the timeout thread, right after completing the result
+        Mockito.verify(kitchenQueue, Mockito.timeout(5000)).removeWaiter(waiter.getValue());
     }
 
     /**
-     * Test update next order.
+     * Test update next order, with the outbox enabled.
      *
      * @throws ConfigurationException the configuration exception (missing database configuration values)
      * @author Gianluca Sabato
      */
     @Test
     public void testUpdateNextOrder() throws ConfigurationException {
+        pizzaPlaceProperties.getOutbox().setEnabled(true);
+
         OrderStatus received = new OrderStatus();
         received.setStatus(OrderStatusTestConstants.RECEVIED);
         received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
-        List<OrderStatus> receivedList = List.of(received);
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(receivedList);
+        when(orderStatusRegistry.getRequired(OrderStatusTestConstants.RECEVIED)).thenReturn(received);
 
         OrderStatus processing = new OrderStatus();
         processing.setStatus(OrderStatusTestConstants.PROCESSING);
         processing.setOrderStatusId(OrderStatusTestConstants.PROCESSING_ID);
-        List<OrderStatus> processingList = List.of(processing);
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.PROCESSING)).thenReturn(processingList);
+        when(orderStatusRegistry.getRequired(OrderStatusTestConstants.PROCESSING)).thenReturn(processing);
 
         OrderStatus completed = new OrderStatus();
         completed.setStatus(OrderStatusTestConstants.COMPLETED);
         completed.setOrderStatusId(OrderStatusTestConstants.COMPLETED_ID);
-        List<OrderStatus> completedList = List.of(completed);
-
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.COMPLETED)).thenReturn(completedList);
-
-        Order receivedOrder = new Order();
-        receivedOrder.setOrderId(UUID.randomUUID());
-        receivedOrder.setPizzas(List.of("margherita"));
-        receivedOrder.setOrderStatus(received);
-        List<Order> receivedOrders = List.of(receivedOrder);
-
-        when(orderRepository.findByOrderStatusOrderByCreatedDateAsc(received)).thenReturn(receivedOrders);
-
-        Order processingOrder = new Order();
-        processingOrder.setOrderId(UUID.randomUUID());
-        processingOrder.setPizzas(List.of("diavola"));
-        processingOrder.setOrderStatus(processing);
-        List<Order> processingOrders = List.of(processingOrder);
-
-        when(orderRepository.findByOrderStatusOrderByCreatedDateAsc(processing)).thenReturn(processingOrders);
-
-        Order completedOrder = new Order();
-        completedOrder.setOrderId(processingOrder.getOrderId());
-        completedOrder.setPizzas(List.of("diavola"));
-        completedOrder.setOrderStatus(completed);
 
-        when(orderRepository.save(processingOrder)).thenReturn(completedOrder);
+        when(orderStatusRegistry.getRequired(OrderStatusTestConstants.COMPLETED)).thenReturn(completed);
 
-        Order newProcessingOrder = new Order();
-        newProcessingOrder.setOrderId(receivedOrder.getOrderId());
-        newProcessingOrder.setPizzas(List.of("margherita"));
-        newProcessingOrder.setOrderStatus(processing);
+        OrderTransition claimedOrder = OrderTransition.builder().orderId(UUID.randomUUID())
+                .pizzas(List.of("margherita")).orderStatusId(OrderStatusTestConstants.PROCESSING_ID).build();
+        OrderTransition completedOrder = OrderTransition.builder().orderId(UUID.randomUUID())
+                .pizzas(List.of("diavola")).orderStatusId(OrderStatusTestConstants.COMPLETED_ID).build();
 
-        when(orderRepository.save(receivedOrder)).thenReturn(newProcessingOrder);
+        when(orderRepository.claimNextOrder(OrderStatusTestConstants.RECEVIED_ID,
+                OrderStatusTestConstants.PROCESSING_ID, OrderStatusTestConstants.COMPLETED_ID)).thenReturn(
+                List.of(claimedOrder, completedOrder));
 
         Optional<OrderDTO> nextOrderOptional = orderService.updateNextOrder();
 
@@ -304,57 +413,70 @@ class PizzaPlaceUnitTests {
         OrderDTO nextOrderDTO = nextOrderOptional.get();
 
         Assertions.assertNotNull(nextOrderDTO.getOrderId());
-        Assertions.assertEquals(nextOrderDTO.getOrderId(), receivedOrder.getOrderId());
+        Assertions.assertEquals(nextOrderDTO.getOrderId(), claimedOrder.getOrderId());
         Assertions.assertNotNull(nextOrderDTO.getPizzas());
         Assertions.assertFalse(nextOrderDTO.getPizzas().isEmpty());
-        Assertions.assertIterableEquals(nextOrderDTO.getPizzas(), receivedOrder.getPizzas());
+        Assertions.assertIterableEquals(nextOrderDTO.getPizzas(), claimedOrder.getPizzas());
+
+        ArgumentCaptor<OrderChangedEvent> eventCaptor = ArgumentCaptor.forClass(OrderChangedEvent.class);
+        Mockito.verify(eventPublisher, Mockito.times(2)).publishEvent(eventCaptor.capture());
+
+        OrderChangedEvent claimedEvent = eventCaptor.getAllValues().get(0);
+        OrderChangedEvent completedEvent = eventCaptor.getAllValues().get(1);
+
+        Assertions.assertEquals(claimedOrder.getOrderId(), claimedEvent.getOrderId());
+        Assertions.assertEquals(OrderStatusTestConstants.RECEVIED, claimedEvent.getPreviousStatus());
+        Assertions.assertEquals(OrderStatusTestConstants.PROCESSING, claimedEvent.getStatus());
+        Assertions.assertEquals(completedOrder.getOrderId(), completedEvent.getOrderId());
+        Assertions.assertEquals(OrderStatusTestConstants.PROCESSING, completedEvent.getPreviousStatus());
+        Assertions.assertEquals(OrderStatusTestConstants.COMPLETED, completedEvent.getStatus());
+
+        Mockito.verify(orderCache).invalidate(claimedOrder.getOrderId());
+        Mockito.verify(orderCache).invalidate(completedOrder.getOrderId());
+
+        ArgumentCaptor<OrderEvent> orderEventCaptor = ArgumentCaptor.forClass(OrderEvent.class);
+        Mockito.verify(orderEventRepository, Mockito.times(2)).save(orderEventCaptor.capture());
+
+        Assertions.assertEquals(claimedOrder.getOrderId(), orderEventCaptor.getAllValues().get(0).getOrderId());
+        Assertions.assertEquals(OrderStatusTestConstants.PROCESSING, orderEventCaptor.getAllValues().get(0)
+                .getStatus());
+        Assertions.assertEquals(completedOrder.getOrderId(), orderEventCaptor.getAllValues().get(1).getOrderId());
+        Assertions.assertEquals(OrderStatusTestConstants.COMPLETED, orderEventCaptor.getAllValues().get(1)
+                .getStatus());
     }
 
     /**
-     * Test update next order when the processing orders list is null.
+     * Test update next order when there is no processing order to complete.
      *
      * @throws ConfigurationException the configuration exception (missing database configuration values)
      * @author Gianluca Sabato
      */
     @Test
-    public void testUpdateNextOrderNoProcessingOrdersIsNull() throws ConfigurationException {
+    public void testUpdateNextOrderNoProcessingOrders() throws ConfigurationException {
         OrderStatus received = new OrderStatus();
         received.setStatus(OrderStatusTestConstants.RECEVIED);
         received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
-        List<OrderStatus> receivedList = List.of(received);
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(receivedList);
+        when(orderStatusRegistry.getRequired(OrderStatusTestConstants.RECEVIED)).thenReturn(received);
 
         OrderStatus processing = new OrderStatus();
         processing.setStatus(OrderStatusTestConstants.PROCESSING);
         processing.setOrderStatusId(OrderStatusTestConstants.PROCESSING_ID);
-        List<OrderStatus> processingList = List.of(processing);
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.PROCESSING)).thenReturn(processingList);
+        when(orderStatusRegistry.getRequired(OrderStatusTestConstants.PROCESSING)).thenReturn(processing);
 
         OrderStatus completed = new OrderStatus();
         completed.setStatus(OrderStatusTestConstants.COMPLETED);
         completed.setOrderStatusId(OrderStatusTestConstants.COMPLETED_ID);
-        List<OrderStatus> completedList = List.of(completed);
-
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.COMPLETED)).thenReturn(completedList);
 
-        Order receivedOrder = new Order();
-        receivedOrder.setOrderId(UUID.randomUUID());
-        receivedOrder.setPizzas(List.of("margherita"));
-        receivedOrder.setOrderStatus(received);
-        List<Order> receivedOrders = List.of(receivedOrder);
+        when(orderStatusRegistry.getRequired(OrderStatusTestConstants.COMPLETED)).thenReturn(completed);
 
-        when(orderRepository.findByOrderStatusOrderByCreatedDateAsc(received)).thenReturn(receivedOrders);
+        OrderTransition claimedOrder = OrderTransition.builder().orderId(UUID.randomUUID())
+                .pizzas(List.of("margherita")).orderStatusId(OrderStatusTestConstants.PROCESSING_ID).build();
 
-        when(orderRepository.findByOrderStatusOrderByCreatedDateAsc(processing)).thenReturn(null);
-
-        Order newProcessingOrder = new Order();
-        newProcessingOrder.setOrderId(receivedOrder.getOrderId());
-        newProcessingOrder.setPizzas(List.of("margherita"));
-        newProcessingOrder.setOrderStatus(processing);
-
-        when(orderRepository.save(receivedOrder)).thenReturn(newProcessingOrder);
+        when(orderRepository.claimNextOrder(OrderStatusTestConstants.RECEVIED_ID,
+                OrderStatusTestConstants.PROCESSING_ID, OrderStatusTestConstants.COMPLETED_ID)).thenReturn(
+                List.of(claimedOrder));
 
         Optional<OrderDTO> nextOrderOptional = orderService.updateNextOrder();
 
@@ -363,638 +485,1984 @@ class PizzaPlaceUnitTests {
         OrderDTO nextOrderDTO = nextOrderOptional.get();
 
         Assertions.assertNotNull(nextOrderDTO.getOrderId());
-        Assertions.assertEquals(nextOrderDTO.getOrderId(), receivedOrder.getOrderId());
-        Assertions.assertNotNull(nextOrderDTO.getPizzas());
-        Assertions.assertFalse(nextOrderDTO.getPizzas().isEmpty());
-        Assertions.assertIterableEquals(nextOrderDTO.getPizzas(), receivedOrder.getPizzas());
+        Assertions.assertEquals(nextOrderDTO.getOrderId(), claimedOrder.getOrderId());
+        Assertions.assertIterableEquals(nextOrderDTO.getPizzas(), claimedOrder.getPizzas());
+        Mockito.verify(eventPublisher).publishEvent(Mockito.any(OrderChangedEvent.class));
     }
 
     /**
-     * Test update next order when the processing orders list is empty.
+     * Test update next order when there is no RECEIVED order to claim.
      *
      * @throws ConfigurationException the configuration exception (missing database configuration values)
      * @author Gianluca Sabato
      */
     @Test
-    public void testUpdateNextOrderNoProcessingOrders() throws ConfigurationException {
+    public void testUpdateNextOrderNotFound() throws ConfigurationException {
         OrderStatus received = new OrderStatus();
         received.setStatus(OrderStatusTestConstants.RECEVIED);
         received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
-        List<OrderStatus> receivedList = List.of(received);
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(receivedList);
+        when(orderStatusRegistry.getRequired(OrderStatusTestConstants.RECEVIED)).thenReturn(received);
 
         OrderStatus processing = new OrderStatus();
         processing.setStatus(OrderStatusTestConstants.PROCESSING);
         processing.setOrderStatusId(OrderStatusTestConstants.PROCESSING_ID);
-        List<OrderStatus> processingList = List.of(processing);
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.PROCESSING)).thenReturn(processingList);
+        when(orderStatusRegistry.getRequired(OrderStatusTestConstants.PROCESSING)).thenReturn(processing);
 
         OrderStatus completed = new OrderStatus();
         completed.setStatus(OrderStatusTestConstants.COMPLETED);
         completed.setOrderStatusId(OrderStatusTestConstants.COMPLETED_ID);
-        List<OrderStatus> completedList = List.of(completed);
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.COMPLETED)).thenReturn(completedList);
+        when(orderStatusRegistry.getRequired(OrderStatusTestConstants.COMPLETED)).thenReturn(completed);
 
-        Order receivedOrder = new Order();
-        receivedOrder.setOrderId(UUID.randomUUID());
-        receivedOrder.setPizzas(List.of("margherita"));
-        receivedOrder.setOrderStatus(received);
-        List<Order> receivedOrders = List.of(receivedOrder);
+        when(orderRepository.claimNextOrder(OrderStatusTestConstants.RECEVIED_ID,
+                OrderStatusTestConstants.PROCESSING_ID, OrderStatusTestConstants.COMPLETED_ID)).thenReturn(
+                new ArrayList<>());
 
-        when(orderRepository.findByOrderStatusOrderByCreatedDateAsc(received)).thenReturn(receivedOrders);
+        Optional<OrderDTO> nextOrderOptional = orderService.updateNextOrder();
 
-        when(orderRepository.findByOrderStatusOrderByCreatedDateAsc(processing)).thenReturn(new ArrayList<>());
+        Assertions.assertTrue(nextOrderOptional.isEmpty());
+        Mockito.verifyNoInteractions(eventPublisher);
+    }
 
-        Order newProcessingOrder = new Order();
-        newProcessingOrder.setOrderId(receivedOrder.getOrderId());
-        newProcessingOrder.setPizzas(List.of("margherita"));
-        newProcessingOrder.setOrderStatus(processing);
 
-        when(orderRepository.save(receivedOrder)).thenReturn(newProcessingOrder);
+    /**
+     * Test get order.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testGetOrder() {
+        UUID orderId = UUID.randomUUID();
+        List<String> pizzas = List.of("Margherita", "Diavola");
 
-        Optional<OrderDTO> nextOrderOptional = orderService.updateNextOrder();
+        OrderStatus received = new OrderStatus();
+        received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
+        received.setStatus(OrderStatusTestConstants.RECEVIED);
 
-        Assertions.assertTrue(nextOrderOptional.isPresent());
+        Order order = new Order();
+        order.setOrderId(orderId);
+        order.setPizzaIds(pizzaCatalog.getPizzaIds(pizzas));
+        order.setOrderStatus(received);
 
-        OrderDTO nextOrderDTO = nextOrderOptional.get();
+        when(orderRepository.findById(orderId)).thenReturn(Optional.of(order));
 
-        Assertions.assertNotNull(nextOrderDTO.getOrderId());
-        Assertions.assertEquals(nextOrderDTO.getOrderId(), receivedOrder.getOrderId());
-        Assertions.assertNotNull(nextOrderDTO.getPizzas());
-        Assertions.assertFalse(nextOrderDTO.getPizzas().isEmpty());
-        Assertions.assertIterableEquals(nextOrderDTO.getPizzas(), receivedOrder.getPizzas());
+        Optional<OrderDTO> optionalOrderDTO = orderService.getOrder(orderId);
+
+        Assertions.assertTrue(optionalOrderDTO.isPresent());
+
+        OrderDTO foundOrderDTO = optionalOrderDTO.get();
+
+        Assertions.assertNotNull(foundOrderDTO.getOrderId());
+        Assertions.assertEquals(foundOrderDTO.getOrderId(), orderId);
+        Assertions.assertNotNull(foundOrderDTO.getPizzas());
+        Assertions.assertFalse(foundOrderDTO.getPizzas().isEmpty());
+        Assertions.assertIterableEquals(foundOrderDTO.getPizzas(), pizzas);
+    }
+
+    /**
+     * Test get order but no order is persisted on the database.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testGetOrderNotFound() {
+        UUID orderId = UUID.randomUUID();
+
+        when(orderRepository.findById(orderId)).thenReturn(Optional.empty());
+
+        Optional<OrderDTO> optionalOrderDTO = orderService.getOrder(orderId);
+
+        Assertions.assertTrue(optionalOrderDTO.isEmpty());
     }
 
     /**
-     * Test update next order with empty order statuses list (RECEIVED).
+     * Test get order accepted by the intake and not written yet.
      * @author Gianluca Sabato
      */
     @Test
-    public void testUpdateNextOrderMissingStatusConfigurationReceived() {
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(new ArrayList<>());
+    public void testGetOrderPending() {
+        UUID orderId = UUID.randomUUID();
+        OrderDTO pendingOrderDTO = OrderDTO.builder().orderId(orderId).pizzas(List.of("Margherita")).build();
 
-        Exception exception = Assertions.assertThrows(ConfigurationException.class, () -> {
-            orderService.updateNextOrder();
-        });
+        when(orderRepository.findById(orderId)).thenReturn(Optional.empty());
+        when(orderIntake.getPendingOrder(orderId)).thenReturn(Optional.of(pendingOrderDTO));
 
-        String actualMessage = exception.getMessage();
+        Optional<OrderDTO> optionalOrderDTO = orderService.getOrder(orderId);
+
+        Assertions.assertTrue(optionalOrderDTO.isPresent());
+        Assertions.assertEquals(orderId, optionalOrderDTO.get().getOrderId());
+    }
+
+    /**
+     * Test submit order to the asynchronous intake.
+     *
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testSubmitOrder() throws ConfigurationException {
+        OrderDTO orderDTO = new OrderDTO(List.of("Margherita"));
+        OrderDTO acceptedOrderDTO = OrderDTO.builder().orderId(UUID.randomUUID()).pizzas(orderDTO.getPizzas()).build();
+
+        when(orderIntake.submit(orderDTO)).thenReturn(Optional.of(acceptedOrderDTO), Optional.empty());
 
-        Assertions.assertTrue(actualMessage.contains(WRONG_CONFIGURATION_MESSAGE));
+        Assertions.assertEquals(Optional.of(acceptedOrderDTO), orderService.submitOrder(orderDTO));
+        Assertions.assertTrue(orderService.submitOrder(orderDTO).isEmpty());
+        Mockito.verifyNoInteractions(orderRepository);
     }
 
     /**
-     * Test update next order with empty order statuses list (PROCESSING).
+     * Test create order.
+     *
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
      * @author Gianluca Sabato
      */
     @Test
-    public void testUpdateNextOrderMissingStatusConfigurationProcessing() {
+    public void testCreateOrder() throws ConfigurationException {
         OrderStatus received = new OrderStatus();
         received.setStatus(OrderStatusTestConstants.RECEVIED);
         received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
-        List<OrderStatus> receivedList = List.of(received);
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(receivedList);
+        when(orderStatusRegistry.getRequired(OrderStatusTestConstants.RECEVIED)).thenReturn(received);
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.PROCESSING)).thenReturn(new ArrayList<>());
+        List<String> pizzas = List.of("Margherita", "Diavola", "Tirolese");
+        OrderDTO orderDTO = new OrderDTO(pizzas);
+        Order order = new Order();
+        order.setOrderId(UUID.randomUUID());
+        order.setOrderStatus(received);
+        order.setPizzaIds(pizzaCatalog.getPizzaIds(pizzas));
 
-        Exception exception = Assertions.assertThrows(ConfigurationException.class, () -> {
-            orderService.updateNextOrder();
-        });
+        when(orderRepository.save(Mockito.any(Order.class))).thenReturn(order);
+
+        OrderDTO createdOrderDTO = orderService.createOrder(orderDTO);
 
-        String actualMessage = exception.getMessage();
+        Mockito.verify(eventPublisher).publishEvent(Mockito.any(OrderChangedEvent.class));
 
-        Assertions.assertTrue(actualMessage.contains(WRONG_CONFIGURATION_MESSAGE));
+        Assertions.assertNotNull(createdOrderDTO.getOrderId());
+        Assertions.assertNotNull(createdOrderDTO.getPizzas());
+        Assertions.assertFalse(createdOrderDTO.getPizzas().isEmpty());
+        Assertions.assertIterableEquals(orderDTO.getPizzas(), createdOrderDTO.getPizzas());
     }
 
     /**
-     * Test update next order with empty order statuses list (COMPLETED).
+     * Test create order with a new idempotency key: the key is claimed and bound to the order.
+     *
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
      * @author Gianluca Sabato
      */
     @Test
-    public void testUpdateNextOrderMissingStatusConfigurationCompleted() {
+    public void testCreateOrderIdempotencyKey() throws ConfigurationException {
         OrderStatus received = new OrderStatus();
         received.setStatus(OrderStatusTestConstants.RECEVIED);
         received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
-        List<OrderStatus> receivedList = List.of(received);
-
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(receivedList);
-        OrderStatus processing = new OrderStatus();
-        processing.setStatus(OrderStatusTestConstants.PROCESSING);
-        processing.setOrderStatusId(OrderStatusTestConstants.PROCESSING_ID);
 
-        List<OrderStatus> processingList = List.of(processing);
+        when(orderStatusRegistry.getRequired(OrderStatusTestConstants.RECEVIED)).thenReturn(received);
+        when(idempotencyKeyRepository.claim(Mockito.eq("key"), Mockito.eq("hash"), Mockito.any())).thenReturn(1);
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.PROCESSING)).thenReturn(processingList);
+        Order order = new Order();
+        order.setOrderId(UUID.randomUUID());
+        order.setOrderStatus(received);
+        order.setPizzaIds(pizzaCatalog.getPizzaIds(List.of("Margherita")));
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.COMPLETED)).thenReturn(new ArrayList<>());
+        when(orderRepository.save(Mockito.any(Order.class))).thenReturn(order);
 
-        Exception exception = Assertions.assertThrows(ConfigurationException.class, () -> {
-            orderService.updateNextOrder();
-        });
+        IdempotentOrderDTO idempotentOrder = orderService.createOrder(new OrderDTO(List.of("Margherita")), "key",
+                "hash");
 
-        String actualMessage = exception.getMessage();
+        Mockito.verify(idempotencyKeyRepository).bindOrder("key", order.getOrderId());
+        Mockito.verify(eventPublisher).publishEvent(Mockito.any(OrderChangedEvent.class));
 
-        Assertions.assertTrue(actualMessage.contains(WRONG_CONFIGURATION_MESSAGE));
+        Assertions.assertEquals(IdempotentOrderDTO.Outcome.CREATED, idempotentOrder.getOutcome());
+        Assertions.assertEquals(order.getOrderId(), idempotentOrder.getOrder().getOrderId());
     }
 
     /**
-     * Test update next order with null order statuses list (RECEIVED).
+     * Test create order with an idempotency key already taken by the same request: the original order is returned
+     * and nothing is saved.
+     *
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
      * @author Gianluca Sabato
      */
     @Test
-    public void testUpdateNextOrderNullStatusConfigurationReceived() {
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(null);
+    public void testCreateOrderIdempotencyKeyReplayed() throws ConfigurationException {
+        IdempotencyKey idempotencyKey = new IdempotencyKey();
+        idempotencyKey.setIdempotencyKey("key");
+        idempotencyKey.setRequestHash("hash");
+        idempotencyKey.setOrderId(UUID.randomUUID());
 
-        Exception exception = Assertions.assertThrows(ConfigurationException.class, () -> {
-            orderService.updateNextOrder();
-        });
+        when(idempotencyKeyRepository.claim(Mockito.eq("key"), Mockito.eq("hash"), Mockito.any())).thenReturn(0);
+        when(idempotencyKeyRepository.findById("key")).thenReturn(Optional.of(idempotencyKey));
+
+        IdempotentOrderDTO idempotentOrder = orderService.createOrder(new OrderDTO(List.of("Margherita")), "key",
+                "hash");
 
-        String actualMessage = exception.getMessage();
+        Mockito.verify(orderRepository, Mockito.never()).save(Mockito.any());
+        Mockito.verifyNoInteractions(eventPublisher);
 
-        Assertions.assertTrue(actualMessage.contains(WRONG_CONFIGURATION_MESSAGE));
+        Assertions.assertEquals(IdempotentOrderDTO.Outcome.REPLAYED, idempotentOrder.getOutcome());
+        Assertions.assertEquals(idempotencyKey.getOrderId(), idempotentOrder.getOrder().getOrderId());
+        Assertions.assertEquals(List.of("Margherita"), idempotentOrder.getOrder().getPizzas());
     }
 
     /**
-     * Test update next order with null order statuses list (PROCESSING).
+     * Test create order with an idempotency key already taken by a different request.
+     *
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
      * @author Gianluca Sabato
      */
     @Test
-    public void testUpdateNextOrderNullStatusConfigurationProcessing() {
-        OrderStatus received = new OrderStatus();
-        received.setStatus(OrderStatusTestConstants.RECEVIED);
-        received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
-        List<OrderStatus> receivedList = List.of(received);
-
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(receivedList);
+    public void testCreateOrderIdempotencyKeyMismatch() throws ConfigurationException {
+        IdempotencyKey idempotencyKey = new IdempotencyKey();
+        idempotencyKey.setIdempotencyKey("key");
+        idempotencyKey.setRequestHash("otherHash");
+        idempotencyKey.setOrderId(UUID.randomUUID());
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.PROCESSING)).thenReturn(null);
+        when(idempotencyKeyRepository.claim(Mockito.eq("key"), Mockito.eq("hash"), Mockito.any())).thenReturn(0);
+        when(idempotencyKeyRepository.findById("key")).thenReturn(Optional.of(idempotencyKey));
 
-        Exception exception = Assertions.assertThrows(ConfigurationException.class, () -> {
-            orderService.updateNextOrder();
-        });
+        IdempotentOrderDTO idempotentOrder = orderService.createOrder(new OrderDTO(List.of("Margherita")), "key",
+                "hash");
 
-        String actualMessage = exception.getMessage();
+        Mockito.verify(orderRepository, Mockito.never()).save(Mockito.any());
 
-        Assertions.assertTrue(actualMessage.contains(WRONG_CONFIGURATION_MESSAGE));
+        Assertions.assertEquals(IdempotentOrderDTO.Outcome.MISMATCH, idempotentOrder.getOutcome());
+        Assertions.assertNull(idempotentOrder.getOrder());
     }
 
     /**
-     * Test update next order with null order statuses list (COMPLETED).
+     * Test create a batch of orders: the invalid orders are reported and the valid ones are saved together.
+     *
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
      * @author Gianluca Sabato
      */
     @Test
-    public void testUpdateNextOrderNullStatusConfigurationCompleted() {
+    public void testCreateOrders() throws ConfigurationException {
         OrderStatus received = new OrderStatus();
         received.setStatus(OrderStatusTestConstants.RECEVIED);
         received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
-        List<OrderStatus> receivedList = List.of(received);
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(receivedList);
+        when(orderStatusRegistry.getRequired(OrderStatusTestConstants.RECEVIED)).thenReturn(received);
+        when(orderRepository.saveAll(Mockito.<List<Order>>any())).thenAnswer(invocation -> {
+            List<Order> orders = invocation.getArgument(0);
+            orders.forEach(o -> o.setOrderId(UUID.randomUUID()));
 
-        OrderStatus processing = new OrderStatus();
-        processing.setStatus(OrderStatusTestConstants.PROCESSING);
-        processing.setOrderStatusId(OrderStatusTestConstants.PROCESSING_ID);
+            return orders;
+        });
 
-        List<OrderStatus> processingList = List.of(processing);
+        List<OrderDTO> orderDTOS = new ArrayList<>();
+        orderDTOS.add(new OrderDTO(List.of("Margherita")));
+        orderDTOS.add(new OrderDTO(List.of()));
+        orderDTOS.add(null);
+        orderDTOS.add(new OrderDTO(List.of("Diavola", "Tirolese")));
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.PROCESSING)).thenReturn(processingList);
+        List<OrderBatchItemDTO> results = orderService.createOrders(orderDTOS);
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.COMPLETED)).thenReturn(null);
+        ArgumentCaptor<List<Order>> ordersCaptor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(orderRepository).saveAll(ordersCaptor.capture());
+        Mockito.verify(eventPublisher, Mockito.times(2)).publishEvent(Mockito.any(OrderChangedEvent.class));
 
-        Exception exception = Assertions.assertThrows(ConfigurationException.class, () -> {
-            orderService.updateNextOrder();
-        });
+        Assertions.assertEquals(2, ordersCaptor.getValue().size());
+        Assertions.assertEquals(orderDTOS.size(), results.size());
+
+        for (int i = 0; i < results.size(); i++) {
+            Assertions.assertEquals(i, results.get(i).getIndex());
+        }
 
-        String actualMessage = exception.getMessage();
+        Assertions.assertEquals(HttpStatus.CREATED.value(), results.get(0).getStatus());
+        Assertions.assertEquals(ordersCaptor.getValue().get(0).getOrderId(), results.get(0).getOrderId());
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST.value(), results.get(1).getStatus());
+        Assertions.assertEquals(List.of("Input pizza list cannot be empty."), results.get(1).getErrors());
+        Assertions.assertNull(results.get(1).getOrderId());
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST.value(), results.get(2).getStatus());
+        Assertions.assertEquals(HttpStatus.CREATED.value(), results.get(3).getStatus());
+        Assertions.assertEquals(ordersCaptor.getValue().get(1).getOrderId(), results.get(3).getOrderId());
+    }
 
-        Assertions.assertTrue(actualMessage.contains(WRONG_CONFIGURATION_MESSAGE));
+    /**
+     * Test create a batch of orders with a pizza that is not on the menu: it's refused by the validation.
+     *
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testCreateOrdersUnknownPizza() throws ConfigurationException {
+        when(orderStatusRegistry.getRequired(OrderStatusTestConstants.RECEVIED)).thenReturn(new OrderStatus());
+        when(orderRepository.saveAll(Mockito.<List<Order>>any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<OrderBatchItemDTO> results = orderService.createOrders(List.of(new OrderDTO(List.of("Margherita",
+                "Hawaiian"))));
+
+        Assertions.assertEquals(1, results.size());
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST.value(), results.get(0).getStatus());
+        Assertions.assertEquals(List.of("Input pizza must be on the menu."), results.get(0).getErrors());
+        Mockito.verify(orderRepository).saveAll(List.of());
+        Mockito.verifyNoInteractions(eventPublisher);
     }
 
     /**
-     * Test update next order with wrong status configuration (RECEIVED).
+     * Test update order status, with the outbox enabled.
      * @author Gianluca Sabato
      */
     @Test
-    public void testUpdateNextOrderWrongStatusConfigurationReceived() {
+    public void testUpdateOrderStatus() {
+        pizzaPlaceProperties.getOutbox().setEnabled(true);
+
         OrderStatus received = new OrderStatus();
         received.setStatus(OrderStatusTestConstants.RECEVIED);
         received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
 
-        OrderStatus duplicated = new OrderStatus();
-        duplicated.setStatus(OrderStatusTestConstants.RECEVIED);
-        duplicated.setOrderStatusId(UUID.randomUUID());
-
-        List<OrderStatus> receivedList = List.of(received, duplicated);
-
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(receivedList);
-
-        Exception exception = Assertions.assertThrows(ConfigurationException.class, () -> {
-            orderService.updateNextOrder();
-        });
+        OrderStatus processing = new OrderStatus();
+        processing.setStatus(OrderStatusTestConstants.PROCESSING);
+        processing.setOrderStatusId(OrderStatusTestConstants.PROCESSING_ID);
 
-        String actualMessage = exception.getMessage();
+        UUID orderId = UUID.randomUUID();
+        OrderTransition transition = OrderTransition.builder().orderId(orderId).pizzas(List.of("margherita"))
+                .orderStatusId(OrderStatusTestConstants.PROCESSING_ID)
+                .previousOrderStatusId(OrderStatusTestConstants.RECEVIED_ID).build();
 
-        Assertions.assertTrue(actualMessage.contains(WRONG_CONFIGURATION_MESSAGE));
+        when(orderStatusRegistry.findById(OrderStatusTestConstants.PROCESSING_ID)).thenReturn(
+                Optional.of(processing));
+        when(orderStatusRegistry.findById(OrderStatusTestConstants.RECEVIED_ID)).thenReturn(Optional.of(received));
+        when(orderStatusRegistry.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(Optional.of(received));
+        when(orderRepository.transitionOrder(orderId, OrderStatusTestConstants.PROCESSING_ID,
+                OrderStatusTestConstants.RECEVIED_ID, List.of(OrderStatusTestConstants.RECEVIED_ID))).thenReturn(
+                Optional.of(transition));
+
+        OrderStatusUpdateDTO orderStatusUpdate = orderService.updateOrderStatus(orderId,
+                OrderStatusTestConstants.PROCESSING_ID, OrderStatusTestConstants.RECEVIED_ID);
+
+        ArgumentCaptor<OrderChangedEvent> eventCaptor = ArgumentCaptor.forClass(OrderChangedEvent.class);
+        Mockito.verify(eventPublisher).publishEvent(eventCaptor.capture());
+        Mockito.verify(orderRepository, Mockito.never()).findById(Mockito.any());
+        Mockito.verify(orderCache).invalidate(orderId);
+
+        ArgumentCaptor<OrderEvent> orderEventCaptor = ArgumentCaptor.forClass(OrderEvent.class);
+        Mockito.verify(orderEventRepository).save(orderEventCaptor.capture());
+
+        Assertions.assertEquals(orderId, orderEventCaptor.getValue().getOrderId());
+        Assertions.assertEquals(OrderStatusTestConstants.RECEVIED, orderEventCaptor.getValue().getPreviousStatus());
+        Assertions.assertEquals(OrderStatusTestConstants.PROCESSING, orderEventCaptor.getValue().getStatus());
+
+        Assertions.assertEquals(OrderStatusUpdateDTO.Outcome.UPDATED, orderStatusUpdate.getOutcome());
+        Assertions.assertEquals(OrderStatusTestConstants.PROCESSING, orderStatusUpdate.getOrderStatus()
+                .getOrderStatus());
+        Assertions.assertEquals(OrderStatusTestConstants.RECEVIED, eventCaptor.getValue().getPreviousStatus());
+        Assertions.assertEquals(OrderStatusTestConstants.PROCESSING, eventCaptor.getValue().getStatus());
     }
 
     /**
-     * Test update next order with wrong status configuration (PROCESSING).
+     * Test update order status with the outbox disabled: the change is published, but not written to the outbox.
      * @author Gianluca Sabato
      */
     @Test
-    public void testUpdateNextOrderWrongStatusConfigurationProcessing() {
+    public void testUpdateOrderStatusOutboxDisabled() {
         OrderStatus received = new OrderStatus();
         received.setStatus(OrderStatusTestConstants.RECEVIED);
         received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
 
-        List<OrderStatus> receivedList = List.of(received);
-
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(receivedList);
-
         OrderStatus processing = new OrderStatus();
         processing.setStatus(OrderStatusTestConstants.PROCESSING);
         processing.setOrderStatusId(OrderStatusTestConstants.PROCESSING_ID);
 
-        OrderStatus duplicated = new OrderStatus();
-        duplicated.setStatus(OrderStatusTestConstants.PROCESSING);
-        duplicated.setOrderStatusId(UUID.randomUUID());
-
-        List<OrderStatus> processingList = List.of(processing, duplicated);
+        UUID orderId = UUID.randomUUID();
+        OrderTransition transition = OrderTransition.builder().orderId(orderId).pizzas(List.of("margherita"))
+                .orderStatusId(OrderStatusTestConstants.PROCESSING_ID)
+                .previousOrderStatusId(OrderStatusTestConstants.RECEVIED_ID).build();
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.PROCESSING)).thenReturn(processingList);
+        pizzaPlaceProperties.getOutbox().setEnabled(false);
+        when(orderStatusRegistry.findById(OrderStatusTestConstants.PROCESSING_ID)).thenReturn(
+                Optional.of(processing));
+        when(orderStatusRegistry.findById(OrderStatusTestConstants.RECEVIED_ID)).thenReturn(Optional.of(received));
+        when(orderStatusRegistry.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(Optional.of(received));
+        when(orderRepository.transitionOrder(orderId, OrderStatusTestConstants.PROCESSING_ID,
+                OrderStatusTestConstants.RECEVIED_ID, List.of(OrderStatusTestConstants.RECEVIED_ID))).thenReturn(
+                Optional.of(transition));
 
-        Exception exception = Assertions.assertThrows(ConfigurationException.class, () -> {
-            orderService.updateNextOrder();
-        });
+        OrderStatusUpdateDTO orderStatusUpdate = orderService.updateOrderStatus(orderId,
+                OrderStatusTestConstants.PROCESSING_ID, OrderStatusTestConstants.RECEVIED_ID);
 
-        String actualMessage = exception.getMessage();
+        Mockito.verify(eventPublisher).publishEvent(Mockito.any(OrderChangedEvent.class));
+        Mockito.verifyNoInteractions(orderEventRepository);
 
-        Assertions.assertTrue(actualMessage.contains(WRONG_CONFIGURATION_MESSAGE));
+        Assertions.assertEquals(OrderStatusUpdateDTO.Outcome.UPDATED, orderStatusUpdate.getOutcome());
     }
 
     /**
-     * Test update next order with wrong status configuration (COMPLETED).
+     * Test update order status when the order is not persisted inside the database.
      * @author Gianluca Sabato
      */
     @Test
-    public void testUpdateNextOrderWrongStatusConfigurationCompleted() {
-        OrderStatus received = new OrderStatus();
-        received.setStatus(OrderStatusTestConstants.RECEVIED);
-        received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
-
-        List<OrderStatus> receivedList = List.of(received);
-
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(receivedList);
-
+    public void testUpdateOrderStatusNotFound() {
         OrderStatus processing = new OrderStatus();
         processing.setStatus(OrderStatusTestConstants.PROCESSING);
         processing.setOrderStatusId(OrderStatusTestConstants.PROCESSING_ID);
 
-        List<OrderStatus> processingList = List.of(processing);
+        UUID orderId = UUID.randomUUID();
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.PROCESSING)).thenReturn(processingList);
+        when(orderStatusRegistry.findById(OrderStatusTestConstants.PROCESSING_ID)).thenReturn(
+                Optional.of(processing));
+        when(orderStatusRegistry.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(Optional.empty());
+        when(orderRepository.transitionOrder(orderId, OrderStatusTestConstants.PROCESSING_ID, null, List.of()))
+                .thenReturn(Optional.empty());
+
+        OrderStatusUpdateDTO orderStatusUpdate = orderService.updateOrderStatus(orderId,
+                OrderStatusTestConstants.PROCESSING_ID, null);
+
+        Mockito.verifyNoInteractions(eventPublisher);
+
+        Assertions.assertEquals(OrderStatusUpdateDTO.Outcome.ORDER_NOT_FOUND, orderStatusUpdate.getOutcome());
+    }
+
+    /**
+     * Test update order status with a status missing from the configuration: the order isn't touched.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testUpdateOrderStatusMissingStatusConfiguration() {
+        when(orderStatusRegistry.findById(OrderStatusTestConstants.PROCESSING_ID)).thenReturn(Optional.empty());
+
+        OrderStatusUpdateDTO orderStatusUpdate = orderService.updateOrderStatus(UUID.randomUUID(),
+                OrderStatusTestConstants.PROCESSING_ID, null);
+
+        Mockito.verifyNoInteractions(orderRepository, eventPublisher);
+
+        Assertions.assertEquals(OrderStatusUpdateDTO.Outcome.ORDER_STATUS_NOT_FOUND, orderStatusUpdate.getOutcome());
+    }
+
+    /**
+     * Test update order status when the order doesn't have the expected status.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testUpdateOrderStatusConflict() {
+        OrderStatus processing = new OrderStatus();
+        processing.setStatus(OrderStatusTestConstants.PROCESSING);
+        processing.setOrderStatusId(OrderStatusTestConstants.PROCESSING_ID);
 
         OrderStatus completed = new OrderStatus();
         completed.setStatus(OrderStatusTestConstants.COMPLETED);
         completed.setOrderStatusId(OrderStatusTestConstants.COMPLETED_ID);
 
-        OrderStatus duplicated = new OrderStatus();
-        duplicated.setStatus(OrderStatusTestConstants.COMPLETED);
-        duplicated.setOrderStatusId(UUID.randomUUID());
+        UUID orderId = UUID.randomUUID();
+        OrderTransition transition = OrderTransition.builder().orderId(orderId).pizzas(List.of("margherita"))
+                .orderStatusId(OrderStatusTestConstants.COMPLETED_ID)
+                .previousOrderStatusId(OrderStatusTestConstants.COMPLETED_ID).build();
+
+        when(orderStatusRegistry.findById(OrderStatusTestConstants.PROCESSING_ID)).thenReturn(
+                Optional.of(processing));
+        when(orderStatusRegistry.findById(OrderStatusTestConstants.COMPLETED_ID)).thenReturn(Optional.of(completed));
+        when(orderStatusRegistry.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(Optional.empty());
+        when(orderRepository.transitionOrder(orderId, OrderStatusTestConstants.PROCESSING_ID,
+                OrderStatusTestConstants.RECEVIED_ID, List.of())).thenReturn(Optional.of(transition));
+
+        OrderStatusUpdateDTO orderStatusUpdate = orderService.updateOrderStatus(orderId,
+                OrderStatusTestConstants.PROCESSING_ID, OrderStatusTestConstants.RECEVIED_ID);
+
+        Mockito.verifyNoInteractions(eventPublisher, orderEventRepository);
+
+        Assertions.assertEquals(OrderStatusUpdateDTO.Outcome.CONFLICT, orderStatusUpdate.getOutcome());
+        Assertions.assertEquals(OrderStatusTestConstants.COMPLETED, orderStatusUpdate.getOrderStatus()
+                .getOrderStatus());
+    }
+
+    /**
+     * Test update order status along an illegal transition: the order is left unchanged.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testUpdateOrderStatusIllegalTransition() {
+        OrderStatus received = new OrderStatus();
+        received.setStatus(OrderStatusTestConstants.RECEVIED);
+        received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
+
+        OrderStatus completed = new OrderStatus();
+        completed.setStatus(OrderStatusTestConstants.COMPLETED);
+        completed.setOrderStatusId(OrderStatusTestConstants.COMPLETED_ID);
+
+        UUID orderId = UUID.randomUUID();
+        OrderTransition transition = OrderTransition.builder().orderId(orderId).pizzas(List.of("margherita"))
+                .orderStatusId(OrderStatusTestConstants.COMPLETED_ID)
+                .previousOrderStatusId(OrderStatusTestConstants.COMPLETED_ID).build();
+
+        when(orderStatusRegistry.findById(OrderStatusTestConstants.RECEVIED_ID)).thenReturn(Optional.of(received));
+        when(orderStatusRegistry.findById(OrderStatusTestConstants.COMPLETED_ID)).thenReturn(Optional.of(completed));
+        when(orderRepository.transitionOrder(orderId, OrderStatusTestConstants.RECEVIED_ID, null, List.of()))
+                .thenReturn(Optional.of(transition));
+
+        OrderStatusUpdateDTO orderStatusUpdate = orderService.updateOrderStatus(orderId,
+                OrderStatusTestConstants.RECEVIED_ID, null);
+
+        Mockito.verifyNoInteractions(eventPublisher);
+
+        Assertions.assertEquals(OrderStatusUpdateDTO.Outcome.ILLEGAL_TRANSITION, orderStatusUpdate.getOutcome());
+        Assertions.assertEquals(OrderStatusTestConstants.COMPLETED, orderStatusUpdate.getOrderStatus()
+                .getOrderStatus());
+    }
+
+    /**
+     * Test update order status to the status the order already has: the update succeeds without changing the order.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testUpdateOrderStatusSameStatus() {
+        OrderStatus processing = new OrderStatus();
+        processing.setStatus(OrderStatusTestConstants.PROCESSING);
+        processing.setOrderStatusId(OrderStatusTestConstants.PROCESSING_ID);
+
+        OrderStatus received = new OrderStatus();
+        received.setStatus(OrderStatusTestConstants.RECEVIED);
+        received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
+
+        UUID orderId = UUID.randomUUID();
+        OrderTransition transition = OrderTransition.builder().orderId(orderId).pizzas(List.of("margherita"))
+                .orderStatusId(OrderStatusTestConstants.PROCESSING_ID)
+                .previousOrderStatusId(OrderStatusTestConstants.PROCESSING_ID).build();
+
+        when(orderStatusRegistry.findById(OrderStatusTestConstants.PROCESSING_ID)).thenReturn(
+                Optional.of(processing));
+        when(orderStatusRegistry.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(Optional.of(received));
+        when(orderRepository.transitionOrder(orderId, OrderStatusTestConstants.PROCESSING_ID, null,
+                List.of(OrderStatusTestConstants.RECEVIED_ID))).thenReturn(Optional.of(transition));
+
+        OrderStatusUpdateDTO orderStatusUpdate = orderService.updateOrderStatus(orderId,
+                OrderStatusTestConstants.PROCESSING_ID, null);
+
+        Mockito.verifyNoInteractions(eventPublisher, orderEventRepository);
+
+        Assertions.assertEquals(OrderStatusUpdateDTO.Outcome.UPDATED, orderStatusUpdate.getOutcome());
+        Assertions.assertEquals(OrderStatusTestConstants.PROCESSING, orderStatusUpdate.getOrderStatus()
+                .getOrderStatus());
+    }
+
+    /**
+     * Test the order state machine transitions.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testOrderStateMachine() {
+        Assertions.assertTrue(orderStateMachine.isLegal(OrderStatusTestConstants.RECEVIED,
+                OrderStatusTestConstants.PROCESSING));
+        Assertions.assertTrue(orderStateMachine.isLegal(OrderStatusTestConstants.PROCESSING,
+                OrderStatusTestConstants.COMPLETED));
+        Assertions.assertTrue(orderStateMachine.isLegal(OrderStatusTestConstants.RECEVIED,
+                OrderStatusTestConstants.CANCELLED));
+        Assertions.assertTrue(orderStateMachine.isLegal(OrderStatusTestConstants.PROCESSING,
+                OrderStatusTestConstants.CANCELLED));
+        Assertions.assertFalse(orderStateMachine.isLegal(OrderStatusTestConstants.COMPLETED,
+                OrderStatusTestConstants.RECEVIED));
+        Assertions.assertFalse(orderStateMachine.isLegal(OrderStatusTestConstants.COMPLETED,
+                OrderStatusTestConstants.CANCELLED));
+        Assertions.assertFalse(orderStateMachine.isLegal(OrderStatusTestConstants.CANCELLED,
+                OrderStatusTestConstants.PROCESSING));
+        Assertions.assertFalse(orderStateMachine.isLegal(OrderStatusTestConstants.RECEVIED,
+                OrderStatusTestConstants.RECEVIED));
+        Assertions.assertFalse(orderStateMachine.isLegal(OrderStatusTestConstants.RECEVIED,
+                OrderStatusTestConstants.COMPLETED));
+        Assertions.assertFalse(orderStateMachine.isLegal(null, OrderStatusTestConstants.CANCELLED));
+        Assertions.assertFalse(orderStateMachine.isLegal(OrderStatusTestConstants.RECEVIED, "UNKNOWN"));
+
+        Assertions.assertEquals(List.of(OrderStatusTestConstants.RECEVIED, OrderStatusTestConstants.PROCESSING),
+                orderStateMachine.getSourceStatuses(OrderStatusTestConstants.CANCELLED).stream().sorted(
+                        Comparator.reverseOrder()).toList());
+        Assertions.assertTrue(orderStateMachine.getSourceStatuses(OrderStatusTestConstants.RECEVIED).isEmpty());
+
+        Assertions.assertTrue(orderStateMachine.isFinal(OrderStatusTestConstants.COMPLETED));
+        Assertions.assertTrue(orderStateMachine.isFinal(OrderStatusTestConstants.CANCELLED));
+        Assertions.assertFalse(orderStateMachine.isFinal(OrderStatusTestConstants.RECEVIED));
+        Assertions.assertFalse(orderStateMachine.isFinal(OrderStatusTestConstants.PROCESSING));
+        Assertions.assertFalse(orderStateMachine.isFinal(null));
+        Assertions.assertFalse(orderStateMachine.isFinal("UNKNOWN"));
+
+        Assertions.assertTrue(orderStateMachine.isReachable(OrderStatusTestConstants.RECEVIED,
+                OrderStatusTestConstants.COMPLETED));
+        Assertions.assertTrue(orderStateMachine.isReachable(OrderStatusTestConstants.RECEVIED,
+                OrderStatusTestConstants.PROCESSING));
+        Assertions.assertFalse(orderStateMachine.isReachable(OrderStatusTestConstants.PROCESSING,
+                OrderStatusTestConstants.RECEVIED));
+        Assertions.assertFalse(orderStateMachine.isReachable(OrderStatusTestConstants.PROCESSING,
+                OrderStatusTestConstants.PROCESSING));
+        Assertions.assertFalse(orderStateMachine.isReachable(OrderStatusTestConstants.COMPLETED,
+                OrderStatusTestConstants.CANCELLED));
+    }
+
+    /**
+     * Test search orders.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testSearchOrders() {
+        List<OrderListItemDTO> orders = getOrderListItems(3);
+        OrderSearchDTO orderSearch = new OrderSearchDTO();
+        orderSearch.setStatus(OrderStatusTestConstants.RECEVIED);
+        orderSearch.setCreatedFrom(LocalDateTime.now().minusDays(1));
+        orderSearch.setPizza("Diavola");
+        orderSearch.setSize(2);
+        OrderStatus received = new OrderStatus();
+        received.setStatus(OrderStatusTestConstants.RECEVIED);
+        received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
+
+        when(orderStatusRegistry.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(Optional.of(received));
+        when(orderRepository.findListItems(Mockito.<Specification<Order>>any(),
+                Mockito.eq(Sort.by(Sort.Direction.ASC, "createdDate", "orderId")), Mockito.eq(Limit.of(3))))
+                .thenReturn(orders);
+
+        OrderPageDTO orderPage = orderService.searchOrders(orderSearch, null, null);
+
+        Assertions.assertEquals(2, orderPage.getOrders().size());
+        Assertions.assertEquals(orders.get(0).getOrderId(), orderPage.getOrders().get(0).getOrderId());
+        Assertions.assertEquals(orders.get(1).getOrderId(), orderPage.getNext().getOrderId());
+        Assertions.assertNull(orderPage.getPrevious());
+    }
+
+    /**
+     * Test search orders before a cursor: the orders are read backwards and returned in ascending order.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testSearchOrdersBefore() {
+        List<OrderListItemDTO> orders = new ArrayList<>(getOrderListItems(3));
+        Collections.reverse(orders);
+        OrderCursor before = new OrderCursor(LocalDateTime.now(), UUID.randomUUID());
+        OrderSearchDTO orderSearch = new OrderSearchDTO();
+        orderSearch.setSize(2);
+
+        when(orderRepository.findListItems(Mockito.<Specification<Order>>any(),
+                Mockito.eq(Sort.by(Sort.Direction.DESC, "createdDate", "orderId")), Mockito.eq(Limit.of(3))))
+                .thenReturn(orders);
+
+        OrderPageDTO orderPage = orderService.searchOrders(orderSearch, null, before);
+
+        Assertions.assertEquals(List.of(orders.get(1).getOrderId(), orders.get(0).getOrderId()),
+                orderPage.getOrders().stream().map(OrderDTO::getOrderId).toList());
+        Assertions.assertEquals(orders.get(1).getOrderId(), orderPage.getPrevious().getOrderId());
+        Assertions.assertEquals(orders.get(0).getOrderId(), orderPage.getNext().getOrderId());
+    }
+
+    /**
+     * Test search orders with an unknown status: the database is not queried.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testSearchOrdersUnknownStatus() {
+        OrderSearchDTO orderSearch = new OrderSearchDTO();
+        orderSearch.setStatus("UNKNOWN");
+
+        when(orderStatusRegistry.findByStatus("UNKNOWN")).thenReturn(Optional.empty());
+
+        Assertions.assertTrue(orderService.searchOrders(orderSearch, null, null).getOrders().isEmpty());
+        Mockito.verifyNoInteractions(orderRepository);
+    }
+
+    /**
+     * Test search orders with a pizza that is not on the menu: the database is not queried.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testSearchOrdersUnknownPizza() {
+        OrderSearchDTO orderSearch = new OrderSearchDTO();
+        orderSearch.setPizza("Hawaiian");
+
+        Assertions.assertTrue(orderService.searchOrders(orderSearch, null, null).getOrders().isEmpty());
+        Mockito.verifyNoInteractions(orderRepository);
+    }
+
+    /**
+     * Test get order ETag, with and without the order: a cached order gives its ETag, otherwise only the last modified
+     * date is read, and the order is neither loaded nor cached. The ETag changes with the menu too.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testGetOrderETag() {
+        UUID orderId = UUID.randomUUID();
+        LocalDateTime lastModifiedDate = LocalDateTime.of(2024, 2, 15, 1, 39, 42, 783402000);
+
+        when(orderRepository.findLastModifiedDateByOrderId(orderId)).thenReturn(Optional.of(lastModifiedDate),
+                Optional.empty());
+        when(orderRepository.findById(orderId)).thenReturn(Optional.of(getOrder(orderId,
+                lastModifiedDate.plusNanos(1000))));
+
+        String eTag = orderService.getOrderETag(orderId).orElseThrow();
+
+        Assertions.assertEquals(ETagFactory.getETag(ETagFactory.getETag(lastModifiedDate), pizzaCatalog.getVersion()),
+                eTag);
+        Mockito.verify(orderRepository, Mockito.never()).findById(orderId);
+
+        orderService.getOrder(orderId);
+        String cachedETag = orderService.getOrderETag(orderId).orElseThrow();
+
+        Assertions.assertEquals(ETagFactory.getETag(ETagFactory.getETag(lastModifiedDate.plusNanos(1000)),
+                pizzaCatalog.getVersion()), cachedETag);
+
+        Mockito.doReturn("renamed").when(pizzaCatalog).getVersion();
+
+        Assertions.assertNotEquals(cachedETag, orderService.getOrderETag(orderId).orElseThrow());
+
+        orderCache.invalidate(orderId);
+
+        Assertions.assertTrue(orderService.getOrderETag(orderId).isEmpty());
+        Mockito.verify(orderRepository, Mockito.times(2)).findLastModifiedDateByOrderId(orderId);
+        Mockito.verify(orderRepository).findById(orderId);
+    }
+
+    /**
+     * Test the order cache: orders are loaded once, missing orders are not cached, and hits and misses are published
+     * as metrics.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testOrderCache() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        OrderCache cache = new OrderCache(new PizzaPlaceProperties(), meterRegistry);
+        UUID orderId = UUID.randomUUID();
+        UUID missingOrderId = UUID.randomUUID();
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertTrue(cache.get(orderId, id -> {
+                loads.incrementAndGet();
+                return Optional.of(CachedOrderDTO.builder().orderId(id).pizzaIds(List.of(1)).build());
+            }).isPresent());
+            Assertions.assertTrue(cache.get(missingOrderId, id -> {
+                loads.incrementAndGet();
+                return Optional.empty();
+            }).isEmpty());
+        }
+
+        Assertions.assertEquals(4, loads.get());
+
+        cache.invalidate(orderId);
+
+        Assertions.assertEquals(orderId, cache.get(orderId, id -> {
+            loads.incrementAndGet();
+            return Optional.of(CachedOrderDTO.builder().orderId(id).pizzaIds(List.of(2)).build());
+        }).orElseThrow().getOrderId());
+        Assertions.assertEquals(5, loads.get());
+
+        Assertions.assertEquals(2, meterRegistry.get("cache.gets").tag("cache", "orders").tag("result", "hit")
+                .functionCounter().count());
+        Assertions.assertEquals(5, meterRegistry.get("cache.gets").tag("cache", "orders").tag("result", "miss")
+                .functionCounter().count());
+    }
+
+    // OrderExportService
+
+    /**
+     * Test export orders: one JSON document per line, read in chunks of the configured size.
+     *
+     * @throws IOException the io exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testExportOrders() throws IOException {
+        List<OrderSummaryDTO> orders = getOrderSummaries(5);
+        pizzaPlaceProperties.getOrders().setExportChunkSize(2);
+
+        // The chunk size is also the fetch size
+        when(orderRepository.streamAllForExport(2)).thenReturn(orders.stream());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        long count = orderExportService.exportOrders(outputStream);
+
+        String[] lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+
+        Assertions.assertEquals(orders.size(), count);
+        Assertions.assertEquals(orders.size(), lines.length);
+
+        for (int i = 0; i < orders.size(); i++) {
+            JsonNode node = objectMapper.readTree(lines[i]);
+
+            Assertions.assertEquals(orders.get(i).getOrderId().toString(), node.get("orderId").asText());
+            Assertions.assertEquals(OrderStatusTestConstants.RECEVIED, node.get("status").asText());
+            Assertions.assertEquals(orders.get(i).getPizzaIds().size(), node.get("pizzas").size());
+        }
+    }
+
+    /**
+     * Test export orders with no orders.
+     *
+     * @throws IOException the io exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testExportOrdersEmpty() throws IOException {
+        when(orderRepository.streamAllForExport(500)).thenReturn(Stream.empty());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        Assertions.assertEquals(0, orderExportService.exportOrders(outputStream));
+        Assertions.assertEquals(0, outputStream.size());
+    }
+
+    // OrderIdempotencyService
+
+    /**
+     * Test a repeated request is answered from memory, and a different request with the same key is refused.
+     *
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testIdempotentOrderReplayed() throws ConfigurationException {
+        OrderService idempotentOrderService = Mockito.mock(OrderService.class);
+        OrderDTO createdOrderDTO = OrderDTO.builder().orderId(UUID.randomUUID()).pizzas(List.of("Margherita")).build();
+
+        when(idempotentOrderService.createOrder(Mockito.any(OrderDTO.class), Mockito.eq("key"), Mockito.anyString()))
+                .thenReturn(IdempotentOrderDTO.builder().order(createdOrderDTO)
+                        .outcome(IdempotentOrderDTO.Outcome.CREATED).build());
+
+        OrderIdempotencyService orderIdempotencyService = new OrderIdempotencyService(idempotentOrderService,
+                idempotencyKeyRepository, pizzaPlaceProperties);
+
+        IdempotentOrderDTO created = orderIdempotencyService.createOrder("key", new OrderDTO(List.of("Margherita")));
+        IdempotentOrderDTO replayed = orderIdempotencyService.createOrder("key", new OrderDTO(List.of("Margherita")));
+        IdempotentOrderDTO mismatch = orderIdempotencyService.createOrder("key", new OrderDTO(List.of("Diavola")));
+
+        Mockito.verify(idempotentOrderService).createOrder(Mockito.any(OrderDTO.class), Mockito.eq("key"),
+                Mockito.anyString());
+
+        Assertions.assertEquals(IdempotentOrderDTO.Outcome.CREATED, created.getOutcome());
+        Assertions.assertEquals(IdempotentOrderDTO.Outcome.REPLAYED, replayed.getOutcome());
+        Assertions.assertEquals(createdOrderDTO.getOrderId(), replayed.getOrder().getOrderId());
+        Assertions.assertNotSame(created.getOrder(), replayed.getOrder());
+        Assertions.assertEquals(IdempotentOrderDTO.Outcome.MISMATCH, mismatch.getOutcome());
+    }
+
+    /**
+     * Test concurrent requests with the same key are collapsed into a single write.
+     *
+     * @throws Exception the exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testIdempotentOrderConcurrent() throws Exception {
+        OrderService idempotentOrderService = Mockito.mock(OrderService.class);
+        OrderDTO createdOrderDTO = OrderDTO.builder().orderId(UUID.randomUUID()).pizzas(List.of("Margherita")).build();
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        when(idempotentOrderService.createOrder(Mockito.any(OrderDTO.class), Mockito.eq("key"), Mockito.anyString()))
+                .thenAnswer(invocation -> {
+                    writing.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+
+                    return IdempotentOrderDTO.builder().order(createdOrderDTO)
+                            .outcome(IdempotentOrderDTO.Outcome.CREATED).build();
+                });
+
+        OrderIdempotencyService orderIdempotencyService = new OrderIdempotencyService(idempotentOrderService,
+                idempotencyKeyRepository, pizzaPlaceProperties);
+
+        CompletableFuture<IdempotentOrderDTO> first = CompletableFuture.supplyAsync(() -> createIdempotentOrder(
+                orderIdempotencyService));
+
+        Assertions.assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<IdempotentOrderDTO> second = CompletableFuture.supplyAsync(() -> createIdempotentOrder(
+                orderIdempotencyService));
+        release.countDown();
+
+        Assertions.assertEquals(IdempotentOrderDTO.Outcome.CREATED, first.get(5, TimeUnit.SECONDS).getOutcome());
+        Assertions.assertEquals(IdempotentOrderDTO.Outcome.REPLAYED, second.get(5, TimeUnit.SECONDS).getOutcome());
+        Assertions.assertEquals(createdOrderDTO.getOrderId(), second.get().getOrder().getOrderId());
+        Mockito.verify(idempotentOrderService).createOrder(Mockito.any(OrderDTO.class), Mockito.eq("key"),
+                Mockito.anyString());
+    }
+
+    // OrderIntake
+
+    /**
+     * Test the order intake writes the accepted orders and publishes their events.
+     *
+     * @throws Exception the exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testOrderIntake() throws Exception {
+        OrderIntake intake = getOrderIntake();
+        intake.start();
+
+        try {
+            List<UUID> orderIds = new ArrayList<>();
+
+            for (int i = 0; i < 3; i++) {
+                orderIds.add(intake.submit(new OrderDTO(List.of("Margherita"))).orElseThrow().getOrderId());
+            }
+
+            awaitNoPendingOrders(intake);
+
+            ArgumentCaptor<List<Order>> ordersCaptor = ArgumentCaptor.forClass(List.class);
+            Mockito.verify(orderRepository, Mockito.atLeastOnce()).insertOrders(ordersCaptor.capture());
+            Mockito.verify(eventPublisher, Mockito.times(3)).publishEvent(Mockito.any(OrderChangedEvent.class));
+
+            List<UUID> writtenOrderIds = ordersCaptor.getAllValues().stream().flatMap(List::stream)
+                    .map(Order::getOrderId).toList();
+
+            Assertions.assertEquals(orderIds, writtenOrderIds);
+            Assertions.assertTrue(intake.getPendingOrder(orderIds.get(0)).isEmpty());
+        } finally {
+            intake.stop();
+        }
+    }
+
+    /**
+     * Test the order intake refuses orders when the buffer is full, and keeps returning the pending ones.
+     *
+     * @throws Exception the exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testOrderIntakeFull() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Mockito.doAnswer(invocation -> {
+            writing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+
+            return null;
+        }).when(orderRepository).insertOrders(Mockito.any());
+
+        pizzaPlaceProperties.getIntake().setCapacity(1);
+        OrderIntake intake = getOrderIntake();
+        intake.start();
+
+        try {
+            intake.submit(new OrderDTO(List.of("Margherita"))).orElseThrow();
 
-        List<OrderStatus> completedList = List.of(completed, duplicated);
+            Assertions.assertTrue(writing.await(5, TimeUnit.SECONDS));
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.COMPLETED)).thenReturn(completedList);
+            UUID bufferedOrderId = intake.submit(new OrderDTO(List.of("Diavola"))).orElseThrow().getOrderId();
 
-        Exception exception = Assertions.assertThrows(ConfigurationException.class, () -> {
-            orderService.updateNextOrder();
+            Assertions.assertTrue(intake.submit(new OrderDTO(List.of("Tirolese"))).isEmpty());
+            Assertions.assertEquals(2, intake.getPendingOrdersCount());
+            Assertions.assertEquals(List.of("Diavola"), intake.getPendingOrder(bufferedOrderId).orElseThrow()
+                    .getPizzas());
+        } finally {
+            release.countDown();
+            intake.stop();
+        }
+
+        Assertions.assertEquals(0, intake.getPendingOrdersCount());
+    }
+
+    /**
+     * Test the order intake drains the buffer when it stops, and refuses orders once stopped.
+     *
+     * @throws Exception the exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testOrderIntakeStop() throws Exception {
+        pizzaPlaceProperties.getIntake().setFlushInterval(Duration.ofSeconds(1));
+        pizzaPlaceProperties.getIntake().setBatchSize(1000);
+        OrderIntake intake = getOrderIntake();
+        intake.start();
+
+        for (int i = 0; i < 100; i++) {
+            intake.submit(new OrderDTO(List.of("Margherita"))).orElseThrow();
+        }
+
+        intake.stop();
+
+        ArgumentCaptor<List<Order>> ordersCaptor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(orderRepository, Mockito.atLeastOnce()).insertOrders(ordersCaptor.capture());
+
+        Assertions.assertFalse(intake.isRunning());
+        Assertions.assertEquals(100, ordersCaptor.getAllValues().stream().mapToInt(List::size).sum());
+        Assertions.assertEquals(0, intake.getPendingOrdersCount());
+        Assertions.assertTrue(intake.submit(new OrderDTO(List.of("Margherita"))).isEmpty());
+    }
+
+    /**
+     * Test the order intake writes the other orders of a group commit refused by the database, dropping only the
+     * refused one.
+     *
+     * @throws Exception the exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testOrderIntakeRefusedOrder() throws Exception {
+        List<Order> writtenOrders = Collections.synchronizedList(new ArrayList<>());
+
+        Mockito.doAnswer(invocation -> {
+            List<Order> orders = invocation.getArgument(0);
+
+            if (orders.stream().anyMatch(o -> o.getPizzaIds().contains(2))) {
+                throw new DataIntegrityViolationException("refused");
+            }
+
+            writtenOrders.addAll(orders);
+
+            return null;
+        }).when(orderRepository).insertOrders(Mockito.any());
+
+        pizzaPlaceProperties.getIntake().setFlushInterval(Duration.ofSeconds(1));
+        OrderIntake intake = getOrderIntake();
+        intake.start();
+
+        UUID firstOrderId = intake.submit(new OrderDTO(List.of("Margherita"))).orElseThrow().getOrderId();
+        intake.submit(new OrderDTO(List.of("Diavola"))).orElseThrow();
+        UUID lastOrderId = intake.submit(new OrderDTO(List.of("Tirolese"))).orElseThrow().getOrderId();
+
+        intake.stop();
+
+        Assertions.assertEquals(List.of(firstOrderId, lastOrderId), writtenOrders.stream().map(Order::getOrderId)
+                .toList());
+        Mockito.verify(eventPublisher, Mockito.times(2)).publishEvent(Mockito.any(OrderChangedEvent.class));
+        Assertions.assertEquals(0, intake.getPendingOrdersCount());
+    }
+
+    /**
+     * Test the order intake writes the accepted orders when its writer is interrupted, and refuses new ones.
+     *
+     * @throws Exception the exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testOrderIntakeInterrupted() throws Exception {
+        pizzaPlaceProperties.getIntake().setFlushInterval(Duration.ofSeconds(10));
+        pizzaPlaceProperties.getIntake().setBatchSize(1000);
+        OrderIntake intake = getOrderIntake();
+        intake.start();
+
+        for (int i = 0; i < 3; i++) {
+            intake.submit(new OrderDTO(List.of("Margherita"))).orElseThrow();
+        }
+
+        Thread writer = Thread.getAllStackTraces().keySet().stream().filter(t -> t.getName().equals(
+                "order-intake-writer")).findFirst().orElseThrow();
+        writer.interrupt();
+        writer.join(5000);
+
+        ArgumentCaptor<List<Order>> ordersCaptor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(orderRepository, Mockito.atLeastOnce()).insertOrders(ordersCaptor.capture());
+
+        Assertions.assertFalse(writer.isAlive());
+        Assertions.assertFalse(intake.isRunning());
+        Assertions.assertEquals(3, ordersCaptor.getAllValues().stream().mapToInt(List::size).sum());
+        Assertions.assertEquals(0, intake.getPendingOrdersCount());
+        Assertions.assertTrue(intake.submit(new OrderDTO(List.of("Margherita"))).isEmpty());
+    }
+
+    /**
+     * Test the order intake does not start when it's disabled, and refuses every order.
+     *
+     * @throws Exception the exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testOrderIntakeDisabled() throws Exception {
+        pizzaPlaceProperties.getIntake().setEnabled(false);
+        OrderIntake intake = getOrderIntake();
+        intake.start();
+
+        Assertions.assertFalse(intake.isRunning());
+        Assertions.assertTrue(intake.submit(new OrderDTO(List.of("Margherita"))).isEmpty());
+        Mockito.verifyNoInteractions(orderRepository);
+    }
+
+    /**
+     * Test time ordered UUIDs: version 7, IETF variant, and ordered by creation time.
+     *
+     * @throws InterruptedException the interrupted exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testTimeOrderedUUID() throws InterruptedException {
+        UUID first = UUIDFactory.getTimeOrderedUUID();
+        Thread.sleep(2);
+        UUID second = UUIDFactory.getTimeOrderedUUID();
+
+        Assertions.assertEquals(7, first.version());
+        Assertions.assertEquals(2, first.variant());
+        Assertions.assertTrue(Long.compareUnsigned(first.getMostSignificantBits(), second.getMostSignificantBits()) < 0);
+        Assertions.assertTrue(Math.abs((first.getMostSignificantBits() >>> 16) - System.currentTimeMillis()) < 5000);
+    }
+
+    /**
+     * Test time ordered UUIDs are strictly increasing, also when they are generated by concurrent threads within the
+     * same millisecond.
+     *
+     * @throws Exception the exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testTimeOrderedUUIDMonotonic() throws Exception {
+        int threads = 4;
+        int uuidsPerThread = 10000;
+        List<CompletableFuture<List<UUID>>> futures = new ArrayList<>();
+
+        for (int i = 0; i < threads; i++) {
+            futures.add(CompletableFuture.supplyAsync(() -> Stream.generate(UUIDFactory::getTimeOrderedUUID)
+                    .limit(uuidsPerThread).toList()));
+        }
+
+        Set<UUID> uuids = new HashSet<>();
+
+        for (CompletableFuture<List<UUID>> future : futures) {
+            List<UUID> threadUUIDs = future.get(5, TimeUnit.SECONDS);
+
+            for (int i = 1; i < threadUUIDs.size(); i++) {
+                Assertions.assertTrue(Long.compareUnsigned(threadUUIDs.get(i - 1).getMostSignificantBits(),
+                        threadUUIDs.get(i).getMostSignificantBits()) < 0);
+            }
+
+            uuids.addAll(threadUUIDs);
+        }
+
+        Assertions.assertEquals(threads * uuidsPerThread, uuids.size());
+        Assertions.assertEquals(7, ((UUID) new TimeOrderedUUIDGenerator().generate(null, new Order(), null,
+                EventType.INSERT)).version());
+    }
+
+    // TransactionRetry
+
+    /**
+     * Test a transaction failing because of concurrent updates is retried until it succeeds.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testTransactionRetry() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = transactionRetry.execute(status -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new CannotAcquireLockException("locked");
+            }
+
+            return "done";
         });
 
-        String actualMessage = exception.getMessage();
+        Assertions.assertEquals("done", result);
+        Assertions.assertEquals(3, attempts.get());
+    }
 
-        Assertions.assertTrue(actualMessage.contains(WRONG_CONFIGURATION_MESSAGE));
+    /**
+     * Test a transaction is retried at most pizzeria.retry.max-attempts times, and other failures aren't retried.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testTransactionRetryExhausted() {
+        pizzaPlaceProperties.getRetry().setMaxAttempts(3);
+        pizzaPlaceProperties.getRetry().setInitialBackoff(Duration.ofMillis(1));
+        TransactionRetry retry = new TransactionRetry(new TransactionTemplate(transactionManager),
+                pizzaPlaceProperties);
+        AtomicInteger attempts = new AtomicInteger();
+
+        Assertions.assertThrows(ConcurrencyFailureException.class, () -> retry.execute(status -> {
+            attempts.incrementAndGet();
+
+            throw new OptimisticLockingFailureException("changed");
+        }));
+        Assertions.assertEquals(3, attempts.get());
+
+        Assertions.assertThrows(IllegalStateException.class, () -> retry.execute(status -> {
+            attempts.incrementAndGet();
+
+            throw new IllegalStateException("failed");
+        }));
+        Assertions.assertEquals(4, attempts.get());
     }
 
+    // KitchenQueue
+
     /**
-     * Test update next order with empty orders list.
+     * Test kitchen queue reload.
      *
      * @throws ConfigurationException the configuration exception (missing database configuration values)
      * @author Gianluca Sabato
      */
     @Test
-    public void testUpdateNextOrderNotFound1() throws ConfigurationException {
+    public void testKitchenQueueReload() throws ConfigurationException {
         OrderStatus received = new OrderStatus();
         received.setStatus(OrderStatusTestConstants.RECEVIED);
         received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
-        List<OrderStatus> receivedList = List.of(received);
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(receivedList);
+        when(orderStatusRegistry.getRequired(OrderStatusTestConstants.RECEVIED)).thenReturn(received);
 
-        OrderStatus processing = new OrderStatus();
-        processing.setStatus(OrderStatusTestConstants.PROCESSING);
-        processing.setOrderStatusId(OrderStatusTestConstants.PROCESSING_ID);
-        List<OrderStatus> processingList = List.of(processing);
+        List<String> pizzas = List.of("Margherita", "Diavola", "Tirolese");
+        OrderDTO orderDTO = new OrderDTO(pizzas);
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.PROCESSING)).thenReturn(processingList);
+        Order order = new Order();
+        order.setOrderId(UUID.randomUUID());
+        order.setOrderStatus(received);
+        order.setPizzaIds(pizzaCatalog.getPizzaIds(pizzas));
+        order.setCreatedDate(LocalDateTime.now());
 
-        OrderStatus completed = new OrderStatus();
-        completed.setStatus(OrderStatusTestConstants.COMPLETED);
-        completed.setOrderStatusId(OrderStatusTestConstants.COMPLETED_ID);
-        List<OrderStatus> completedList = List.of(completed);
+        List<Order> orders = List.of(order);
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.COMPLETED)).thenReturn(completedList);
+        when(orderRepository.findByOrderStatusOrderByCreatedDateAsc(received)).thenReturn(orders);
 
-        when(orderRepository.findByOrderStatusOrderByCreatedDateAsc(received)).thenReturn(new ArrayList<>());
+        KitchenQueue queue = new KitchenQueue(orderRepository, orderStatusRegistry, pizzaCatalog);
+        queue.reload();
 
-        Optional<OrderDTO> nextOrderOptional = orderService.updateNextOrder();
+        Optional<OrderDTO> nextOrderOptional = queue.peek();
 
-        Assertions.assertTrue(nextOrderOptional.isEmpty());
+        Assertions.assertTrue(nextOrderOptional.isPresent());
+
+        OrderDTO nextOrderDTO = nextOrderOptional.get();
+
+        Assertions.assertEquals(order.getOrderId(), nextOrderDTO.getOrderId());
+        Assertions.assertNotNull(nextOrderDTO.getPizzas());
+        Assertions.assertFalse(nextOrderDTO.getPizzas().isEmpty());
+        Assertions.assertIterableEquals(orderDTO.getPizzas(), nextOrderDTO.getPizzas());
+        Assertions.assertNotSame(nextOrderDTO, queue.peek().orElseThrow());
     }
 
     /**
-     * Test update next order with null orders list.
+     * Test kitchen queue reload with null orders list.
      *
      * @throws ConfigurationException the configuration exception (missing database configuration values)
      * @author Gianluca Sabato
      */
     @Test
-    public void testUpdateNextOrderNotFound2() throws ConfigurationException {
+    public void testKitchenQueueReloadNotFound() throws ConfigurationException {
         OrderStatus received = new OrderStatus();
         received.setStatus(OrderStatusTestConstants.RECEVIED);
         received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
-        List<OrderStatus> receivedList = List.of(received);
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(receivedList);
+        when(orderStatusRegistry.getRequired(OrderStatusTestConstants.RECEVIED)).thenReturn(received);
 
+        when(orderRepository.findByOrderStatusOrderByCreatedDateAsc(received)).thenReturn(null);
+
+        KitchenQueue queue = new KitchenQueue(orderRepository, orderStatusRegistry, pizzaCatalog);
+        queue.reload();
+
+        Assertions.assertTrue(queue.peek().isEmpty());
+        Assertions.assertEquals(0, queue.size());
+    }
+
+    /**
+     * Test kitchen queue ordering when it is updated through order changed events.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testKitchenQueueOrderChanged() {
+        KitchenQueue queue = new KitchenQueue(orderRepository, orderStatusRegistry, pizzaCatalog);
+        LocalDateTime now = LocalDateTime.now();
+
+        OrderChangedEvent newest = OrderChangedEvent.builder().orderId(UUID.randomUUID()).pizzas(List.of("Diavola"))
+                .createdDate(now).status(OrderStatusTestConstants.RECEVIED).build();
+        OrderChangedEvent oldest = OrderChangedEvent.builder().orderId(UUID.randomUUID())
+                .pizzas(List.of("Margherita")).createdDate(now.minusMinutes(1))
+                .status(OrderStatusTestConstants.RECEVIED).build();
+
+        queue.onOrderChanged(newest);
+        queue.onOrderChanged(oldest);
+
+        Assertions.assertEquals(2, queue.size());
+        Assertions.assertEquals(oldest.getOrderId(), queue.peek().orElseThrow().getOrderId());
+
+        queue.onOrderChanged(OrderChangedEvent.builder().orderId(oldest.getOrderId()).pizzas(oldest.getPizzas())
+                .createdDate(oldest.getCreatedDate()).previousStatus(OrderStatusTestConstants.RECEVIED)
+                .status(OrderStatusTestConstants.PROCESSING).build());
+
+        Assertions.assertEquals(1, queue.size());
+        Assertions.assertEquals(newest.getOrderId(), queue.peek().orElseThrow().getOrderId());
+
+        queue.onOrderChanged(OrderChangedEvent.builder().orderId(newest.getOrderId()).pizzas(newest.getPizzas())
+                .createdDate(newest.getCreatedDate()).previousStatus(OrderStatusTestConstants.RECEVIED)
+                .status(OrderStatusTestConstants.CANCELLED).build());
+
+        Assertions.assertTrue(queue.peek().isEmpty());
+    }
+
+    /**
+     * Test kitchen queue waiters: they are run when an order is queued, and no longer once removed.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testKitchenQueueWaiters() {
+        KitchenQueue queue = new KitchenQueue(orderRepository, orderStatusRegistry, pizzaCatalog);
+        AtomicInteger wakeups = new AtomicInteger();
+        Runnable waiter = wakeups::incrementAndGet;
+        OrderChangedEvent received = OrderChangedEvent.builder().orderId(UUID.randomUUID())
+                .pizzas(List.of("Margherita")).createdDate(LocalDateTime.now())
+                .status(OrderStatusTestConstants.RECEVIED).build();
+
+        queue.addWaiter(waiter);
+        queue.onOrderChanged(received);
+
+        Assertions.assertEquals(1, wakeups.get());
+
+        queue.onOrderChanged(OrderChangedEvent.builder().orderId(received.getOrderId()).pizzas(received.getPizzas())
+                .createdDate(received.getCreatedDate()).previousStatus(OrderStatusTestConstants.RECEVIED)
+                .status(OrderStatusTestConstants.PROCESSING).build());
+
+        Assertions.assertEquals(1, wakeups.get());
+
+        queue.removeWaiter(waiter);
+        queue.onOrderChanged(received);
+
+        Assertions.assertEquals(1, wakeups.get());
+    }
+
+    /**
+     * Test kitchen queue receiving the changes of an order in reverse order: the change that doesn't match the queue
+     * reloads it, and the creation arriving after the order left the queue is dropped.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testKitchenQueueOutOfOrder() {
+        KitchenQueue queue = new KitchenQueue(orderRepository, orderStatusRegistry, pizzaCatalog);
+        AtomicInteger wakeups = new AtomicInteger();
+        OrderChangedEvent created = OrderChangedEvent.builder().orderId(UUID.randomUUID())
+                .pizzas(List.of("Margherita")).createdDate(LocalDateTime.now())
+                .status(OrderStatusTestConstants.RECEVIED).build();
+
+        queue.addWaiter(wakeups::incrementAndGet);
+        queue.onOrderChanged(OrderChangedEvent.builder().orderId(created.getOrderId()).pizzas(created.getPizzas())
+                .createdDate(created.getCreatedDate()).previousStatus(OrderStatusTestConstants.RECEVIED)
+                .status(OrderStatusTestConstants.PROCESSING).build());
+
+        Mockito.verify(orderRepository).findByOrderStatusOrderByCreatedDateAsc(Mockito.any());
+
+        queue.onOrderChanged(created);
+
+        Assertions.assertEquals(0, queue.size());
+        Assertions.assertEquals(0, wakeups.get());
+        Mockito.verifyNoMoreInteractions(orderRepository);
+    }
+
+    // KitchenBoard
+
+    /**
+     * Test kitchen queue updated through order invalidated events: the changes of the other instances are applied,
+     * and a lost notification reloads the queue.
+     *
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testKitchenQueueOrderInvalidated() throws ConfigurationException {
+        KitchenQueue queue = new KitchenQueue(orderRepository, orderStatusRegistry, pizzaCatalog);
+        OrderChangedEvent received = OrderChangedEvent.builder().orderId(UUID.randomUUID())
+                .pizzas(List.of("Margherita")).createdDate(LocalDateTime.now())
+                .status(OrderStatusTestConstants.RECEVIED).build();
+
+        queue.onOrderInvalidated(new OrderInvalidatedEvent(received));
+
+        Assertions.assertEquals(received.getOrderId(), queue.peek().orElseThrow().getOrderId());
+
+        OrderStatus receivedStatus = new OrderStatus();
+        receivedStatus.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
+        receivedStatus.setStatus(OrderStatusTestConstants.RECEVIED);
+
+        when(orderStatusRegistry.getRequired(OrderStatusTestConstants.RECEVIED)).thenReturn(receivedStatus);
+        when(orderRepository.findByOrderStatusOrderByCreatedDateAsc(receivedStatus)).thenReturn(List.of());
+
+        queue.onOrderInvalidated(new OrderInvalidatedEvent(null));
+
+        Assertions.assertEquals(0, queue.size());
+    }
+
+    /**
+     * Test order invalidation bus: outside a transaction an order change is notified right away, inside a transaction
+     * the changes are notified together just before the commit. The notifications carry the whole change.
+     *
+     * @throws IOException the io exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testOrderInvalidationBus() throws IOException {
+        JdbcTemplate jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+        OrderInvalidationBus bus = new OrderInvalidationBus(jdbcTemplate, pizzaPlaceProperties, pizzaCatalog,
+                objectMapper);
+        OrderChangedEvent claimed = OrderChangedEvent.builder().orderId(UUID.randomUUID())
+                .pizzas(List.of("Margherita", "Diavola", "Margherita")).createdDate(LocalDateTime.now())
+                .previousStatus(OrderStatusTestConstants.RECEVIED).status(OrderStatusTestConstants.PROCESSING).build();
+        ArgumentCaptor<String[]> payloadsCaptor = ArgumentCaptor.forClass(String[].class);
+
+        bus.onOrderChanged(claimed);
+
+        Mockito.verify(jdbcTemplate).queryForList(Mockito.anyString(), Mockito.eq("order_changed"),
+                payloadsCaptor.capture());
+        Assertions.assertEquals(1, payloadsCaptor.getValue().length);
+
+        OrderNotificationDTO notification = objectMapper.readValue(payloadsCaptor.getValue()[0],
+                OrderNotificationDTO.class);
+
+        Assertions.assertEquals(bus.getInstanceId(), notification.getInstanceId());
+        Assertions.assertEquals(claimed.getOrderId(), notification.getOrderId());
+        Assertions.assertEquals(List.of(1, 2, 1), notification.getPizzaIds());
+        Assertions.assertEquals(claimed.getCreatedDate(), notification.getCreatedDate());
+        Assertions.assertEquals(OrderStatusTestConstants.RECEVIED, notification.getPreviousStatus());
+        Assertions.assertEquals(OrderStatusTestConstants.PROCESSING, notification.getStatus());
+
+        TransactionSynchronizationManager.initSynchronization();
+
+        try {
+            bus.onOrderChanged(claimed);
+            bus.onOrderChanged(OrderChangedEvent.builder().orderId(UUID.randomUUID()).pizzas(List.of("Tirolese"))
+                    .createdDate(LocalDateTime.now()).status(OrderStatusTestConstants.RECEVIED).build());
+
+            Mockito.verifyNoMoreInteractions(jdbcTemplate);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(s -> s.beforeCommit(false));
+            TransactionSynchronizationManager.getSynchronizations().forEach(
+                    s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+            Mockito.verify(jdbcTemplate, Mockito.times(2)).queryForList(Mockito.anyString(),
+                    Mockito.eq("order_changed"), payloadsCaptor.capture());
+            Assertions.assertEquals(2, payloadsCaptor.getValue().length);
+            Assertions.assertNull(TransactionSynchronizationManager.getResource(bus));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    /**
+     * Test kitchen board: it's loaded in queue order, and the changes are served as deltas while they are still
+     * logged.
+     *
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testKitchenBoard() throws ConfigurationException {
+        OrderStatus received = new OrderStatus();
+        received.setStatus(OrderStatusTestConstants.RECEVIED);
+        received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
         OrderStatus processing = new OrderStatus();
         processing.setStatus(OrderStatusTestConstants.PROCESSING);
         processing.setOrderStatusId(OrderStatusTestConstants.PROCESSING_ID);
-        List<OrderStatus> processingList = List.of(processing);
-
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.PROCESSING)).thenReturn(processingList);
+        LocalDateTime now = LocalDateTime.now();
+
+        Order newest = new Order();
+        newest.setOrderId(UUID.randomUUID());
+        newest.setOrderStatus(received);
+        newest.setPizzaIds(pizzaCatalog.getPizzaIds(List.of("Margherita")));
+        newest.setCreatedDate(now);
+        Order oldest = new Order();
+        oldest.setOrderId(UUID.randomUUID());
+        oldest.setOrderStatus(processing);
+        oldest.setPizzaIds(pizzaCatalog.getPizzaIds(List.of("Diavola")));
+        oldest.setCreatedDate(now.minusMinutes(1));
+
+        when(orderStatusRegistry.getRequired(OrderStatusTestConstants.RECEVIED)).thenReturn(received);
+        when(orderStatusRegistry.getRequired(OrderStatusTestConstants.PROCESSING)).thenReturn(processing);
+        when(orderRepository.findByOrderStatusOrderByCreatedDateAsc(received)).thenReturn(List.of(newest));
+        when(orderRepository.findByOrderStatusOrderByCreatedDateAsc(processing)).thenReturn(List.of(oldest));
+
+        PizzaPlaceProperties properties = new PizzaPlaceProperties();
+        properties.getBoard().setDeltaLogSize(2);
+        KitchenBoard board = new KitchenBoard(orderRepository, orderStatusRegistry, pizzaCatalog, properties);
+        board.reload();
+
+        KitchenBoardDTO snapshot = board.getBoard(null, null);
+        long version = snapshot.getVersion();
+        UUID epoch = snapshot.getEpoch();
+
+        Assertions.assertFalse(snapshot.isDelta());
+        Assertions.assertEquals(1, snapshot.getReceivedCount());
+        Assertions.assertEquals(1, snapshot.getProcessingCount());
+        Assertions.assertEquals(List.of(oldest.getOrderId(), newest.getOrderId()), snapshot.getOrders().stream()
+                .map(KitchenBoardOrderDTO::getOrderId).toList());
+        Assertions.assertSame(snapshot, board.getBoard(null, null));
+
+        OrderChangedEvent created = OrderChangedEvent.builder().orderId(UUID.randomUUID()).pizzas(List.of("Bufalina"))
+                .createdDate(now.plusMinutes(1)).status(OrderStatusTestConstants.RECEVIED).build();
+        board.onOrderChanged(created);
+        board.onOrderChanged(OrderChangedEvent.builder().orderId(newest.getOrderId())
+                .pizzas(pizzaCatalog.getNames(newest.getPizzaIds()))
+                .createdDate(newest.getCreatedDate()).previousStatus(OrderStatusTestConstants.RECEVIED)
+                .status(OrderStatusTestConstants.PROCESSING).build());
+
+        KitchenBoardDTO delta = board.getBoard(version, epoch);
+
+        Assertions.assertTrue(delta.isDelta());
+        Assertions.assertEquals(version + 2, delta.getVersion());
+        Assertions.assertEquals(1, delta.getReceivedCount());
+        Assertions.assertEquals(2, delta.getProcessingCount());
+        Assertions.assertEquals(List.of(created.getOrderId(), newest.getOrderId()), delta.getOrders().stream()
+                .map(KitchenBoardOrderDTO::getOrderId).toList());
+        Assertions.assertEquals(OrderStatusTestConstants.PROCESSING, delta.getOrders().get(1).getOrderStatus());
+
+        board.onOrderChanged(OrderChangedEvent.builder().orderId(oldest.getOrderId())
+                .pizzas(pizzaCatalog.getNames(oldest.getPizzaIds()))
+                .createdDate(oldest.getCreatedDate()).previousStatus(OrderStatusTestConstants.PROCESSING)
+                .status(OrderStatusTestConstants.COMPLETED).build());
+
+        // A change arriving after the order left the board doesn't change it
+        board.onOrderChanged(OrderChangedEvent.builder().orderId(oldest.getOrderId())
+                .pizzas(pizzaCatalog.getNames(oldest.getPizzaIds()))
+                .createdDate(oldest.getCreatedDate()).previousStatus(OrderStatusTestConstants.RECEVIED)
+                .status(OrderStatusTestConstants.PROCESSING).build());
+
+        KitchenBoardDTO lastChange = board.getBoard(version + 2, epoch);
+
+        Assertions.assertEquals(version + 3, lastChange.getVersion());
+
+        Assertions.assertTrue(lastChange.isDelta());
+        Assertions.assertEquals(List.of(OrderStatusTestConstants.COMPLETED), lastChange.getOrders().stream()
+                .map(KitchenBoardOrderDTO::getOrderStatus).toList());
+
+        // The first change is no longer logged
+        KitchenBoardDTO full = board.getBoard(version, epoch);
+
+        Assertions.assertFalse(full.isDelta());
+        Assertions.assertEquals(List.of(newest.getOrderId(), created.getOrderId()), full.getOrders().stream()
+                .map(KitchenBoardOrderDTO::getOrderId).toList());
+
+        // Without the epoch only the whole board is returned
+        Assertions.assertFalse(board.getBoard(version + 3, null).isDelta());
+
+        board.reload();
+
+        // The version keeps counting, while the versions of a previous load are always too old
+        KitchenBoardDTO reloaded = board.getBoard(null, null);
+
+        Assertions.assertEquals(version + 4, reloaded.getVersion());
+        Assertions.assertNotEquals(epoch, reloaded.getEpoch());
+        Assertions.assertFalse(board.getBoard(version + 3, epoch).isDelta());
+        Assertions.assertFalse(board.getBoard(version + 4, epoch).isDelta());
+        Assertions.assertTrue(board.getBoard(version + 4, reloaded.getEpoch()).isDelta());
+    }
 
-        OrderStatus completed = new OrderStatus();
-        completed.setStatus(OrderStatusTestConstants.COMPLETED);
-        completed.setOrderStatusId(OrderStatusTestConstants.COMPLETED_ID);
-        List<OrderStatus> completedList = List.of(completed);
+    /**
+     * Test kitchen board receiving the changes of an order in reverse order: the change whose previous status is not
+     * the one on the board reloads it, and the change arriving after the order left the board is dropped.
+     *
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testKitchenBoardOutOfOrder() throws ConfigurationException {
+        OrderStatus received = new OrderStatus();
+        received.setStatus(OrderStatusTestConstants.RECEVIED);
+        received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
+        OrderStatus processing = new OrderStatus();
+        processing.setStatus(OrderStatusTestConstants.PROCESSING);
+        processing.setOrderStatusId(OrderStatusTestConstants.PROCESSING_ID);
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.COMPLETED)).thenReturn(completedList);
+        Order order = new Order();
+        order.setOrderId(UUID.randomUUID());
+        order.setOrderStatus(received);
+        order.setPizzaIds(pizzaCatalog.getPizzaIds(List.of("Margherita")));
+        order.setCreatedDate(LocalDateTime.now());
+
+        when(orderStatusRegistry.getRequired(OrderStatusTestConstants.RECEVIED)).thenReturn(received);
+        when(orderStatusRegistry.getRequired(OrderStatusTestConstants.PROCESSING)).thenReturn(processing);
+        when(orderRepository.findByOrderStatusOrderByCreatedDateAsc(received)).thenReturn(List.of(order),
+                List.of());
+        when(orderRepository.findByOrderStatusOrderByCreatedDateAsc(processing)).thenReturn(List.of());
+
+        KitchenBoard board = new KitchenBoard(orderRepository, orderStatusRegistry, pizzaCatalog,
+                new PizzaPlaceProperties());
+        board.reload();
+
+        UUID epoch = board.getBoard(null, null).getEpoch();
+        List<String> pizzas = pizzaCatalog.getNames(order.getPizzaIds());
+
+        // The order is completed, but the change from RECEVIED to PROCESSING arrives after the one to COMPLETED
+        board.onOrderChanged(OrderChangedEvent.builder().orderId(order.getOrderId()).pizzas(pizzas)
+                .createdDate(order.getCreatedDate()).previousStatus(OrderStatusTestConstants.PROCESSING)
+                .status(OrderStatusTestConstants.COMPLETED).build());
+        board.onOrderChanged(OrderChangedEvent.builder().orderId(order.getOrderId()).pizzas(pizzas)
+                .createdDate(order.getCreatedDate()).previousStatus(OrderStatusTestConstants.RECEVIED)
+                .status(OrderStatusTestConstants.PROCESSING).build());
+
+        KitchenBoardDTO snapshot = board.getBoard(null, null);
+
+        Assertions.assertNotEquals(epoch, snapshot.getEpoch());
+        Assertions.assertTrue(snapshot.getOrders().isEmpty());
+        Assertions.assertEquals(0, snapshot.getReceivedCount());
+        Assertions.assertEquals(0, snapshot.getProcessingCount());
+        Mockito.verify(orderRepository, Mockito.times(2)).findByOrderStatusOrderByCreatedDateAsc(received);
+    }
 
-        when(orderRepository.findByOrderStatusOrderByCreatedDateAsc(received)).thenReturn(null);
+    // OrderStatusCounters
 
-        Optional<OrderDTO> nextOrderOptional = orderService.updateNextOrder();
+    /**
+     * Test order status counters: they are loaded by the reconciliation, kept up to date by the order changes, and
+     * corrected by the next reconciliation. The age of the oldest RECEVIED order comes from the kitchen queue.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testOrderStatusCounters() {
+        LocalDateTime now = LocalDateTime.now();
+        UUID oldestId = UUID.randomUUID();
+        UUID newestId = UUID.randomUUID();
+
+        when(orderRepository.countByStatus()).thenReturn(List.of(
+                new OrderStatusCountDTO(OrderStatusTestConstants.RECEVIED, 2),
+                new OrderStatusCountDTO(OrderStatusTestConstants.COMPLETED, 5)), List.of(
+                new OrderStatusCountDTO(OrderStatusTestConstants.RECEVIED, 1),
+                new OrderStatusCountDTO(OrderStatusTestConstants.PROCESSING, 2),
+                new OrderStatusCountDTO(OrderStatusTestConstants.COMPLETED, 5)));
+        when(orderRepository.findOrderAgesByStatusIn(List.of(OrderStatusTestConstants.PROCESSING))).thenReturn(
+                List.of(), List.of(new OrderAgeDTO(oldestId, OrderStatusTestConstants.PROCESSING,
+                        now.minusMinutes(10)), new OrderAgeDTO(UUID.randomUUID(),
+                        OrderStatusTestConstants.PROCESSING, now.minusMinutes(5))));
+
+        KitchenQueue queue = new KitchenQueue(orderRepository, orderStatusRegistry, pizzaCatalog);
+        OrderChangedEvent oldest = OrderChangedEvent.builder().orderId(oldestId).pizzas(List.of("Margherita"))
+                .createdDate(now.minusMinutes(10)).status(OrderStatusTestConstants.RECEVIED).build();
+        queue.onOrderChanged(oldest);
+        queue.onOrderChanged(OrderChangedEvent.builder().orderId(newestId).pizzas(List.of("Diavola"))
+                .createdDate(now.minusMinutes(1)).status(OrderStatusTestConstants.RECEVIED).build());
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        OrderStatusCounters counters = new OrderStatusCounters(orderRepository, queue, meterRegistry);
+
+        Assertions.assertEquals(7, counters.reconcile());
+        Assertions.assertEquals(2, counters.getCount(OrderStatusTestConstants.RECEVIED));
+        Assertions.assertEquals(5, counters.getCount(OrderStatusTestConstants.COMPLETED));
+        Assertions.assertEquals(10, counters.getOldestAge(OrderStatusTestConstants.RECEVIED).orElseThrow()
+                .toMinutes());
+        Assertions.assertTrue(counters.getOldestAge(OrderStatusTestConstants.PROCESSING).isEmpty());
+
+        OrderChangedEvent claimed = OrderChangedEvent.builder().orderId(oldestId).createdDate(now.minusMinutes(10))
+                .previousStatus(OrderStatusTestConstants.RECEVIED).status(OrderStatusTestConstants.PROCESSING)
+                .build();
+        queue.onOrderChanged(claimed);
+        counters.onOrderChanged(claimed);
+
+        Assertions.assertEquals(1, counters.getCount(OrderStatusTestConstants.RECEVIED));
+        Assertions.assertEquals(1, counters.getCount(OrderStatusTestConstants.PROCESSING));
+        Assertions.assertEquals(1, counters.getOldestAge(OrderStatusTestConstants.RECEVIED).orElseThrow().toMinutes());
+        Assertions.assertEquals(10, counters.getOldestAge(OrderStatusTestConstants.PROCESSING).orElseThrow()
+                .toMinutes());
+        Assertions.assertEquals(1, meterRegistry.get("pizzeria.orders").tag("status",
+                OrderStatusTestConstants.PROCESSING).gauge().value());
+        Assertions.assertEquals(600, meterRegistry.get("pizzeria.orders.oldest.age").tag("status",
+                OrderStatusTestConstants.PROCESSING).timeGauge().value(TimeUnit.SECONDS), 5);
+
+        // A change done by another instance is found by the next reconciliation
+        Assertions.assertEquals(1, counters.reconcile());
+        Assertions.assertEquals(2, counters.getCount(OrderStatusTestConstants.PROCESSING));
+        Assertions.assertEquals(10, counters.getOldestAge(OrderStatusTestConstants.PROCESSING).orElseThrow()
+                .toMinutes());
+        Assertions.assertEquals(1, counters.getMetrics().getLastReconciliationDrift());
+        Assertions.assertEquals(2, counters.getMetrics().getCounts().get(OrderStatusTestConstants.PROCESSING));
+    }
 
-        Assertions.assertTrue(nextOrderOptional.isEmpty());
+    /**
+     * Test order status counters reconciliation: the changes applied while querying the database, and missed by the
+     * queries, are kept.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testOrderStatusCountersReconcileConcurrentChanges() {
+        LocalDateTime now = LocalDateTime.now();
+        UUID completedId = UUID.randomUUID();
+        UUID processingId = UUID.randomUUID();
+        OrderStatusCounters counters = new OrderStatusCounters(orderRepository, new KitchenQueue(orderRepository,
+                orderStatusRegistry, pizzaCatalog), new SimpleMeterRegistry());
+
+        when(orderRepository.countByStatus()).thenAnswer(invocation -> {
+            counters.onOrderChanged(OrderChangedEvent.builder().orderId(completedId).createdDate(now.minusMinutes(10))
+                    .previousStatus(OrderStatusTestConstants.PROCESSING).status(OrderStatusTestConstants.COMPLETED)
+                    .build());
+
+            return List.of(new OrderStatusCountDTO(OrderStatusTestConstants.PROCESSING, 2));
+        });
+        when(orderRepository.findOrderAgesByStatusIn(List.of(OrderStatusTestConstants.PROCESSING))).thenReturn(
+                List.of(new OrderAgeDTO(completedId, OrderStatusTestConstants.PROCESSING, now.minusMinutes(10)),
+                        new OrderAgeDTO(processingId, OrderStatusTestConstants.PROCESSING, now.minusMinutes(5))));
+
+        Assertions.assertEquals(2, counters.reconcile());
+        Assertions.assertEquals(1, counters.getCount(OrderStatusTestConstants.PROCESSING));
+        Assertions.assertEquals(1, counters.getCount(OrderStatusTestConstants.COMPLETED));
+        Assertions.assertEquals(5, counters.getOldestAge(OrderStatusTestConstants.PROCESSING).orElseThrow()
+                .toMinutes());
     }
 
-
     /**
-     * Test get order.
+     * Test order status counters receiving the changes of an order in reverse order: the change that doesn't match the
+     * PROCESSING orders reconciles them, and the change arriving after the order left PROCESSING is dropped.
      * @author Gianluca Sabato
      */
     @Test
-    public void testGetOrder() {
+    public void testOrderStatusCountersOutOfOrder() {
+        LocalDateTime now = LocalDateTime.now();
         UUID orderId = UUID.randomUUID();
-        List<String> pizzas = List.of("margherita", "diavola");
-
-        OrderStatus received = new OrderStatus();
-        received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
-        received.setStatus(OrderStatusTestConstants.RECEVIED);
+        OrderStatusCounters counters = new OrderStatusCounters(orderRepository, new KitchenQueue(orderRepository,
+                orderStatusRegistry, pizzaCatalog), new SimpleMeterRegistry());
+
+        when(orderRepository.countByStatus()).thenReturn(List.of(
+                new OrderStatusCountDTO(OrderStatusTestConstants.COMPLETED, 1)));
+        when(orderRepository.findOrderAgesByStatusIn(List.of(OrderStatusTestConstants.PROCESSING))).thenReturn(
+                List.of());
+
+        counters.onOrderChanged(OrderChangedEvent.builder().orderId(orderId).createdDate(now.minusMinutes(10))
+                .previousStatus(OrderStatusTestConstants.PROCESSING).status(OrderStatusTestConstants.COMPLETED)
+                .build());
+        counters.onOrderChanged(OrderChangedEvent.builder().orderId(orderId).createdDate(now.minusMinutes(10))
+                .previousStatus(OrderStatusTestConstants.RECEVIED).status(OrderStatusTestConstants.PROCESSING)
+                .build());
+
+        Assertions.assertEquals(0, counters.getCount(OrderStatusTestConstants.PROCESSING));
+        Assertions.assertEquals(1, counters.getCount(OrderStatusTestConstants.COMPLETED));
+        Assertions.assertTrue(counters.getOldestAge(OrderStatusTestConstants.PROCESSING).isEmpty());
+        Mockito.verify(orderRepository).countByStatus();
+    }
 
-        Order order = new Order();
-        order.setOrderId(orderId);
-        order.setPizzas(pizzas);
-        order.setOrderStatus(received);
+    // OrderEventDispatcher
 
-        when(orderRepository.findById(orderId)).thenReturn(Optional.of(order));
+    /**
+     * Test order event dispatcher: the pending events are delivered to all the sinks and checkpointed batch by batch.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testOrderEventDispatcher() {
+        List<OrderEventDTO> fileEvents = new ArrayList<>();
+        List<OrderEventDTO> memoryEvents = new ArrayList<>();
+        OrderEventDispatcher dispatcher = getOrderEventDispatcher(List.of(fileEvents::addAll, memoryEvents::addAll));
+        List<OrderEvent> orderEvents = getOrderEvents(3);
+
+        when(orderEventRepository.lockPendingEvents(2)).thenReturn(orderEvents.subList(0, 2),
+                orderEvents.subList(2, 3));
+
+        Assertions.assertEquals(3, dispatcher.dispatchPendingEvents());
+        Assertions.assertEquals(List.of(1L, 2L, 3L), fileEvents.stream().map(OrderEventDTO::getEventId).toList());
+        Assertions.assertEquals(fileEvents, memoryEvents);
+        Assertions.assertEquals(OrderStatusTestConstants.PROCESSING, fileEvents.get(0).getStatus());
+
+        Mockito.verify(orderEventRepository).markDispatched(Mockito.eq(List.of(1L, 2L)), Mockito.any());
+        Mockito.verify(orderEventRepository).markDispatched(Mockito.eq(List.of(3L)), Mockito.any());
+    }
 
-        Optional<OrderDTO> optionalOrderDTO = orderService.getOrder(orderId);
+    /**
+     * Test order event dispatcher when a sink fails: the batch is not checkpointed, so it stays pending.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testOrderEventDispatcherSinkFailure() {
+        OrderEventDispatcher dispatcher = getOrderEventDispatcher(List.of(events -> {
+            throw new IllegalStateException("Sink down");
+        }));
 
-        Assertions.assertTrue(optionalOrderDTO.isPresent());
+        when(orderEventRepository.lockPendingEvents(2)).thenReturn(getOrderEvents(2));
 
-        OrderDTO foundOrderDTO = optionalOrderDTO.get();
+        Assertions.assertEquals(0, dispatcher.dispatchPendingEvents());
 
-        Assertions.assertNotNull(foundOrderDTO.getOrderId());
-        Assertions.assertEquals(foundOrderDTO.getOrderId(), orderId);
-        Assertions.assertNotNull(foundOrderDTO.getPizzas());
-        Assertions.assertFalse(foundOrderDTO.getPizzas().isEmpty());
-        Assertions.assertIterableEquals(foundOrderDTO.getPizzas(), order.getPizzas());
+        Mockito.verify(orderEventRepository, Mockito.never()).markDispatched(Mockito.any(), Mockito.any());
     }
 
     /**
-     * Test get order but no order is persisted on the database.
+     * Test order event dispatcher without sinks: the events are neither read nor checkpointed, so they stay pending.
      * @author Gianluca Sabato
      */
     @Test
-    public void testGetOrderNotFound() {
-        UUID orderId = UUID.randomUUID();
-
-        when(orderRepository.findById(orderId)).thenReturn(Optional.empty());
+    public void testOrderEventDispatcherNoSinks() {
+        OrderEventDispatcher dispatcher = getOrderEventDispatcher(List.of());
 
-        Optional<OrderDTO> optionalOrderDTO = orderService.getOrder(orderId);
+        Assertions.assertEquals(0, dispatcher.dispatchPendingEvents());
 
-        Assertions.assertTrue(optionalOrderDTO.isEmpty());
+        Mockito.verifyNoInteractions(orderEventRepository);
     }
 
     /**
-     * Test create order.
+     * Test file order event sink: every batch is appended to the file, one JSON document per line.
      *
-     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * @param directory the temporary directory
+     * @throws IOException the io exception
      * @author Gianluca Sabato
      */
     @Test
-    public void testCreateOrder() throws ConfigurationException {
-        OrderStatus received = new OrderStatus();
-        received.setStatus(OrderStatusTestConstants.RECEVIED);
-        received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
-        List<OrderStatus> receivedList = List.of(received);
+    public void testFileOrderEventSink(@TempDir Path directory) throws IOException {
+        PizzaPlaceProperties properties = new PizzaPlaceProperties();
+        properties.getOutbox().setFile(directory.resolve("order-events.jsonl"));
+        FileOrderEventSink sink = new FileOrderEventSink(objectMapper, properties);
+        List<OrderEventDTO> events = getOrderEvents(3).stream().map(OrderEventDTOFactory::getOrderEventDTO).toList();
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(receivedList);
+        sink.deliver(events.subList(0, 2));
+        sink.deliver(events.subList(2, 3));
 
-        List<String> pizzas = List.of("Margherita", "Diavola", "Tirolese");
-        OrderDTO orderDTO = new OrderDTO(pizzas);
-        Order order = new Order();
-        order.setOrderId(UUID.randomUUID());
-        order.setOrderStatus(received);
-        order.setPizzas(pizzas);
+        List<String> lines = Files.readAllLines(properties.getOutbox().getFile());
 
-        when(orderRepository.save(Mockito.any(Order.class))).thenReturn(order);
+        Assertions.assertEquals(3, lines.size());
 
-        OrderDTO createdOrderDTO = orderService.createOrder(orderDTO);
+        for (int i = 0; i < lines.size(); i++) {
+            JsonNode line = objectMapper.readTree(lines.get(i));
 
-        Assertions.assertNotNull(createdOrderDTO.getOrderId());
-        Assertions.assertNotNull(createdOrderDTO.getPizzas());
-        Assertions.assertFalse(createdOrderDTO.getPizzas().isEmpty());
-        Assertions.assertIterableEquals(orderDTO.getPizzas(), createdOrderDTO.getPizzas());
+            Assertions.assertEquals(events.get(i).getEventId(), line.get("eventId").asLong());
+            Assertions.assertEquals(events.get(i).getOrderId().toString(), line.get("orderId").asText());
+            Assertions.assertEquals(events.get(i).getStatus(), line.get("status").asText());
+        }
     }
 
+    // OrderStatusRegistry
+
     /**
-     * Test create order with empty order statuses list (RECEIVED).
+     * Test pizza catalog: the names are translated to ids and back, keeping order and repetitions, and a menu with
+     * a duplicated name is refused, keeping the current one.
+     *
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
      * @author Gianluca Sabato
      */
     @Test
-    public void testCreateOrderMissingStatusConfiguration() {
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(new ArrayList<>());
+    public void testPizzaCatalog() throws ConfigurationException {
+        List<Pizza> pizzas = getPizzas();
+        Pizza duplicated = new Pizza();
+        duplicated.setPizzaId(100);
+        duplicated.setName(pizzas.get(0).getName());
+        List<Pizza> duplicatedPizzas = new ArrayList<>(pizzas);
+        duplicatedPizzas.add(duplicated);
 
-        OrderDTO orderDTO = new OrderDTO(List.of("Margherita", "Diavola", "Tirolese"));
+        when(pizzaRepository.findAll()).thenReturn(pizzas, duplicatedPizzas);
 
-        Exception exception = Assertions.assertThrows(ConfigurationException.class, () -> {
-            orderService.createOrder(orderDTO);
-        });
+        PizzaCatalog catalog = new PizzaCatalog(pizzaRepository);
+        catalog.refresh();
+
+        List<String> names = List.of("Diavola", "Margherita", "Diavola");
+        List<Integer> ids = catalog.getPizzaIds(names);
 
-        String actualMessage = exception.getMessage();
+        Assertions.assertEquals(List.of(2, 1, 2), ids);
+        Assertions.assertEquals(names, catalog.getNames(ids));
+        Assertions.assertTrue(catalog.findByName("Hawaiian").isEmpty());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> catalog.getPizzaIds(List.of("Hawaiian")));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> catalog.getNames(List.of(100)));
 
-        Assertions.assertTrue(actualMessage.contains(WRONG_CONFIGURATION_MESSAGE));
+        Exception exception = Assertions.assertThrows(ConfigurationException.class, catalog::refresh);
+
+        Assertions.assertTrue(exception.getMessage().contains(WRONG_CONFIGURATION_MESSAGE));
+        Assertions.assertEquals(pizzas.size(), catalog.getAll().size());
     }
 
     /**
-     * Test create order with null order statuses list (RECEIVED).
+     * Test pizza catalog refresh with a menu missing an ordered pizza: it's refused at startup, and afterwards the
+     * current menu is kept, so the orders keep their pizza names.
+     *
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
      * @author Gianluca Sabato
      */
     @Test
-    public void testCreateOrderNullStatusConfiguration() {
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(null);
+    public void testPizzaCatalogDroppedOrderedPizza() throws ConfigurationException {
+        List<Pizza> pizzas = getPizzas();
+        List<Pizza> droppedPizzas = pizzas.subList(0, pizzas.size() - 1);
 
-        OrderDTO orderDTO = new OrderDTO(List.of("Margherita", "Diavola", "Tirolese"));
+        when(pizzaRepository.findAll()).thenReturn(pizzas);
+        when(pizzaRepository.existsOrderWithOther(new Integer[]{1, 2, 3})).thenReturn(true, false);
 
-        Exception exception = Assertions.assertThrows(ConfigurationException.class, () -> {
-            orderService.createOrder(orderDTO);
-        });
+        PizzaCatalog catalog = new PizzaCatalog(pizzaRepository);
 
-        String actualMessage = exception.getMessage();
+        Assertions.assertThrows(ConfigurationException.class, catalog::refresh);
 
-        Assertions.assertTrue(actualMessage.contains(WRONG_CONFIGURATION_MESSAGE));
+        catalog.refresh();
+
+        when(pizzaRepository.findAll()).thenReturn(droppedPizzas);
+        when(pizzaRepository.existsOrderWithAny(new Integer[]{3})).thenReturn(true);
+
+        Assertions.assertThrows(ConfigurationException.class, catalog::refresh);
+        Assertions.assertEquals(List.of("Tirolese"), catalog.getNames(List.of(3)));
     }
 
     /**
-     * Test create order with wrong status configuration.
+     * Test order status registry refresh.
+     *
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
      * @author Gianluca Sabato
      */
     @Test
-    public void testCreateOrderWrongStatusConfiguration() {
-        OrderStatus received = new OrderStatus();
-        received.setStatus(OrderStatusTestConstants.RECEVIED);
-        received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
-
-        OrderStatus duplicated = new OrderStatus();
-        duplicated.setStatus(OrderStatusTestConstants.RECEVIED);
-        duplicated.setOrderStatusId(UUID.randomUUID());
-
-        List<OrderStatus> receivedList = List.of(received, duplicated);
+    public void testOrderStatusRegistryRefresh() throws ConfigurationException {
+        List<OrderStatus> orderStatuses = getOrderStatuses();
 
-        when(orderStatusRepository.findByStatus(OrderStatusTestConstants.RECEVIED)).thenReturn(receivedList);
-
-        OrderDTO orderDTO = new OrderDTO(List.of("Margherita", "Diavola", "Tirolese"));
-
-        Exception exception = Assertions.assertThrows(ConfigurationException.class, () -> {
-            orderService.createOrder(orderDTO);
-        });
+        when(orderStatusRepository.findAll()).thenReturn(orderStatuses);
 
-        String actualMessage = exception.getMessage();
+        OrderStatusRegistry registry = new OrderStatusRegistry(orderStatusRepository);
+        registry.refresh();
 
-        Assertions.assertTrue(actualMessage.contains(WRONG_CONFIGURATION_MESSAGE));
+        Assertions.assertEquals(orderStatuses.size(), registry.getAll().size());
+        Assertions.assertEquals(OrderStatusTestConstants.RECEVIED_ID,
+                registry.getRequired(OrderStatusTestConstants.RECEVIED).getOrderStatusId());
+        Assertions.assertEquals(OrderStatusTestConstants.COMPLETED,
+                registry.findById(OrderStatusTestConstants.COMPLETED_ID).orElseThrow().getStatus());
+        Assertions.assertTrue(registry.findById(UUID.randomUUID()).isEmpty());
     }
 
     /**
-     * Test save order.
+     * Test order status registry version: it depends only on the order statuses content.
      *
      * @throws ConfigurationException the configuration exception (missing database configuration values)
      * @author Gianluca Sabato
      */
     @Test
-    public void testSaveOrder() throws ConfigurationException {
-        OrderStatus received = new OrderStatus();
-        received.setStatus(OrderStatusTestConstants.RECEVIED);
-        received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
+    public void testOrderStatusRegistryVersion() throws ConfigurationException {
+        List<OrderStatus> orderStatuses = getOrderStatuses();
+        List<OrderStatus> reversedOrderStatuses = new ArrayList<>(getOrderStatuses());
+        Collections.reverse(reversedOrderStatuses);
+        List<OrderStatus> renamedOrderStatuses = getOrderStatuses();
+        renamedOrderStatuses.get(0).setOrderStatusId(UUID.randomUUID());
 
-        Order order = new Order();
-        order.setOrderId(UUID.randomUUID());
-        order.setPizzas(List.of("margherita"));
-        order.setOrderStatus(received);
+        when(orderStatusRepository.findAll()).thenReturn(orderStatuses, reversedOrderStatuses, renamedOrderStatuses);
 
-        when(orderRepository.findById(order.getOrderId())).thenReturn(Optional.of(order));
+        OrderStatusRegistry registry = new OrderStatusRegistry(orderStatusRepository);
+        registry.refresh();
+        String version = registry.getVersion();
+        registry.refresh();
 
-        OrderStatus processing = new OrderStatus();
-        processing.setStatus(OrderStatusTestConstants.PROCESSING);
-        processing.setOrderStatusId(OrderStatusTestConstants.PROCESSING_ID);
+        Assertions.assertNotNull(version);
+        Assertions.assertEquals(version, registry.getVersion());
 
-        when(orderStatusRepository.findById(OrderStatusTestConstants.PROCESSING_ID)).thenReturn(
-                Optional.of(processing));
+        registry.refresh();
+
+        Assertions.assertNotEquals(version, registry.getVersion());
+    }
 
-        Order savedOrder = new Order();
-        savedOrder.setOrderId(order.getOrderId());
-        savedOrder.setPizzas(List.of("margherita"));
-        savedOrder.setOrderStatus(processing);
+    /**
+     * Test order status registry refresh with a missing status.
+     *
+     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testOrderStatusRegistryMissingStatusConfiguration() throws ConfigurationException {
+        List<OrderStatus> orderStatuses = getOrderStatuses();
 
-        when(orderRepository.save(savedOrder)).thenReturn(savedOrder);
+        when(orderStatusRepository.findAll()).thenReturn(orderStatuses, orderStatuses.subList(0, 3));
 
-        OrderDTO orderDTO = OrderDTOFactory.getOrderDTO(order);
+        OrderStatusRegistry registry = new OrderStatusRegistry(orderStatusRepository);
+        registry.refresh();
 
-        OrderStatusDTO orderStatusDTO = new OrderStatusDTO(OrderStatusTestConstants.PROCESSING_ID);
-        orderStatusDTO.setOrderStatus(OrderStatusTestConstants.PROCESSING);
+        Exception exception = Assertions.assertThrows(ConfigurationException.class, registry::refresh);
 
-        orderService.saveOrder(orderDTO, orderStatusDTO);
+        Assertions.assertTrue(exception.getMessage().contains(WRONG_CONFIGURATION_MESSAGE));
+        // The previous statuses are kept
+        Assertions.assertEquals(orderStatuses.size(), registry.getAll().size());
     }
 
     /**
-     * Test update order when the order is not persisted inside the database.
-     *
-     * @throws ConfigurationException the configuration exception (missing database configuration values)
+     * Test order status registry refresh with an empty order statuses table.
      * @author Gianluca Sabato
      */
     @Test
-    public void testSaveOrderNotFound() throws ConfigurationException {
-        OrderStatus received = new OrderStatus();
-        received.setStatus(OrderStatusTestConstants.RECEVIED);
-        received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
+    public void testOrderStatusRegistryEmptyStatusConfiguration() {
+        when(orderStatusRepository.findAll()).thenReturn(new ArrayList<>());
 
-        Order order = new Order();
-        order.setOrderId(UUID.randomUUID());
-        order.setPizzas(List.of("margherita"));
-        order.setOrderStatus(received);
+        OrderStatusRegistry registry = new OrderStatusRegistry(orderStatusRepository);
 
-        when(orderRepository.findById(order.getOrderId())).thenReturn(Optional.empty());
+        Exception exception = Assertions.assertThrows(ConfigurationException.class, registry::refresh);
 
-        OrderDTO orderDTO = OrderDTOFactory.getOrderDTO(order);
+        Assertions.assertTrue(exception.getMessage().contains(WRONG_CONFIGURATION_MESSAGE));
 
-        OrderStatusDTO orderStatusDTO = new OrderStatusDTO(OrderStatusTestConstants.PROCESSING_ID);
-        orderStatusDTO.setOrderStatus(OrderStatusTestConstants.PROCESSING);
+        exception = Assertions.assertThrows(ConfigurationException.class,
+                () -> registry.getRequired(OrderStatusTestConstants.RECEVIED));
 
-        orderService.saveOrder(orderDTO, orderStatusDTO);
+        Assertions.assertTrue(exception.getMessage().contains(WRONG_CONFIGURATION_MESSAGE));
     }
 
     /**
-     * Test save order with missing status configuration.
+     * Test order status registry refresh with a duplicated status.
      * @author Gianluca Sabato
      */
     @Test
-    public void testSaveOrderNotFoundMissingStatusConfiguration() {
-        OrderStatus received = new OrderStatus();
-        received.setStatus(OrderStatusTestConstants.RECEVIED);
-        received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
-
-        Order order = new Order();
-        order.setOrderId(UUID.randomUUID());
-        order.setPizzas(List.of("margherita"));
-        order.setOrderStatus(received);
-
-        when(orderRepository.findById(order.getOrderId())).thenReturn(Optional.of(order));
+    public void testOrderStatusRegistryWrongStatusConfiguration() {
+        OrderStatus duplicated = new OrderStatus();
+        duplicated.setStatus(OrderStatusTestConstants.RECEVIED);
+        duplicated.setOrderStatusId(UUID.randomUUID());
 
-        OrderDTO orderDTO = OrderDTOFactory.getOrderDTO(order);
+        List<OrderStatus> orderStatuses = new ArrayList<>(getOrderStatuses());
+        orderStatuses.add(duplicated);
 
-        OrderStatusDTO orderStatusDTO = new OrderStatusDTO(OrderStatusTestConstants.PROCESSING_ID);
-        orderStatusDTO.setOrderStatus(OrderStatusTestConstants.PROCESSING);
+        when(orderStatusRepository.findAll()).thenReturn(orderStatuses);
 
-        Exception exception = Assertions.assertThrows(ConfigurationException.class, () -> {
-            orderService.saveOrder(orderDTO, orderStatusDTO);
-        });
+        OrderStatusRegistry registry = new OrderStatusRegistry(orderStatusRepository);
 
-        String actualMessage = exception.getMessage();
+        Exception exception = Assertions.assertThrows(ConfigurationException.class, registry::refresh);
 
-        Assertions.assertTrue(actualMessage.contains(WRONG_CONFIGURATION_MESSAGE));
+        Assertions.assertTrue(exception.getMessage().contains(WRONG_CONFIGURATION_MESSAGE));
     }
 
     // OrderStatusService
@@ -1023,7 +2491,7 @@ class PizzaPlaceUnitTests {
 
         List<OrderStatus> orderStatuses = List.of(received, processing, completed, cancelled);
 
-        when(orderStatusRepository.findAll()).thenReturn(orderStatuses);
+        when(orderStatusRegistry.getAll()).thenReturn(orderStatuses);
 
         List<OrderStatusDTO> orderStatusDTOS = orderStatusService.getOrderStatuses();
 
@@ -1042,7 +2510,7 @@ class PizzaPlaceUnitTests {
         received.setStatus(OrderStatusTestConstants.RECEVIED);
         received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
 
-        when(orderStatusRepository.findById(received.getOrderStatusId())).thenReturn(Optional.of(received));
+        when(orderStatusRegistry.findById(received.getOrderStatusId())).thenReturn(Optional.of(received));
 
         Optional<OrderStatusDTO> optionalOrderStatusDTO = orderStatusService.getOrderStatus(
                 received.getOrderStatusId());
@@ -1062,7 +2530,7 @@ class PizzaPlaceUnitTests {
      */
     @Test
     public void testGetOrderStatusNotFound() {
-        when(orderStatusRepository.findById(OrderStatusTestConstants.RECEVIED_ID)).thenReturn(Optional.empty());
+        when(orderStatusRegistry.findById(OrderStatusTestConstants.RECEVIED_ID)).thenReturn(Optional.empty());
 
         Optional<OrderStatusDTO> optionalOrderStatusDTO = orderStatusService.getOrderStatus(
                 OrderStatusTestConstants.RECEVIED_ID);
@@ -1077,7 +2545,7 @@ class PizzaPlaceUnitTests {
     @Test
     public void testGetOrderStatusForOrder() {
         UUID orderId = UUID.randomUUID();
-        List<String> pizzas = List.of("margherita", "diavola");
+        List<String> pizzas = List.of("Margherita", "Diavola");
 
         OrderStatus received = new OrderStatus();
         received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
@@ -1085,10 +2553,11 @@ class PizzaPlaceUnitTests {
 
         Order order = new Order();
         order.setOrderId(orderId);
-        order.setPizzas(pizzas);
+        order.setPizzaIds(pizzaCatalog.getPizzaIds(pizzas));
         order.setOrderStatus(received);
 
         when(orderRepository.findById(orderId)).thenReturn(Optional.of(order));
+        when(orderStatusRegistry.findById(OrderStatusTestConstants.RECEVIED_ID)).thenReturn(Optional.of(received));
 
         Optional<OrderStatusDTO> optionalOrderStatusDTO = orderStatusService.getOrderStatusForOrderId(orderId);
 
@@ -1121,17 +2590,210 @@ class PizzaPlaceUnitTests {
     @Test
     public void testGetOrderStatusForOrderNotFound2() {
         UUID orderId = UUID.randomUUID();
-        List<String> pizzas = List.of("margherita", "diavola");
+        List<String> pizzas = List.of("Margherita", "Diavola");
 
         Order order = new Order();
         order.setOrderId(orderId);
-        order.setPizzas(pizzas);
+        order.setPizzaIds(pizzaCatalog.getPizzaIds(pizzas));
 
         when(orderRepository.findById(orderId)).thenReturn(Optional.of(order));
 
         orderStatusService.getOrderStatusForOrderId(orderId);
     }
 
+    /**
+     * Test get order status for order ETag: it changes with the order and with the catalog.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testGetOrderStatusForOrderIdETag() {
+        UUID orderId = UUID.randomUUID();
+        LocalDateTime lastModifiedDate = LocalDateTime.now();
+
+        when(orderRepository.findLastModifiedDateByOrderId(orderId)).thenReturn(Optional.of(lastModifiedDate));
+        when(orderStatusRegistry.getVersion()).thenReturn("1", "2");
+
+        String eTag = orderStatusService.getOrderStatusForOrderIdETag(orderId).orElseThrow();
+
+        Assertions.assertEquals(ETagFactory.getETag(ETagFactory.getETag(lastModifiedDate), "1"), eTag);
+        Assertions.assertNotEquals(eTag, orderStatusService.getOrderStatusForOrderIdETag(orderId).orElseThrow());
+    }
+
+    // OrderStatusStreams
+
+    /**
+     * Test order status streams: a stream is registered per order, it's sent the status changes, and it's closed when
+     * the order reaches a final status. Streams of unknown orders are not opened.
+     *
+     * @throws InterruptedException the interrupted exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testOrderStatusStreams() throws InterruptedException {
+        UUID orderId = UUID.randomUUID();
+        UUID unknownOrderId = UUID.randomUUID();
+
+        OrderStatus received = new OrderStatus();
+        received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
+        received.setStatus(OrderStatusTestConstants.RECEVIED);
+
+        OrderStatus completed = new OrderStatus();
+        completed.setOrderStatusId(OrderStatusTestConstants.COMPLETED_ID);
+        completed.setStatus(OrderStatusTestConstants.COMPLETED);
+
+        Order order = getOrder(orderId, LocalDateTime.now());
+        order.setOrderStatus(received);
+
+        when(orderRepository.findById(orderId)).thenReturn(Optional.of(order));
+        when(orderRepository.findById(unknownOrderId)).thenReturn(Optional.empty());
+        when(orderStatusRegistry.findById(OrderStatusTestConstants.RECEVIED_ID)).thenReturn(Optional.of(received));
+        when(orderStatusRegistry.findByStatus(OrderStatusTestConstants.COMPLETED)).thenReturn(Optional.of(completed));
+
+        OrderStatusStreams streams = new OrderStatusStreams(orderStatusService, orderStatusRegistry,
+                orderStateMachine, pizzaPlaceProperties);
+
+        try {
+            Assertions.assertTrue(streams.subscribe(orderId).isPresent());
+            Assertions.assertTrue(streams.subscribe(orderId).isPresent());
+            Assertions.assertTrue(streams.subscribe(unknownOrderId).isEmpty());
+            Assertions.assertEquals(2, streams.getSubscriptionCount());
+
+            // Orders without streams are ignored
+            streams.onOrderChanged(OrderChangedEvent.builder().orderId(unknownOrderId)
+                    .status(OrderStatusTestConstants.COMPLETED).build());
+            streams.onOrderChanged(OrderChangedEvent.builder().orderId(orderId)
+                    .previousStatus(OrderStatusTestConstants.PROCESSING).status(OrderStatusTestConstants.COMPLETED)
+                    .build());
+
+            long deadline = System.currentTimeMillis() + 5000;
+
+            while (streams.getSubscriptionCount() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            Assertions.assertEquals(0, streams.getSubscriptionCount());
+            Assertions.assertTrue(streams.hasCapacity());
+        } finally {
+            streams.destroy();
+        }
+    }
+
+    // KitchenBoardSocket
+
+    /**
+     * Test kitchen board socket: a socket gets a snapshot and then the board changes, and a socket falling too far
+     * behind gets a new snapshot instead of its pending changes.
+     *
+     * @throws Exception the exception
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testKitchenBoardSocket() throws Exception {
+        PizzaPlaceProperties properties = new PizzaPlaceProperties();
+        properties.getBoard().setSocketMaxPendingEvents(2);
+        KitchenBoard board = new KitchenBoard(orderRepository, orderStatusRegistry, pizzaCatalog, properties);
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        KitchenBoardSocket socket = new KitchenBoardSocket(board, mapper, properties);
+
+        BlockingQueue<JsonNode> messages = new LinkedBlockingQueue<>();
+        CountDownLatch firstSendStarted = new CountDownLatch(1);
+        CountDownLatch slowClient = new CountDownLatch(1);
+        WebSocketSession session = Mockito.mock(WebSocketSession.class);
+
+        when(session.getId()).thenReturn("kitchen");
+        Mockito.doAnswer(invocation -> {
+            firstSendStarted.countDown();
+            Assertions.assertTrue(slowClient.await(5, TimeUnit.SECONDS));
+            messages.add(mapper.readTree(invocation.<TextMessage>getArgument(0).getPayload()));
+
+            return null;
+        }).when(session).sendMessage(Mockito.any(TextMessage.class));
+
+        socket.afterPropertiesSet();
+
+        try {
+            socket.afterConnectionEstablished(session);
+            Assertions.assertTrue(firstSendStarted.await(5, TimeUnit.SECONDS));
+
+            // The first snapshot is still being written, so the changes pile up until the socket has to resync
+            for (int i = 0; i < 4; i++) {
+                board.onOrderChanged(OrderChangedEvent.builder().orderId(UUID.randomUUID())
+                        .pizzas(List.of("Margherita")).createdDate(LocalDateTime.now())
+                        .status(OrderStatusTestConstants.RECEVIED).build());
+            }
+
+            slowClient.countDown();
+
+            JsonNode first = messages.poll(5, TimeUnit.SECONDS);
+            JsonNode resync = messages.poll(5, TimeUnit.SECONDS);
+
+            Assertions.assertNotNull(first);
+            Assertions.assertEquals("SNAPSHOT", first.get("type").asText());
+            Assertions.assertNotNull(resync);
+            Assertions.assertEquals("SNAPSHOT", resync.get("type").asText());
+            Assertions.assertEquals(4, resync.get("version").asLong());
+            Assertions.assertEquals(4, resync.get("orders").size());
+
+            UUID orderId = UUID.randomUUID();
+            board.onOrderChanged(OrderChangedEvent.builder().orderId(orderId).pizzas(List.of("Diavola"))
+                    .createdDate(LocalDateTime.now()).status(OrderStatusTestConstants.RECEVIED).build());
+            board.onOrderChanged(OrderChangedEvent.builder().orderId(orderId).pizzas(List.of("Diavola"))
+                    .createdDate(LocalDateTime.now()).previousStatus(OrderStatusTestConstants.RECEVIED)
+                    .status(OrderStatusTestConstants.PROCESSING).build());
+
+            JsonNode added = messages.poll(5, TimeUnit.SECONDS);
+            JsonNode moved = messages.poll(5, TimeUnit.SECONDS);
+
+            Assertions.assertNotNull(added);
+            Assertions.assertEquals("ADDED", added.get("type").asText());
+            Assertions.assertEquals(5, added.get("version").asLong());
+            Assertions.assertEquals(orderId.toString(), added.get("order").get("orderId").asText());
+            Assertions.assertNotNull(moved);
+            Assertions.assertEquals("MOVED", moved.get("type").asText());
+            Assertions.assertEquals(1, moved.get("processingCount").asLong());
+            Assertions.assertNull(moved.get("orders"));
+            Assertions.assertEquals(1, socket.getSubscriberCount());
+
+            socket.afterConnectionClosed(session, CloseStatus.NORMAL);
+
+            Assertions.assertEquals(0, socket.getSubscriberCount());
+        } finally {
+            socket.destroy();
+        }
+    }
+
+    // SelfLinkRenderer
+
+    /**
+     * Test the self links rendered for the list elements have the same href built by linkTo(methodOn(...)).
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testSelfLinkRenderer() {
+        UUID id = UUID.randomUUID();
+
+        servletRequest.setServerName("pizzeria.example");
+        servletRequest.setServerPort(8443);
+        servletRequest.setScheme("https");
+        servletRequest.setRequestURI("/orders");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(servletRequest));
+
+        try {
+            Link orderLink = selfLinkRenderer.getOrderSelfLinks().getSelfLink(id);
+            Link orderStatusLink = selfLinkRenderer.getOrderStatusSelfLinks().getSelfLink(id);
+
+            Assertions.assertEquals("https://pizzeria.example:8443/orders/" + id, orderLink.getHref());
+            Assertions.assertEquals(IanaLinkRelations.SELF, orderLink.getRel());
+            Assertions.assertEquals(linkTo(methodOn(OrderController.class).getOrder(id, null)).withSelfRel()
+                    .getHref(), orderLink.getHref());
+            Assertions.assertEquals(linkTo(methodOn(OrderStatusController.class).getOrderStatus(id, null))
+                    .withSelfRel().getHref(), orderStatusLink.getHref());
+            Assertions.assertEquals(IanaLinkRelations.SELF, orderStatusLink.getRel());
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
     // Exceptions
 
     /**
@@ -1163,4 +2825,189 @@ class PizzaPlaceUnitTests {
         Assertions.assertEquals(errorDTO.getType(), "about:blank");
         Assertions.assertTrue(StringUtils.contains(errorDTO.getInstance(), "/orders"));
     }
+
+    /**
+     * Test exception handler for optimistic locking failures.
+     * @author Gianluca Sabato
+     */
+    @Test
+    public void testOptimisticLockingExceptionHandler() {
+        servletRequest.setServerName("localhost");
+        servletRequest.setRequestURI("/orders");
+        WebRequest webRequest = new ServletWebRequest(servletRequest);
+        ResponseEntity<Object> responseEntity = handler.handleOptimisticLockingException(
+                new OptimisticLockingFailureException("changed"), webRequest);
+
+        Assertions.assertNotNull(responseEntity);
+        Assertions.assertEquals(HttpStatus.CONFLICT, responseEntity.getStatusCode());
+        Assertions.assertInstanceOf(ErrorDTO.class, responseEntity.getBody());
+
+        ErrorDTO errorDTO = (ErrorDTO) responseEntity.getBody();
+
+        Assertions.assertEquals(HttpStatus.CONFLICT.value(), errorDTO.getStatus());
+        Assertions.assertTrue(StringUtils.contains(errorDTO.getInstance(), "/orders"));
+    }
+
+    private static List<OrderStatus> getOrderStatuses() {
+        OrderStatus received = new OrderStatus();
+        received.setStatus(OrderStatusTestConstants.RECEVIED);
+        received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
+
+        OrderStatus processing = new OrderStatus();
+        processing.setStatus(OrderStatusTestConstants.PROCESSING);
+        processing.setOrderStatusId(OrderStatusTestConstants.PROCESSING_ID);
+
+        OrderStatus completed = new OrderStatus();
+        completed.setStatus(OrderStatusTestConstants.COMPLETED);
+        completed.setOrderStatusId(OrderStatusTestConstants.COMPLETED_ID);
+
+        OrderStatus cancelled = new OrderStatus();
+        cancelled.setStatus(OrderStatusTestConstants.CANCELLED);
+        cancelled.setOrderStatusId(OrderStatusTestConstants.CANCELLED_ID);
+
+        return List.of(received, processing, completed, cancelled);
+    }
+
+    private static List<Pizza> getPizzas() {
+        List<String> names = List.of("Margherita", "Diavola", "Tirolese");
+        List<Pizza> pizzas = new ArrayList<>();
+
+        for (int i = 0; i < names.size(); i++) {
+            Pizza pizza = new Pizza();
+            pizza.setPizzaId(i + 1);
+            pizza.setName(names.get(i));
+            pizzas.add(pizza);
+        }
+
+        return pizzas;
+    }
+
+    private static PizzaCatalog getPizzaCatalog() {
+        PizzaRepository pizzaRepository = Mockito.mock(PizzaRepository.class);
+        when(pizzaRepository.findAll()).thenReturn(getPizzas());
+        PizzaCatalog pizzaCatalog = new PizzaCatalog(pizzaRepository);
+
+        try {
+            pizzaCatalog.refresh();
+        } catch (ConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return pizzaCatalog;
+    }
+
+    /**
+     * Gets a validator checking the menu against the given catalog, as the Spring one does with the catalog bean.
+     */
+    private static Validator getValidator(PizzaCatalog pizzaCatalog) {
+        ConstraintValidatorFactory defaultFactory = Validation.byDefaultProvider().configure()
+                .getDefaultConstraintValidatorFactory();
+
+        return Validation.byDefaultProvider().configure().constraintValidatorFactory(new ConstraintValidatorFactory() {
+            @Override
+            public <T extends ConstraintValidator<?, ?>> T getInstance(Class<T> key) {
+                return key == OnMenuValidator.class ? key.cast(new OnMenuValidator(pizzaCatalog)) :
+                        defaultFactory.getInstance(key);
+            }
+
+            @Override
+            public void releaseInstance(ConstraintValidator<?, ?> instance) {
+                defaultFactory.releaseInstance(instance);
+            }
+        }).buildValidatorFactory().getValidator();
+    }
+
+    private static Order getOrder(UUID orderId, LocalDateTime lastModifiedDate) {
+        Order order = new Order();
+        order.setOrderId(orderId);
+        order.setPizzaIds(List.of(1));
+        order.setLastModifiedDate(lastModifiedDate);
+
+        return order;
+    }
+
+    private OrderEventDispatcher getOrderEventDispatcher(List<OrderEventSink> orderEventSinks) {
+        PizzaPlaceProperties properties = new PizzaPlaceProperties();
+        properties.getOutbox().setEnabled(true);
+        properties.getOutbox().setBatchSize(2);
+
+        return new OrderEventDispatcher(orderEventRepository, orderEventSinks, new TransactionTemplate(
+                Mockito.mock(PlatformTransactionManager.class)), properties);
+    }
+
+    private static List<OrderEvent> getOrderEvents(int size) {
+        List<OrderEvent> orderEvents = new ArrayList<>();
+
+        for (int i = 0; i < size; i++) {
+            OrderEvent orderEvent = new OrderEvent();
+            orderEvent.setEventId(i + 1L);
+            orderEvent.setOrderId(UUID.randomUUID());
+            orderEvent.setPreviousStatus(OrderStatusTestConstants.RECEVIED);
+            orderEvent.setStatus(OrderStatusTestConstants.PROCESSING);
+            orderEvent.setCreatedDate(LocalDateTime.now());
+            orderEvents.add(orderEvent);
+        }
+
+        return orderEvents;
+    }
+
+    private static List<Order> getOrders(int size) {
+        OrderStatus received = new OrderStatus();
+        received.setStatus(OrderStatusTestConstants.RECEVIED);
+        received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
+
+        LocalDateTime createdDate = LocalDateTime.now().minusHours(1);
+        List<Order> orders = new ArrayList<>();
+
+        for (int i = 0; i < size; i++) {
+            Order order = new Order();
+            order.setOrderId(UUID.randomUUID());
+            order.setOrderStatus(received);
+            // Margherita, Diavola and Tirolese
+            order.setPizzaIds(List.of(1, 2, 3));
+            order.setCreatedDate(createdDate.plusMinutes(i));
+            orders.add(order);
+        }
+
+        return orders;
+    }
+
+    private static List<OrderListItemDTO> getOrderListItems(int size) {
+        return getOrders(size).stream().map(o -> new OrderListItemDTO(o.getOrderId(), o.getPizzaIds(),
+                o.getCreatedDate())).toList();
+    }
+
+    private static List<OrderSummaryDTO> getOrderSummaries(int size) {
+        return getOrders(size).stream().map(o -> new OrderSummaryDTO(o.getOrderId(), o.getPizzaIds(),
+                o.getOrderStatus().getStatus(), o.getCreatedDate(), o.getLastModifiedDate())).toList();
+    }
+
+    private OrderIntake getOrderIntake() throws ConfigurationException {
+        OrderStatus received = new OrderStatus();
+        received.setStatus(OrderStatusTestConstants.RECEVIED);
+        received.setOrderStatusId(OrderStatusTestConstants.RECEVIED_ID);
+
+        Mockito.lenient().when(orderStatusRegistry.getRequired(OrderStatusTestConstants.RECEVIED)).thenReturn(received);
+
+        return new OrderIntake(orderRepository, orderStatusRegistry, pizzaCatalog, eventPublisher,
+                new TransactionTemplate(transactionManager), pizzaPlaceProperties);
+    }
+
+    private static IdempotentOrderDTO createIdempotentOrder(OrderIdempotencyService orderIdempotencyService) {
+        try {
+            return orderIdempotencyService.createOrder("key", new OrderDTO(List.of("Margherita")));
+        } catch (ConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void awaitNoPendingOrders(OrderIntake intake) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while (intake.getPendingOrdersCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        Assertions.assertEquals(0, intake.getPendingOrdersCount());
+    }
 }